@@ -1,18 +1,82 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * The Account class represents a general bank account with an account number 
  * and a balance. It provides basic functionality for managing the account details.
  * This class serves as a base class for more specific types of accounts like 
  * Checking, Saving, and Credit accounts.
+ *
+ * The balance is stored as a whole number of cents (see {@link Money}), so it is
+ * always exact. The double getters and setters are kept for display and for callers
+ * that work in dollars; they convert to and from the nearest cent.
+ *
+ * Deposits and withdrawals are lock-free: they update the balance with a
+ * compare-and-set loop, so the funds check and the update happen atomically even when
+ * several threads use the same account. The number of retries caused by other threads
+ * and the number of withdrawals rejected for lack of funds are counted for all accounts.
+ *
+ * The balance is packed into one {@code long} together with the sequence number of the
+ * update that set it, so an update allocates nothing. Once its compare-and-set succeeds,
+ * an update waits for the updates numbered before it to finish, and only then appends
+ * to the transaction history, so the history is always appended in the order the
+ * balance changed. The sequence takes the low {@value #SEQUENCE_BITS} bits, which
+ * limits a balance to {@link #MAX_BALANCE_CENTS}.
  * @author Natalia Cervantes
  * @author Tzetzaith Rivero
  * @version 3.0
  */
 public abstract class Account {
+    /** The value returned by {@link #withdrawAndGet(long)} when the funds are insufficient. */
+    public static final long INSUFFICIENT_FUNDS = Long.MIN_VALUE;
+
+    /** The number of low bits of the balance state that hold the sequence number. */
+    public static final int SEQUENCE_BITS = 16;
+
+    /** The largest balance an account can hold, in cents. */
+    public static final long MAX_BALANCE_CENTS = Long.MAX_VALUE >> SEQUENCE_BITS;
+
+    /** The smallest balance an account can hold, in cents. */
+    public static final long MIN_BALANCE_CENTS = Long.MIN_VALUE >> SEQUENCE_BITS;
+
+    /** Keeps the sequence number of a balance state. */
+    private static final int SEQUENCE_MASK = (1 << SEQUENCE_BITS) - 1;
+
+    /** The number of times an update spins for its turn before it yields the processor. */
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    /**
+     * Hands out the numbers of new accounts of every type. Every account created reserves
+     * its number, so numbers are never reused and no two accounts share one.
+     */
+    public static final SequenceAllocator NUMBER_SEQUENCE = new SequenceAllocator(1000);
+
+    /** Handle used to compare-and-set the balance. */
+    private static final VarHandle BALANCE;
+
+    /** The number of times a balance update was retried because another thread changed the balance first. */
+    private static final LongAdder casRetries = new LongAdder();
+
+    /** The number of withdrawals rejected because the balance did not cover them. */
+    private static final LongAdder casFailures = new LongAdder();
+
+    static {
+        try {
+            BALANCE = MethodHandles.lookup().findVarHandle(Account.class, "balanceState", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /** The unique number associated with the account.*/
     protected int accountNumber;
 
-    /**The current balance of the account.*/
-    protected double balance;
+    /** The current balance of the account in cents, shifted left, and the sequence number of the update that set it. */
+    private volatile long balanceState;
+
+    /** The sequence number of the last update that finished its turn. */
+    private volatile int finishedSequence;
 
     /** Default constructor that initializes an empty Account object.*/
     public Account() {
@@ -26,7 +90,8 @@ public abstract class Account {
      */
     public Account(int accountNumber, double balance) {
         this.accountNumber = accountNumber;
-        this.balance = balance;
+        this.balanceState = pack(Money.fromDouble(balance), 0);
+        NUMBER_SEQUENCE.reserveThrough(accountNumber);
     }
 
     /**
@@ -43,6 +108,7 @@ public abstract class Account {
      */
     public void setAccountNumber(int accountNumber) {
         this.accountNumber = accountNumber;
+        NUMBER_SEQUENCE.reserveThrough(accountNumber);
     }
 
     /**
@@ -50,7 +116,7 @@ public abstract class Account {
      * @return the account balance
      */
     public double getBalance() {
-        return balance;
+        return Money.toDouble(getBalanceCents());
     }
 
     /**
@@ -58,7 +124,215 @@ public abstract class Account {
      * @param balance the new balance of the account
      */
     public void setBalance(double balance) {
-        this.balance = balance;
+        setBalanceCents(Money.fromDouble(balance));
+    }
+
+    /**
+     * Gets the current balance of the account in cents.
+     * @return the account balance in cents
+     */
+    public long getBalanceCents() {
+        return centsOf(balanceState);
+    }
+
+    /**
+     * Sets the balance for the account in cents.
+     * @param balanceCents the new balance of the account in cents
+     * @throws ArithmeticException if the balance is outside the range an account can hold
+     */
+    public void setBalanceCents(long balanceCents) {
+        long current = balanceState;
+        while (!compareAndSetBalance(current, balanceCents)) {
+            current = balanceState;
+        }
+    }
+
+    /**
+     * Adds an amount to the balance.
+     * @param amountCents the amount to add, in cents
+     */
+    public void deposit(long amountCents) {
+        depositAndGet(amountCents);
+    }
+
+    /**
+     * Adds an amount to the balance and returns the new balance. The balance before the
+     * deposit is the returned value minus the amount, even if other threads update the
+     * account at the same time.
+     * @param amountCents the amount to add, in cents
+     * @return the balance after the deposit, in cents
+     */
+    public long depositAndGet(long amountCents) {
+        return depositAndRecord(amountCents, null, TransactionHistory.DEPOSIT, null);
+    }
+
+    /**
+     * Adds an amount to the balance and appends the deposit to a transaction history, in
+     * the order the balance of the account changed.
+     * @param amountCents  the amount to add, in cents
+     * @param history      the history the deposit is appended to, or null
+     * @param kind         the kind of transaction, one of the constants of {@link TransactionHistory}
+     * @param counterparty the other customer of a payment, or null
+     * @return the balance after the deposit, in cents
+     */
+    public long depositAndRecord(long amountCents, TransactionHistory history, byte kind, Customer counterparty) {
+        long current = balanceState;
+        while (true) {
+            long updated = Money.add(centsOf(current), amountCents);
+            if (compareAndSetBalance(current, updated, history, kind, amountCents, counterparty)) {
+                return updated;
+            }
+            current = balanceState;
+        }
+    }
+
+    /**
+     * Takes an amount from the balance if the balance covers it.
+     * @param amountCents the amount to take, in cents
+     * @return true if the balance covered the amount
+     */
+    public boolean withdraw(long amountCents) {
+        return withdrawAndGet(amountCents) != INSUFFICIENT_FUNDS;
+    }
+
+    /**
+     * Takes an amount from the balance if the balance covers it, and returns the new
+     * balance. The check and the update are done atomically.
+     * @param amountCents the amount to take, in cents
+     * @return the balance after the withdrawal in cents, or {@link #INSUFFICIENT_FUNDS}
+     */
+    public long withdrawAndGet(long amountCents) {
+        return withdrawAndRecord(amountCents, null, TransactionHistory.WITHDRAWAL, null);
+    }
+
+    /**
+     * Takes an amount from the balance if the balance covers it, and appends the
+     * withdrawal to a transaction history, in the order the balance of the account changed.
+     * @param amountCents  the amount to take, in cents
+     * @param history      the history the withdrawal is appended to, or null
+     * @param kind         the kind of transaction, one of the constants of {@link TransactionHistory}
+     * @param counterparty the other customer of a payment, or null
+     * @return the balance after the withdrawal in cents, or {@link #INSUFFICIENT_FUNDS}
+     */
+    public long withdrawAndRecord(long amountCents, TransactionHistory history, byte kind, Customer counterparty) {
+        long current = balanceState;
+        while (true) {
+            long cents = centsOf(current);
+            if (cents < amountCents) {
+                recordRejectedUpdate();
+                return INSUFFICIENT_FUNDS;
+            }
+            long updated = Money.subtract(cents, amountCents);
+            if (compareAndSetBalance(current, updated, history, kind, amountCents, counterparty)) {
+                return updated;
+            }
+            current = balanceState;
+        }
+    }
+
+    /**
+     * Gets the current balance state, to compute an update for
+     * {@link #compareAndSetBalance(long, long)}.
+     * @return the balance state
+     */
+    protected final long getBalanceState() {
+        return balanceState;
+    }
+
+    /**
+     * Gets the balance held by a balance state.
+     * @param state the balance state
+     * @return the balance in cents
+     */
+    protected static long centsOf(long state) {
+        return state >> SEQUENCE_BITS;
+    }
+
+    /**
+     * Sets the balance to a new value if it is still in the expected state, counting a
+     * retry otherwise. Subclasses use it to build their own atomic updates.
+     * @param expectedState the balance state the update was computed from
+     * @param updatedCents  the new balance, in cents
+     * @return true if the balance was updated
+     * @throws ArithmeticException if the new balance is outside the range an account can hold
+     */
+    protected final boolean compareAndSetBalance(long expectedState, long updatedCents) {
+        return compareAndSetBalance(expectedState, updatedCents, null, TransactionHistory.NOTE, 0, null);
+    }
+
+    /**
+     * Sets the balance to a new value if it is still in the expected state, then waits
+     * for the updates numbered before this one to finish and appends the transaction to
+     * the history.
+     * @param expectedState the balance state the update was computed from
+     * @param updatedCents  the new balance, in cents
+     * @param history       the history the transaction is appended to, or null
+     * @param kind          the kind of transaction
+     * @param amountCents   the amount of the transaction, in cents
+     * @param counterparty  the other customer of a payment, or null
+     * @return true if the balance was updated
+     */
+    private boolean compareAndSetBalance(long expectedState, long updatedCents, TransactionHistory history, byte kind, long amountCents, Customer counterparty) {
+        int previous = (int) expectedState & SEQUENCE_MASK;
+        int sequence = (previous + 1) & SEQUENCE_MASK;
+        if (!BALANCE.compareAndSet(this, expectedState, pack(updatedCents, sequence))) {
+            casRetries.increment();
+            return false;
+        }
+        for (int spins = 0; finishedSequence != previous; spins++) {
+            if (spins < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        try {
+            if (history != null) {
+                history.add(kind, centsOf(expectedState), updatedCents, amountCents, counterparty);
+            }
+        } finally {
+            finishedSequence = sequence;
+        }
+        return true;
+    }
+
+    /**
+     * Packs a balance and a sequence number into a balance state.
+     * @param cents    the balance, in cents
+     * @param sequence the sequence number
+     * @return the balance state
+     * @throws ArithmeticException if the balance is outside the range an account can hold
+     */
+    private static long pack(long cents, int sequence) {
+        if (cents > MAX_BALANCE_CENTS || cents < MIN_BALANCE_CENTS) {
+            throw new ArithmeticException("Balance out of range: " + cents);
+        }
+        return cents << SEQUENCE_BITS | sequence;
+    }
+
+    /**
+     * Counts an update that was rejected because the balance or a limit did not allow it.
+     */
+    protected static void recordRejectedUpdate() {
+        casFailures.increment();
+    }
+
+    /**
+     * Gets the number of balance updates, over all accounts, that had to be retried
+     * because another thread changed the balance first.
+     * @return the number of retries
+     */
+    public static long getCasRetryCount() {
+        return casRetries.sum();
+    }
+
+    /**
+     * Gets the number of updates, over all accounts, that were rejected because the
+     * balance or a limit did not allow them.
+     * @return the number of rejected updates
+     */
+    public static long getCasFailureCount() {
+        return casFailures.sum();
     }
 
     /**
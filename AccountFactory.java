@@ -2,6 +2,7 @@
  * A factory class for creating different types of accounts.
  * Supports Checking, Saving, and Credit accounts.
  * Throws an exception if an invalid account type is provided.
+ * Every account created is registered in the {@link AccountIndex}.
  * @author Natalia Cervantes
  * @author Tzetzaith Rivero
  * @version 3.0
@@ -19,15 +20,21 @@ public class AccountFactory {
      * @throws InvalidAccountException if the account type is invalid
      */
     public Account createAccount(String accountType, int accountNumber, double creditMax) throws InvalidAccountException {
+        Account account;
         switch (accountType) {
             case "Checking":
-                return new Checking(accountNumber, 0.0);
+                account = new Checking(accountNumber, 0.0);
+                break;
             case "Saving":
-                return new Saving(accountNumber, 0.0);
+                account = new Saving(accountNumber, 0.0);
+                break;
             case "Credit":
-                return new Credit(accountNumber, -10.0, creditMax);
+                account = new Credit(accountNumber, -10.0, creditMax);
+                break;
             default:
                 throw new InvalidAccountException("Invalid account type: " + accountType);
         }
+        AccountIndex.getInstance().register(account);
+        return account;
     }
 }
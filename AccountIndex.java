@@ -0,0 +1,270 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * The AccountIndex class finds an account, and the customer who owns it, from its
+ * account number in constant time.
+ *
+ * Account numbers are handed out in a dense range by {@link Account#NUMBER_SEQUENCE},
+ * so most of them are stored in a direct-address table: the number itself picks
+ * a page of {@value #PAGE_SIZE} slots and a slot within it, and pages are only
+ * allocated for the ranges in use. Numbers that are negative, too large, or so
+ * scattered that a new page would be mostly empty go to a small open-addressing map
+ * keyed by the primitive number instead.
+ *
+ * Lookups do not lock; registrations are serialized. It uses a singleton design
+ * pattern, like the {@link PasswordManager}, so the accounts created anywhere in the
+ * system end up in the same index.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class AccountIndex {
+    /** The number of bits of an account number that select the slot within a page. */
+    private static final int PAGE_BITS = 10;
+
+    /** The number of account numbers covered by a page. */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /** The number of pages of the direct-address table, covering numbers 0 to 2^24 - 1. */
+    private static final int MAX_PAGES = 1 << 14;
+
+    /** The number of pages that are always allocated when needed, however sparse. */
+    private static final int FREE_PAGES = 16;
+
+    /** A new page is only allocated if the table stays at least this fraction full (1/8). */
+    private static final int MAX_SLOTS_PER_ACCOUNT = 8;
+
+    /** Handle used to read and publish pages and slots safely without locking. */
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    /** Singleton instance.*/
+    private static AccountIndex instance;
+
+    /** The pages of the direct-address table; each holds an account and its owner per number. */
+    private final Object[] pages = new Object[MAX_PAGES];
+
+    /** The number of pages allocated. */
+    private int pageCount;
+
+    /** The number of accounts stored in the direct-address table. */
+    private int denseCount;
+
+    /** The accounts whose numbers do not fit the direct-address table. */
+    private final SparseTable sparse = new SparseTable();
+
+    /** Creates an empty AccountIndex. */
+    public AccountIndex() {
+    }
+
+    /**
+     * Retrieves the singleton instance of the AccountIndex.
+     * @return The singleton instance of AccountIndex.
+     */
+    public static synchronized AccountIndex getInstance() {
+        if (instance == null) {
+            instance = new AccountIndex();
+        }
+        return instance;
+    }
+
+    /**
+     * Registers an account whose owner is not known yet, such as one just created by the
+     * {@link AccountFactory}.
+     * @param account The account.
+     */
+    public void register(Account account) {
+        register(account, null);
+    }
+
+    /**
+     * Registers the three accounts of a customer.
+     * @param customer The customer.
+     */
+    public void register(Customer customer) {
+        register(customer.getCheckingAccount(), customer);
+        register(customer.getSavingsAccount(), customer);
+        register(customer.getCreditAccount(), customer);
+    }
+
+    /**
+     * Registers an account and its owner, replacing any account registered with the
+     * same number.
+     * @param account The account.
+     * @param owner   The customer who owns the account, or null if not known yet.
+     */
+    public synchronized void register(Account account, Customer owner) {
+        int number = account.getAccountNumber();
+        Object[] page = number >= 0 && (number >>> PAGE_BITS) < MAX_PAGES ? pageFor(number >>> PAGE_BITS) : null;
+        if (page == null) {
+            sparse.put(number, account, owner);
+            return;
+        }
+        int slot = (number & (PAGE_SIZE - 1)) << 1;
+        if (page[slot] == null) {
+            denseCount++;
+        }
+        page[slot + 1] = owner;
+        SLOT.setRelease(page, slot, account);
+    }
+
+    /**
+     * Gets the page for a page number, allocating it if the table stays dense enough.
+     * @param pageNumber The page number.
+     * @return The page, or null if the number must go to the sparse table.
+     */
+    private Object[] pageFor(int pageNumber) {
+        Object[] page = (Object[]) pages[pageNumber];
+        if (page == null && (pageCount < FREE_PAGES || (long) (pageCount + 1) * PAGE_SIZE <= (long) MAX_SLOTS_PER_ACCOUNT * (denseCount + 1))) {
+            page = new Object[PAGE_SIZE * 2];
+            pageCount++;
+            SLOT.setRelease(pages, pageNumber, page);
+        }
+        return page;
+    }
+
+    /**
+     * Finds an account by its number.
+     * @param accountNumber The account number.
+     * @return The account, or null if no account has that number.
+     */
+    public Account getAccount(int accountNumber) {
+        Object[] page = page(accountNumber);
+        if (page != null) {
+            Account account = (Account) SLOT.getAcquire(page, (accountNumber & (PAGE_SIZE - 1)) << 1);
+            if (account != null) {
+                return account;
+            }
+        }
+        return sparse.getAccount(accountNumber);
+    }
+
+    /**
+     * Finds the customer who owns an account.
+     * @param accountNumber The account number.
+     * @return The owner, or null if no account has that number or its owner is not known.
+     */
+    public Customer getOwner(int accountNumber) {
+        Object[] page = page(accountNumber);
+        if (page != null) {
+            int slot = (accountNumber & (PAGE_SIZE - 1)) << 1;
+            if (SLOT.getAcquire(page, slot) != null) {
+                return (Customer) page[slot + 1];
+            }
+        }
+        return sparse.getOwner(accountNumber);
+    }
+
+    /**
+     * Gets the page of the direct-address table that covers an account number.
+     * @param accountNumber The account number.
+     * @return The page, or null if it is not allocated.
+     */
+    private Object[] page(int accountNumber) {
+        if (accountNumber < 0 || (accountNumber >>> PAGE_BITS) >= MAX_PAGES) {
+            return null;
+        }
+        return (Object[]) SLOT.getAcquire(pages, accountNumber >>> PAGE_BITS);
+    }
+
+    /**
+     * Gets the number of accounts registered.
+     * @return the number of accounts
+     */
+    public synchronized int size() {
+        return denseCount + sparse.size;
+    }
+
+    /**
+     * Gets the number of accounts stored in the sparse table instead of the
+     * direct-address table.
+     * @return the number of sparse accounts
+     */
+    public synchronized int getSparseCount() {
+        return sparse.size;
+    }
+
+    /**
+     * An open-addressing hash table from a primitive account number to an account and its
+     * owner, with linear probing. Its methods are synchronized, so lookups see the
+     * accounts stored by other threads.
+     */
+    private static class SparseTable {
+        /** The account numbers. */
+        private int[] numbers = new int[16];
+        /** The account and the owner stored for each slot of {@link #numbers}; a null account marks a free slot. */
+        private Object[] entries = new Object[32];
+        /** The number of accounts stored. */
+        private int size;
+
+        /**
+         * Stores an account, replacing any account with the same number.
+         * @param number  The account number.
+         * @param account The account.
+         * @param owner   The owner, or null.
+         */
+        private synchronized void put(int number, Account account, Customer owner) {
+            if ((size + 1) * 2 > numbers.length) {
+                resize();
+            }
+            int slot = find(numbers, entries, number);
+            if (entries[slot << 1] == null) {
+                size++;
+            }
+            numbers[slot] = number;
+            entries[slot << 1] = account;
+            entries[(slot << 1) + 1] = owner;
+        }
+
+        /**
+         * Finds an account.
+         * @param number The account number.
+         * @return The account, or null.
+         */
+        private synchronized Account getAccount(int number) {
+            return size == 0 ? null : (Account) entries[find(numbers, entries, number) << 1];
+        }
+
+        /**
+         * Finds the owner of an account.
+         * @param number The account number.
+         * @return The owner, or null.
+         */
+        private synchronized Customer getOwner(int number) {
+            return size == 0 ? null : (Customer) entries[(find(numbers, entries, number) << 1) + 1];
+        }
+
+        /** Doubles the capacity of the table. */
+        private void resize() {
+            int[] newNumbers = new int[numbers.length * 2];
+            Object[] newEntries = new Object[entries.length * 2];
+            for (int i = 0; i < numbers.length; i++) {
+                if (entries[i << 1] != null) {
+                    int slot = find(newNumbers, newEntries, numbers[i]);
+                    newNumbers[slot] = numbers[i];
+                    newEntries[slot << 1] = entries[i << 1];
+                    newEntries[(slot << 1) + 1] = entries[(i << 1) + 1];
+                }
+            }
+            numbers = newNumbers;
+            entries = newEntries;
+        }
+
+        /**
+         * Finds the slot of a number, or the free slot where it would go.
+         * @param numbers The account numbers of the table.
+         * @param entries The entries of the table.
+         * @param number  The account number.
+         * @return The slot.
+         */
+        private static int find(int[] numbers, Object[] entries, int number) {
+            int mask = numbers.length - 1;
+            int hash = number * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (entries[slot << 1] != null && numbers[slot] != number) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The AccountLocks class serializes operations that span more than one account, such
+ * as moving money between two accounts, so that concurrent sessions and batch workers
+ * see them as a whole. Single deposits and withdrawals do not need it; {@link Account}
+ * makes them atomic without locks and appends their history entries in the order the
+ * balance changed.
+ *
+ * Accounts are mapped by account number onto a fixed number of lock stripes, so the
+ * number of locks does not grow with the number of accounts. Operations on two
+ * accounts, such as pays and transfers, always take the stripe with the lower index
+ * first, which gives every thread the same global lock order and rules out deadlocks.
+ *
+ * Each stripe counts how often it was taken, how often a thread had to wait for it and
+ * for how long, so the stripe count can be sized for the load. It uses a singleton
+ * design pattern, like the {@link PasswordManager}, so every part of the system locks
+ * the same stripes.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class AccountLocks {
+    /** The number of stripes of the shared instance. */
+    public static final int DEFAULT_STRIPE_COUNT = 64;
+
+    /** Singleton instance.*/
+    private static AccountLocks instance;
+
+    /** The lock stripes. */
+    private final Stripe[] stripes;
+
+    /** The number of bits used to pick a stripe. */
+    private final int stripeBits;
+
+    /**
+     * Creates a new AccountLocks.
+     * @param stripeCount The number of stripes, rounded up to a power of two.
+     */
+    public AccountLocks(int stripeCount) {
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, stripeCount) - 1);
+        this.stripeBits = bits;
+        this.stripes = new Stripe[1 << bits];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Retrieves the singleton instance of the AccountLocks.
+     * @return The singleton instance of AccountLocks.
+     */
+    public static synchronized AccountLocks getInstance() {
+        if (instance == null) {
+            instance = new AccountLocks(DEFAULT_STRIPE_COUNT);
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the stripe an account number maps to. The number is scrambled first so
+     * that consecutive account numbers land on different stripes.
+     * @param accountNumber The account number.
+     * @return The index of the stripe.
+     */
+    public int stripeOf(int accountNumber) {
+        return stripeBits == 0 ? 0 : (accountNumber * 0x9E3779B9) >>> (32 - stripeBits);
+    }
+
+    /**
+     * Locks the stripe of an account.
+     * @param account The account to lock.
+     */
+    public void lock(Account account) {
+        acquire(stripeOf(account.getAccountNumber()));
+    }
+
+    /**
+     * Unlocks the stripe of an account.
+     * @param account The account to unlock.
+     */
+    public void unlock(Account account) {
+        stripes[stripeOf(account.getAccountNumber())].unlock();
+    }
+
+    /**
+     * Locks the stripes of two accounts, lower stripe first. If both accounts map to
+     * the same stripe it is only taken once.
+     * @param first  The first account.
+     * @param second The second account.
+     */
+    public void lock(Account first, Account second) {
+        int a = stripeOf(first.getAccountNumber());
+        int b = stripeOf(second.getAccountNumber());
+        acquire(Math.min(a, b));
+        if (a != b) {
+            acquire(Math.max(a, b));
+        }
+    }
+
+    /**
+     * Unlocks the stripes taken by {@link #lock(Account, Account)}.
+     * @param first  The first account.
+     * @param second The second account.
+     */
+    public void unlock(Account first, Account second) {
+        int a = stripeOf(first.getAccountNumber());
+        int b = stripeOf(second.getAccountNumber());
+        if (a != b) {
+            stripes[Math.max(a, b)].unlock();
+        }
+        stripes[Math.min(a, b)].unlock();
+    }
+
+    /**
+     * Moves money from one account to another and posts it to the {@link Ledger}, while
+     * holding the locks of both.
+     * @param from        The account the money comes from.
+     * @param to          The account the money goes to.
+     * @param amountCents The amount to move, in cents.
+     * @return true if the source account had enough funds, false otherwise.
+     */
+    public boolean transfer(Account from, Account to, long amountCents) {
+        lock(from, to);
+        try {
+            if (!from.withdraw(amountCents)) {
+                return false;
+            }
+            to.deposit(amountCents);
+            Ledger.getInstance().transfer(from, to, amountCents);
+        } finally {
+            unlock(from, to);
+        }
+        return true;
+    }
+
+    /**
+     * Takes a stripe, recording whether the thread had to wait for it.
+     * @param index The index of the stripe.
+     */
+    private void acquire(int index) {
+        Stripe stripe = stripes[index];
+        if (!stripe.tryLock()) {
+            long start = System.nanoTime();
+            stripe.lock();
+            stripe.contentions++;
+            stripe.waitNanos += System.nanoTime() - start;
+        }
+        stripe.acquisitions++;
+    }
+
+    /**
+     * Gets the number of stripes.
+     * @return the number of stripes
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Gets how many times a stripe was taken.
+     * @param index The index of the stripe.
+     * @return the number of acquisitions
+     */
+    public long getAcquisitions(int index) {
+        return stripes[index].acquisitions;
+    }
+
+    /**
+     * Gets how many times a thread had to wait for a stripe.
+     * @param index The index of the stripe.
+     * @return the number of contended acquisitions
+     */
+    public long getContentions(int index) {
+        return stripes[index].contentions;
+    }
+
+    /**
+     * Gets the total time threads spent waiting for a stripe.
+     * @param index The index of the stripe.
+     * @return the waiting time in nanoseconds
+     */
+    public long getWaitNanos(int index) {
+        return stripes[index].waitNanos;
+    }
+
+    /**
+     * Gets how many times a thread had to wait for any stripe.
+     * @return the total number of contended acquisitions
+     */
+    public long getTotalContentions() {
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            total += stripe.contentions;
+        }
+        return total;
+    }
+
+    /**
+     * A lock stripe and its statistics. The statistics are only written by the thread
+     * that holds the lock, and are volatile so other threads can read them.
+     */
+    private static class Stripe extends ReentrantLock {
+        /** The version of the serialized form of the stripe. */
+        private static final long serialVersionUID = 1L;
+        /** The number of times the stripe was taken. */
+        private volatile long acquisitions;
+        /** The number of times a thread had to wait for the stripe. */
+        private volatile long contentions;
+        /** The total time spent waiting for the stripe, in nanoseconds. */
+        private volatile long waitNanos;
+    }
+}
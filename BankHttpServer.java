@@ -0,0 +1,694 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The BankHttpServer class serves the customer banking operations over HTTP, so many
+ * clients can use the bank at the same time instead of one person at the console.
+ *
+ * Every operation delegates to the {@link BankManager}, so balances and histories are
+ * updated exactly as when a manager processes a transactions file, and is written to the
+ * {@link TransactionJournal} and the {@link WriteBehindCustomerStore} like a console
+ * session. Parameters are read from the query string and from a form or flat JSON body;
+ * replies are JSON objects with an "ok" field. Every request must carry the customer's
+ * name (or identification number, as "id") and password.
+ *
+ * <pre>
+ * GET  /inquire?customer=First+Last&amp;password=...
+ * POST /deposit    customer, password, account, amount
+ * POST /withdraw   customer, password, account, amount
+ * POST /transfer   customer, password, from, to, amount
+ * POST /pay        customer, password, recipient, amount
+ * GET  /statement?customer=First+Last&amp;password=...
+ * </pre>
+ *
+ * Requests run on a virtual thread each when the JVM supports them (Java 21 and later),
+ * and on a fixed pool of platform threads otherwise.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class BankHttpServer implements AutoCloseable {
+    /** The number of threads used when virtual threads are not available. */
+    public static final int DEFAULT_POOL_SIZE = 256;
+
+    /** The number of connections the server queues before refusing new ones. */
+    private static final int BACKLOG = 4096;
+
+    /** The largest request body accepted, in bytes. */
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+
+    static {
+        // The server writes the headers and the body of a reply separately; without
+        // TCP_NODELAY the body waits for the delayed ACK of the headers (about 40 ms)
+        // on every request after the first one of a kept-alive connection.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /** The bank manager the operations are delegated to. */
+    private final BankManager bankManager;
+
+    /** The customers, keyed by their full name, shared with the console that adds to them. */
+    private final ConcurrentMap<String, Customer> customersByName;
+
+    /** The customers, keyed by their identification number. */
+    private final CustomerIdMap customersById;
+
+    /** The journal the transactions are written to, or null. */
+    private final TransactionJournal journal;
+
+    /** The store that persists the customers that change, or null. */
+    private final WriteBehindCustomerStore customerStore;
+
+    /** The embedded HTTP server. */
+    private final HttpServer server;
+
+    /** The executor that runs the requests. */
+    private final ExecutorService executor;
+
+    /**
+     * Creates a new BankHttpServer. The server does not accept requests until
+     * {@link #start()} is called.
+     * @param customersByName The customers, keyed by their full name; the console may keep adding to them.
+     * @param customersById   The customers, keyed by their identification number.
+     * @param journal         The journal to write the transactions to, or null.
+     * @param customerStore   The store that persists the customers that change, or null.
+     * @param port            The port to listen on, or 0 for any free port.
+     * @throws IOException if the server cannot listen on the port
+     */
+    public BankHttpServer(ConcurrentMap<String, Customer> customersByName, CustomerIdMap customersById, TransactionJournal journal, WriteBehindCustomerStore customerStore, int port) throws IOException {
+        this.bankManager = new BankManager(customersByName);
+        bankManager.setConsole(null);
+        this.customersByName = customersByName;
+        this.customersById = customersById;
+        this.journal = journal;
+        this.customerStore = customerStore;
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/inquire", exchange -> handle(exchange, "GET", this::inquire));
+        server.createContext("/deposit", exchange -> handle(exchange, "POST", this::deposit));
+        server.createContext("/withdraw", exchange -> handle(exchange, "POST", this::withdraw));
+        server.createContext("/transfer", exchange -> handle(exchange, "POST", this::transfer));
+        server.createContext("/pay", exchange -> handle(exchange, "POST", this::pay));
+        server.createContext("/statement", exchange -> handle(exchange, "GET", this::statement));
+    }
+
+    /**
+     * Creates the executor that runs the requests: one virtual thread per request when
+     * the JVM supports them, a fixed pool of daemon threads otherwise.
+     * @return the executor
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(DEFAULT_POOL_SIZE, runnable -> {
+                Thread thread = new Thread(runnable, "bank-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** Starts accepting requests. */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the running ones, and stops
+     * the request threads.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An operation of the API.
+     */
+    private interface Operation {
+        /**
+         * Runs the operation for an authenticated customer.
+         * @param customer   The customer making the request.
+         * @param parameters The request parameters.
+         * @return The reply.
+         */
+        Reply run(Customer customer, Map<String, String> parameters);
+    }
+
+    /**
+     * A reply: an HTTP status and a JSON body.
+     */
+    private static class Reply {
+        /** The HTTP status code. */
+        private final int status;
+        /** The JSON body. */
+        private final String body;
+
+        /**
+         * Creates a new Reply.
+         * @param status The HTTP status code.
+         * @param body   The JSON body.
+         */
+        private Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        /**
+         * Creates a successful reply.
+         * @param fields The JSON fields to add after "ok", already formatted, or an empty string.
+         * @return the reply
+         */
+        private static Reply ok(String fields) {
+            return new Reply(200, "{\"ok\":true" + fields + "}");
+        }
+
+        /**
+         * Creates an error reply.
+         * @param status  The HTTP status code.
+         * @param message The error message.
+         * @return the reply
+         */
+        private static Reply error(int status, String message) {
+            return new Reply(status, "{\"ok\":false,\"error\":" + quote(message) + "}");
+        }
+    }
+
+    /**
+     * Reads a request, checks the method and the customer's password, runs the
+     * operation and sends its reply. The request thread does not wait for the password
+     * check: when it is not answered at once, the operation runs on another request
+     * thread once the check completes.
+     * @param exchange  The request and its response.
+     * @param method    The HTTP method the operation accepts.
+     * @param operation The operation to run.
+     * @throws IOException if the response cannot be sent
+     */
+    private void handle(HttpExchange exchange, String method, Operation operation) throws IOException {
+        CompletableFuture<Reply> reply;
+        try {
+            if (!exchange.getRequestMethod().equals(method)) {
+                reply = CompletableFuture.completedFuture(Reply.error(405, "Use " + method + " for this operation."));
+            } else {
+                Map<String, String> parameters = readParameters(exchange);
+                Customer customer = findCustomer(parameters);
+                if (customer == null) {
+                    reply = CompletableFuture.completedFuture(Reply.error(404, "Customer not found."));
+                } else {
+                    String name = customer.getFirstName() + " " + customer.getLastName();
+                    CompletableFuture<Boolean> check = PasswordManager.getInstance().verifyPasswordAsync(name, parameters.get("password"));
+                    Function<Boolean, Reply> run = valid -> valid ? operation.run(customer, parameters) : Reply.error(401, "Invalid password.");
+                    reply = check.isDone() ? check.thenApply(run) : check.thenApplyAsync(run, executor);
+                }
+            }
+        } catch (RuntimeException e) {
+            reply = CompletableFuture.failedFuture(e);
+        }
+        if (reply.isDone()) {
+            send(exchange, reply.exceptionally(BankHttpServer::errorReply).join());
+            return;
+        }
+        reply.exceptionally(BankHttpServer::errorReply).thenAccept(done -> {
+            try {
+                send(exchange, done);
+            } catch (IOException e) {
+                exchange.close();
+            }
+        });
+    }
+
+    /**
+     * Gets the reply to an operation that failed.
+     * @param error The error, possibly wrapped in a {@link CompletionException}.
+     * @return The reply.
+     */
+    private static Reply errorReply(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof IllegalArgumentException) {
+            return Reply.error(400, cause.getMessage());
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return Reply.error(503, "Too many logins at once, try again later.");
+        }
+        return Reply.error(500, "Error processing the request: " + cause.getMessage());
+    }
+
+    /**
+     * Sends a reply.
+     * @param exchange The request and its response.
+     * @param reply    The reply.
+     * @throws IOException if the response cannot be sent
+     */
+    private static void send(HttpExchange exchange, Reply reply) throws IOException {
+        byte[] body = reply.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(reply.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Finds the customer making a request, by name or by identification number.
+     * @param parameters The request parameters: customer or id.
+     * @return The customer, or null if there is no such customer.
+     * @throws IllegalArgumentException if the identification number is not a number
+     */
+    private Customer findCustomer(Map<String, String> parameters) {
+        String name = parameters.get("customer");
+        if (name != null) {
+            return customersByName.get(name);
+        }
+        String id = parameters.get("id");
+        if (id == null) {
+            return null;
+        }
+        try {
+            return customersById.get(Integer.parseInt(id.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid id: " + id);
+        }
+    }
+
+    /**
+     * Replies with the balances of the customer's accounts.
+     * @param customer   The customer making the request.
+     * @param parameters The request parameters.
+     * @return The reply.
+     */
+    private Reply inquire(Customer customer, Map<String, String> parameters) {
+        return Reply.ok(balances(customer));
+    }
+
+    /**
+     * Deposits into one of the customer's accounts.
+     * @param customer   The customer making the request.
+     * @param parameters The request parameters: account and amount.
+     * @return The reply.
+     */
+    private Reply deposit(Customer customer, Map<String, String> parameters) {
+        String account = accountType(parameters, "account");
+        long amountCents = amount(parameters);
+        if (bankManager.deposit(customer, account, amountCents) != OperationMetrics.SUCCESS) {
+            return Reply.error(409, "Deposit failed.");
+        }
+        record(new JournalEntry("Deposited $" + Money.toDouble(amountCents) + " into " + account + " Account for " + customer.getFirstName() + " " + customer.getLastName()).addBalance(customer, account), customer);
+        return Reply.ok(balances(customer));
+    }
+
+    /**
+     * Withdraws from one of the customer's accounts.
+     * @param customer   The customer making the request.
+     * @param parameters The request parameters: account and amount.
+     * @return The reply.
+     */
+    private Reply withdraw(Customer customer, Map<String, String> parameters) {
+        String account = accountType(parameters, "account");
+        long amountCents = amount(parameters);
+        if (bankManager.withdraw(customer, account, amountCents) != OperationMetrics.SUCCESS) {
+            return Reply.error(409, "Insufficient funds in " + account + " account.");
+        }
+        record(new JournalEntry("Withdrew $" + Money.toDouble(amountCents) + " from " + account + " Account for " + customer.getFirstName() + " " + customer.getLastName()).addBalance(customer, account), customer);
+        return Reply.ok(balances(customer));
+    }
+
+    /**
+     * Transfers between the customer's checking and savings accounts.
+     * @param customer   The customer making the request.
+     * @param parameters The request parameters: from, to and amount.
+     * @return The reply.
+     */
+    private Reply transfer(Customer customer, Map<String, String> parameters) {
+        String from = accountType(parameters, "from");
+        String to = accountType(parameters, "to");
+        long amountCents = amount(parameters);
+        if (bankManager.transfer(customer, from, to, amountCents) != OperationMetrics.SUCCESS) {
+            return Reply.error(409, "Transfer from " + from + " to " + to + " failed.");
+        }
+        record(new JournalEntry("Transferred $" + Money.toDouble(amountCents) + " from " + from + " to " + to + " for " + customer.getFirstName() + " " + customer.getLastName()).addBalance(customer, from).addBalance(customer, to), customer);
+        return Reply.ok(balances(customer));
+    }
+
+    /**
+     * Pays another customer from the customer's checking account.
+     * @param customer   The customer making the request.
+     * @param parameters The request parameters: recipient and amount.
+     * @return The reply.
+     */
+    private Reply pay(Customer customer, Map<String, String> parameters) {
+        long start = System.nanoTime();
+        String recipientName = parameters.getOrDefault("recipient", "");
+        Customer recipient = customersByName.get(recipientName);
+        if (recipient == null) {
+            OperationMetrics.getInstance().record(OperationMetrics.PAY_SOMEONE, OperationMetrics.CUSTOMER_NOT_FOUND, start);
+            return Reply.error(404, "Recipient not found.");
+        }
+        if (recipient == customer) {
+            return Reply.error(400, "You can't pay yourself.");
+        }
+        long amountCents = amount(parameters);
+        if (bankManager.pay(customer, recipient, "Checking", "Checking", amountCents) != OperationMetrics.SUCCESS) {
+            return Reply.error(409, "Insufficient funds in Checking account.");
+        }
+        record(new JournalEntry("Paid $" + Money.toDouble(amountCents) + " from " + customer.getFirstName() + " " + customer.getLastName() + " to " + recipientName).addBalance(customer, "Checking").addBalance(recipient, "Checking"), customer);
+        if (customerStore != null) {
+            customerStore.markDirty(recipient);
+        }
+        return Reply.ok(balances(customer));
+    }
+
+    /**
+     * Replies with the balances and the transaction history of every account.
+     * @param customer   The customer making the request.
+     * @param parameters The request parameters.
+     * @return The reply.
+     */
+    private Reply statement(Customer customer, Map<String, String> parameters) {
+        StringBuilder fields = new StringBuilder(balances(customer));
+        for (String accountType : new String[] {"Checking", "Savings", "Credit"}) {
+            TransactionHistory history = customer.getHistory(accountType);
+            fields.append(",\"").append(accountType.toLowerCase()).append("Transactions\":[");
+            StringBuilder line = new StringBuilder();
+            int size = history.size();
+            for (int i = 0; i < size; i++) {
+                line.setLength(0);
+                try {
+                    history.appendLine(line, i);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                line.setLength(line.length() - 1);
+                fields.append(i == 0 ? "" : ",").append(quote(line.toString()));
+            }
+            fields.append(']');
+        }
+        return Reply.ok(fields.toString());
+    }
+
+    /**
+     * Writes a transaction to the journal and marks the customer as changed.
+     * @param entry    The transaction.
+     * @param customer The customer whose accounts changed.
+     */
+    private void record(JournalEntry entry, Customer customer) {
+        if (journal != null) {
+            try {
+                journal.append(entry);
+            } catch (IOException e) {
+                System.out.println("Error logging transaction: " + e.getMessage());
+            }
+        }
+        if (customerStore != null) {
+            customerStore.markDirty(customer);
+        }
+    }
+
+    /**
+     * Formats the balances of the customer's accounts as JSON fields.
+     * @param customer The customer.
+     * @return The fields, each preceded by a comma.
+     */
+    private static String balances(Customer customer) {
+        return ",\"customer\":" + quote(customer.getFirstName() + " " + customer.getLastName())
+             + ",\"checking\":" + Money.format(customer.getCheckingAccount().getBalanceCents())
+             + ",\"savings\":" + Money.format(customer.getSavingsAccount().getBalanceCents())
+             + ",\"credit\":" + Money.format(customer.getCreditAccount().getBalanceCents())
+             + ",\"creditMax\":" + Money.format(customer.getCreditAccount().getCreditMaxCents());
+    }
+
+    /**
+     * Gets an account type parameter.
+     * @param parameters The request parameters.
+     * @param name       The name of the parameter.
+     * @return "Checking", "Savings", or "Credit"
+     * @throws IllegalArgumentException if the parameter is missing or invalid
+     */
+    private static String accountType(Map<String, String> parameters, String name) {
+        String value = parameters.getOrDefault(name, "");
+        switch (value) {
+            case "Checking":
+            case "Savings":
+            case "Credit":
+                return value;
+            default:
+                throw new IllegalArgumentException("Invalid " + name + ": use Checking, Savings, or Credit.");
+        }
+    }
+
+    /**
+     * Gets the amount parameter.
+     * @param parameters The request parameters.
+     * @return The amount in cents.
+     * @throws IllegalArgumentException if the amount is missing, not positive, or invalid
+     */
+    private static long amount(Map<String, String> parameters) {
+        String value = parameters.get("amount");
+        if (value == null) {
+            throw new IllegalArgumentException("Missing amount.");
+        }
+        long amountCents = Money.parse(value);
+        if (amountCents <= 0) {
+            throw new IllegalArgumentException("Amount must be positive.");
+        }
+        return amountCents;
+    }
+
+    /**
+     * Reads the parameters of a request from its query string and its body. The body
+     * may be form encoded or a flat JSON object.
+     * @param exchange The request.
+     * @return The parameters.
+     * @throws IOException if the body cannot be read
+     * @throws IllegalArgumentException if the body is too large or malformed
+     */
+    private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            parseForm(query, parameters);
+        }
+        String body = readBody(exchange.getRequestBody()).trim();
+        if (body.startsWith("{")) {
+            parseJson(body, parameters);
+        } else if (!body.isEmpty()) {
+            parseForm(body, parameters);
+        }
+        return parameters;
+    }
+
+    /**
+     * Reads a request body.
+     * @param in The body.
+     * @return The body as text.
+     * @throws IOException if the body cannot be read
+     * @throws IllegalArgumentException if the body is too large
+     */
+    private static String readBody(InputStream in) throws IOException {
+        byte[] bytes = in.readNBytes(MAX_BODY_SIZE + 1);
+        if (bytes.length > MAX_BODY_SIZE) {
+            throw new IllegalArgumentException("Request body too large.");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses form encoded parameters, such as "customer=John+Doe&amp;amount=10".
+     * @param form       The encoded parameters.
+     * @param parameters The map to add the parameters to.
+     */
+    private static void parseForm(String form, Map<String, String> parameters) {
+        for (String pair : form.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Parses a flat JSON object whose values are strings, numbers, booleans or null.
+     * @param json       The JSON object.
+     * @param parameters The map to add the fields to.
+     * @throws IllegalArgumentException if the object is malformed
+     */
+    private static void parseJson(String json, Map<String, String> parameters) {
+        int[] position = {1};
+        skipWhitespace(json, position);
+        if (position[0] < json.length() && json.charAt(position[0]) == '}') {
+            return;
+        }
+        while (true) {
+            skipWhitespace(json, position);
+            String name = readJsonString(json, position);
+            skipWhitespace(json, position);
+            expect(json, position, ':');
+            skipWhitespace(json, position);
+            String value;
+            if (position[0] < json.length() && json.charAt(position[0]) == '"') {
+                value = readJsonString(json, position);
+            } else {
+                int start = position[0];
+                while (position[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(position[0])) < 0) {
+                    position[0]++;
+                }
+                value = json.substring(start, position[0]);
+                if (value.isEmpty()) {
+                    throw new IllegalArgumentException("Malformed JSON body.");
+                }
+            }
+            parameters.put(name, value);
+            skipWhitespace(json, position);
+            if (position[0] < json.length() && json.charAt(position[0]) == ',') {
+                position[0]++;
+                continue;
+            }
+            expect(json, position, '}');
+            return;
+        }
+    }
+
+    /**
+     * Reads a JSON string starting at the current position.
+     * @param json     The JSON text.
+     * @param position The current position, moved past the string.
+     * @return The decoded string.
+     * @throws IllegalArgumentException if the string is malformed
+     */
+    private static String readJsonString(String json, int[] position) {
+        expect(json, position, '"');
+        StringBuilder value = new StringBuilder();
+        while (position[0] < json.length()) {
+            char c = json.charAt(position[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (position[0] >= json.length()) {
+                break;
+            }
+            char escaped = json.charAt(position[0]++);
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    if (position[0] + 4 > json.length()) {
+                        throw new IllegalArgumentException("Malformed JSON body.");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(json.substring(position[0], position[0] + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Malformed JSON body.");
+                    }
+                    position[0] += 4;
+                    break;
+                default:
+                    value.append(escaped);
+                    break;
+            }
+        }
+        throw new IllegalArgumentException("Malformed JSON body.");
+    }
+
+    /**
+     * Skips spaces and line breaks.
+     * @param json     The JSON text.
+     * @param position The current position, moved past the whitespace.
+     */
+    private static void skipWhitespace(String json, int[] position) {
+        while (position[0] < json.length() && Character.isWhitespace(json.charAt(position[0]))) {
+            position[0]++;
+        }
+    }
+
+    /**
+     * Checks that the next character is the expected one and moves past it.
+     * @param json     The JSON text.
+     * @param position The current position.
+     * @param expected The expected character.
+     * @throws IllegalArgumentException if the next character is different
+     */
+    private static void expect(String json, int[] position, char expected) {
+        if (position[0] >= json.length() || json.charAt(position[0]) != expected) {
+            throw new IllegalArgumentException("Malformed JSON body.");
+        }
+        position[0]++;
+    }
+
+    /**
+     * Formats a value as a JSON string.
+     * @param value The value.
+     * @return The quoted and escaped value.
+     */
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c == '\n') {
+                quoted.append("\\n");
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
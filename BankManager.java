@@ -1,10 +1,13 @@
-import java.util.HashMap;
-import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.List;
 import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.Date;
 
 /**
@@ -16,13 +19,44 @@ import java.util.Date;
  */
 public class BankManager extends Person implements Staff {
     /** A map of customer names to Customer objects, representing the customers assigned to this bank manager. */
-    private HashMap<String, Customer> assignedCustomers;
+    private Map<String, Customer> assignedCustomers;
+
+    /** The locks that make operations on two accounts, such as pays and transfers, happen as a whole. */
+    private final AccountLocks accountLocks = AccountLocks.getInstance();
+
+    /** The store that keeps where the last statement of every customer ended. */
+    private final StatementCursorStore statementCursors = StatementCursorStore.getInstance();
+
+    /**
+     * The ledger every movement of money is posted to before the operation returns.
+     * Payments and transfers post while they hold the locks of their accounts, so no
+     * other operation on those accounts is acknowledged before the posting is on disk.
+     */
+    private final Ledger ledger = Ledger.getInstance();
+
+    /** The metrics the latency and outcome of every operation are recorded to. */
+    private final OperationMetrics metrics = OperationMetrics.getInstance();
+
+    /** Where the operations print their messages, or null to print nothing. */
+    private PrintStream console = System.out;
+
+    /** The index of the transaction rows already applied, or null to apply every row. */
+    private TransactionDedupIndex dedupIndex;
+
+    /** The store the customers changed by transaction rows are marked dirty in, or null. */
+    private WriteBehindCustomerStore customerStore;
+
+    /** The outcome of a transaction row skipped because it was already applied. */
+    public static final int ALREADY_APPLIED = -1;
+
+    /** The header of the optional column of a transactions file that identifies each row. */
+    public static final String TRANSACTION_ID_COLUMN = "Transaction ID";
 
     /**
      * Creates a new BankManager with the given assigned customers.
      * @param assignedCustomers A map of customer names to Customer objects assigned to this bank manager.
      */
-    public BankManager(HashMap<String, Customer> assignedCustomers) {
+    public BankManager(Map<String, Customer> assignedCustomers) {
         super();
         this.assignedCustomers = assignedCustomers;
     }
@@ -78,84 +112,350 @@ public class BankManager extends Person implements Staff {
      *   <li><strong>deposits</strong>: A customer deposits money into an account.</li>
      * </ul>
      *
+     * With a {@link #setDedupIndex dedup index}, the rows already applied by an earlier
+     * run, such as one that failed halfway, are skipped.
+     *
      * @param csvFilePath The file path to the CSV file containing transaction data.
      *                    Each line in the file should represent a transaction with
      *                    the required fields separated by commas.
      */
     public void processTransactions(String csvFilePath) {
         System.out.println("---------------------------------");
-        try (BufferedReader br = new BufferedReader(new FileReader(csvFilePath))) {
-            String line = br.readLine();
-            while ((line = br.readLine()) != null) {
-                String[] values = line.split(",");
-                String fromFirstName = values[0].trim();
-                String fromLastName = values[1].trim();
-                String fromWhere = values[2].trim();
-                String action = values[3].trim();
-                String toFirstName = values.length > 4 ? values[4].trim() : "";
-                String toLastName = values.length > 5 ? values[5].trim() : "";
-                String toWhere = values.length > 6 ? values[6].trim() : "";
-                double amount = values.length > 7 && !values[7].trim().isEmpty() ? Double.parseDouble(values[7].trim()) : 0.0;
-    
-                Customer fromCustomer = this.assignedCustomers.get(fromFirstName + " " + fromLastName);
-                Customer toCustomer = toFirstName.isEmpty() || toLastName.isEmpty() ? null : this.assignedCustomers.get(toFirstName + " " + toLastName);
-    
-                switch (action) {
-                    case "pays":
-                        if (fromCustomer != null && toCustomer != null) {
-                            System.out.println(fromFirstName + fromLastName + ",,," + toFirstName + toLastName + fromWhere+ toWhere+ amount);
-                            paySomeone(fromCustomer, toCustomer, fromWhere, toWhere, amount);
-                        } else {
-                            System.out.println("Pay action failed: Customer not found.");
-                        }
-                        break;
-    
-                    case "transfers":
-                        if (fromCustomer != null) {
-                            transferMoney(fromCustomer, fromWhere, toWhere, amount);
-                        } else {
-                            System.out.println("Transfer action failed: Customer not found.");
-                        }
-                        break;
-    
-                    case "inquires":
-                        if (fromCustomer != null) {
-                            inquireBalance(fromCustomer, fromWhere);
-                        } else {
-                            System.out.println("Inquire action failed: Customer not found.");
-                        }
-                        break;
-    
-                    case "withdraws":
-                        if (fromCustomer != null) {
-                            withdrawMoney(fromCustomer, fromWhere, amount);
-                        } else {
-                            System.out.println("Withdraw action failed: Customer not found.");
-                        }
-                        break;
-    
-                    case "deposits":
-                        if (toCustomer != null) {
-                            depositMoney(toCustomer, toWhere, amount);
-                        } else {
-                            System.out.println("Deposit action failed: Customer not found.");
-                        }
-                        break;
-    
-                    default:
-                        System.out.println("Unknown action: " + action);
-                        break;
-                }
+        try (CSVReader reader = new CSVReader(new FileReader(csvFilePath))) {
+            reader.nextRecord();
+            int idColumn = findTransactionIdColumn(reader);
+            while (reader.nextRecord()) {
+                applyTransaction(parseTransaction(reader, idColumn), null, console);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading transactions file: " + e.getMessage());
+        } catch (NumberFormatException e) {
+            System.out.println("Error parsing amount: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Processes a CSV file containing a list of transactions using several worker threads.
+     *
+     * Every row is routed to the worker that owns its customer, so each customer is only
+     * ever modified by one thread, and rows that involve two customers owned by different
+     * workers (pays) are coordinated so that both workers reach the row before it is applied.
+     * The final balances and transaction histories are the same as the ones produced by
+     * {@link #processTransactions(String)}.
+     * @param csvFilePath The file path to the CSV file containing transaction data.
+     * @param workerCount The number of worker threads to use.
+     */
+    public void processTransactions(String csvFilePath, int workerCount) {
+        System.out.println("---------------------------------");
+        List<TransactionRecord> records = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(new FileReader(csvFilePath))) {
+            reader.nextRecord();
+            int idColumn = findTransactionIdColumn(reader);
+            while (reader.nextRecord()) {
+                records.add(parseTransaction(reader, idColumn));
             }
         } catch (IOException e) {
             System.out.println("Error reading transactions file: " + e.getMessage());
         } catch (NumberFormatException e) {
             System.out.println("Error parsing amount: " + e.getMessage());
         }
+        new TransactionBatchExecutor(this, workerCount).execute(records);
+    }
+
+    /**
+     * Processes a CSV file of transactions in batch mode, for files too large to follow
+     * on the console. Nothing is printed per row: every row is applied on the workers of
+     * a {@link TransactionBatchExecutor}, as in {@link #processTransactions(String, int)},
+     * and its outcome is added to the report instead. Rows whose amount cannot be parsed
+     * are reported and skipped rather than ending the batch.
+     * @param csvFilePath The file path to the CSV file containing transaction data.
+     * @param workerCount The number of worker threads to use.
+     * @return The report of the batch.
+     * @throws IOException if the file cannot be read
+     */
+    public TransactionReport processTransactionsInBatch(String csvFilePath, int workerCount) throws IOException {
+        TransactionReport report = new TransactionReport();
+        List<TransactionRecord> records = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(new FileReader(csvFilePath))) {
+            reader.nextRecord();
+            int idColumn = findTransactionIdColumn(reader);
+            while (reader.nextRecord()) {
+                try {
+                    records.add(parseTransaction(reader, idColumn));
+                } catch (NumberFormatException e) {
+                    report.addRejected(reader.getLineNumber(), "Invalid amount: " + reader.getString(7));
+                }
+            }
+        }
+        new TransactionBatchExecutor(this, workerCount, report, null).execute(records);
+        report.finish();
+        return report;
+    }
+
+    /**
+     * Sets where the payments, transfers, withdrawals and deposits print their messages,
+     * such as "Deposit successful". The console is {@link System#out} by default;
+     * {@link #processTransactionsInBatch} never prints per row, whatever the console.
+     * @param console The stream to print to, or null to print nothing.
+     */
+    public void setConsole(PrintStream console) {
+        this.console = console;
+    }
+
+    /**
+     * Gets where the payments, transfers, withdrawals and deposits print their messages.
+     * @return The stream, or null if nothing is printed.
+     */
+    public PrintStream getConsole() {
+        return console;
+    }
+
+    /**
+     * Sets the index the transaction rows are checked against before they are applied and
+     * added to after, so running a transactions file again only applies the rows that were
+     * not applied yet. Rows are identified by their "Transaction ID" column, after the
+     * usual eight. The rows of a file without that column, and rows whose ID is empty,
+     * are always applied: neither the contents of a file nor its path identify a row for
+     * good, since fixing a bad row changes the contents and a file of new transactions
+     * may reuse the path.
+     *
+     * A row is added once it is applied, whatever its outcome, so a crash between the two
+     * may apply that one row again. Rows of the same run are not checked against each
+     * other, so a transaction ID repeated within a file is not skipped by the workers of
+     * {@link #processTransactions(String, int)}.
+     * @param dedupIndex The index, or null to apply every row.
+     */
+    public void setDedupIndex(TransactionDedupIndex dedupIndex) {
+        this.dedupIndex = dedupIndex;
+    }
+
+    /**
+     * Gets the index of the transaction rows already applied.
+     * @return The index, or null if every row is applied.
+     */
+    public TransactionDedupIndex getDedupIndex() {
+        return dedupIndex;
+    }
+
+    /**
+     * Sets the store the customers changed by a transaction row are marked dirty in, so
+     * the balances a transactions file changed are saved like those changed over HTTP.
+     * @param customerStore The store, or null to mark nothing.
+     */
+    public void setCustomerStore(WriteBehindCustomerStore customerStore) {
+        this.customerStore = customerStore;
+    }
+
+    /**
+     * Finds the "Transaction ID" column in the header of a transactions CSV file.
+     * @param reader The reader positioned on the header.
+     * @return The index of the column, or -1 if the file has none.
+     */
+    private static int findTransactionIdColumn(CSVReader reader) {
+        for (int i = 0; i < reader.getFieldCount(); i++) {
+            if (reader.getString(i).trim().equals(TRANSACTION_ID_COLUMN)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the current record of a transactions CSV file. Missing trailing fields
+     * are treated as empty.
+     * @param reader   The reader positioned on the record to parse.
+     * @param idColumn The index of the "Transaction ID" column, or -1 if the file has none.
+     * @return The parsed transaction.
+     * @throws NumberFormatException if the amount is not a valid number
+     */
+    private TransactionRecord parseTransaction(CSVReader reader, int idColumn) {
+        String fromFirstName = reader.getString(0);
+        String fromLastName = reader.getString(1);
+        String fromWhere = reader.getString(2);
+        String action = reader.getString(3);
+        String toFirstName = reader.getString(4);
+        String toLastName = reader.getString(5);
+        String toWhere = reader.getString(6);
+        long amountCents = !reader.isEmpty(7) ? reader.getCents(7) : 0;
+        String transactionId = idColumn >= 0 && !reader.isEmpty(idColumn) ? reader.getString(idColumn) : null;
+        return new TransactionRecord(reader.getLineNumber(), fromFirstName, fromLastName, fromWhere, action, toFirstName, toLastName, toWhere, amountCents, transactionId);
+    }
+
+    /**
+     * Applies a single transaction row by invoking the operation that matches its action,
+     * and emits its {@link TransactionRowEvent}. A row whose transaction ID the dedup
+     * index shows was already applied is skipped instead.
+     * @param record The transaction to apply.
+     * @param report The report the outcome of the row is added to, or null.
+     * @param out    Where the messages of the row are printed, or null to print nothing.
+     * @return The outcome of the row, such as {@link OperationMetrics#SUCCESS}, or
+     *         {@link #ALREADY_APPLIED} if it was skipped.
+     */
+    int applyTransaction(TransactionRecord record, TransactionReport report, PrintStream out) {
+        boolean deduplicated = dedupIndex != null && record.getTransactionId() != null;
+        if (deduplicated && dedupIndex.contains(record.getTransactionId())) {
+            if (out != null) {
+                out.println("Skipped line " + record.getLineNumber() + ": already applied.");
+            }
+            if (report != null) {
+                report.addSkipped();
+            }
+            return ALREADY_APPLIED;
+        }
+        long start = System.nanoTime();
+        TransactionRowEvent event = new TransactionRowEvent();
+        event.begin();
+        String fromWhere = record.getFromWhere();
+        String toWhere = record.getToWhere();
+        long amountCents = record.getAmountCents();
+
+        Customer fromCustomer = this.assignedCustomers.get(record.getFromKey());
+        Customer toCustomer = this.assignedCustomers.get(record.getToKey());
+
+        int operation = -1;
+        int outcome = OperationMetrics.CUSTOMER_NOT_FOUND;
+        String message = null;
+        switch (record.getAction()) {
+            case "pays":
+                operation = OperationMetrics.PAY_SOMEONE;
+                if (fromCustomer != null && toCustomer != null) {
+                    outcome = pay(fromCustomer, toCustomer, fromWhere, toWhere, amountCents);
+                }
+                break;
+
+            case "transfers":
+                operation = OperationMetrics.TRANSFER_MONEY;
+                if (fromCustomer != null) {
+                    outcome = transfer(fromCustomer, fromWhere, toWhere, amountCents);
+                }
+                break;
+
+            case "inquires":
+                if (fromCustomer != null) {
+                    if (out != null) {
+                        inquireBalance(fromCustomer, fromWhere, out);
+                    }
+                    outcome = OperationMetrics.SUCCESS;
+                } else {
+                    message = "Inquire action failed: Customer not found.";
+                }
+                break;
+
+            case "withdraws":
+                operation = OperationMetrics.WITHDRAW_MONEY;
+                if (fromCustomer != null) {
+                    outcome = withdraw(fromCustomer, fromWhere, amountCents);
+                }
+                break;
+
+            case "deposits":
+                operation = OperationMetrics.DEPOSIT_MONEY;
+                if (toCustomer != null) {
+                    outcome = deposit(toCustomer, toWhere, amountCents);
+                }
+                break;
+
+            default:
+                outcome = OperationMetrics.FAILED;
+                message = "Unknown action: " + record.getAction();
+                break;
+        }
+        if (operation >= 0 && outcome == OperationMetrics.CUSTOMER_NOT_FOUND) {
+            metrics.record(operation, outcome, start);
+        }
+        if (customerStore != null && operation >= 0 && outcome == OperationMetrics.SUCCESS) {
+            if (operation != OperationMetrics.DEPOSIT_MONEY) {
+                customerStore.markDirty(fromCustomer);
+            }
+            if (operation == OperationMetrics.PAY_SOMEONE || operation == OperationMetrics.DEPOSIT_MONEY) {
+                customerStore.markDirty(toCustomer);
+            }
+        }
+        if (operation >= 0 && (out != null || report != null && outcome != OperationMetrics.SUCCESS)) {
+            message = describe(operation, outcome, fromCustomer, toCustomer, fromWhere, toWhere, Money.toDouble(amountCents));
+        }
+        if (deduplicated) {
+            dedupIndex.add(record.getTransactionId());
+        }
+        if (out != null && message != null) {
+            out.println(message);
+        }
+        if (report != null) {
+            report.add(record, outcome, message);
+        }
+        if (event.shouldCommit()) {
+            event.lineNumber = record.getLineNumber();
+            event.action = record.getAction();
+            event.customer = record.getFromKey();
+            event.accountType = fromWhere;
+            event.toAccountType = toWhere;
+            event.amount = Money.toDouble(amountCents);
+            event.outcome = OperationMetrics.getOutcomeName(outcome);
+            event.commit();
+        }
+        return outcome;
+    }
+
+    /**
+     * Describes the outcome of an operation the way it is printed to the console.
+     * @param operation The operation, such as {@link OperationMetrics#PAY_SOMEONE}.
+     * @param outcome   The outcome, such as {@link OperationMetrics#SUCCESS}.
+     * @param customer  The customer making the operation, or null if it was not found.
+     * @param recipient The customer receiving a payment, or null.
+     * @param fromWhere The account type the money comes from.
+     * @param toWhere   The account type the money goes to.
+     * @param amount    The amount of the operation.
+     * @return The message.
+     */
+    static String describe(int operation, int outcome, Customer customer, Customer recipient, String fromWhere, String toWhere, double amount) {
+        switch (operation) {
+            case OperationMetrics.PAY_SOMEONE:
+                switch (outcome) {
+                    case OperationMetrics.SUCCESS:
+                        return "Transaction successful: $" + amount + " paid from " + customer.getFirstName() + " to " + recipient.getFirstName();
+                    case OperationMetrics.INSUFFICIENT_FUNDS:
+                        return "Transaction failed: Insufficient funds in Checking account.";
+                    case OperationMetrics.CUSTOMER_NOT_FOUND:
+                        return "Pay action failed: Customer not found.";
+                    default:
+                        return "Transaction failed: Invalid account specified.";
+                }
+            case OperationMetrics.TRANSFER_MONEY:
+                switch (outcome) {
+                    case OperationMetrics.SUCCESS:
+                        return "Transaction successful: $" + amount + " transferred from " + fromWhere + " to " + toWhere + ".";
+                    case OperationMetrics.INSUFFICIENT_FUNDS:
+                        return "Transaction failed: Insufficient funds in " + fromWhere + " account.";
+                    case OperationMetrics.CUSTOMER_NOT_FOUND:
+                        return "Transfer action failed: Customer not found.";
+                    default:
+                        return "Transaction failed: Unsupported account types specified for transfer.";
+                }
+            case OperationMetrics.WITHDRAW_MONEY:
+                switch (outcome) {
+                    case OperationMetrics.SUCCESS:
+                        return "Withdrawal successful: $" + amount + " withdrawn from " + fromWhere + " account.";
+                    case OperationMetrics.INSUFFICIENT_FUNDS:
+                        return "Withdrawal failed: Insufficient funds in " + fromWhere + " account.";
+                    case OperationMetrics.CUSTOMER_NOT_FOUND:
+                        return "Withdraw action failed: Customer not found.";
+                    default:
+                        return "Withdrawal failed: Invalid account specified.";
+                }
+            default:
+                switch (outcome) {
+                    case OperationMetrics.SUCCESS:
+                        return "Deposit successful: $" + amount + " deposited into " + toWhere + " account.";
+                    case OperationMetrics.CUSTOMER_NOT_FOUND:
+                        return "Deposit action failed: Customer not found.";
+                    default:
+                        return "Deposit failed: Invalid account specified.";
+                }
+        }
     }
     
 
-     /**
+    /**
      * Handles a payment transaction from one customer to another.
      * @param fromCustomer The customer making the payment.
      * @param toCustomer The customer receiving the payment.
@@ -163,28 +463,47 @@ public class BankManager extends Person implements Staff {
      * @param toWhere The account type to which funds are deposited ("Checking").
      * @param amount The amount to be transferred.
      * @return True if the transaction was successful; false otherwise.
-     */
+     */
     public boolean paySomeone(Customer fromCustomer, Customer toCustomer, String fromWhere, String toWhere, double amount) {
-        double payerCheckingBalance = fromCustomer.getCheckingAccount().getBalance();
-        double recipientCheckingBalance = toCustomer.getCheckingAccount().getBalance();
+        int outcome = pay(fromCustomer, toCustomer, fromWhere, toWhere, Money.fromDouble(amount));
+        if (console != null) {
+            console.println(describe(OperationMetrics.PAY_SOMEONE, outcome, fromCustomer, toCustomer, fromWhere, toWhere, amount));
+        }
+        return outcome == OperationMetrics.SUCCESS;
+    }
+
+    /**
+     * Pays another customer like {@link #paySomeone}, without printing anything.
+     * @param fromCustomer The customer making the payment.
+     * @param toCustomer   The customer receiving the payment.
+     * @param fromWhere    The account type from which funds are drawn ("Checking").
+     * @param toWhere      The account type to which funds are deposited ("Checking").
+     * @param amountCents  The amount to be transferred, in cents.
+     * @return The outcome: {@link OperationMetrics#SUCCESS}, {@link OperationMetrics#INSUFFICIENT_FUNDS},
+     *         or {@link OperationMetrics#FAILED} if the account types are invalid.
+     */
+    public int pay(Customer fromCustomer, Customer toCustomer, String fromWhere, String toWhere, long amountCents) {
+        long start = System.nanoTime();
+        BankOperationEvent event = new BankOperationEvent();
+        event.begin();
         if (fromWhere.equals("Checking") && toWhere.equals("Checking")) {
-            if (payerCheckingBalance >= amount) {
-                fromCustomer.getCheckingAccount().setBalance(payerCheckingBalance - amount);
-                toCustomer.getCheckingAccount().setBalance(recipientCheckingBalance + amount);
-
-                fromCustomer.addTransaction(fromWhere, payerCheckingBalance, fromCustomer.getCheckingAccount().getBalance(), "Paid $" + amount + " to " + toCustomer.getFirstName() + " " + toCustomer.getLastName());
-                toCustomer.addTransaction(toWhere, recipientCheckingBalance, toCustomer.getCheckingAccount().getBalance(), "Received $" + amount + " from " + fromCustomer.getFirstName() + " " + fromCustomer.getLastName());
-        
-                System.out.println("Transaction successful: $" + amount + " paid from " + fromCustomer.getFirstName() + " to " + toCustomer.getFirstName());
-                return true;
-            } else {
-                System.out.println("Transaction failed: Insufficient funds in Checking account.");
-                return false;
+            Checking from = fromCustomer.getCheckingAccount();
+            Checking to = toCustomer.getCheckingAccount();
+            boolean paid;
+            accountLocks.lock(from, to);
+            try {
+                paid = from.withdrawAndRecord(amountCents, fromCustomer.getHistory(fromWhere), TransactionHistory.PAYMENT_SENT, toCustomer) != Account.INSUFFICIENT_FUNDS;
+                if (paid) {
+                    to.depositAndRecord(amountCents, toCustomer.getHistory(toWhere), TransactionHistory.PAYMENT_RECEIVED, fromCustomer);
+                    ledger.transfer(from, to, amountCents);
+                }
+            } finally {
+                accountLocks.unlock(from, to);
             }
+            return finish(event, OperationMetrics.PAY_SOMEONE, paid ? OperationMetrics.SUCCESS : OperationMetrics.INSUFFICIENT_FUNDS, start, fromCustomer, fromWhere, toWhere, amountCents);
         }
         else {
-            System.out.println("Transaction failed: Invalid account specified.");
-            return false;
+            return finish(event, OperationMetrics.PAY_SOMEONE, OperationMetrics.FAILED, start, fromCustomer, fromWhere, toWhere, amountCents);
         }
     }
     
@@ -196,43 +515,63 @@ public class BankManager extends Person implements Staff {
      * @param toWhere   Destination account type ("Checking" or "Savings").
      * @param amount    The amount to transfer.
      * @return true if the statement is successfully generated, false otherwise.
-     */
+     */
     public boolean transferMoney(Customer customer, String fromWhere, String toWhere, double amount) {
-        double checkingBalance = customer.getCheckingAccount().getBalance();
-        double savingsBalance = customer.getSavingsAccount().getBalance();
-    
+        int outcome = transfer(customer, fromWhere, toWhere, Money.fromDouble(amount));
+        if (console != null) {
+            console.println(describe(OperationMetrics.TRANSFER_MONEY, outcome, customer, null, fromWhere, toWhere, amount));
+        }
+        return outcome == OperationMetrics.SUCCESS;
+    }
+
+    /**
+     * Transfers money like {@link #transferMoney}, without printing anything.
+     * @param customer    The customer initiating the transfer.
+     * @param fromWhere   Source account type ("Checking" or "Savings").
+     * @param toWhere     Destination account type ("Checking" or "Savings").
+     * @param amountCents The amount to transfer, in cents.
+     * @return The outcome: {@link OperationMetrics#SUCCESS}, {@link OperationMetrics#INSUFFICIENT_FUNDS},
+     *         or {@link OperationMetrics#FAILED} if the account types are not supported.
+     */
+    public int transfer(Customer customer, String fromWhere, String toWhere, long amountCents) {
+        long start = System.nanoTime();
+        BankOperationEvent event = new BankOperationEvent();
+        event.begin();
+        boolean transferred;
         if (fromWhere.equals("Checking") && toWhere.equals("Savings")) {
-            if (checkingBalance >= amount) {
-                customer.getCheckingAccount().setBalance(checkingBalance - amount);
-                customer.getSavingsAccount().setBalance(savingsBalance + amount);
-    
-                customer.addTransaction("Checking", checkingBalance, customer.getCheckingAccount().getBalance(), "Transferred $" + amount + " to Savings");
-                customer.addTransaction("Savings", savingsBalance, customer.getSavingsAccount().getBalance(), "Received $" + amount + " from Checking");
-    
-                System.out.println("Transaction successful: $" + amount + " transferred from Checking to Savings.");
-                return true;
-            } else {
-                System.out.println("Transaction failed: Insufficient funds in Checking account.");
-                return false;
-            }
+            transferred = transferBetween(customer, fromWhere, customer.getCheckingAccount(), toWhere, customer.getSavingsAccount(), amountCents);
         } else if (fromWhere.equals("Savings") && toWhere.equals("Checking")) {
-            if (savingsBalance >= amount) {
-                customer.getSavingsAccount().setBalance(savingsBalance - amount);
-                customer.getCheckingAccount().setBalance(checkingBalance + amount);
-    
-                customer.addTransaction("Savings", savingsBalance, customer.getSavingsAccount().getBalance(), "Transferred $" + amount + " to Checking");
-                customer.addTransaction("Checking", checkingBalance, customer.getCheckingAccount().getBalance(), "Received $" + amount + " from Savings");
-    
-                System.out.println("Transaction successful: $" + amount + " transferred from Savings to Checking.");
-                return true;
-            } else {
-                System.out.println("Transaction failed: Insufficient funds in Savings account.");
+            transferred = transferBetween(customer, fromWhere, customer.getSavingsAccount(), toWhere, customer.getCheckingAccount(), amountCents);
+        } else {
+            return finish(event, OperationMetrics.TRANSFER_MONEY, OperationMetrics.FAILED, start, customer, fromWhere, toWhere, amountCents);
+        }
+        return finish(event, OperationMetrics.TRANSFER_MONEY, transferred ? OperationMetrics.SUCCESS : OperationMetrics.INSUFFICIENT_FUNDS, start, customer, fromWhere, toWhere, amountCents);
+    }
+
+    /**
+     * Moves money between two accounts of a customer while holding the locks of both,
+     * records the transaction in both histories, and posts it to the ledger before the
+     * locks are released.
+     * @param customer    The customer who owns both accounts.
+     * @param fromWhere   The account type the money comes from.
+     * @param from        The account the money comes from.
+     * @param toWhere     The account type the money goes to.
+     * @param to          The account the money goes to.
+     * @param amountCents The amount to transfer, in cents.
+     * @return true if the source account had enough funds, false otherwise.
+     */
+    private boolean transferBetween(Customer customer, String fromWhere, Account from, String toWhere, Account to, long amountCents) {
+        accountLocks.lock(from, to);
+        try {
+            if (from.withdrawAndRecord(amountCents, customer.getHistory(fromWhere), TransactionHistory.TRANSFER_OUT, null) == Account.INSUFFICIENT_FUNDS) {
                 return false;
             }
-        } else {
-            System.out.println("Transaction failed: Unsupported account types specified for transfer.");
-            return false;
+            to.depositAndRecord(amountCents, customer.getHistory(toWhere), TransactionHistory.TRANSFER_IN, null);
+            ledger.transfer(from, to, amountCents);
+        } finally {
+            accountLocks.unlock(from, to);
         }
+        return true;
     }
     
 
@@ -243,16 +582,60 @@ public class BankManager extends Person implements Staff {
      * @param fromWhere The account type to check ("Checking", "Savings", or "Credit").
      */
     public void inquireBalance(Customer customer, String fromWhere) {
+        inquireBalance(customer, fromWhere, System.out);
+    }
+
+    /**
+     * Prints the balance and account details for a specified account type of a customer
+     * to a given stream, such as the console of a transactions file.
+     * @param customer  The customer whose account balance is being inquired.
+     * @param fromWhere The account type to check ("Checking", "Savings", or "Credit").
+     * @param out       Where the details are printed.
+     */
+    public void inquireBalance(Customer customer, String fromWhere, PrintStream out) {
         if (fromWhere.equals("Checking")){
-            System.out.println("Checking Account Number: " + customer.getCheckingAccount().getAccountNumber());
-            System.out.println("Checking Account Balance: $" + customer.getCheckingAccount().getBalance());
+            out.println("Checking Account Number: " + customer.getCheckingAccount().getAccountNumber());
+            out.println("Checking Account Balance: $" + customer.getCheckingAccount().getBalance());
         } else if (fromWhere.equals("Savings")){
-            System.out.println("Savings Account Number: " + customer.getSavingsAccount().getAccountNumber());
-            System.out.println("Savings Account Balance: $" + customer.getSavingsAccount().getBalance());
+            out.println("Savings Account Number: " + customer.getSavingsAccount().getAccountNumber());
+            out.println("Savings Account Balance: $" + customer.getSavingsAccount().getBalance());
         } else if (fromWhere.equals("Credit")){
-            System.out.println("Credit Account Number: " + customer.getCreditAccount().getAccountNumber());
-            System.out.println("Credit Account Balance: $" + customer.getCreditAccount().getBalance());
-            System.out.println("Credit Limit: $" + customer.getCreditAccount().getCreditMax());
+            out.println("Credit Account Number: " + customer.getCreditAccount().getAccountNumber());
+            out.println("Credit Account Balance: $" + customer.getCreditAccount().getBalance());
+            out.println("Credit Limit: $" + customer.getCreditAccount().getCreditMax());
+        }
+    }
+
+
+    /**
+     * Displays the balance a customer's account had at the end of a past day, as
+     * auditors ask for it. The balance comes from the {@link Ledger}: the checkpoint
+     * taken at the end of the day, or the latest one before it and the entries since.
+     * @param customer  The customer whose account balance is being inquired.
+     * @param fromWhere The account type to check ("Checking", "Savings", or "Credit").
+     * @param date      The day.
+     * @return true if the balance was found, false otherwise.
+     */
+    public boolean inquireBalanceAsOf(Customer customer, String fromWhere, LocalDate date) {
+        Account account;
+        if (fromWhere.equals("Checking")) {
+            account = customer.getCheckingAccount();
+        } else if (fromWhere.equals("Savings")) {
+            account = customer.getSavingsAccount();
+        } else if (fromWhere.equals("Credit")) {
+            account = customer.getCreditAccount();
+        } else {
+            System.out.println("Balance inquiry failed: Invalid account specified.");
+            return false;
+        }
+        try {
+            long balanceCents = ledger.balanceAtEndOf(account.getAccountNumber(), date);
+            System.out.println(fromWhere + " Account Number: " + account.getAccountNumber());
+            System.out.println(fromWhere + " Account Balance at the end of " + date + ": $" + Money.toDouble(balanceCents));
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error reading the ledger: " + e.getMessage());
+            return false;
         }
     }
 
@@ -264,45 +647,42 @@ public class BankManager extends Person implements Staff {
      * @param fromWhere The account type to withdraw from ("Checking", "Savings", or "Credit").
      * @param amount    The amount of money to withdraw.
      * @return  true if the withdrawal is successful, false otherwise.
-     */
+     */
     public boolean withdrawMoney(Customer customer, String fromWhere, double amount) {
+        int outcome = withdraw(customer, fromWhere, Money.fromDouble(amount));
+        if (console != null) {
+            console.println(describe(OperationMetrics.WITHDRAW_MONEY, outcome, customer, null, fromWhere, null, amount));
+        }
+        return outcome == OperationMetrics.SUCCESS;
+    }
+
+    /**
+     * Withdraws money like {@link #withdrawMoney}, without printing anything.
+     * @param customer    The {@link Customer} from whose account the money is to be withdrawn.
+     * @param fromWhere   The account type to withdraw from ("Checking", "Savings", or "Credit").
+     * @param amountCents The amount of money to withdraw, in cents.
+     * @return The outcome: {@link OperationMetrics#SUCCESS}, {@link OperationMetrics#INSUFFICIENT_FUNDS},
+     *         or {@link OperationMetrics#FAILED} if the account type is invalid.
+     */
+    public int withdraw(Customer customer, String fromWhere, long amountCents) {
+        long start = System.nanoTime();
+        BankOperationEvent event = new BankOperationEvent();
+        event.begin();
+        Account account;
         if (fromWhere.equals("Checking")) {
-            double checkingBalance = customer.getCheckingAccount().getBalance();
-            if (checkingBalance >= amount) {
-                customer.getCheckingAccount().setBalance(checkingBalance - amount);
-                customer.addTransaction("Checking", checkingBalance, customer.getCheckingAccount().getBalance(), "Withdrew $" + amount);
-                System.out.println("Withdrawal successful: $" + amount + " withdrawn from Checking account.");
-                return true;
-            } else {
-                System.out.println("Withdrawal failed: Insufficient funds in Checking account.");
-                return false;
-            }
+            account = customer.getCheckingAccount();
         } else if (fromWhere.equals("Savings")) {
-            double savingsBalance = customer.getSavingsAccount().getBalance();
-            if (savingsBalance >= amount) {
-                customer.getSavingsAccount().setBalance(savingsBalance - amount);
-                customer.addTransaction("Savings", savingsBalance, customer.getSavingsAccount().getBalance(), "Withdrew $" + amount);
-                System.out.println("Withdrawal successful: $" + amount + " withdrawn from Savings account.");
-                return true;
-            } else {
-                System.out.println("Withdrawal failed: Insufficient funds in Savings account.");
-                return false;
-            }
+            account = customer.getSavingsAccount();
         } else if (fromWhere.equals("Credit")) {
-            double creditBalance = customer.getCreditAccount().getBalance();
-            if (creditBalance >= amount) {
-                customer.getCreditAccount().setBalance(creditBalance - amount);
-                customer.addTransaction("Credit", creditBalance, customer.getCreditAccount().getBalance(), "Withdrew $" + amount);
-                System.out.println("Withdrawal successful: $" + amount + " withdrawn from Credit account.");
-                return true;
-            } else {
-                System.out.println("Withdrawal failed: Insufficient funds in Credit account.");
-                return false;
-            }
+            account = customer.getCreditAccount();
         } else {
-            System.out.println("Withdrawal failed: Invalid account specified.");
-            return false;
+            return finish(event, OperationMetrics.WITHDRAW_MONEY, OperationMetrics.FAILED, start, customer, fromWhere, null, amountCents);
+        }
+        boolean withdrawn = account.withdrawAndRecord(amountCents, customer.getHistory(fromWhere), TransactionHistory.WITHDRAWAL, null) != Account.INSUFFICIENT_FUNDS;
+        if (withdrawn) {
+            ledger.withdraw(account, amountCents);
         }
+        return finish(event, OperationMetrics.WITHDRAW_MONEY, withdrawn ? OperationMetrics.SUCCESS : OperationMetrics.INSUFFICIENT_FUNDS, start, customer, fromWhere, null, amountCents);
     }
     
 
@@ -313,32 +693,69 @@ public class BankManager extends Person implements Staff {
      * @param toWhere   The account type to deposit into ("Checking", "Savings", or "Credit").
      * @param amount    The amount of money to deposit.
      * @return true if the deposit is successful, false otherwise.
-     */
+     */
     public boolean depositMoney(Customer customer, String toWhere, double amount) {
+        int outcome = deposit(customer, toWhere, Money.fromDouble(amount));
+        if (console != null) {
+            console.println(describe(OperationMetrics.DEPOSIT_MONEY, outcome, customer, null, null, toWhere, amount));
+        }
+        return outcome == OperationMetrics.SUCCESS;
+    }
+
+    /**
+     * Deposits money like {@link #depositMoney}, without printing anything.
+     * @param customer    The {@link Customer} whose account will receive the deposit.
+     * @param toWhere     The account type to deposit into ("Checking", "Savings", or "Credit").
+     * @param amountCents The amount of money to deposit, in cents.
+     * @return The outcome: {@link OperationMetrics#SUCCESS}, or {@link OperationMetrics#FAILED}
+     *         if the account type is invalid.
+     */
+    public int deposit(Customer customer, String toWhere, long amountCents) {
+        long start = System.nanoTime();
+        BankOperationEvent event = new BankOperationEvent();
+        event.begin();
+        Account account;
         if (toWhere.equals("Checking")) {
-            double checkingBalance = customer.getCheckingAccount().getBalance();
-            customer.getCheckingAccount().setBalance(checkingBalance + amount);
-            customer.addTransaction("Checking", checkingBalance, customer.getCheckingAccount().getBalance(), "Deposited $" + amount);
-            System.out.println("Deposit successful: $" + amount + " deposited into Checking account.");
-            return true;
+            account = customer.getCheckingAccount();
         } else if (toWhere.equals("Savings")) {
-            double savingsBalance = customer.getSavingsAccount().getBalance();
-            customer.getSavingsAccount().setBalance(savingsBalance + amount);
-            customer.addTransaction("Savings", savingsBalance, customer.getSavingsAccount().getBalance(), "Deposited $" + amount);
-            System.out.println("Deposit successful: $" + amount + " deposited into Savings account.");
-            return true;
+            account = customer.getSavingsAccount();
         } else if (toWhere.equals("Credit")) {
-            double creditBalance = customer.getCreditAccount().getBalance();
-            customer.getCreditAccount().setBalance(creditBalance + amount);
-            customer.addTransaction("Credit", creditBalance, customer.getCreditAccount().getBalance(), "Deposited $" + amount);
-            System.out.println("Deposit successful: $" + amount + " deposited into Credit account.");
-            return true;
+            account = customer.getCreditAccount();
         } else {
-            System.out.println("Deposit failed: Invalid account specified.");
-            return false;
+            return finish(event, OperationMetrics.DEPOSIT_MONEY, OperationMetrics.FAILED, start, customer, toWhere, null, amountCents);
         }
+        account.depositAndRecord(amountCents, customer.getHistory(toWhere), TransactionHistory.DEPOSIT, null);
+        ledger.deposit(account, amountCents);
+        return finish(event, OperationMetrics.DEPOSIT_MONEY, OperationMetrics.SUCCESS, start, customer, toWhere, null, amountCents);
     }
-    
+
+    /**
+     * Records the latency and outcome of an operation in the {@link OperationMetrics},
+     * and commits its {@link BankOperationEvent} if Flight Recorder is recording it.
+     * @param event         The event, begun when the operation started.
+     * @param operation     The operation, such as {@link OperationMetrics#PAY_SOMEONE}.
+     * @param outcome       The outcome, such as {@link OperationMetrics#SUCCESS}.
+     * @param startNanos    The value of {@link System#nanoTime()} when the operation started.
+     * @param customer      The customer making the operation.
+     * @param accountType   The account type the money comes from or goes to.
+     * @param toAccountType The account type the money goes to, or null.
+     * @param amountCents   The amount of the operation, in cents.
+     * @return The outcome.
+     */
+    private int finish(BankOperationEvent event, int operation, int outcome, long startNanos, Customer customer, String accountType, String toAccountType, long amountCents) {
+        metrics.record(operation, outcome, startNanos);
+        if (event.shouldCommit()) {
+            event.operation = OperationMetrics.getOperationName(operation);
+            event.customerId = customer.getIdentificationNumber();
+            event.accountType = accountType;
+            event.toAccountType = toAccountType;
+            event.amount = Money.toDouble(amountCents);
+            event.outcome = OperationMetrics.getOutcomeName(outcome);
+            event.commit();
+        }
+        return outcome;
+    }
+
 
     /**
      * Generates a bank statement for a specific customer.
@@ -346,57 +763,98 @@ public class BankManager extends Person implements Staff {
      * @return true if the statement is successfully generated, false otherwise.
      */
     public boolean generateBankStatement(Customer customer) {
-        String fileName = "BankStatement_" + customer.getIdentificationNumber() + "_" + ".txt";
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        StatementCursor cursor = StatementCursor.of(customer, new SimpleDateFormat("yyyy-MM-dd").format(new Date()));
+        String fileName = statementFileName(customer, cursor.getStatementDate());
 
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            writer.write("Bank Statement for " + customer.getFirstName() + " " + customer.getLastName());
-            writer.newLine();
-            writer.write("Date of Statement: " + new SimpleDateFormat("yyyy-MM-dd").format(new Date()));
-            writer.newLine();
-            writer.newLine();
-            writer.write("Customer Information:");
-            writer.newLine();
-            writer.write("ID: " + customer.getIdentificationNumber());
-            writer.newLine();
-            writer.write("Name: " + customer.getFirstName() + " " + customer.getLastName());
-            writer.newLine();
-            writer.write("Address: " + customer.getAddress());
-            writer.newLine();
-            writer.write("Phone Number: " + customer.getPhoneNumber());
-            writer.newLine();
-            writer.newLine();
-            writer.write("Account Information:");
-            writer.newLine();
-            writer.write("Checking Account Balance: $" + customer.getCheckingAccount().getBalance());
-            writer.newLine();
-            writer.write("Savings Account Balance: $" + customer.getSavingsAccount().getBalance());
-            writer.newLine();
-            writer.write("Credit Account Balance: $" + customer.getCreditAccount().getBalance());
-            writer.newLine();
-            writer.newLine();
-            writer.write("Transaction History:");
-            writer.newLine();
-            writer.write("Checking Account Transactions:");
-            writer.newLine();
-            writer.write(customer.getTransactions("Checking"));
-            writer.newLine();
-            writer.newLine();
-            writer.write("Savings Account Transactions:");
-            writer.newLine();
-            writer.write(customer.getTransactions("Savings"));
-            writer.newLine();
-            writer.newLine();
-            writer.write("Credit Account Transactions:");
-            writer.newLine();
-            writer.write(customer.getTransactions("Credit"));
-            writer.newLine();
-            writer.newLine();
-            System.out.println("---------------------------------");
-            System.out.println("Bank statement generated successfully for " + customer.getFirstName() + " " + customer.getLastName());
-            return true;
+            appendBankStatement(writer, customer, cursor);
         } catch (IOException e) {
             System.out.println("Error generating bank statement: " + e.getMessage());
+            commitStatementEvent(event, "generate", customer, 0, false);
             return false;
         }
+        customer.setStatementCursor(cursor);
+        try {
+            statementCursors.record(customer);
+        } catch (IOException e) {
+            System.out.println("Error saving statement cursor: " + e.getMessage());
+        }
+        System.out.println("---------------------------------");
+        System.out.println("Bank statement generated successfully for " + customer.getFirstName() + " " + customer.getLastName());
+        commitStatementEvent(event, "generate", customer, 0, true);
+        return true;
+    }
+
+    /**
+     * Commits the {@link StatementEvent} of a customer's statement if Flight Recorder is
+     * recording it.
+     * @param event    The event, begun when the phase started.
+     * @param phase    The phase: "generate", "render" or "write".
+     * @param customer The customer.
+     * @param bytes    The size of the statement, or 0 if it is not known.
+     * @param success  Whether the phase succeeded.
+     */
+    static void commitStatementEvent(StatementEvent event, String phase, Customer customer, long bytes, boolean success) {
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.customerId = customer.getIdentificationNumber();
+            event.bytes = bytes;
+            event.outcome = success ? "success" : "failed";
+            event.commit();
+        }
+    }
+
+    /**
+     * Gets the name of the file a customer's bank statement is written to, such as
+     * "BankStatement_1_2024-03-01.txt", so the statements of earlier dates are kept.
+     * @param customer      The customer.
+     * @param statementDate The date of the statement, as yyyy-MM-dd.
+     * @return The file name.
+     */
+    public static String statementFileName(Customer customer, String statementDate) {
+        return "BankStatement_" + customer.getIdentificationNumber() + "_" + statementDate + ".txt";
+    }
+
+    /**
+     * Writes the bank statement of a customer: personal information, and for every
+     * account the balance carried forward from the last statement, the closing balance,
+     * and the transactions made since the last statement. Both
+     * {@link #generateBankStatement(Customer)} and the {@link BulkStatementJob} use it,
+     * so their files are identical.
+     * @param out      Where to write the statement.
+     * @param customer The customer, whose cursor still points at the last statement.
+     * @param cursor   The cursor of the new statement, with its date, its last
+     *                 transactions and its closing balances.
+     * @throws IOException if the statement cannot be written
+     */
+    public static void appendBankStatement(Appendable out, Customer customer, StatementCursor cursor) throws IOException {
+        String newLine = System.lineSeparator();
+        StatementCursor last = customer.getStatementCursor();
+        out.append("Bank Statement for ").append(customer.getFirstName()).append(' ').append(customer.getLastName()).append(newLine);
+        out.append("Date of Statement: ").append(cursor.getStatementDate()).append(newLine);
+        out.append("Previous Statement: ").append(last == null ? "None" : last.getStatementDate()).append(newLine);
+        out.append(newLine);
+        out.append("Customer Information:").append(newLine);
+        out.append("ID: ").append(Integer.toString(customer.getIdentificationNumber())).append(newLine);
+        out.append("Name: ").append(customer.getFirstName()).append(' ').append(customer.getLastName()).append(newLine);
+        out.append("Address: ").append(customer.getAddress()).append(newLine);
+        out.append("Phone Number: ").append(customer.getPhoneNumber()).append(newLine);
+        out.append(newLine);
+        out.append("Account Information:").append(newLine);
+        for (int i = 0; i < StatementCursor.ACCOUNT_TYPES.length; i++) {
+            String accountType = StatementCursor.ACCOUNT_TYPES[i];
+            out.append(accountType).append(" Account Opening Balance: $").append(Double.toString(Money.toDouble(StatementCursor.openingBalanceCents(customer, i)))).append(newLine);
+            out.append(accountType).append(" Account Balance: $").append(Double.toString(Money.toDouble(cursor.getBalanceCents(i)))).append(newLine);
+        }
+        out.append(newLine);
+        out.append("Transaction History:").append(newLine);
+        for (int i = 0; i < StatementCursor.ACCOUNT_TYPES.length; i++) {
+            out.append(StatementCursor.ACCOUNT_TYPES[i]).append(" Account Transactions:").append(newLine);
+            customer.getHistory(StatementCursor.ACCOUNT_TYPES[i]).appendTo(out, StatementCursor.firstNewTransaction(customer, i), cursor.getTransactionCount(i));
+            out.append(newLine);
+            out.append(newLine);
+        }
     }
 }
@@ -0,0 +1,47 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The BankOperationEvent class is the Java Flight Recorder event of one payment,
+ * transfer, withdrawal or deposit made by the {@link BankManager}. Its duration covers
+ * the whole operation, including waiting for the locks of the accounts, so a recording
+ * shows which operations were stalled by garbage collection or lock contention.
+ *
+ * The fields are only filled in when {@link #shouldCommit()} is true, so the event
+ * costs next to nothing while it is disabled.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@Name("bank.Operation")
+@Label("Bank Operation")
+@Category("Bank")
+@Description("A payment, transfer, withdrawal or deposit")
+public class BankOperationEvent extends Event {
+    /** The operation, as named by the {@link OperationMetrics}. */
+    @Label("Operation")
+    String operation;
+
+    /** The identification number of the customer making the operation. */
+    @Label("Customer ID")
+    int customerId;
+
+    /** The account type the money comes from or goes to. */
+    @Label("Account Type")
+    String accountType;
+
+    /** The account type the money goes to, for payments and transfers. */
+    @Label("To Account Type")
+    String toAccountType;
+
+    /** The amount of the operation, in dollars. */
+    @Label("Amount")
+    double amount;
+
+    /** The outcome, as named by the {@link OperationMetrics}. */
+    @Label("Outcome")
+    String outcome;
+}
@@ -0,0 +1,380 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The BulkCustomerLoader class parses a large customer CSV file on several threads.
+ *
+ * The file is memory-mapped and cut into segments of roughly equal size. Each segment
+ * is first scanned in parallel to count its double quotes and line breaks, which tells
+ * whether a segment starts inside a quoted field. Every segment is then moved forward
+ * to the first line break that is outside quotes, so each chunk holds whole records,
+ * and the chunks are parsed in parallel on a fork-join pool. Like the CSV format itself,
+ * this assumes double quotes only appear around quoted fields.
+ *
+ * Line breaks follow the rules of {@link CSVReader}: outside quotes, "\r\n", "\n" and a
+ * lone "\r" each end a line; inside quotes, only "\n" counts as one. A lone "\r" is
+ * counted apart for each quote parity of the segment, so its count is known once the
+ * segment is found to start inside or outside quotes.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class BulkCustomerLoader {
+    /** The largest region of the file mapped at once. */
+    private static final long MAX_WINDOW_SIZE = 64L << 20;
+
+    /** The smallest segment worth parsing on its own thread, by default. */
+    private static final long MIN_SEGMENT_SIZE = 1L << 20;
+
+    /** The number of threads used to parse the file. */
+    private final int parallelism;
+
+    /** The smallest segment parsed on its own thread. */
+    private final long minSegmentSize;
+
+    /**
+     * Creates a new BulkCustomerLoader.
+     * @param parallelism The number of threads used to parse the file, at least 1.
+     */
+    public BulkCustomerLoader(int parallelism) {
+        this(parallelism, MIN_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a new BulkCustomerLoader that cuts the file into segments of a given
+     * smallest size. Small segments put more chunk boundaries in a small file.
+     * @param parallelism    The number of threads used to parse the file, at least 1.
+     * @param minSegmentSize The smallest segment parsed on its own thread, in bytes, at least 1.
+     */
+    public BulkCustomerLoader(int parallelism, long minSegmentSize) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        if (minSegmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be at least 1: " + minSegmentSize);
+        }
+        this.parallelism = parallelism;
+        this.minSegmentSize = minSegmentSize;
+    }
+
+    /**
+     * Parses every row of a customer CSV file.
+     * @param path   The path of the CSV file.
+     * @param errors A list that receives the rows that could not be parsed, in file order.
+     * @return The parsed rows, in file order.
+     * @throws IOException if the file cannot be read
+     */
+    public List<CustomerCSVFormat.Row> load(Path path, List<RowError> errors) throws IOException {
+        List<CustomerCSVFormat.Row> rows = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] headerEnd = alignToRecord(channel, 0, size, false);
+            CSVReader header = reader(channel, 0, headerEnd[0]);
+            if (!header.nextRecord()) {
+                return rows;
+            }
+            CustomerCSVFormat format = new CustomerCSVFormat(header);
+
+            long bodyStart = headerEnd[0];
+            long bodySize = size - bodyStart;
+            int segmentCount = (int) Math.max(1, Math.min(divideRoundingUp(bodySize, minSegmentSize),
+                    Math.max(parallelism * 4L, divideRoundingUp(bodySize, MAX_WINDOW_SIZE))));
+            long segmentSize = Math.max(1, divideRoundingUp(bodySize, segmentCount));
+            long[] bounds = new long[segmentCount + 1];
+            for (int i = 0; i < segmentCount; i++) {
+                bounds[i] = Math.min(size, bodyStart + i * segmentSize);
+            }
+            bounds[segmentCount] = size;
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<Callable<long[]>> counting = new ArrayList<>();
+                for (int i = 0; i < segmentCount; i++) {
+                    long from = bounds[i];
+                    long to = bounds[i + 1];
+                    counting.add(() -> countQuotesAndLines(channel, from, to));
+                }
+                List<long[]> counts = invokeAll(pool, counting);
+
+                List<Callable<long[]>> aligning = new ArrayList<>();
+                long quotesBefore = 0;
+                long linesBefore = headerEnd[1];
+                for (int i = 0; i < segmentCount; i++) {
+                    long from = bounds[i];
+                    boolean inQuotes = (quotesBefore & 1) == 1;
+                    long lines = linesBefore;
+                    long[] count = counts.get(i);
+                    if (i == 0) {
+                        aligning.add(() -> new long[] {from, lines});
+                    } else {
+                        aligning.add(() -> {
+                            long[] aligned = alignToRecord(channel, from, size, inQuotes);
+                            return new long[] {aligned[0], lines + aligned[1]};
+                        });
+                    }
+                    quotesBefore += count[0];
+                    linesBefore += count[1] + (inQuotes ? count[3] : count[2]);
+                }
+                List<long[]> starts = invokeAll(pool, aligning);
+
+                List<Callable<Chunk>> parsing = new ArrayList<>();
+                for (int i = 0; i < segmentCount; i++) {
+                    long from = starts.get(i)[0];
+                    long to = i + 1 < segmentCount ? starts.get(i + 1)[0] : size;
+                    int firstLine = (int) (starts.get(i)[1] + 1);
+                    parsing.add(() -> parseChunk(channel, format, from, to, firstLine));
+                }
+                for (Chunk chunk : invokeAll(pool, parsing)) {
+                    rows.addAll(chunk.rows);
+                    errors.addAll(chunk.errors);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Parses the records of one chunk of the file.
+     * @param channel   The channel of the file.
+     * @param format    The columns of the file.
+     * @param from      The position of the first byte of the chunk.
+     * @param to        The position after the last byte of the chunk.
+     * @param firstLine The line of the file the chunk starts on.
+     * @return The rows and errors of the chunk.
+     * @throws IOException if the file cannot be read
+     */
+    private static Chunk parseChunk(FileChannel channel, CustomerCSVFormat format, long from, long to, int firstLine) throws IOException {
+        Chunk chunk = new Chunk();
+        CSVReader reader = reader(channel, from, to);
+        while (reader.nextRecord()) {
+            try {
+                chunk.rows.add(format.parse(reader));
+            } catch (RuntimeException e) {
+                chunk.errors.add(new RowError(firstLine + reader.getLineNumber() - 1, e.getMessage()));
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Counts the double quotes and line breaks in a region of the file.
+     * @param channel The channel of the file.
+     * @param from    The start of the region.
+     * @param to      The end (exclusive) of the region.
+     * @return The number of double quotes, the number of "\n", and the number of lone
+     *         "\r" after an even and after an odd number of quotes of the region.
+     * @throws IOException if the file cannot be read
+     */
+    private static long[] countQuotesAndLines(FileChannel channel, long from, long to) throws IOException {
+        long quotes = 0;
+        long lines = 0;
+        long[] loneReturns = new long[2];
+        long size = channel.size();
+        for (long window = from; window < to; window += MAX_WINDOW_SIZE) {
+            int n = (int) Math.min(MAX_WINDOW_SIZE, to - window);
+            MappedByteBuffer buffer = map(channel, window, n, size);
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    quotes++;
+                } else if (b == '\n') {
+                    lines++;
+                } else if (b == '\r' && !followedByNewline(buffer, i)) {
+                    loneReturns[(int) (quotes & 1)]++;
+                }
+            }
+        }
+        return new long[] {quotes, lines, loneReturns[0], loneReturns[1]};
+    }
+
+    /**
+     * Finds the start of the first record at or after a position of the file, that is
+     * the byte after the first line break that is not inside a quoted field.
+     * @param channel  The channel of the file.
+     * @param from     The position to start from.
+     * @param size     The size of the file.
+     * @param inQuotes Whether the position is inside a quoted field.
+     * @return The start of the record and the number of line breaks skipped.
+     * @throws IOException if the file cannot be read
+     */
+    private static long[] alignToRecord(FileChannel channel, long from, long size, boolean inQuotes) throws IOException {
+        long lines = 0;
+        for (long window = from; window < size; window += MAX_WINDOW_SIZE) {
+            int n = (int) Math.min(MAX_WINDOW_SIZE, size - window);
+            MappedByteBuffer buffer = map(channel, window, n, size);
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n') {
+                    lines++;
+                    if (!inQuotes) {
+                        return new long[] {window + i + 1, lines};
+                    }
+                } else if (b == '\r' && !inQuotes) {
+                    lines++;
+                    return new long[] {window + i + (followedByNewline(buffer, i) ? 2 : 1), lines};
+                }
+            }
+        }
+        return new long[] {size, lines};
+    }
+
+    /**
+     * Maps a window of the file, with the byte after it when there is one, so a "\r" at
+     * the end of the window can be checked for a "\n" after it.
+     * @param channel The channel of the file.
+     * @param from    The start of the window.
+     * @param length  The length of the window.
+     * @param size    The size of the file.
+     * @return The mapped window.
+     * @throws IOException if the file cannot be read
+     */
+    private static MappedByteBuffer map(FileChannel channel, long from, int length, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(length + 1L, size - from));
+    }
+
+    /**
+     * Checks whether a "\r" is the first half of a "\r\n" line break.
+     * @param buffer The mapped window.
+     * @param index  The index of the "\r" in the window.
+     * @return true if a "\n" follows it
+     */
+    private static boolean followedByNewline(MappedByteBuffer buffer, int index) {
+        return index + 1 < buffer.limit() && buffer.get(index + 1) == '\n';
+    }
+
+    /**
+     * Creates a CSVReader over a region of the file.
+     * @param channel The channel of the file.
+     * @param from    The start of the region.
+     * @param to      The end (exclusive) of the region.
+     * @return The reader.
+     */
+    private static CSVReader reader(FileChannel channel, long from, long to) {
+        return new CSVReader(new InputStreamReader(new MappedInputStream(channel, from, to), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Runs tasks on the pool and waits for all their results.
+     * @param <T>   The type of the results.
+     * @param pool  The pool to run the tasks on.
+     * @param tasks The tasks to run.
+     * @return The results, in the order of the tasks.
+     * @throws IOException if a task failed
+     */
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Loading interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Divides two positive numbers, rounding up.
+     * @param a The dividend.
+     * @param b The divisor.
+     * @return The quotient rounded up.
+     */
+    private static long divideRoundingUp(long a, long b) {
+        return (a + b - 1) / b;
+    }
+
+    /** The rows and errors of one chunk. */
+    private static class Chunk {
+        /** The rows parsed from the chunk. */
+        private final List<CustomerCSVFormat.Row> rows = new ArrayList<>();
+
+        /** The rows of the chunk that could not be parsed. */
+        private final List<RowError> errors = new ArrayList<>();
+    }
+
+    /** An input stream over a region of a file that maps the file one window at a time. */
+    private static class MappedInputStream extends InputStream {
+        /** The channel of the file. */
+        private final FileChannel channel;
+
+        /** The end (exclusive) of the region. */
+        private final long end;
+
+        /** The position of the start of the current window. */
+        private long position;
+
+        /** The current window, or null before the first read. */
+        private MappedByteBuffer window;
+
+        /**
+         * Creates a new MappedInputStream.
+         * @param channel The channel of the file.
+         * @param from    The start of the region.
+         * @param to      The end (exclusive) of the region.
+         */
+        MappedInputStream(FileChannel channel, long from, long to) {
+            this.channel = channel;
+            this.position = from;
+            this.end = to;
+        }
+
+        /**
+         * Makes sure the current window has bytes left, mapping the next one if needed.
+         * @return true if there are bytes left to read
+         * @throws IOException if the file cannot be read
+         */
+        private boolean ensureWindow() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+            if (window != null) {
+                position += window.limit();
+            }
+            if (position >= end) {
+                return false;
+            }
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_WINDOW_SIZE, end - position));
+            return window.hasRemaining();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return ensureWindow() ? window.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!ensureWindow()) {
+                return -1;
+            }
+            int n = Math.min(length, window.remaining());
+            window.get(bytes, offset, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The BulkStatementJob class generates the bank statement of every customer at once.
+ *
+ * The work is split in two stages. A pool of render threads builds each statement in
+ * memory with {@link BankManager#appendBankStatement}, and hands it to a bounded queue;
+ * a fixed number of writer threads take statements from the queue and write them to
+ * disk. Each writer has at most one statement file open, so the number of writers caps
+ * the open files, and the queue keeps the renderers from getting far ahead of the disk.
+ * The files are encoded like the {@link java.io.FileWriter} of
+ * {@link BankManager#generateBankStatement(Customer)}, so they are byte-identical to the
+ * ones it writes on the same day from the same {@link StatementCursor}.
+ *
+ * Statements are incremental: customers with no activity since their last statement
+ * are skipped without rendering anything, so the cost of a cycle follows the activity
+ * rather than the number of customers. Every statement is written to a temporary file
+ * and then moved into place, and only then does its customer get the new cursor, which
+ * is saved to the {@link StatementCursorStore}, and is recorded in a progress file,
+ * whose first line is the date of the statements. If the job is interrupted, running it
+ * again on the same directory keeps that date and skips the customers already done.
+ * The progress file is deleted once every statement has been written.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class BulkStatementJob {
+    /** The name of the progress file, in the output directory. */
+    public static final String PROGRESS_FILE_NAME = "BankStatements.progress";
+
+    /** The default number of statement files open at once. */
+    public static final int DEFAULT_MAX_OPEN_FILES = 16;
+
+    /** The time between two progress reports, in milliseconds. */
+    private static final long REPORT_INTERVAL_MILLIS = 1000;
+
+    /** The statement queued after the last one, telling a writer to stop. */
+    private static final Statement END = new Statement(null, null, null);
+
+    /** The directory the statements are written to. */
+    private final Path outputDirectory;
+
+    /** The number of threads that render statements. */
+    private final int renderThreads;
+
+    /** The number of threads that write statements, which is the number of files open at once. */
+    private final int maxOpenFiles;
+
+    /** The store the new statement cursors are saved to. */
+    private final StatementCursorStore statementCursors;
+
+    /** The number of statements written by the last run. */
+    private final AtomicInteger written = new AtomicInteger();
+
+    /** The number of statements that could not be rendered or written in the last run. */
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /** The number of bytes written by the last run. */
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /** The number of customers skipped by the last run because a previous run did them. */
+    private int skipped;
+
+    /** The number of customers skipped by the last run because they had no activity since their last statement. */
+    private int inactive;
+
+    /** The number of customers the last run had to do. */
+    private int pending;
+
+    /** The time the last run started, from {@link System#nanoTime()}. */
+    private volatile long startNanos;
+
+    /** How long the last run took, in nanoseconds. */
+    private long elapsedNanos;
+
+    /**
+     * Creates a new BulkStatementJob.
+     * @param outputDirectory  The directory the statements are written to.
+     * @param renderThreads    The number of threads that render statements, at least 1.
+     * @param maxOpenFiles     The number of statement files open at once, at least 1.
+     * @param statementCursors The store the new statement cursors are saved to.
+     */
+    public BulkStatementJob(Path outputDirectory, int renderThreads, int maxOpenFiles, StatementCursorStore statementCursors) {
+        if (renderThreads < 1) {
+            throw new IllegalArgumentException("Render threads must be at least 1: " + renderThreads);
+        }
+        if (maxOpenFiles < 1) {
+            throw new IllegalArgumentException("Open files must be at least 1: " + maxOpenFiles);
+        }
+        this.outputDirectory = outputDirectory;
+        this.renderThreads = renderThreads;
+        this.maxOpenFiles = maxOpenFiles;
+        this.statementCursors = statementCursors;
+    }
+
+    /**
+     * Generates the statement of every customer with activity since the last statement
+     * that a previous, interrupted run did not do, printing the progress every second and a summary at the end.
+     * @param customers The customers.
+     * @return true if every statement was written, false if some failed; the failed ones
+     *         are done by the next run.
+     * @throws IOException          if the output directory or the progress file cannot be used
+     * @throws InterruptedException if the job is interrupted; the next run resumes it
+     */
+    public boolean run(Collection<Customer> customers) throws IOException, InterruptedException {
+        written.set(0);
+        failed.set(0);
+        bytesWritten.set(0);
+        Files.createDirectories(outputDirectory);
+        Path progressFile = outputDirectory.resolve(PROGRESS_FILE_NAME);
+        Set<Integer> done = new HashSet<>();
+        String statementDate = readProgress(progressFile, done);
+        if (statementDate == null) {
+            statementDate = new SimpleDateFormat("yyyy-MM-dd").format(new Date());
+            Files.write(progressFile, List.of(statementDate), StandardCharsets.UTF_8);
+        }
+        List<Customer> todo = new ArrayList<>(customers.size());
+        skipped = 0;
+        inactive = 0;
+        for (Customer customer : customers) {
+            if (done.contains(customer.getIdentificationNumber())) {
+                skipped++;
+            } else if (!StatementCursor.isDue(customer)) {
+                inactive++;
+            } else {
+                todo.add(customer);
+            }
+        }
+        pending = todo.size();
+        startNanos = System.nanoTime();
+
+        BlockingQueue<Statement> queue = new ArrayBlockingQueue<>(maxOpenFiles * 2);
+        ExecutorService renderers = Executors.newFixedThreadPool(renderThreads);
+        ExecutorService writers = Executors.newFixedThreadPool(maxOpenFiles);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bulk-statement-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (BufferedWriter progress = Files.newBufferedWriter(progressFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+            reporter.scheduleAtFixedRate(this::reportProgress, REPORT_INTERVAL_MILLIS, REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < maxOpenFiles; i++) {
+                writers.execute(() -> writeStatements(queue, progress));
+            }
+            String date = statementDate;
+            for (Customer customer : todo) {
+                renderers.execute(() -> renderStatement(customer, date, queue));
+            }
+            renderers.shutdown();
+            renderers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            for (int i = 0; i < maxOpenFiles; i++) {
+                queue.put(END);
+            }
+            writers.shutdown();
+            writers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            renderers.shutdownNow();
+            writers.shutdownNow();
+            reporter.shutdownNow();
+            elapsedNanos = System.nanoTime() - startNanos;
+        }
+        System.out.println("---------------------------------");
+        System.out.println("Bank statements generated: " + written.get() + " (" + skipped + " already done, " + inactive + " without activity, " + failed.get() + " failed) in "
+            + getElapsedMillis() + " ms, " + Math.round(getThroughput()) + " statements/s, " + bytesWritten.get() + " bytes");
+        if (failed.get() > 0) {
+            return false;
+        }
+        Files.deleteIfExists(progressFile);
+        return true;
+    }
+
+    /**
+     * Reads the progress file left by an interrupted run.
+     * @param progressFile The progress file.
+     * @param done         A set that receives the ids of the customers already done.
+     * @return The date of the statements, or null if there is no progress file.
+     * @throws IOException if the progress file cannot be read
+     */
+    private static String readProgress(Path progressFile, Set<Integer> done) throws IOException {
+        if (!Files.exists(progressFile)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(progressFile, StandardCharsets.UTF_8)) {
+            String statementDate = reader.readLine();
+            if (statementDate == null || statementDate.isEmpty()) {
+                return null;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    done.add(Integer.parseInt(line.trim()));
+                } catch (NumberFormatException e) {
+                    // A line cut short by a crash; its customer is done again.
+                }
+            }
+            return statementDate;
+        }
+    }
+
+    /**
+     * Renders the statement of a customer and queues it for the writers.
+     * @param customer      The customer.
+     * @param statementDate The date printed on the statement.
+     * @param queue         The queue of the writers.
+     */
+    private void renderStatement(Customer customer, String statementDate, BlockingQueue<Statement> queue) {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        StringBuilder text = new StringBuilder(1024);
+        StatementCursor cursor = StatementCursor.of(customer, statementDate);
+        try {
+            BankManager.appendBankStatement(text, customer, cursor);
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            System.out.println("Error generating bank statement for customer " + customer.getIdentificationNumber() + ": " + e.getMessage());
+            BankManager.commitStatementEvent(event, "render", customer, 0, false);
+            return;
+        }
+        byte[] bytes = text.toString().getBytes(Charset.defaultCharset());
+        BankManager.commitStatementEvent(event, "render", customer, bytes.length, true);
+        try {
+            queue.put(new Statement(customer, cursor, bytes));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the queued statements until the end of the queue. Once a statement is in
+     * place, its customer gets the new cursor and is recorded in the progress file.
+     * @param queue    The queue of rendered statements.
+     * @param progress The progress file.
+     */
+    private void writeStatements(BlockingQueue<Statement> queue, BufferedWriter progress) {
+        try {
+            for (Statement statement = queue.take(); statement != END; statement = queue.take()) {
+                StatementEvent event = new StatementEvent();
+                event.begin();
+                String fileName = BankManager.statementFileName(statement.customer, statement.cursor.getStatementDate());
+                Path target = outputDirectory.resolve(fileName);
+                Path temporary = outputDirectory.resolve(fileName + ".tmp");
+                try {
+                    Files.write(temporary, statement.bytes);
+                    try {
+                        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    statement.customer.setStatementCursor(statement.cursor);
+                    statementCursors.record(statement.customer);
+                    synchronized (progress) {
+                        progress.write(Integer.toString(statement.customer.getIdentificationNumber()));
+                        progress.newLine();
+                        progress.flush();
+                    }
+                    written.incrementAndGet();
+                    bytesWritten.addAndGet(statement.bytes.length);
+                    BankManager.commitStatementEvent(event, "write", statement.customer, statement.bytes.length, true);
+                } catch (IOException e) {
+                    failed.incrementAndGet();
+                    System.out.println("Error writing bank statement " + target + ": " + e.getMessage());
+                    Files.deleteIfExists(temporary);
+                    BankManager.commitStatementEvent(event, "write", statement.customer, statement.bytes.length, false);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("Error writing bank statements: " + e.getMessage());
+        }
+    }
+
+    /** Prints how many statements are done and the current throughput. */
+    private void reportProgress() {
+        System.out.println("Bank statements: " + written.get() + "/" + pending + " written, "
+            + Math.round(written.get() * 1e9 / Math.max(1, System.nanoTime() - startNanos)) + " statements/s");
+    }
+
+    /**
+     * Gets the number of statements written by the last run.
+     * @return the number of statements written
+     */
+    public int getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * Gets the number of customers the last run skipped because a previous run did them.
+     * @return the number of customers skipped
+     */
+    public int getSkippedCount() {
+        return skipped;
+    }
+
+    /**
+     * Gets the number of customers the last run skipped because they had no activity
+     * since their last statement.
+     * @return the number of customers without activity
+     */
+    public int getInactiveCount() {
+        return inactive;
+    }
+
+    /**
+     * Gets the number of statements the last run could not render or write.
+     * @return the number of failed statements
+     */
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Gets the number of bytes written by the last run.
+     * @return the number of bytes
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Gets how long the last run took.
+     * @return the elapsed time, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * Gets the throughput of the last run.
+     * @return the number of statements written per second
+     */
+    public double getThroughput() {
+        return written.get() * 1e9 / Math.max(1, elapsedNanos);
+    }
+
+    /** A rendered statement waiting to be written. */
+    private static class Statement {
+        /** The customer. */
+        private final Customer customer;
+        /** The cursor the customer gets once the statement is written. */
+        private final StatementCursor cursor;
+        /** The encoded statement. */
+        private final byte[] bytes;
+
+        /**
+         * Creates a new Statement.
+         * @param customer The customer.
+         * @param cursor   The cursor the customer gets once the statement is written.
+         * @param bytes    The encoded statement.
+         */
+        private Statement(Customer customer, StatementCursor cursor, byte[] bytes) {
+            this.customer = customer;
+            this.cursor = cursor;
+            this.bytes = bytes;
+        }
+    }
+}
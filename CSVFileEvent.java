@@ -0,0 +1,40 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The CSVFileEvent class is the Java Flight Recorder event of one phase of reading or
+ * writing a customer CSV file: loading it in {@link FilesHandling}, exporting it with
+ * {@link FilesHandling#updateCSV}, or appending to and compacting it in the
+ * {@link WriteBehindCustomerStore}.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@Name("bank.CSVFile")
+@Label("Customer CSV File")
+@Category("Bank")
+@Description("Loading, exporting, appending to or compacting a customer CSV file")
+public class CSVFileEvent extends Event {
+    /** The phase: "load", "export", "append" or "compact". */
+    @Label("Phase")
+    String phase;
+
+    /** The path of the file. */
+    @Label("Path")
+    String path;
+
+    /** The number of customer rows read or written. */
+    @Label("Rows")
+    int rowCount;
+
+    /** The number of rows that could not be read. */
+    @Label("Rejected Rows")
+    int rejectedCount;
+
+    /** The outcome: "success" or "failed". */
+    @Label("Outcome")
+    String outcome;
+}
@@ -0,0 +1,397 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * The CSVReader class reads a CSV file one record at a time in a single pass.
+ *
+ * Fields may be wrapped in double quotes, in which case they can contain commas,
+ * line breaks and escaped quotes (""). Unquoted fields are trimmed, and empty lines
+ * are skipped. The characters of the current record are kept in a buffer that is
+ * reused for every record, so no String is created unless a field is requested
+ * with {@link #getString(int)}; numbers are parsed directly from the buffer.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class CSVReader implements Closeable {
+    /** Powers of ten that are exactly representable as a double. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** The reader the characters come from. */
+    private final Reader reader;
+
+    /** The characters read from the reader and not yet consumed. */
+    private final char[] input = new char[65536];
+
+    /** The position of the next character to consume in the input buffer. */
+    private int inputPosition;
+
+    /** The number of valid characters in the input buffer. */
+    private int inputLimit;
+
+    /** The characters of the fields of the current record, unquoted. */
+    private char[] record = new char[256];
+
+    /** The number of characters of the current record. */
+    private int recordLength;
+
+    /** The start of each field of the current record, in the record buffer. */
+    private int[] fieldStarts = new int[16];
+
+    /** The end (exclusive) of each field of the current record, in the record buffer. */
+    private int[] fieldEnds = new int[16];
+
+    /** The number of fields of the current record. */
+    private int fieldCount;
+
+    /** The line the next character is on. */
+    private int currentLine = 1;
+
+    /** The line the current record started on. */
+    private int recordLine;
+
+    /**
+     * Creates a new CSVReader over the given reader.
+     * @param reader The reader the CSV characters come from.
+     */
+    public CSVReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next record, skipping empty lines.
+     * @return true if a record was read, false at the end of the input
+     * @throws IOException if the underlying reader fails
+     */
+    public boolean nextRecord() throws IOException {
+        while (true) {
+            recordLength = 0;
+            fieldCount = 0;
+            recordLine = currentLine;
+            int c = read();
+            if (c == -1) {
+                return false;
+            }
+            if (c == '\n' || c == '\r') {
+                endOfLine(c);
+                continue;
+            }
+            readRecord(c);
+            return true;
+        }
+    }
+
+    /**
+     * Reads the fields of a record whose first character has already been consumed.
+     * @param c The first character of the record.
+     * @throws IOException if the underlying reader fails
+     */
+    private void readRecord(int c) throws IOException {
+        int fieldStart = 0;
+        int quoteEnd = -1;
+        boolean inQuotes = false;
+        while (true) {
+            if (inQuotes) {
+                if (c == -1) {
+                    endField(fieldStart, quoteEnd);
+                    return;
+                } else if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        append('"');
+                    } else {
+                        inQuotes = false;
+                        quoteEnd = recordLength;
+                    }
+                } else {
+                    if (c == '\n') {
+                        currentLine++;
+                    }
+                    append((char) c);
+                }
+            } else if (c == -1) {
+                endField(fieldStart, quoteEnd);
+                return;
+            } else if (c == ',') {
+                endField(fieldStart, quoteEnd);
+                fieldStart = recordLength;
+                quoteEnd = -1;
+            } else if (c == '\n' || c == '\r') {
+                endField(fieldStart, quoteEnd);
+                endOfLine(c);
+                return;
+            } else if (c == '"' && quoteEnd == -1 && isBlank(fieldStart, recordLength)) {
+                inQuotes = true;
+                recordLength = fieldStart;
+            } else {
+                append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Records the bounds of the field that ends at the current record length.
+     * @param start    The start of the field in the record buffer.
+     * @param quoteEnd The position of the closing quote, or -1 if the field is not quoted.
+     */
+    private void endField(int start, int quoteEnd) {
+        int end = recordLength;
+        if (quoteEnd == -1) {
+            while (start < end && record[start] <= ' ') {
+                start++;
+            }
+            while (end > start && record[end - 1] <= ' ') {
+                end--;
+            }
+        } else {
+            while (end > quoteEnd && record[end - 1] <= ' ') {
+                end--;
+            }
+        }
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * Consumes the rest of a line break and advances the line counter.
+     * @param c The line break character that was read.
+     * @throws IOException if the underlying reader fails
+     */
+    private void endOfLine(int c) throws IOException {
+        if (c == '\r' && peek() == '\n') {
+            read();
+        }
+        currentLine++;
+    }
+
+    /**
+     * Checks whether the given range of the record buffer only contains whitespace.
+     * @param start The start of the range.
+     * @param end   The end (exclusive) of the range.
+     * @return true if the range is blank
+     */
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (record[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a character to the record buffer, growing it if needed.
+     * @param c The character to append.
+     */
+    private void append(char c) {
+        if (recordLength == record.length) {
+            record = Arrays.copyOf(record, recordLength * 2);
+        }
+        record[recordLength++] = c;
+    }
+
+    /**
+     * Consumes the next character of the input.
+     * @return The character, or -1 at the end of the input.
+     * @throws IOException if the underlying reader fails
+     */
+    private int read() throws IOException {
+        if (inputPosition == inputLimit && !fill()) {
+            return -1;
+        }
+        return input[inputPosition++];
+    }
+
+    /**
+     * Looks at the next character of the input without consuming it.
+     * @return The character, or -1 at the end of the input.
+     * @throws IOException if the underlying reader fails
+     */
+    private int peek() throws IOException {
+        if (inputPosition == inputLimit && !fill()) {
+            return -1;
+        }
+        return input[inputPosition];
+    }
+
+    /**
+     * Refills the input buffer from the reader.
+     * @return true if at least one character was read
+     * @throws IOException if the underlying reader fails
+     */
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = reader.read(input, 0, input.length);
+        } while (n == 0);
+        inputPosition = 0;
+        inputLimit = Math.max(n, 0);
+        return n > 0;
+    }
+
+    /**
+     * Gets the number of fields of the current record.
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Gets the line of the file the current record starts on, counting from 1.
+     * @return the line number of the current record
+     */
+    public int getLineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * Checks whether a field of the current record is missing or empty.
+     * @param index The index of the field.
+     * @return true if the field is missing or empty
+     */
+    public boolean isEmpty(int index) {
+        return index >= fieldCount || fieldStarts[index] == fieldEnds[index];
+    }
+
+    /**
+     * Gets a field of the current record as a String.
+     * @param index The index of the field.
+     * @return the value of the field, or an empty string if the record has no such field
+     */
+    public String getString(int index) {
+        if (index >= fieldCount) {
+            return "";
+        }
+        return new String(record, fieldStarts[index], fieldEnds[index] - fieldStarts[index]);
+    }
+
+    /**
+     * Parses a field of the current record as an int.
+     * @param index The index of the field.
+     * @return the value of the field
+     * @throws NumberFormatException if the field is missing or is not a valid int
+     */
+    public int getInt(int index) {
+        long value = getLong(index);
+        if (value != (int) value) {
+            throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a field of the current record as a long.
+     * @param index The index of the field.
+     * @return the value of the field
+     * @throws NumberFormatException if the field is missing or is not a valid long
+     */
+    public long getLong(int index) {
+        if (isEmpty(index)) {
+            throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+        }
+        int i = fieldStarts[index];
+        int end = fieldEnds[index];
+        boolean negative = record[i] == '-';
+        if (negative || record[i] == '+') {
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = record[i] - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("For input string: \"" + getString(index) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a field of the current record as an amount of money in cents. The digits
+     * are read directly from the record buffer, so the result is exact.
+     * @param index The index of the field.
+     * @return the value of the field in cents
+     * @throws NumberFormatException if the field is missing or is not a valid amount
+     */
+    public long getCents(int index) {
+        if (isEmpty(index)) {
+            throw new NumberFormatException("empty String");
+        }
+        return Money.parse(record, fieldStarts[index], fieldEnds[index]);
+    }
+
+    /**
+     * Parses a field of the current record as a double. Plain decimal numbers with up
+     * to 15 significant digits are parsed directly from the record buffer; anything
+     * else is handed to {@link Double#parseDouble(String)}. Both give the same result.
+     * @param index The index of the field.
+     * @return the value of the field
+     * @throws NumberFormatException if the field is missing or is not a valid double
+     */
+    public double getDouble(int index) {
+        if (isEmpty(index)) {
+            throw new NumberFormatException("empty String");
+        }
+        int i = fieldStarts[index];
+        int end = fieldEnds[index];
+        boolean negative = record[i] == '-';
+        if (negative || record[i] == '+') {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            char c = record[i];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenPoint) {
+                    decimals++;
+                }
+                if (digits > 15) {
+                    return Double.parseDouble(getString(index));
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                return Double.parseDouble(getString(index));
+            }
+        }
+        if (!seenDigit || decimals >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(getString(index));
+        }
+        // Both operands are exact, so the division is correctly rounded like parseDouble.
+        double value = mantissa / POWERS_OF_TEN[decimals];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Closes the underlying reader.
+     * @throws IOException if the underlying reader fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
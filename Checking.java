@@ -6,9 +6,6 @@
  * @version 3.0
  */
 public class Checking extends Account {
-    /**The number assigned to the most recently created checking account. Used to generate unique checking account numbers by incrementing this value.*/
-    public static int lastCheckingAccountNumber = -1;
-
     /** Default constructor that initializes a Checking account with default values. */
     public Checking() {
         super();
@@ -22,14 +19,11 @@ public class Checking extends Account {
      */    
     public Checking(int accountNumber, double startingBalance) {
         super(accountNumber, startingBalance);
-        if (accountNumber > lastCheckingAccountNumber) {
-            lastCheckingAccountNumber = accountNumber;
-        }
     }
 
     /** Displays the checking account information, including the account number and current balance. */
     @Override
     public void displayAccountInfo() {
-        System.out.println("Checking Account Number: " + this.accountNumber + ", Balance: $" + this.balance);
+        System.out.println("Checking Account Number: " + this.accountNumber + ", Balance: $" + getBalance());
     }
 }
@@ -1,4 +1,4 @@
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * The Credit class represents a credit account. It extends the Account class 
@@ -9,11 +9,8 @@ import java.util.Random;
  * @version 3.0
  */
 public class Credit extends Account {
-    /**The number assigned to the most recently created credit account. Used to generate unique credit account numbers by incrementing this value.*/
-    public static int lastCreditAccountNumber = -1;
-
-    /** The maximum credit limit available for the customer's credit account.*/
-    private double creditMax;
+    /** The maximum credit limit available for the customer's credit account, in cents.*/
+    private long creditMaxCents;
 
     /**
      * Default constructor that initializes a Credit account with a default balance of -10.0 
@@ -21,7 +18,7 @@ public class Credit extends Account {
      */
     public Credit() {
         super(-1, -10.0); 
-        this.creditMax = 1000.0;
+        this.creditMaxCents = Money.fromDouble(1000.0);
     }
 
     /**
@@ -33,10 +30,7 @@ public class Credit extends Account {
      */
     public Credit(int accountNumber, double startingBalance, double creditMax) {
         super(accountNumber, startingBalance);
-        this.creditMax = creditMax;
-        if (accountNumber > lastCreditAccountNumber) {
-            lastCreditAccountNumber = accountNumber;
-        }
+        this.creditMaxCents = Money.fromDouble(creditMax);
     }
 
     /**
@@ -44,7 +38,7 @@ public class Credit extends Account {
      * @return the maximum credit limit
      */
     public double getCreditMax() {
-        return creditMax;
+        return Money.toDouble(creditMaxCents);
     }
 
     /**
@@ -52,44 +46,86 @@ public class Credit extends Account {
      * @param creditMax the new maximum credit limit
      */
     public void setCreditMax(double creditMax) {
-        this.creditMax = creditMax;
+        this.creditMaxCents = Money.fromDouble(creditMax);
+    }
+
+    /**
+     * Gets the maximum credit limit of the account in cents.
+     * @return the maximum credit limit in cents
+     */
+    public long getCreditMaxCents() {
+        return creditMaxCents;
+    }
+
+    /**
+     * Sets the maximum credit limit for the account in cents.
+     * @param creditMaxCents the new maximum credit limit in cents
+     */
+    public void setCreditMaxCents(long creditMaxCents) {
+        this.creditMaxCents = creditMaxCents;
     }
 
     /**
-     * To check if a deposit is valid based on the credit limit
+     * Makes a payment towards the credit account if it is within the credit limit and
+     * does not take the balance above zero. The check and the update are done atomically,
+     * so concurrent payments cannot together go past the limit.
+     * @param amountCents the amount to pay, in cents
+     * @return true if the payment was made
+     */
+    public boolean depositWithinLimit(long amountCents) {
+        long current = getBalanceState();
+        while (true) {
+            long cents = centsOf(current);
+            long updated = Money.add(cents, amountCents);
+            if (!isWithinLimit(amountCents, cents) || updated > 0) {
+                recordRejectedUpdate();
+                return false;
+            }
+            if (compareAndSetBalance(current, updated)) {
+                return true;
+            }
+            current = getBalanceState();
+        }
+    }
+
+    /**
+     * To check if a deposit is valid based on the credit limit. The balance may change
+     * before the deposit is made, so a deposit should go through
+     * {@link #depositWithinLimit(long)}, which checks the same limit atomically.
      * @param amount the amount to charge to the credit account
      * @return  true if the amount is valid
      */
     public boolean isDepositWithinLimit(double amount) {
-        return amount <= (this.creditMax + this.balance);
+        return isWithinLimit(Money.fromDouble(amount), getBalanceCents());
+    }
+
+    /**
+     * Checks a deposit against the credit limit, the rule {@link #depositWithinLimit(long)}
+     * and {@link #isDepositWithinLimit(double)} share.
+     * @param amountCents  the amount to deposit, in cents
+     * @param balanceCents the balance the deposit is made to, in cents
+     * @return true if the amount is within the limit
+     */
+    private boolean isWithinLimit(long amountCents, long balanceCents) {
+        return amountCents <= creditMaxCents + balanceCents;
     }
 
     /**
      * Determines the credit limit for a customer based on their credit score.
      *
-     * The method categorizes the credit score into ranges, assigning a random credit
-     * limit within a specified range for each score bracket.
+     * The method categorizes the credit score into the brackets of the
+     * {@link CreditPolicy#DEFAULT} policy, assigning a random credit limit within the
+     * range of the score's bracket.
      * @param creditScore The credit score of the customer.
      * @return A credit limit amount based on the customer's credit score.
      */
     public static double determineCreditLimit(int creditScore) {
-        Random rand = new Random();
-        if (creditScore <= 580) {
-            return 100 + rand.nextInt(600);
-        } else if (creditScore <= 669) {
-            return 700 + rand.nextInt(4300);
-        } else if (creditScore <= 739) {
-            return 5000 + rand.nextInt(2500);
-        } else if (creditScore <= 799) {
-            return 7500 + rand.nextInt(8500); 
-        } else {
-            return 16000 + rand.nextInt(9000);
-        }
+        return CreditPolicy.DEFAULT.limitFor(creditScore, ThreadLocalRandom.current());
     }
 
     /** Displays the credit account information, including the account number and current balance. */
     @Override
     public void displayAccountInfo() {
-        System.out.println("Credit Account Number: " + accountNumber + ", Balance: $" + balance + ", Credit Max: $" + creditMax);
+        System.out.println("Credit Account Number: " + accountNumber + ", Balance: $" + getBalance() + ", Credit Max: $" + getCreditMax());
     }
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * The CreditPolicy class maps a credit score to a credit limit.
+ *
+ * A policy is a list of score brackets in increasing order. Each bracket covers the
+ * scores up to its upper bound, and a score in it gets a random whole-dollar limit
+ * between the bracket's minimum (inclusive) and maximum (exclusive). The last bracket
+ * covers every score above the previous one. {@link #DEFAULT} holds the brackets the
+ * bank has always used.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class CreditPolicy {
+    /** The brackets used for new customers: up to 580, 669, 739, 799, and above. */
+    public static final CreditPolicy DEFAULT = parse("580:100-700,669:700-5000,739:5000-7500,799:7500-16000,*:16000-25000");
+
+    /** The highest score of each bracket; the last bracket has no limit. */
+    private final int[] maxScores;
+
+    /** The lowest credit limit of each bracket, in dollars. */
+    private final int[] minLimits;
+
+    /** The credit limit each bracket stays below, in dollars. */
+    private final int[] maxLimits;
+
+    /**
+     * Creates a new CreditPolicy.
+     * @param maxScores The highest score of each bracket, in increasing order; the last one is ignored.
+     * @param minLimits The lowest credit limit of each bracket, in dollars.
+     * @param maxLimits The credit limit each bracket stays below, in dollars.
+     * @throws IllegalArgumentException if the brackets are empty, out of order, or have an empty range of limits
+     */
+    public CreditPolicy(int[] maxScores, int[] minLimits, int[] maxLimits) {
+        if (maxScores.length == 0 || maxScores.length != minLimits.length || maxScores.length != maxLimits.length) {
+            throw new IllegalArgumentException("Every bracket needs a score and a range of limits.");
+        }
+        for (int i = 0; i < maxScores.length; i++) {
+            if (i > 0 && i < maxScores.length - 1 && maxScores[i] <= maxScores[i - 1]) {
+                throw new IllegalArgumentException("Score brackets must be in increasing order: " + maxScores[i]);
+            }
+            if (minLimits[i] < 0 || maxLimits[i] <= minLimits[i]) {
+                throw new IllegalArgumentException("Invalid credit limit range: " + minLimits[i] + "-" + maxLimits[i]);
+            }
+        }
+        this.maxScores = maxScores.clone();
+        this.minLimits = minLimits.clone();
+        this.maxLimits = maxLimits.clone();
+        this.maxScores[maxScores.length - 1] = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Reads a policy written as comma-separated brackets of the form
+     * {@code maxScore:minLimit-maxLimit}, such as "580:100-700,*:700-5000", where the
+     * last bracket's score is written as "*".
+     * @param brackets The brackets.
+     * @return The policy.
+     * @throws IllegalArgumentException if the brackets cannot be read
+     */
+    public static CreditPolicy parse(String brackets) {
+        String[] parts = brackets.split(",");
+        int[] maxScores = new int[parts.length];
+        int[] minLimits = new int[parts.length];
+        int[] maxLimits = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i].trim();
+            int colon = part.indexOf(':');
+            int dash = part.indexOf('-', colon + 1);
+            if (colon < 0 || dash < 0) {
+                throw new IllegalArgumentException("Invalid credit bracket: " + part);
+            }
+            try {
+                String score = part.substring(0, colon).trim();
+                maxScores[i] = score.equals("*") ? Integer.MAX_VALUE : Integer.parseInt(score);
+                minLimits[i] = Integer.parseInt(part.substring(colon + 1, dash).trim());
+                maxLimits[i] = Integer.parseInt(part.substring(dash + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid credit bracket: " + part);
+            }
+        }
+        return new CreditPolicy(maxScores, minLimits, maxLimits);
+    }
+
+    /**
+     * Determines the credit limit for a credit score.
+     * @param creditScore The credit score.
+     * @param random      The source of randomness.
+     * @return A whole-dollar credit limit within the range of the score's bracket.
+     */
+    public double limitFor(int creditScore, RandomGenerator random) {
+        int bracket = bracketOf(creditScore);
+        return minLimits[bracket] + random.nextInt(maxLimits[bracket] - minLimits[bracket]);
+    }
+
+    /**
+     * Finds the bracket of a credit score.
+     * @param creditScore The credit score.
+     * @return The index of the bracket.
+     */
+    public int bracketOf(int creditScore) {
+        int bracket = 0;
+        while (creditScore > maxScores[bracket]) {
+            bracket++;
+        }
+        return bracket;
+    }
+
+    /**
+     * Writes the policy in the form read by {@link #parse(String)}.
+     * @return the brackets
+     */
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        for (int i = 0; i < maxScores.length; i++) {
+            parts.add((i == maxScores.length - 1 ? "*" : Integer.toString(maxScores[i])) + ":" + minLimits[i] + "-" + maxLimits[i]);
+        }
+        return String.join(",", parts);
+    }
+}
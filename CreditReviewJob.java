@@ -0,0 +1,348 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The CreditReviewJob class re-underwrites every credit account of the bank at once.
+ *
+ * Each account gets a new credit score and a new credit limit from a
+ * {@link CreditPolicy}. The accounts are scored in parallel on a fork-join pool: the
+ * accounts, sorted by number, are split in halves until the pieces are small, and every
+ * split hands one half a {@link SplittableRandom} split from its parent's. The way the
+ * accounts are split only depends on their number, so a run with the same seed gives
+ * every account the same score and limit whatever the number of threads.
+ *
+ * A limit is never set below what the account owes. Every change is first appended to
+ * an audit file with the old and the new limit and forced to disk; only then are the
+ * new limits applied, each under the lock of its account, so no limit changes without
+ * its audit line. The changed limits are then written to the {@link TransactionJournal}
+ * in one entry and the changed customers are marked dirty in the
+ * {@link WriteBehindCustomerStore}, when those are given.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class CreditReviewJob {
+    /** The file the default audit trail is written to. */
+    public static final String DEFAULT_AUDIT_PATH = "credit_review_audit.csv";
+
+    /** The header of the audit file. */
+    private static final String AUDIT_HEADER = "Date,Seed,Identification Number,Credit Account Number,Credit Score,Old Credit Max,New Credit Max";
+
+    /** The largest number of accounts scored without splitting them further. */
+    private static final int SPLIT_THRESHOLD = 1024;
+
+    /** The highest credit score, as given to new customers. */
+    private static final int MAX_CREDIT_SCORE = 900;
+
+    /** The policy that maps scores to limits. */
+    private final CreditPolicy policy;
+
+    /** The seed of the scores and limits. */
+    private final long seed;
+
+    /** The number of threads that score the accounts. */
+    private final int parallelism;
+
+    /** The journal the changed limits are written to, or null. */
+    private TransactionJournal journal;
+
+    /** The store the customers whose limit changed are marked dirty in, or null. */
+    private WriteBehindCustomerStore customerStore;
+
+    /**
+     * Creates a new CreditReviewJob.
+     * @param policy      The policy that maps scores to limits.
+     * @param seed        The seed of the scores and limits; the same seed gives the same review.
+     * @param parallelism The number of threads that score the accounts, at least 1.
+     */
+    public CreditReviewJob(CreditPolicy policy, long seed, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.policy = policy;
+        this.seed = seed;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the journal the changed limits are written to.
+     * @param journal The journal, or null to write none.
+     */
+    public void setJournal(TransactionJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets the store the customers whose limit changed are marked dirty in.
+     * @param customerStore The store, or null to mark none.
+     */
+    public void setCustomerStore(WriteBehindCustomerStore customerStore) {
+        this.customerStore = customerStore;
+    }
+
+    /**
+     * Scores every credit account and applies the new limits.
+     * @param customers The customers whose credit accounts are reviewed.
+     * @param auditPath The audit file the changes are appended to.
+     * @return The decisions, ordered by credit account number.
+     * @throws IOException if the audit file cannot be written; no limit is changed then
+     */
+    public List<Decision> run(Collection<Customer> customers, Path auditPath) throws IOException {
+        List<Decision> decisions = score(customers);
+        int changed = apply(decisions, auditPath);
+        System.out.println("---------------------------------");
+        System.out.println("Credit review done: " + decisions.size() + " accounts scored, " + changed + " limits changed (seed " + seed + ").");
+        return decisions;
+    }
+
+    /**
+     * Scores every credit account without changing it.
+     * @param customers The customers whose credit accounts are reviewed.
+     * @return The decisions, ordered by credit account number.
+     */
+    public List<Decision> score(Collection<Customer> customers) {
+        Customer[] owners = sortByCreditAccount(customers);
+        Decision[] decisions = new Decision[owners.length];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ScoreTask(owners, decisions, 0, owners.length, new SplittableRandom(seed)));
+        } finally {
+            pool.shutdown();
+        }
+        return Collections.unmodifiableList(Arrays.asList(decisions));
+    }
+
+    /**
+     * Sorts customers by the number of their credit account. The numbers are packed with
+     * the position of their owner into primitive keys and those are sorted, so the sort
+     * does not follow a pointer to the account at every comparison.
+     * @param customers The customers.
+     * @return The customers, sorted by credit account number.
+     */
+    private static Customer[] sortByCreditAccount(Collection<Customer> customers) {
+        Customer[] unsorted = customers.toArray(new Customer[0]);
+        long[] keys = new long[unsorted.length];
+        for (int i = 0; i < unsorted.length; i++) {
+            keys[i] = (long) unsorted[i].getCreditAccount().getAccountNumber() << 32 | i;
+        }
+        Arrays.sort(keys);
+        Customer[] sorted = new Customer[unsorted.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = unsorted[(int) keys[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * Appends every change to the audit file and forces it to disk, then applies the
+     * new limits, journals them and marks their customers dirty.
+     * @param decisions The decisions made by {@link #score(Collection)}.
+     * @param auditPath The audit file the changes are appended to.
+     * @return The number of limits that changed.
+     * @throws IOException if the audit file cannot be written; no limit is changed then
+     */
+    public int apply(List<Decision> decisions, Path auditPath) throws IOException {
+        AccountLocks accountLocks = AccountLocks.getInstance();
+        List<Decision> changes = new ArrayList<>();
+        for (Decision decision : decisions) {
+            Credit credit = decision.customer.getCreditAccount();
+            accountLocks.lock(credit);
+            try {
+                decision.oldCreditMaxCents = credit.getCreditMaxCents();
+                decision.newCreditMaxCents = Math.max(decision.proposedCreditMaxCents, -credit.getBalanceCents());
+            } finally {
+                accountLocks.unlock(credit);
+            }
+            if (decision.newCreditMaxCents != decision.oldCreditMaxCents) {
+                changes.add(decision);
+            }
+        }
+        writeAudit(changes, auditPath);
+
+        JournalEntry entry = new JournalEntry("Credit review with seed " + seed + " changed " + changes.size() + " credit limits");
+        for (Decision decision : changes) {
+            Credit credit = decision.customer.getCreditAccount();
+            accountLocks.lock(credit);
+            try {
+                credit.setCreditMaxCents(decision.newCreditMaxCents);
+            } finally {
+                accountLocks.unlock(credit);
+            }
+            entry.addCreditMax(decision.customer);
+        }
+        if (journal != null && !changes.isEmpty()) {
+            try {
+                journal.append(entry);
+            } catch (IOException e) {
+                System.out.println("Error logging the credit review: " + e.getMessage());
+            }
+        }
+        if (customerStore != null) {
+            for (Decision decision : changes) {
+                customerStore.markDirty(decision.customer);
+            }
+        }
+        return changes.size();
+    }
+
+    /**
+     * Appends changes to the audit file, with its header if the file is new, and waits
+     * until they are on disk.
+     * @param changes   The decisions that change a limit.
+     * @param auditPath The audit file.
+     * @throws IOException if the audit file cannot be written
+     */
+    private void writeAudit(List<Decision> changes, Path auditPath) throws IOException {
+        StringBuilder text = new StringBuilder();
+        if (!Files.exists(auditPath) || Files.size(auditPath) == 0) {
+            text.append(AUDIT_HEADER).append(System.lineSeparator());
+        }
+        String date = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+        for (Decision decision : changes) {
+            text.append(date).append(',').append(seed).append(',').append(decision.customer.getIdentificationNumber()).append(',')
+                .append(decision.customer.getCreditAccount().getAccountNumber()).append(',').append(decision.creditScore).append(',')
+                .append(Money.toDouble(decision.oldCreditMaxCents)).append(',').append(Money.toDouble(decision.newCreditMaxCents))
+                .append(System.lineSeparator());
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        try (FileChannel audit = FileChannel.open(auditPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (bytes.hasRemaining()) {
+                audit.write(bytes);
+            }
+            audit.force(false);
+        }
+    }
+
+    /**
+     * Scores a range of the accounts, splitting it in halves while it is large.
+     */
+    private class ScoreTask extends RecursiveAction {
+        /** The version of the serialized form of the task. */
+        private static final long serialVersionUID = 1L;
+
+        /** The owners of the accounts, sorted by credit account number. */
+        private final Customer[] owners;
+        /** The decisions, filled in at the index of their owner. */
+        private final Decision[] decisions;
+        /** The first index of the range. */
+        private final int from;
+        /** The index after the last one of the range. */
+        private final int to;
+        /** The source of randomness of the range. */
+        private final SplittableRandom random;
+
+        /**
+         * Creates a new ScoreTask.
+         * @param owners    The owners of the accounts, sorted by credit account number.
+         * @param decisions The decisions, filled in at the index of their owner.
+         * @param from      The first index of the range.
+         * @param to        The index after the last one of the range.
+         * @param random    The source of randomness of the range.
+         */
+        private ScoreTask(Customer[] owners, Decision[] decisions, int from, int to, SplittableRandom random) {
+            this.owners = owners;
+            this.decisions = decisions;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        /** Scores the range, or splits it and scores both halves in parallel. */
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    int creditScore = 1 + random.nextInt(MAX_CREDIT_SCORE);
+                    decisions[i] = new Decision(owners[i], creditScore, Money.fromDouble(policy.limitFor(creditScore, random)));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            ScoreTask right = new ScoreTask(owners, decisions, middle, to, random.split());
+            invokeAll(new ScoreTask(owners, decisions, from, middle, random), right);
+        }
+    }
+
+    /**
+     * The new credit score and credit limit of one account.
+     */
+    public static class Decision {
+        /** The owner of the credit account. */
+        private final Customer customer;
+        /** The new credit score. */
+        private final int creditScore;
+        /** The credit limit of the score's bracket, in cents. */
+        private final long proposedCreditMaxCents;
+        /** The credit limit before the review, in cents, once applied. */
+        private long oldCreditMaxCents;
+        /** The credit limit set by the review, in cents, once applied. */
+        private long newCreditMaxCents;
+
+        /**
+         * Creates a new Decision.
+         * @param customer               The owner of the credit account.
+         * @param creditScore            The new credit score.
+         * @param proposedCreditMaxCents The credit limit of the score's bracket, in cents.
+         */
+        private Decision(Customer customer, int creditScore, long proposedCreditMaxCents) {
+            this.customer = customer;
+            this.creditScore = creditScore;
+            this.proposedCreditMaxCents = proposedCreditMaxCents;
+        }
+
+        /**
+         * Gets the owner of the credit account.
+         * @return the customer
+         */
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        /**
+         * Gets the new credit score.
+         * @return the credit score
+         */
+        public int getCreditScore() {
+            return creditScore;
+        }
+
+        /**
+         * Gets the credit limit of the score's bracket.
+         * @return the proposed credit limit, in cents
+         */
+        public long getProposedCreditMaxCents() {
+            return proposedCreditMaxCents;
+        }
+
+        /**
+         * Gets the credit limit before the review.
+         * @return the old credit limit in cents, or 0 if the decision was not applied
+         */
+        public long getOldCreditMaxCents() {
+            return oldCreditMaxCents;
+        }
+
+        /**
+         * Gets the credit limit set by the review, which is never below what the account owes.
+         * @return the new credit limit in cents, or 0 if the decision was not applied
+         */
+        public long getNewCreditMaxCents() {
+            return newCreditMaxCents;
+        }
+    }
+}
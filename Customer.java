@@ -1,4 +1,5 @@
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The Customer class represents a customer who has a checking account, savings account, 
@@ -8,8 +9,8 @@ import java.util.HashMap;
  * @version 3.0
  */
 public class Customer extends Person {
-    /** The ID assigned to the most recently added customer. Used to generate unique customer IDs by incrementing this value.*/
-    public static int lastCustomerId = -1;
+    /** Hands out the IDs of new customers; every customer created reserves its ID, so IDs are never reused.*/
+    public static final SequenceAllocator ID_SEQUENCE = new SequenceAllocator(1);
     
     /** The checking account associated with the customer. */
     private Checking checkingAccount;
@@ -20,11 +21,11 @@ public class Customer extends Person {
     /** The credit account associated with the customer. */
     private Credit creditAccount;
 
-    /** A map of transaction details, where each entry associates a transaction ID or description
-    * with the corresponding transaction information.
-    */
-    private HashMap<String, String> transactions;
+    /** The transaction history of each account, keyed by account type. */
+    private Map<String, TransactionHistory> transactions;
 
+    /** Where the last bank statement of the customer ended, or null if the customer never had one. */
+    private volatile StatementCursor statementCursor;
 
     /**
      * Default constructor that initializes a Customer object with default Checking, 
@@ -35,7 +36,7 @@ public class Customer extends Person {
         this.checkingAccount = new Checking();
         this.savingsAccount = new Saving();
         this.creditAccount = new Credit();
-        this.transactions = new HashMap<>();
+        this.transactions = new ConcurrentHashMap<>();
     }
 
     /**
@@ -56,10 +57,8 @@ public class Customer extends Person {
         this.checkingAccount = checkingAccount;
         this.savingsAccount = savingsAccount;
         this.creditAccount = creditAccount;
-        this.transactions = new HashMap<>();
-        if (identificationNumber > lastCustomerId) {
-            lastCustomerId = identificationNumber;
-        }
+        this.transactions = new ConcurrentHashMap<>();
+        ID_SEQUENCE.reserveThrough(identificationNumber);
     }
 
     /**
@@ -116,12 +115,11 @@ public class Customer extends Person {
      * @param accountType the account
      */
     public void withdraw(double amount, String accountType) {
-        double balance;
+        long amountCents = Money.fromDouble(amount);
         switch (accountType) {
             case "1":
-                balance = getCheckingAccount().getBalance();
-                if (balance >= amount) {
-                    getCheckingAccount().setBalance(balance - amount);
+                if (getCheckingAccount().withdraw(amountCents)) {
+                    Ledger.getInstance().withdraw(getCheckingAccount(), amountCents);
                     System.out.println("Withdrew $" + amount + " from Checking.");
                 } else {
                     System.out.println("Insufficient funds in Checking.");
@@ -129,9 +127,8 @@ public class Customer extends Person {
                 break;
 
             case "2":
-                balance = getSavingsAccount().getBalance();
-                if (balance >= amount) {
-                    getSavingsAccount().setBalance(balance - amount);
+                if (getSavingsAccount().withdraw(amountCents)) {
+                    Ledger.getInstance().withdraw(getSavingsAccount(), amountCents);
                     System.out.println("Withdrew $" + amount + " from Savings.");
                 } else {
                     System.out.println("Insufficient funds in Savings.");
@@ -149,31 +146,35 @@ public class Customer extends Person {
      * Makes a deposit to an account.
      * @param amount the amount to deposit
      * @param accountType the account
+     * @return true if the deposit was made, false if the account or its credit limit did not allow it
      */
-    public void deposit(double amount, String accountType) {
+    public boolean deposit(double amount, String accountType) {
+        long amountCents = Money.fromDouble(amount);
         switch (accountType) {
             case "1":
-                getCheckingAccount().setBalance(getCheckingAccount().getBalance() + amount);
+                getCheckingAccount().deposit(amountCents);
+                Ledger.getInstance().deposit(getCheckingAccount(), amountCents);
                 System.out.println("Deposited $" + amount + " into Checking.");
-                break;
+                return true;
 
             case "2":
-                getSavingsAccount().setBalance(getSavingsAccount().getBalance() + amount);
+                getSavingsAccount().deposit(amountCents);
+                Ledger.getInstance().deposit(getSavingsAccount(), amountCents);
                 System.out.println("Deposited $" + amount + " into Savings.");
-                break;
+                return true;
 
             case "3":
-                if (amount + getCreditAccount().getBalance() <= 0) {
-                    getCreditAccount().setBalance(getCreditAccount().getBalance() + amount);
+                if (getCreditAccount().depositWithinLimit(amountCents)) {
+                    Ledger.getInstance().deposit(getCreditAccount(), amountCents);
                     System.out.println("Deposited $" + amount + " into Credit Account.");
-                } else {
-                    System.out.println("Amount exceeded the balance.");
+                    return true;
                 }
-                break;
+                System.out.println("Amount exceeded the balance.");
+                return false;
 
             default:
                 System.out.println("Invalid account selection.");
-                break;
+                return false;
         }
     }
 
@@ -188,26 +189,59 @@ public class Customer extends Person {
      * @param startingBalance        The balance of the account before the transaction.
      * @param endingBalance          The balance of the account after the transaction.
      * @param transactionDescription A description of the transaction.
-     */
+     */
     public void addTransaction(String accountType, double startingBalance, double endingBalance, String transactionDescription) {
-        String text = "Starting Balance: $" + startingBalance + ", " + "Ending Balance: $" + endingBalance + ", " + "Transaction: " + transactionDescription + ".\n";
-        String updatedTransactions;
-        if (transactions.get(accountType) == null) {
-            updatedTransactions = text;
-        }
-        else {
-            updatedTransactions = transactions.get(accountType) + text;
-        } 
-        transactions.put(accountType, updatedTransactions);
+        getHistory(accountType).addNote(Money.fromDouble(startingBalance), Money.fromDouble(endingBalance), transactionDescription);
+    }
+
+    /**
+     * Adds a transaction record for a specified account type. Only the values are stored;
+     * the description is built when the history is read.
+     * @param accountType          The type of account associated with the transaction (e.g., "Checking", "Savings", "Credit").
+     * @param kind                 The kind of transaction, one of the constants of {@link TransactionHistory}.
+     * @param startingBalanceCents The balance of the account before the transaction, in cents.
+     * @param endingBalanceCents   The balance of the account after the transaction, in cents.
+     * @param amountCents          The amount of the transaction, in cents.
+     * @param counterparty         The other customer of a payment, or null.
+     */
+    public void addTransaction(String accountType, byte kind, long startingBalanceCents, long endingBalanceCents, long amountCents, Customer counterparty) {
+        getHistory(accountType).add(kind, startingBalanceCents, endingBalanceCents, amountCents, counterparty);
+    }
+
+    /**
+     * Retrieves the structured transaction history for a specified account type,
+     * creating an empty one if the account has no transactions yet.
+     * @param accountType The type of account whose transaction history is to be retrieved (e.g., "Checking", "Savings", "Credit").
+     * @return the transaction history of the account
+     */
+    public TransactionHistory getHistory(String accountType) {
+        return transactions.computeIfAbsent(accountType, TransactionHistory::new);
     }
 
     /**
      * Retrieves the transaction history for a specified account type.
      * @param accountType The type of account whose transaction history is to be retrieved (e.g., "Checking", "Savings", "Credit").
-     * @return A string containing the transaction history for the specified account type, or an empty string if no transactions are recorded.
-     */
+     * @return A string containing the transaction history for the specified account type, or an empty string if no transactions are recorded.
+     */
     public String getTransactions(String accountType) {
-        return transactions.getOrDefault(accountType, "");
+        TransactionHistory history = transactions.get(accountType);
+        return history == null ? "" : history.toString();
+    }
+
+    /**
+     * Retrieves where the last bank statement of the customer ended.
+     * @return the statement cursor, or null if the customer never had a statement
+     */
+    public StatementCursor getStatementCursor() {
+        return statementCursor;
+    }
+
+    /**
+     * Records where the last bank statement of the customer ended.
+     * @param statementCursor the statement cursor
+     */
+    public void setStatementCursor(StatementCursor statementCursor) {
+        this.statementCursor = statementCursor;
     }
 
 }
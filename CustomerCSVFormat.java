@@ -0,0 +1,184 @@
+/**
+ * The CustomerCSVFormat class knows where each customer field is in a customer CSV
+ * file, based on its header, and parses the rows of that file.
+ * The columns may appear in any order.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class CustomerCSVFormat {
+    /** Index of the "Identification Number" column. */
+    private int idIndex = -1;
+    /** Index of the "First Name" column. */
+    private int firstNameIndex = -1;
+    /** Index of the "Last Name" column. */
+    private int lastNameIndex = -1;
+    /** Index of the "Date of Birth" column. */
+    private int dobIndex = -1;
+    /** Index of the "Address" column. */
+    private int addressIndex = -1;
+    /** Index of the "Phone Number" column. */
+    private int phoneIndex = -1;
+    /** Index of the "Checking Account Number" column. */
+    private int checkingAccountNumberIndex = -1;
+    /** Index of the "Checking Starting Balance" column. */
+    private int checkingBalanceIndex = -1;
+    /** Index of the "Savings Account Number" column. */
+    private int savingsAccountNumberIndex = -1;
+    /** Index of the "Savings Starting Balance" column. */
+    private int savingsBalanceIndex = -1;
+    /** Index of the "Credit Account Number" column. */
+    private int creditAccountNumberIndex = -1;
+    /** Index of the "Credit Max" column. */
+    private int creditMaxIndex = -1;
+    /** Index of the "Credit Starting Balance" column. */
+    private int creditBalanceIndex = -1;
+
+    /**
+     * Creates a new CustomerCSVFormat from the header record of a customer CSV file.
+     * @param header A reader positioned on the header record.
+     */
+    public CustomerCSVFormat(CSVReader header) {
+        for (int i = 0; i < header.getFieldCount(); i++) {
+            switch (header.getString(i)) {
+                case "Identification Number":
+                    idIndex = i;
+                    break;
+                case "First Name":
+                    firstNameIndex = i;
+                    break;
+                case "Last Name":
+                    lastNameIndex = i;
+                    break;
+                case "Date of Birth":
+                    dobIndex = i;
+                    break;
+                case "Address":
+                    addressIndex = i;
+                    break;
+                case "Phone Number":
+                    phoneIndex = i;
+                    break;
+                case "Checking Account Number":
+                    checkingAccountNumberIndex = i;
+                    break;
+                case "Checking Starting Balance":
+                    checkingBalanceIndex = i;
+                    break;
+                case "Savings Account Number":
+                    savingsAccountNumberIndex = i;
+                    break;
+                case "Savings Starting Balance":
+                    savingsBalanceIndex = i;
+                    break;
+                case "Credit Account Number":
+                    creditAccountNumberIndex = i;
+                    break;
+                case "Credit Max":
+                    creditMaxIndex = i;
+                    break;
+                case "Credit Starting Balance":
+                    creditBalanceIndex = i;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Parses the current record of a customer CSV file.
+     * @param reader A reader positioned on the record to parse.
+     * @return The parsed row.
+     * @throws NumberFormatException if a number field is missing or invalid
+     */
+    public Row parse(CSVReader reader) {
+        Row row = new Row();
+        row.id = reader.getInt(idIndex);
+        row.firstName = reader.getString(firstNameIndex);
+        row.lastName = reader.getString(lastNameIndex);
+        row.dob = reader.getString(dobIndex);
+        row.address = reader.getString(addressIndex);
+        row.phone = reader.getString(phoneIndex);
+        row.checkingAccountNumber = reader.getInt(checkingAccountNumberIndex);
+        row.checkingStartingBalance = reader.getCents(checkingBalanceIndex);
+        row.savingsAccountNumber = reader.getInt(savingsAccountNumberIndex);
+        row.savingsStartingBalance = reader.getCents(savingsBalanceIndex);
+        row.creditAccountNumber = reader.getInt(creditAccountNumberIndex);
+        row.creditMax = reader.getCents(creditMaxIndex);
+        row.creditStartingBalance = reader.getCents(creditBalanceIndex);
+        return row;
+    }
+
+    /**
+     * The values of one row of a customer CSV file. A row holds no accounts yet, so it
+     * can be parsed on any thread; the accounts and the customer are only created by
+     * {@link #toCustomer()}.
+     */
+    public static class Row {
+        /** The customer's identification number. */
+        private int id;
+        /** The customer's first name. */
+        private String firstName;
+        /** The customer's last name. */
+        private String lastName;
+        /** The customer's date of birth. */
+        private String dob;
+        /** The customer's address. */
+        private String address;
+        /** The customer's phone number. */
+        private String phone;
+        /** The checking account number. */
+        private int checkingAccountNumber;
+        /** The checking starting balance, in cents. */
+        private long checkingStartingBalance;
+        /** The savings account number. */
+        private int savingsAccountNumber;
+        /** The savings starting balance, in cents. */
+        private long savingsStartingBalance;
+        /** The credit account number. */
+        private int creditAccountNumber;
+        /** The credit limit, in cents. */
+        private long creditMax;
+        /** The credit starting balance, in cents. */
+        private long creditStartingBalance;
+
+        /**
+         * Gets the "First Last" key of the customer, as used by the customersByName map.
+         * @return the name key
+         */
+        public String getNameKey() {
+            return firstName + " " + lastName;
+        }
+
+        /**
+         * Gets the customer's identification number.
+         * @return the identification number
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Sets the balances and credit limit of an existing customer to the values of the row.
+         * @param customer the customer to update
+         */
+        public void applyBalancesTo(Customer customer) {
+            customer.getCheckingAccount().setBalanceCents(checkingStartingBalance);
+            customer.getSavingsAccount().setBalanceCents(savingsStartingBalance);
+            customer.getCreditAccount().setBalanceCents(creditStartingBalance);
+            customer.getCreditAccount().setCreditMaxCents(creditMax);
+        }
+
+        /**
+         * Creates the customer and its checking, savings, and credit accounts.
+         * @return the new customer
+         */
+        public Customer toCustomer() {
+            Checking checkingAccount = new Checking(checkingAccountNumber, 0);
+            Saving savingsAccount = new Saving(savingsAccountNumber, 0);
+            Credit creditAccount = new Credit(creditAccountNumber, 0, 0);
+            Customer customer = new Customer(id, firstName, lastName, dob, address, phone, checkingAccount, savingsAccount, creditAccount);
+            applyBalancesTo(customer);
+            return customer;
+        }
+    }
+}
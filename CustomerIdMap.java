@@ -0,0 +1,204 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * The CustomerIdMap class maps customer identification numbers to customers without
+ * boxing them.
+ *
+ * The ids are kept in an {@code int[]} and the customers in a parallel array, with open
+ * addressing and linear probing, so an entry costs two array slots instead of a hash
+ * node and an Integer, and neither a lookup nor an insert allocates.
+ *
+ * Lookups take no lock, so the HTTP request threads can find customers while the console
+ * adds them. Writers are synchronized. A customer is stored after its id, with a release
+ * write that a lookup reads with an acquire, so a lookup that finds a customer also sees
+ * its id. The two arrays are held by one table object, and growing the map builds a new
+ * table before publishing it, so a lookup never pairs the ids of one table with the
+ * customers of another.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class CustomerIdMap {
+    /** The smallest capacity of the table. */
+    private static final int MIN_CAPACITY = 16;
+
+    /** The table grows once this fraction of it is used (3/4). */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** Reads and writes the slots of the customers with memory ordering. */
+    private static final VarHandle CUSTOMER_SLOTS = MethodHandles.arrayElementVarHandle(Customer[].class);
+
+    /** The current table. */
+    private volatile Table table;
+
+    /** The number of customers stored. */
+    private volatile int size;
+
+    /** Creates an empty CustomerIdMap. */
+    public CustomerIdMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty CustomerIdMap that holds a number of customers without growing.
+     * @param expectedSize the number of customers expected
+     */
+    public CustomerIdMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        table = new Table(capacity);
+    }
+
+    /**
+     * Finds the customer with an id.
+     * @param id the identification number
+     * @return the customer, or null if there is none
+     */
+    public Customer get(int id) {
+        Table current = table;
+        int[] ids = current.ids;
+        Customer[] customers = current.customers;
+        int mask = ids.length - 1;
+        for (int slot = slotOf(id, mask); ; slot = (slot + 1) & mask) {
+            Customer customer = (Customer) CUSTOMER_SLOTS.getAcquire(customers, slot);
+            if (customer == null || ids[slot] == id) {
+                return customer;
+            }
+        }
+    }
+
+    /**
+     * Checks whether there is a customer with an id.
+     * @param id the identification number
+     * @return true if there is a customer with that id
+     */
+    public boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Stores a customer, replacing any customer with the same id.
+     * @param id       the identification number
+     * @param customer the customer
+     * @return the customer replaced, or null if there was none
+     * @throws NullPointerException if the customer is null
+     */
+    public synchronized Customer put(int id, Customer customer) {
+        if (customer == null) {
+            throw new NullPointerException("customer");
+        }
+        Table current = table;
+        int mask = current.ids.length - 1;
+        int slot = slotOf(id, mask);
+        while (current.customers[slot] != null) {
+            if (current.ids[slot] == id) {
+                Customer previous = current.customers[slot];
+                CUSTOMER_SLOTS.setRelease(current.customers, slot, customer);
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        current.ids[slot] = id;
+        CUSTOMER_SLOTS.setRelease(current.customers, slot, customer);
+        size = size + 1;
+        if (size > current.threshold) {
+            grow();
+        }
+        return null;
+    }
+
+    /** Doubles the capacity of the table, publishing the new table once it is filled. */
+    private void grow() {
+        Table old = table;
+        Table grown = new Table(old.ids.length * 2);
+        int mask = grown.ids.length - 1;
+        for (int i = 0; i < old.ids.length; i++) {
+            if (old.customers[i] != null) {
+                int slot = slotOf(old.ids[i], mask);
+                while (grown.customers[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                grown.ids[slot] = old.ids[i];
+                grown.customers[slot] = old.customers[i];
+            }
+        }
+        table = grown;
+    }
+
+    /**
+     * Gets the slot where the search for an id starts. Consecutive ids are spread over
+     * the table, so they do not form long runs of used slots.
+     * @param id   the identification number
+     * @param mask the capacity of the table minus one
+     * @return the slot
+     */
+    private static int slotOf(int id, int mask) {
+        int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Gets the number of customers stored.
+     * @return the number of customers
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the map is empty.
+     * @return true if no customer is stored
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Removes every customer. */
+    public synchronized void clear() {
+        table = new Table(table.ids.length);
+        size = 0;
+    }
+
+    /**
+     * Passes every customer to an action, in no particular order. Customers stored
+     * while the action runs may or may not be passed.
+     * @param action the action
+     */
+    public void forEach(Consumer<Customer> action) {
+        Customer[] customers = table.customers;
+        for (int slot = 0; slot < customers.length; slot++) {
+            Customer customer = (Customer) CUSTOMER_SLOTS.getAcquire(customers, slot);
+            if (customer != null) {
+                action.accept(customer);
+            }
+        }
+    }
+
+    /**
+     * The slots of the map: the ids and, in a parallel array, the customers.
+     */
+    private static class Table {
+        /** The ids, one per slot. */
+        private final int[] ids;
+
+        /** The customers, one per slot; a null customer marks a free slot. */
+        private final Customer[] customers;
+
+        /** The number of customers the table holds before it grows. */
+        private final int threshold;
+
+        /**
+         * Creates an empty table.
+         * @param capacity the number of slots, a power of two
+         */
+        private Table(int capacity) {
+            ids = new int[capacity];
+            customers = new Customer[capacity];
+            threshold = (int) (capacity * LOAD_FACTOR);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CustomerOnboarding class adds many new customers at once from a CSV file, such as
+ * the customers of a migration.
+ *
+ * The file has the columns "First Name", "Last Name", "Date of Birth", "Address" and
+ * "Phone Number", in any order, and optionally "Credit Score"; customers without a
+ * score get a random one, like those added by {@link RunBank#addNewCustomer}. The rows
+ * are read and checked in file order on the calling thread, which rejects invalid rows
+ * and names already taken, and are handed in batches to a bounded queue. Worker threads
+ * take the batches and create the customers and their accounts through the
+ * {@link AccountFactory}. Each worker takes its identification and account numbers from
+ * blocks of the shared {@link SequenceAllocator}s, so the workers do not compete for
+ * every number; the numbers left in a worker's last blocks are skipped.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class CustomerOnboarding {
+    /** The number of rows handed to a worker at once. */
+    private static final int BATCH_SIZE = 512;
+
+    /** The number of customers a worker takes identification and account numbers for at once. */
+    private static final int BLOCK_SIZE = 256;
+
+    /** The longest date of birth accepted, as in {@link RunBank#addNewCustomer}. */
+    private static final int MAX_DATE_OF_BIRTH_LENGTH = 11;
+
+    /** The longest address accepted. */
+    private static final int MAX_ADDRESS_LENGTH = 50;
+
+    /** The longest phone number accepted. */
+    private static final int MAX_PHONE_NUMBER_LENGTH = 14;
+
+    /** The batch queued after the last one, telling a worker to stop. */
+    private static final Batch END = new Batch();
+
+    /** The number of worker threads. */
+    private final int workerCount;
+
+    /** The factory that creates the accounts. */
+    private final AccountFactory accountFactory = new AccountFactory();
+
+    /**
+     * Creates a new CustomerOnboarding.
+     * @param workerCount The number of worker threads, at least 1.
+     */
+    public CustomerOnboarding(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workerCount);
+        }
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Creates a customer for every valid row of a CSV file and adds them to the maps of
+     * customers and to the search index.
+     * @param filePath        The path to the CSV file of new customers.
+     * @param customersByName The customers, keyed by their full name.
+     * @param customersById   The customers, keyed by their ID.
+     * @param errors          A list that receives the rows that could not be onboarded, in file order.
+     * @return The new customers, in file order.
+     * @throws IOException          if the file cannot be read or lacks a column
+     * @throws InterruptedException if the onboarding is interrupted; no customer is added then
+     */
+    public List<Customer> onboard(String filePath, Map<String, Customer> customersByName, CustomerIdMap customersById, List<RowError> errors) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<Batch> batches = new ArrayList<>();
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(workerCount * 2);
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
+            if (!reader.nextRecord()) {
+                return new ArrayList<>();
+            }
+            Columns columns = new Columns(reader);
+            for (int i = 0; i < workerCount; i++) {
+                workers.execute(() -> createCustomers(queue));
+            }
+            Set<String> names = new HashSet<>();
+            Batch batch = new Batch();
+            while (reader.nextRecord()) {
+                NewCustomer row = new NewCustomer();
+                row.lineNumber = reader.getLineNumber();
+                row.firstName = reader.getString(columns.firstName).trim();
+                row.lastName = reader.getString(columns.lastName).trim();
+                row.dateOfBirth = reader.getString(columns.dateOfBirth).trim();
+                row.address = reader.getString(columns.address).trim();
+                row.phoneNumber = reader.getString(columns.phoneNumber).trim();
+                String problem = check(row, customersByName, names);
+                if (problem == null && columns.creditScore >= 0 && !reader.isEmpty(columns.creditScore)) {
+                    try {
+                        row.creditScore = reader.getInt(columns.creditScore);
+                    } catch (NumberFormatException e) {
+                        problem = "Invalid credit score: " + reader.getString(columns.creditScore);
+                    }
+                }
+                if (problem != null) {
+                    errors.add(new RowError(row.lineNumber, problem));
+                    continue;
+                }
+                batch.rows.add(row);
+                if (batch.rows.size() == BATCH_SIZE) {
+                    batches.add(batch);
+                    queue.put(batch);
+                    batch = new Batch();
+                }
+            }
+            if (!batch.rows.isEmpty()) {
+                batches.add(batch);
+                queue.put(batch);
+            }
+            for (int i = 0; i < workerCount; i++) {
+                queue.put(END);
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        List<Customer> created = new ArrayList<>();
+        for (Batch done : batches) {
+            for (NewCustomer row : done.rows) {
+                if (row.customer == null) {
+                    errors.add(new RowError(row.lineNumber, row.error));
+                } else {
+                    created.add(row.customer);
+                    customersByName.put(row.customer.getFirstName() + " " + row.customer.getLastName(), row.customer);
+                    customersById.put(row.customer.getIdentificationNumber(), row.customer);
+                }
+            }
+        }
+        errors.sort((a, b) -> Integer.compare(a.getLineNumber(), b.getLineNumber()));
+        CustomerSearchIndex.getInstance().addAll(created);
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        System.out.println("---------------------------------");
+        System.out.println("Onboarded " + created.size() + " customers (" + errors.size() + " rows rejected) in " + elapsedMillis + " ms, "
+            + created.size() * 1000L / elapsedMillis + " customers/s.");
+        return created;
+    }
+
+    /**
+     * Checks a row the way {@link RunBank#addNewCustomer} checks what is typed, and claims
+     * its name.
+     * @param row             The row.
+     * @param customersByName The existing customers, keyed by their full name.
+     * @param names           The names of the rows accepted so far.
+     * @return The reason the row is rejected, or null if it is valid.
+     */
+    private static String check(NewCustomer row, Map<String, Customer> customersByName, Set<String> names) {
+        if (row.firstName.isEmpty() || row.lastName.isEmpty()) {
+            return "Missing first or last name.";
+        }
+        if (row.dateOfBirth.length() > MAX_DATE_OF_BIRTH_LENGTH) {
+            return "Invalid date of birth: " + row.dateOfBirth;
+        }
+        if (row.address.length() > MAX_ADDRESS_LENGTH) {
+            return "Invalid address: " + row.address;
+        }
+        if (row.phoneNumber.length() > MAX_PHONE_NUMBER_LENGTH) {
+            return "Invalid phone number: " + row.phoneNumber;
+        }
+        String name = row.firstName + " " + row.lastName;
+        if (customersByName.containsKey(name) || !names.add(name)) {
+            return "Customer with this name already exists: " + name;
+        }
+        return null;
+    }
+
+    /**
+     * Creates the customers of the queued batches until the end of the queue.
+     * @param queue The queue of batches.
+     */
+    private void createCustomers(BlockingQueue<Batch> queue) {
+        SequenceAllocator.Block ids = null;
+        SequenceAllocator.Block accountNumbers = null;
+        AccountIndex accountIndex = AccountIndex.getInstance();
+        try {
+            for (Batch batch = queue.take(); batch != END; batch = queue.take()) {
+                for (NewCustomer row : batch.rows) {
+                    if (ids == null || !ids.hasNext()) {
+                        ids = Customer.ID_SEQUENCE.allocateBlock(BLOCK_SIZE);
+                    }
+                    if (accountNumbers == null || !accountNumbers.hasNext()) {
+                        accountNumbers = Account.NUMBER_SEQUENCE.allocateBlock(BLOCK_SIZE * 3);
+                    }
+                    int creditScore = row.creditScore > 0 ? row.creditScore : 1 + ThreadLocalRandom.current().nextInt(900);
+                    double creditMax = Credit.determineCreditLimit(creditScore);
+                    try {
+                        Checking checkingAccount = (Checking) accountFactory.createAccount("Checking", accountNumbers.next(), creditMax);
+                        Saving savingsAccount = (Saving) accountFactory.createAccount("Saving", accountNumbers.next(), creditMax);
+                        Credit creditAccount = (Credit) accountFactory.createAccount("Credit", accountNumbers.next(), creditMax);
+                        Customer customer = new Customer(ids.next(), row.firstName, row.lastName, row.dateOfBirth, row.address, row.phoneNumber, checkingAccount, savingsAccount, creditAccount);
+                        accountIndex.register(customer);
+                        row.customer = customer;
+                    } catch (InvalidAccountException | RuntimeException e) {
+                        row.error = "Failed to create customer accounts: " + e.getMessage();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The positions of the columns of the file, found from its header.
+     */
+    private static class Columns {
+        /** Index of the "First Name" column. */
+        private final int firstName;
+        /** Index of the "Last Name" column. */
+        private final int lastName;
+        /** Index of the "Date of Birth" column. */
+        private final int dateOfBirth;
+        /** Index of the "Address" column. */
+        private final int address;
+        /** Index of the "Phone Number" column. */
+        private final int phoneNumber;
+        /** Index of the optional "Credit Score" column, or -1. */
+        private final int creditScore;
+
+        /**
+         * Finds the columns of the file.
+         * @param header A reader positioned on the header record.
+         * @throws IOException if a column other than "Credit Score" is missing
+         */
+        private Columns(CSVReader header) throws IOException {
+            firstName = find(header, "First Name", true);
+            lastName = find(header, "Last Name", true);
+            dateOfBirth = find(header, "Date of Birth", true);
+            address = find(header, "Address", true);
+            phoneNumber = find(header, "Phone Number", true);
+            creditScore = find(header, "Credit Score", false);
+        }
+
+        /**
+         * Finds a column of the file.
+         * @param header   A reader positioned on the header record.
+         * @param name     The name of the column.
+         * @param required Whether the file must have the column.
+         * @return The index of the column, or -1 if it is missing and optional.
+         * @throws IOException if a required column is missing
+         */
+        private static int find(CSVReader header, String name, boolean required) throws IOException {
+            for (int i = 0; i < header.getFieldCount(); i++) {
+                if (header.getString(i).trim().equals(name)) {
+                    return i;
+                }
+            }
+            if (required) {
+                throw new IOException("Missing column: " + name);
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A batch of rows handed to a worker; the worker fills in their customers.
+     */
+    private static class Batch {
+        /** The rows, in file order. */
+        private final List<NewCustomer> rows = new ArrayList<>(BATCH_SIZE);
+    }
+
+    /**
+     * One row of the file and the customer created from it.
+     */
+    private static class NewCustomer {
+        /** The line of the file the row starts on. */
+        private int lineNumber;
+        /** The customer's first name. */
+        private String firstName;
+        /** The customer's last name. */
+        private String lastName;
+        /** The customer's date of birth. */
+        private String dateOfBirth;
+        /** The customer's address. */
+        private String address;
+        /** The customer's phone number. */
+        private String phoneNumber;
+        /** The customer's credit score, or 0 to draw one. */
+        private int creditScore;
+        /** The customer created by a worker, or null. */
+        private Customer customer;
+        /** The reason the worker could not create the customer, or null. */
+        private String error;
+    }
+}
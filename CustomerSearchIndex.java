@@ -0,0 +1,469 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The CustomerSearchIndex class finds customers from part of their name, or from a
+ * name typed with a few mistakes, so tellers and managers do not need the exact
+ * "First Last" key of the customers map.
+ *
+ * Every customer is stored under two keys, "first last" and "last first", in lower
+ * case, in a ternary search tree. A prefix of either key finds the customer, and a
+ * bounded edit-distance search walks the same tree, computing one row of the
+ * Levenshtein table per character and skipping every branch that is already too far
+ * from the query. The nodes are kept in parallel primitive arrays rather than objects,
+ * so millions of names fit in a few compact arrays.
+ *
+ * Customers are added one at a time, as they are loaded or created. It uses a
+ * singleton design pattern, like the {@link PasswordManager}, so every menu searches
+ * the same index.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class CustomerSearchIndex {
+    /** The marker of a missing child or an empty list of customers. */
+    private static final int NONE = -1;
+
+    /** A distance larger than any bound, for the cells of the edit-distance table that are not computed. */
+    private static final int FAR = Integer.MAX_VALUE / 2;
+
+    /** The number of nodes the arrays can hold before they first grow. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Singleton instance.*/
+    private static CustomerSearchIndex instance;
+
+    /** The character of each node. */
+    private char[] chars = new char[INITIAL_CAPACITY];
+
+    /** The child of each node for smaller characters. */
+    private int[] lo = new int[INITIAL_CAPACITY];
+
+    /** The child of each node for the next character of the key. */
+    private int[] eq = new int[INITIAL_CAPACITY];
+
+    /** The child of each node for greater characters. */
+    private int[] hi = new int[INITIAL_CAPACITY];
+
+    /** The first customer whose key ends at each node, as an index into the postings. */
+    private int[] heads = new int[INITIAL_CAPACITY];
+
+    /** The number of nodes. */
+    private int nodeCount;
+
+    /** The root node. */
+    private int root = NONE;
+
+    /** The customer of each posting. */
+    private Customer[] postings = new Customer[INITIAL_CAPACITY];
+
+    /** The next posting with the same key, or {@link #NONE}. */
+    private int[] nextPostings = new int[INITIAL_CAPACITY];
+
+    /** The number of postings. */
+    private int postingCount;
+
+    /** The number of customers added. */
+    private int size;
+
+    /** Creates an empty CustomerSearchIndex. */
+    public CustomerSearchIndex() {
+    }
+
+    /**
+     * Retrieves the singleton instance of the CustomerSearchIndex.
+     * @return The singleton instance of CustomerSearchIndex.
+     */
+    public static synchronized CustomerSearchIndex getInstance() {
+        if (instance == null) {
+            instance = new CustomerSearchIndex();
+        }
+        return instance;
+    }
+
+    /**
+     * Adds a customer under "first last" and "last first".
+     * @param customer The customer.
+     */
+    public synchronized void add(Customer customer) {
+        String first = normalize(customer.getFirstName());
+        String last = normalize(customer.getLastName());
+        boolean added = insert(join(first, last), customer);
+        if (insert(join(last, first), customer) || added) {
+            size++;
+        }
+    }
+
+    /**
+     * Adds several customers.
+     * @param customers The customers.
+     */
+    public synchronized void addAll(Iterable<Customer> customers) {
+        for (Customer customer : customers) {
+            add(customer);
+        }
+    }
+
+    /**
+     * Gets the number of customers added.
+     * @return the number of customers
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Finds the customers that best match a query: first the ones with a name that starts
+     * with it, then the ones with a name within a small edit distance of it (one edit for
+     * queries of up to four characters, two for longer ones).
+     * @param query The query, such as "sofia" or "Hernandes Sofia".
+     * @param limit The largest number of customers to return.
+     * @return The matching customers, best first.
+     */
+    public synchronized List<Customer> search(String query, int limit) {
+        List<Customer> results = prefixSearch(query, limit);
+        if (results.size() < limit) {
+            int maxDistance = normalize(query).length() <= 4 ? 1 : 2;
+            for (Customer customer : fuzzySearch(query, maxDistance, limit)) {
+                if (results.size() < limit && !containsSame(results, customer)) {
+                    results.add(customer);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Finds the customers whose "first last" or "last first" name starts with a prefix,
+     * in alphabetical order.
+     * @param prefix The prefix, in any case.
+     * @param limit  The largest number of customers to return.
+     * @return The matching customers.
+     */
+    public synchronized List<Customer> prefixSearch(String prefix, int limit) {
+        List<Customer> results = new ArrayList<>();
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return results;
+        }
+        int node = root;
+        int i = 0;
+        while (node != NONE) {
+            char c = key.charAt(i);
+            if (c < chars[node]) {
+                node = lo[node];
+            } else if (c > chars[node]) {
+                node = hi[node];
+            } else if (++i < key.length()) {
+                node = eq[node];
+            } else {
+                collect(node, results, limit);
+                collectSubtree(eq[node], results, limit);
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Finds the customers whose "first last" or "last first" name is within a number of
+     * single-character insertions, deletions or substitutions of a name, closest first.
+     * @param name        The name, in any case.
+     * @param maxDistance The largest edit distance accepted.
+     * @param limit       The largest number of customers to return.
+     * @return The matching customers.
+     */
+    public synchronized List<Customer> fuzzySearch(String name, int maxDistance, int limit) {
+        String key = normalize(name);
+        FuzzySearch search = new FuzzySearch(key, maxDistance, limit);
+        if (root != NONE && limit > 0) {
+            search.visit(root, 0);
+        }
+        return search.results();
+    }
+
+    /**
+     * Inserts a key.
+     * @param key      The key, normalized.
+     * @param customer The customer stored under the key.
+     * @return true if the customer was not stored under the key yet.
+     */
+    private boolean insert(String key, Customer customer) {
+        if (key.isEmpty()) {
+            return false;
+        }
+        if (root == NONE) {
+            root = newNode(key.charAt(0));
+        }
+        int node = root;
+        int i = 0;
+        while (true) {
+            char c = key.charAt(i);
+            int child;
+            if (c < chars[node]) {
+                child = lo[node];
+                if (child == NONE) {
+                    child = newNode(c);
+                    lo[node] = child;
+                }
+            } else if (c > chars[node]) {
+                child = hi[node];
+                if (child == NONE) {
+                    child = newNode(c);
+                    hi[node] = child;
+                }
+            } else if (++i < key.length()) {
+                child = eq[node];
+                if (child == NONE) {
+                    child = newNode(key.charAt(i));
+                    eq[node] = child;
+                }
+            } else {
+                return addPosting(node, customer);
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Creates a node without children or customers.
+     * @param c The character of the node.
+     * @return The node.
+     */
+    private int newNode(char c) {
+        if (nodeCount == chars.length) {
+            int capacity = chars.length * 2;
+            chars = Arrays.copyOf(chars, capacity);
+            lo = Arrays.copyOf(lo, capacity);
+            eq = Arrays.copyOf(eq, capacity);
+            hi = Arrays.copyOf(hi, capacity);
+            heads = Arrays.copyOf(heads, capacity);
+        }
+        int node = nodeCount++;
+        chars[node] = c;
+        lo[node] = NONE;
+        eq[node] = NONE;
+        hi[node] = NONE;
+        heads[node] = NONE;
+        return node;
+    }
+
+    /**
+     * Stores a customer at the node where its key ends.
+     * @param node     The node.
+     * @param customer The customer.
+     * @return true if the customer was not stored at the node yet.
+     */
+    private boolean addPosting(int node, Customer customer) {
+        for (int p = heads[node]; p != NONE; p = nextPostings[p]) {
+            if (postings[p] == customer) {
+                return false;
+            }
+        }
+        if (postingCount == postings.length) {
+            postings = Arrays.copyOf(postings, postingCount * 2);
+            nextPostings = Arrays.copyOf(nextPostings, postingCount * 2);
+        }
+        postings[postingCount] = customer;
+        nextPostings[postingCount] = heads[node];
+        heads[node] = postingCount++;
+        return true;
+    }
+
+    /**
+     * Adds the customers stored at a node to the results.
+     * @param node    The node.
+     * @param results The results.
+     * @param limit   The largest number of results.
+     */
+    private void collect(int node, List<Customer> results, int limit) {
+        for (int p = heads[node]; p != NONE && results.size() < limit; p = nextPostings[p]) {
+            if (!containsSame(results, postings[p])) {
+                results.add(postings[p]);
+            }
+        }
+    }
+
+    /**
+     * Adds the customers stored in a subtree to the results, in key order.
+     * @param node    The root of the subtree, or {@link #NONE}.
+     * @param results The results.
+     * @param limit   The largest number of results.
+     */
+    private void collectSubtree(int node, List<Customer> results, int limit) {
+        if (node == NONE || results.size() >= limit) {
+            return;
+        }
+        collectSubtree(lo[node], results, limit);
+        collect(node, results, limit);
+        collectSubtree(eq[node], results, limit);
+        collectSubtree(hi[node], results, limit);
+    }
+
+    /**
+     * Checks whether a list holds a customer, by identity. The lists are short.
+     * @param customers The list.
+     * @param customer  The customer.
+     * @return true if the customer is in the list.
+     */
+    private static boolean containsSame(List<Customer> customers, Customer customer) {
+        for (Customer c : customers) {
+            if (c == customer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lowercases a name and collapses its whitespace.
+     * @param name The name.
+     * @return The normalized name.
+     */
+    private static String normalize(String name) {
+        return name == null ? "" : name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Joins two normalized names with a space, leaving out an empty one.
+     * @param a The first name.
+     * @param b The second name.
+     * @return The key.
+     */
+    private static String join(String a, String b) {
+        return a.isEmpty() ? b : b.isEmpty() ? a : a + " " + b;
+    }
+
+    /**
+     * A bounded edit-distance search over the tree. The row of the Levenshtein table for
+     * each depth is kept in a reusable buffer.
+     */
+    private class FuzzySearch {
+        /** The normalized query. */
+        private final char[] query;
+        /** The largest number of results. */
+        private final int limit;
+        /** The current bound: branches further than this from the query are skipped. */
+        private int bound;
+        /** The rows of the Levenshtein table, one per depth. */
+        private int[][] rows;
+        /** The customers found at each distance, up to the limit for each. */
+        private final List<List<Customer>> byDistance = new ArrayList<>();
+
+        /**
+         * Creates a search.
+         * @param query       The normalized query.
+         * @param maxDistance The largest edit distance accepted.
+         * @param limit       The largest number of results.
+         */
+        private FuzzySearch(String query, int maxDistance, int limit) {
+            this.query = query.toCharArray();
+            this.limit = limit;
+            this.bound = maxDistance;
+            this.rows = new int[query.length() + maxDistance + 2][query.length() + 1];
+            for (int j = 0; j <= query.length(); j++) {
+                rows[0][j] = j;
+            }
+            for (int d = 0; d <= maxDistance; d++) {
+                byDistance.add(new ArrayList<>());
+            }
+        }
+
+        /**
+         * Visits a node and its subtrees.
+         * @param node  The node, or {@link #NONE}.
+         * @param depth The number of characters matched above the node.
+         */
+        private void visit(int node, int depth) {
+            if (node == NONE) {
+                return;
+            }
+            visit(lo[node], depth);
+            if (depth + 1 >= rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            if (rows[depth + 1] == null) {
+                rows[depth + 1] = new int[query.length + 1];
+            }
+            int[] previous = rows[depth];
+            int[] row = rows[depth + 1];
+            char c = chars[node];
+            int i = depth + 1;
+            int m = query.length;
+            // Only the cells within the bound of the diagonal can lead to a match; the
+            // ones just outside that band are set to "too far" for the next row.
+            int from = Math.max(1, i - bound);
+            int to = Math.min(m, i + bound);
+            row[0] = i;
+            if (from > 1) {
+                row[from - 1] = FAR;
+            }
+            int best = from == 1 ? i : FAR;
+            for (int j = from; j <= to; j++) {
+                int cost = query[j - 1] == c ? 0 : 1;
+                row[j] = Math.min(Math.min(row[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                best = Math.min(best, row[j]);
+            }
+            if (to < m) {
+                row[to + 1] = FAR;
+            }
+            int distance = to == m ? row[m] : FAR;
+            if (distance <= bound) {
+                for (int p = heads[node]; p != NONE; p = nextPostings[p]) {
+                    found(postings[p], distance);
+                }
+            }
+            if (best <= bound) {
+                visit(eq[node], depth + 1);
+            }
+            visit(hi[node], depth);
+        }
+
+        /**
+         * Records a customer found at a distance, and lowers the bound once enough
+         * customers were found at smaller distances.
+         * @param customer The customer.
+         * @param distance The edit distance of its key.
+         */
+        private void found(Customer customer, int distance) {
+            for (int d = 0; d < byDistance.size(); d++) {
+                if (containsSame(byDistance.get(d), customer)) {
+                    if (d <= distance) {
+                        return;
+                    }
+                    byDistance.get(d).remove(customer);
+                }
+            }
+            List<Customer> customers = byDistance.get(distance);
+            if (customers.size() < limit) {
+                customers.add(customer);
+            }
+            int count = 0;
+            for (int d = 0; d < bound; d++) {
+                count += byDistance.get(d).size();
+                if (count >= limit) {
+                    bound = d;
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Gets the results, closest first.
+         * @return The customers found.
+         */
+        private List<Customer> results() {
+            List<Customer> results = new ArrayList<>();
+            for (int d = 0; d < byDistance.size() && results.size() < limit; d++) {
+                for (Customer customer : byDistance.get(d)) {
+                    if (results.size() < limit) {
+                        results.add(customer);
+                    }
+                }
+            }
+            return results;
+        }
+    }
+}
@@ -1,9 +1,12 @@
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.List;
 
 /**
  * The FilesHandling class handles all file related functions.
@@ -14,143 +17,196 @@ import java.util.HashMap;
 public class FilesHandling {
     /**
      * Loads customer data from a CSV file and populates the provided maps with customer details.
-     * Also generates passwords for each customer using the PasswordManager.
+     * Also registers their accounts in the {@link AccountIndex}. Passwords are not created
+     * here; the {@link PasswordManager} asks each customer for one at the first login.
      *
      * @param filePath         The path to the CSV file containing customer data.
      * @param customersByName  A map to store customers, keyed by their full name.
      * @param customersById    A map to store customers, keyed by their ID.
      */
-    public static void loadCustomersFromCSV(String filePath, HashMap<String, Customer> customersByName, HashMap<Integer, Customer> customersById) {
-        PasswordManager passwordManager = PasswordManager.getInstance();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String headerLine = br.readLine();
-            String[] headers = headerLine.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
-            int idIndex = -1, 
-                firstNameIndex = -1, 
-                lastNameIndex = -1, 
-                dobIndex = -1, 
-                addressIndex = -1,
-                phoneIndex = -1, 
-                checkingAccountNumberIndex = -1, 
-                checkingBalanceIndex = -1,
-                savingsAccountNumberIndex = -1, 
-                savingsBalanceIndex = -1,
-                creditAccountNumberIndex = -1, 
-                creditMaxIndex = -1, 
-                creditBalanceIndex = -1;
-
-            for (int i = 0; i < headers.length; i++) {
-                switch (headers[i].trim()) {
-                    case "Identification Number":
-                        idIndex = i;
-                        break;
-                    case "First Name":
-                        firstNameIndex = i;
-                        break;
-                    case "Last Name":
-                        lastNameIndex = i;
-                        break;
-                    case "Date of Birth":
-                        dobIndex = i;
-                        break;
-                    case "Address":
-                        addressIndex = i;
-                        break;
-                    case "Phone Number":
-                        phoneIndex = i;
-                        break;
-                    case "Checking Account Number":
-                        checkingAccountNumberIndex = i;
-                        break;
-                    case "Checking Starting Balance":
-                        checkingBalanceIndex = i;
-                        break;
-                    case "Savings Account Number":
-                        savingsAccountNumberIndex = i;
-                        break;
-                    case "Savings Starting Balance":
-                        savingsBalanceIndex = i;
-                        break;
-                    case "Credit Account Number":
-                        creditAccountNumberIndex = i;
-                        break;
-                    case "Credit Max":
-                        creditMaxIndex = i;
-                        break;
-                    case "Credit Starting Balance":
-                        creditBalanceIndex = i;
-                        break;
+    public static void loadCustomersFromCSV(String filePath, Map<String, Customer> customersByName, CustomerIdMap customersById) {
+        long start = System.nanoTime();
+        CSVFileEvent event = new CSVFileEvent();
+        event.begin();
+        int outcome = OperationMetrics.SUCCESS;
+        int rowCount = 0;
+        int rejectedCount = 0;
+        AccountIndex accountIndex = AccountIndex.getInstance();
+        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
+            if (!reader.nextRecord()) {
+                finish(event, OperationMetrics.LOAD_CUSTOMERS, outcome, start, "load", filePath, rowCount, rejectedCount);
+                return;
+            }
+            CustomerCSVFormat format = new CustomerCSVFormat(reader);
+            while (reader.nextRecord()) {
+                try {
+                    CustomerCSVFormat.Row row = format.parse(reader);
+                    Customer customer = row.toCustomer();
+                    customersByName.put(row.getNameKey(), customer);
+                    customersById.put(row.getId(), customer);
+                    accountIndex.register(customer);
+                    rowCount++;
+                } catch (RuntimeException e) {
+                    System.out.println("Error reading the CSV file: " + new RowError(reader.getLineNumber(), e.getMessage()));
+                    rejectedCount++;
                 }
             }
+        } catch (IOException e) {
+            System.out.println("Error reading the CSV file: " + e.getMessage());
+            outcome = OperationMetrics.FAILED;
+        }
+        finish(event, OperationMetrics.LOAD_CUSTOMERS, outcome, start, "load", filePath, rowCount, rejectedCount);
+    }
 
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] values = line.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
-
-                int id = Integer.parseInt(values[idIndex].trim());
-                String firstName = values[firstNameIndex].trim();
-                String lastName = values[lastNameIndex].trim();
-                String dob = values[dobIndex].trim();
-                String address = values[addressIndex].trim();
-                String phone = values[phoneIndex].trim();
-                int checkingAccountNumber = Integer.parseInt(values[checkingAccountNumberIndex].trim());
-                double checkingStartingBalance = Double.parseDouble(values[checkingBalanceIndex].trim());
-                int savingsAccountNumber = Integer.parseInt(values[savingsAccountNumberIndex].trim());
-                double savingsStartingBalance = Double.parseDouble(values[savingsBalanceIndex].trim());
-                int creditAccountNumber = Integer.parseInt(values[creditAccountNumberIndex].trim());
-                double creditMax = Double.parseDouble(values[creditMaxIndex].trim());
-                double creditStartingBalance = Double.parseDouble(values[creditBalanceIndex].trim());
-
-                Checking checkingAccount = new Checking(checkingAccountNumber, checkingStartingBalance);
-                Saving savingsAccount = new Saving(savingsAccountNumber, savingsStartingBalance);
-                Credit creditAccount = new Credit(creditAccountNumber, creditStartingBalance, creditMax);
-
-                Customer customer = new Customer(id, firstName, lastName, dob, address, phone, checkingAccount, savingsAccount, creditAccount);
-                customersByName.put(firstName + " " + lastName, customer);
-                customersById.put(id, customer);
-                passwordManager.generatePassword(firstName + " " + lastName);
+    /**
+     * Loads customer data from a CSV file on several threads and populates the provided
+     * maps with customer details. The file is memory-mapped and split into chunks that
+     * are parsed in parallel. Rows that cannot be parsed are skipped and reported.
+     * Also registers their accounts in the {@link AccountIndex}. Passwords are not created
+     * here; the {@link PasswordManager} asks each customer for one at the first login.
+     *
+     * @param filePath         The path to the CSV file containing customer data.
+     * @param customersByName  A map to store customers, keyed by their full name.
+     * @param customersById    A map to store customers, keyed by their ID.
+     * @param parallelism      The number of threads used to parse the file.
+     * @return The rows that could not be loaded, in file order.
+     */
+    public static List<RowError> loadCustomersFromCSV(String filePath, Map<String, Customer> customersByName, CustomerIdMap customersById, int parallelism) {
+        long start = System.nanoTime();
+        CSVFileEvent event = new CSVFileEvent();
+        event.begin();
+        int outcome = OperationMetrics.SUCCESS;
+        int rowCount = 0;
+        List<RowError> errors = new ArrayList<>();
+        try {
+            List<CustomerCSVFormat.Row> rows = new BulkCustomerLoader(parallelism).load(Paths.get(filePath), errors);
+            rowCount = rows.size();
+            AccountIndex accountIndex = AccountIndex.getInstance();
+            for (CustomerCSVFormat.Row row : rows) {
+                Customer customer = row.toCustomer();
+                customersByName.put(row.getNameKey(), customer);
+                customersById.put(row.getId(), customer);
+                accountIndex.register(customer);
             }
-        } catch (Exception e) {
+        } catch (IOException e) {
             System.out.println("Error reading the CSV file: " + e.getMessage());
+            outcome = OperationMetrics.FAILED;
+        }
+        for (RowError error : errors) {
+            System.out.println("Error reading the CSV file: " + error);
         }
+        finish(event, OperationMetrics.LOAD_CUSTOMERS, outcome, start, "load", filePath, rowCount, errors.size());
+        return errors;
     }
 
+    /** The header of the CSV file written by {@link #updateCSV(Map)}. */
+    public static final String CUSTOMER_CSV_HEADER = "Identification Number,First Name,Last Name,Date of Birth,Address,Phone Number,Checking Account Number,Checking Starting Balance,Savings Account Number,Savings Starting Balance,Credit Account Number,Credit Max,Credit Starting Balance";
+
     /**
      * Updates the customer information in the CSV file after transactions are made.
-     * @param customers the HashMap of customers whose information needs to be updated
+     * @param customers the map of customers whose information needs to be updated
      */
-    public static void updateCSV(HashMap<String, Customer> customers) {
+    public static void updateCSV(Map<String, Customer> customers) {
+        long start = System.nanoTime();
+        CSVFileEvent event = new CSVFileEvent();
+        event.begin();
+        int outcome = OperationMetrics.SUCCESS;
         String csvFilePath = "Updated_Bank_Users.csv";
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(csvFilePath))) {
-            writer.write("Identification Number,First Name,Last Name,Date of Birth,Address,Phone Number,Checking Account Number,Checking Starting Balance,Savings Account Number,Savings Starting Balance,Credit Account Number,Credit Max,Credit Starting Balance");
+            writer.write(CUSTOMER_CSV_HEADER);
             writer.newLine();
             for (Customer customer : customers.values()) {
-                writer.write(customer.getIdentificationNumber() + "," +
-                             customer.getFirstName() + "," +
-                             customer.getLastName() + "," +
-                             customer.getDateOfBirth() + "," +
-                             customer.getAddress() + "," +
-                             customer.getPhoneNumber() + "," +
-                             customer.getCheckingAccount().getAccountNumber() + "," +
-                             customer.getCheckingAccount().getBalance() + "," +
-                             customer.getSavingsAccount().getAccountNumber() + "," +
-                             customer.getSavingsAccount().getBalance() + "," +
-                             customer.getCreditAccount().getAccountNumber() + "," +
-                             customer.getCreditAccount().getCreditMax() + "," +
-                             customer.getCreditAccount().getBalance());
+                writer.write(toCSVLine(customer));
                 writer.newLine();
             }    
         } catch (IOException e) {
-            System.out.println();
+            System.out.println("Error writing the CSV file: " + e.getMessage());
+            outcome = OperationMetrics.FAILED;
+        }
+        finish(event, OperationMetrics.UPDATE_CSV, outcome, start, "export", csvFilePath, outcome == OperationMetrics.SUCCESS ? customers.size() : 0, 0);
+    }
+
+    /**
+     * Records the latency and outcome of loading or exporting the customer CSV file in
+     * the {@link OperationMetrics}, and commits its {@link CSVFileEvent}.
+     * @param event         The event, begun when the phase started.
+     * @param operation     The operation, {@link OperationMetrics#LOAD_CUSTOMERS} or {@link OperationMetrics#UPDATE_CSV}.
+     * @param outcome       The outcome, {@link OperationMetrics#SUCCESS} or {@link OperationMetrics#FAILED}.
+     * @param startNanos    The value of {@link System#nanoTime()} when the phase started.
+     * @param phase         The phase: "load" or "export".
+     * @param filePath      The path of the file.
+     * @param rowCount      The number of customer rows read or written.
+     * @param rejectedCount The number of rows that could not be read.
+     */
+    private static void finish(CSVFileEvent event, int operation, int outcome, long startNanos, String phase, String filePath, int rowCount, int rejectedCount) {
+        OperationMetrics.getInstance().record(operation, outcome, startNanos);
+        commitCSVFileEvent(event, phase, filePath, rowCount, rejectedCount, outcome == OperationMetrics.SUCCESS);
+    }
+
+    /**
+     * Commits the {@link CSVFileEvent} of a phase if Flight Recorder is recording it.
+     * @param event         The event, begun when the phase started.
+     * @param phase         The phase: "load", "export", "append" or "compact".
+     * @param filePath      The path of the file.
+     * @param rowCount      The number of customer rows read or written.
+     * @param rejectedCount The number of rows that could not be read.
+     * @param success       Whether the phase succeeded.
+     */
+    public static void commitCSVFileEvent(CSVFileEvent event, String phase, String filePath, int rowCount, int rejectedCount, boolean success) {
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.path = filePath;
+            event.rowCount = rowCount;
+            event.rejectedCount = rejectedCount;
+            event.outcome = success ? "success" : "failed";
+            event.commit();
         }
     } 
 
+    /**
+     * Formats a customer as a line of the CSV file written by {@link #updateCSV(Map)}.
+     * @param customer the customer to format
+     * @return the line, without a line break
+     */
+    public static String toCSVLine(Customer customer) {
+        return customer.getIdentificationNumber() + "," +
+               toCSVField(customer.getFirstName()) + "," +
+               toCSVField(customer.getLastName()) + "," +
+               toCSVField(customer.getDateOfBirth()) + "," +
+               toCSVField(customer.getAddress()) + "," +
+               toCSVField(customer.getPhoneNumber()) + "," +
+               customer.getCheckingAccount().getAccountNumber() + "," +
+               Money.format(customer.getCheckingAccount().getBalanceCents()) + "," +
+               customer.getSavingsAccount().getAccountNumber() + "," +
+               Money.format(customer.getSavingsAccount().getBalanceCents()) + "," +
+               customer.getCreditAccount().getAccountNumber() + "," +
+               Money.format(customer.getCreditAccount().getCreditMaxCents()) + "," +
+               Money.format(customer.getCreditAccount().getBalanceCents());
+    }
+
+    /**
+     * Formats a value as a CSV field, wrapping it in double quotes if it contains
+     * a comma, a double quote or a line break.
+     * @param value the value to format
+     * @return the value as it should be written to a CSV file
+     */
+    public static String toCSVField(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return "\"" + value.replace("\"", "\"\"") + "\"";
+            }
+        }
+        return value;
+    }
+
     /**
      * Generates a text file containing a summary of the customer's transactions, including
      * account summaries for checking, savings, and credit accounts.
      * The file is named using the customer's first and last name, followed by "_Transactions.txt".
-     * Each account type section displays the transaction history or a message indicating no transactions
-     * for that account. The file also includes the statement date.
+     * Each account type section displays the balance carried forward from the last bank statement and
+     * the transactions made since then, or a message indicating no transactions for that account. The
+     * file also includes the statement date. It does not move the statement cursor of the customer.
      * @param customer       The customer whose transaction summary is being generated.
      * @param startingBalance An array containing the starting balances for each account type.
      * @param endingBalance   An array containing the ending balances for each account type.
@@ -165,16 +221,19 @@ public class FilesHandling {
             writer.newLine();
             writer.newLine();
 
-            String[] accountTypes = {"Checking", "Savings", "Credit"};
+            String[] accountTypes = StatementCursor.ACCOUNT_TYPES;
             for (int i = 0; i < accountTypes.length; i++) {
                 writer.write(accountTypes[i] + " Account Summary:");
                 writer.newLine();
+                writer.write("Opening Balance: $" + Money.toDouble(StatementCursor.openingBalanceCents(customer, i)));
+                writer.newLine();
                 
-                String transactions = customer.getTransactions(accountTypes[i]);
-                if (transactions.isEmpty()) {
+                TransactionHistory history = customer.getHistory(accountTypes[i]);
+                int from = StatementCursor.firstNewTransaction(customer, i);
+                if (history.size() == from) {
                     writer.write("No transactions for this account.");
                 } else {
-                    writer.write(transactions);
+                    history.appendTo(writer, from, history.size());
                 }
                 writer.newLine();
                 writer.newLine();
@@ -188,14 +247,22 @@ public class FilesHandling {
 
 
     /**
-     * Logs the details of a transaction to a file.
+     * Logs the details of a transaction to the transaction journal.
      * @param transactionDetails the details of the transaction to be logged
      */
     public static void logTransaction(String transactionDetails) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("transaction_log.txt", true))) {
-            writer.write(transactionDetails);
-            writer.newLine();
-        } catch (IOException e) {
+        logTransaction(new JournalEntry(transactionDetails));
+    }
+
+    /**
+     * Logs a transaction, with the balances of the accounts it changed, to the
+     * transaction journal. Returns once the entry is on disk.
+     * @param entry the transaction to be logged
+     */
+    public static void logTransaction(JournalEntry entry) {
+        try {
+            TransactionJournal.getInstance().append(entry);
+        } catch (IOException | UncheckedIOException e) {
             System.out.println("Error logging transaction: " + e.getMessage());
         }
     }
@@ -0,0 +1,156 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JournalEntry class describes one transaction written to the {@link TransactionJournal}:
+ * a human readable description and the balance every affected account ended with.
+ * A credit limit that changed is recorded the same way, under the
+ * {@link #CREDIT_MAX} account type.
+ * Because the balances are absolute, replaying an entry more than once is harmless.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class JournalEntry {
+    /** The account type under which a new credit limit is recorded. */
+    public static final String CREDIT_MAX = "Credit Max";
+
+    /** The description of the transaction, as it used to appear in the transaction log. */
+    private final String details;
+
+    /** The "First Last" keys of the customers whose accounts changed. */
+    private final List<String> customerKeys = new ArrayList<>();
+
+    /** The account types that changed ("Checking", "Savings", or "Credit"). */
+    private final List<String> accountTypes = new ArrayList<>();
+
+    /** The balances the accounts ended with, in cents. */
+    private long[] balances = new long[2];
+
+    /**
+     * Creates a new JournalEntry with no balances.
+     * @param details the description of the transaction
+     */
+    public JournalEntry(String details) {
+        this.details = details;
+    }
+
+    /**
+     * Records the current balance of one of the customer's accounts.
+     * @param customer    the customer whose account changed
+     * @param accountType the account that changed ("Checking", "Savings", or "Credit")
+     * @return this entry
+     */
+    public JournalEntry addBalance(Customer customer, String accountType) {
+        return addBalance(customer.getFirstName() + " " + customer.getLastName(), accountType, accountOf(customer, accountType).getBalanceCents());
+    }
+
+    /**
+     * Records the current credit limit of the customer's credit account.
+     * @param customer the customer whose credit limit changed
+     * @return this entry
+     */
+    public JournalEntry addCreditMax(Customer customer) {
+        return addBalance(customer.getFirstName() + " " + customer.getLastName(), CREDIT_MAX, customer.getCreditAccount().getCreditMaxCents());
+    }
+
+    /**
+     * Records the balance an account ended with.
+     * @param customerKey  the "First Last" key of the customer
+     * @param accountType  the account that changed ("Checking", "Savings", or "Credit")
+     * @param balanceCents the balance the account ended with, in cents
+     * @return this entry
+     */
+    public JournalEntry addBalance(String customerKey, String accountType, long balanceCents) {
+        if (customerKeys.size() == balances.length) {
+            balances = Arrays.copyOf(balances, balances.length * 2);
+        }
+        balances[customerKeys.size()] = balanceCents;
+        customerKeys.add(customerKey);
+        accountTypes.add(accountType);
+        return this;
+    }
+
+    /**
+     * Gets the description of the transaction.
+     * @return the description
+     */
+    public String getDetails() {
+        return details;
+    }
+
+    /**
+     * Gets the number of balances recorded in the entry.
+     * @return the number of balances
+     */
+    public int getBalanceCount() {
+        return customerKeys.size();
+    }
+
+    /**
+     * Gets the customer key of a recorded balance.
+     * @param index the index of the balance
+     * @return the "First Last" key of the customer
+     */
+    public String getCustomerKey(int index) {
+        return customerKeys.get(index);
+    }
+
+    /**
+     * Gets the account type of a recorded balance.
+     * @param index the index of the balance
+     * @return the account type
+     */
+    public String getAccountType(int index) {
+        return accountTypes.get(index);
+    }
+
+    /**
+     * Gets a recorded balance.
+     * @param index the index of the balance
+     * @return the balance the account ended with, in cents
+     */
+    public long getBalanceCents(int index) {
+        return balances[index];
+    }
+
+    /**
+     * Sets the recorded balances and credit limits on the matching accounts of the given customers.
+     * Customers that are not in the map are skipped.
+     * @param customers the customers, keyed by their full name
+     */
+    public void applyTo(Map<String, Customer> customers) {
+        for (int i = 0; i < customerKeys.size(); i++) {
+            Customer customer = customers.get(customerKeys.get(i));
+            if (customer == null) {
+                continue;
+            }
+            if (accountTypes.get(i).equals(CREDIT_MAX)) {
+                customer.getCreditAccount().setCreditMaxCents(balances[i]);
+            } else {
+                accountOf(customer, accountTypes.get(i)).setBalanceCents(balances[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets one of the customer's accounts.
+     * @param customer    the customer
+     * @param accountType the account ("Checking", "Savings", or "Credit")
+     * @return the account
+     */
+    private static Account accountOf(Customer customer, String accountType) {
+        switch (accountType) {
+            case "Checking":
+                return customer.getCheckingAccount();
+            case "Savings":
+                return customer.getSavingsAccount();
+            case "Credit":
+                return customer.getCreditAccount();
+            default:
+                throw new IllegalArgumentException("Invalid account type: " + accountType);
+        }
+    }
+}
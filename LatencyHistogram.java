@@ -0,0 +1,173 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LatencyHistogram class counts how long operations take, in nanoseconds, so the
+ * percentiles of their latency can be read while they keep running.
+ *
+ * Like an HDR histogram, it keeps a fixed array of buckets whose width grows with the
+ * latency: latencies below {@value #EXACT_LIMIT} nanoseconds have a bucket each, and
+ * every higher power of two is split into {@value #SUB_BUCKETS} buckets, so any latency
+ * up to hundreds of years is counted with an error of at most 1/{@value #SUB_BUCKETS}
+ * (about 3%). Recording is a few atomic updates of the bucket, the total and the
+ * maximum: it takes no lock and allocates nothing, so any number of threads can record
+ * on the hot path. Readers add up the buckets, so a value read while operations are
+ * being recorded may miss the latest ones.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+    /** The number of bits of a latency kept by its bucket. */
+    private static final int PRECISION_BITS = 6;
+
+    /** The latencies below this one have a bucket each. */
+    private static final int EXACT_LIMIT = 1 << PRECISION_BITS;
+
+    /** The number of buckets every higher power of two is split into. */
+    private static final int SUB_BUCKETS = EXACT_LIMIT / 2;
+
+    /** The number of buckets, enough for the longest latency. */
+    private static final int BUCKET_COUNT = bucketOf(Long.MAX_VALUE) + 1;
+
+    /** The number of latencies counted in each bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /** The sum of the latencies recorded, in nanoseconds. */
+    private final LongAdder totalNanos = new LongAdder();
+
+    /** The longest latency recorded, in nanoseconds. */
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /** The value of {@link System#nanoTime()} when the histogram was created or reset. */
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * Gets the bucket that counts a latency.
+     * @param nanos the latency, in nanoseconds, not negative
+     * @return the bucket
+     */
+    private static int bucketOf(long nanos) {
+        if (nanos < EXACT_LIMIT) {
+            return (int) nanos;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - (PRECISION_BITS - 1);
+        return shift * SUB_BUCKETS + (int) (nanos >>> shift);
+    }
+
+    /**
+     * Gets the longest latency counted by a bucket.
+     * @param bucket the bucket
+     * @return the latency, in nanoseconds
+     */
+    private static long highestOf(int bucket) {
+        if (bucket < EXACT_LIMIT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long first = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return first + (1L << shift) - 1;
+    }
+
+    /**
+     * Records the latency of one operation.
+     * @param nanos how long the operation took, in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        totalNanos.add(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Gets the latency that a fraction of the operations did not exceed. The latency is
+     * the longest one counted by its bucket, but never more than the longest recorded.
+     * @param fraction the fraction, from 0 to 1; 0.99 gives the 99th percentile
+     * @return the latency in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double fraction) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1, Math.max(0, fraction)) * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestOf(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    @Override
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    @Override
+    public double getThroughputPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? getCount() / seconds : 0;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long count = getCount();
+        return count == 0 ? 0 : totalNanos.sum() / 1e3 / count;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return getValueAtPercentile(0.5) / 1e3;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return getValueAtPercentile(0.9) / 1e3;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return getValueAtPercentile(0.99) / 1e3;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return getValueAtPercentile(0.999) / 1e3;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return maxNanos.get() / 1e3;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Operations recorded while the histogram is being reset may be partly kept.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalNanos.reset();
+        maxNanos.set(0);
+        startNanos = System.nanoTime();
+    }
+}
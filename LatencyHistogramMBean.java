@@ -0,0 +1,63 @@
+/**
+ * The LatencyHistogramMBean interface is the management interface of a
+ * {@link LatencyHistogram}, as JMX clients such as JConsole see it. Latencies are given
+ * in microseconds.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public interface LatencyHistogramMBean {
+    /**
+     * Gets the number of operations recorded since the histogram was created or reset.
+     * @return the number of operations
+     */
+    long getCount();
+
+    /**
+     * Gets the average number of operations recorded per second since the histogram was
+     * created or reset.
+     * @return the operations per second
+     */
+    double getThroughputPerSecond();
+
+    /**
+     * Gets the mean latency.
+     * @return the mean latency in microseconds, or 0 if nothing was recorded
+     */
+    double getMeanMicros();
+
+    /**
+     * Gets the median latency.
+     * @return the latency in microseconds that half of the operations did not exceed
+     */
+    double getP50Micros();
+
+    /**
+     * Gets the 90th percentile of the latency.
+     * @return the latency in microseconds that 90% of the operations did not exceed
+     */
+    double getP90Micros();
+
+    /**
+     * Gets the 99th percentile of the latency.
+     * @return the latency in microseconds that 99% of the operations did not exceed
+     */
+    double getP99Micros();
+
+    /**
+     * Gets the 99.9th percentile of the latency.
+     * @return the latency in microseconds that 99.9% of the operations did not exceed
+     */
+    double getP999Micros();
+
+    /**
+     * Gets the longest latency.
+     * @return the longest latency in microseconds
+     */
+    double getMaxMicros();
+
+    /**
+     * Forgets everything recorded and restarts the throughput from now.
+     */
+    void reset();
+}
@@ -0,0 +1,894 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Ledger class is the append-only, double-entry record of every movement of money
+ * in the bank. It uses a singleton design pattern, like the {@link TransactionJournal},
+ * so a single ledger file is shared by the whole system.
+ *
+ * Every payment, transfer, deposit and withdrawal is posted as a set of entries, one
+ * per account it changes, whose amounts add up to zero. Money that enters or leaves the
+ * bank is balanced against {@link #CASH_ACCOUNT}, and the balances accounts had before
+ * they were first posted against {@link #EQUITY_ACCOUNT}. Entries are never changed, so
+ * the balance of an account is the sum of its entries, and the balance kept by each
+ * {@link Account} is a view of the ledger that the operations update as they post.
+ *
+ * Every entry takes {@value #ENTRY_SIZE} bytes: the account number, a flag marking the
+ * last entry of a posting, the amount in cents and the time of the posting. Because the
+ * entries have a fixed size, the file is memory-mapped when balances are rebuilt, and
+ * every thread of the rebuild reads all of it but only adds up the accounts of its own
+ * partition, so no two threads ever touch the same balance and no balance needs a lock.
+ * Every {@value #SNAPSHOT_INTERVAL} entries the balances are written to a snapshot on a
+ * background thread, so a rebuild only replays the entries after the latest one.
+ *
+ * Postings are written in groups, like the records of the {@link TransactionJournal}:
+ * a posting is queued under the lock of the ledger, and the first thread to find no
+ * write in progress writes every queued posting with one call and forces them to disk
+ * while the others wait, so the lock is never held during a write and a posting is
+ * durable once it returns. Once a write fails, the ledger no longer holds every
+ * movement, so every later posting is refused with an error instead of being dropped.
+ *
+ * The first posting of a day also writes a checkpoint of the balances at the end of
+ * the previous day, sorted by account number. The balance of an account at any time is
+ * then found with one lookup in the checkpoint of the day before and a replay of at
+ * most one day of entries, see {@link #balanceAsOf(int, long)}. Checkpoints are kept
+ * for as long as the ledger, like its entries.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class Ledger implements AutoCloseable {
+    /** The file the default ledger is written to. */
+    public static final String DEFAULT_PATH = "ledger.dat";
+
+    /** The account that balances the money deposited into and withdrawn from the bank. */
+    public static final int CASH_ACCOUNT = 0;
+
+    /** The account that balances what accounts held before they were first posted. */
+    public static final int EQUITY_ACCOUNT = 1;
+
+    /** The number of entries posted between two snapshots. */
+    public static final long SNAPSHOT_INTERVAL = 1 << 20;
+
+    /** The size of an entry in the file, in bytes. */
+    private static final int ENTRY_SIZE = 24;
+
+    /** The flag of the last entry of a posting. */
+    private static final int LAST_ENTRY = 1;
+
+    /** The size of the header of a snapshot or checkpoint: entries, time and count. */
+    private static final int BALANCES_HEADER_SIZE = 20;
+
+    /** The end of the name of the checkpoint files. */
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    /** The largest number of entries mapped at once (96 MB). */
+    private static final long WINDOW_ENTRIES = 1 << 22;
+
+    /** The smallest number of entries worth replaying on several threads. */
+    private static final long MIN_PARALLEL_ENTRIES = 1 << 16;
+
+    /** Singleton instance.*/
+    private static Ledger instance;
+
+    /** The channel of the ledger file. */
+    private final FileChannel channel;
+
+    /** The path of the ledger file. */
+    private final Path path;
+
+    /** The file the balances are saved to every {@link #SNAPSHOT_INTERVAL} entries. */
+    private final Path snapshotPath;
+
+    /** The clock that gives the time of the postings and the days of the checkpoints. */
+    private final Clock clock;
+
+    /** The thread that writes the periodic snapshots and the checkpoints. */
+    private final ExecutorService snapshotWriter;
+
+    /** Serializes the snapshots and checkpoints. */
+    private final Object snapshotLock = new Object();
+
+    /** The checkpoints, keyed by the time they were taken at: the start of the next day. */
+    private final TreeMap<Long, Checkpoint> checkpoints = new TreeMap<>();
+
+    /** The number of entries written to the file. */
+    private long entryCount;
+
+    /** The number of entries posted, including those queued and not written yet. */
+    private long postedCount;
+
+    /** The postings queued and not written yet, in the order they were posted. */
+    private List<ByteBuffer> pending = new ArrayList<>();
+
+    /** Whether a thread is writing a group of postings. */
+    private boolean writing;
+
+    /** The number of entries included in the latest snapshot. */
+    private long snapshotEntryCount;
+
+    /** The time of the last posting, in milliseconds since the epoch. */
+    private long lastTimestamp;
+
+    /** The start of the day after the last posting; a later posting writes a checkpoint. */
+    private long nextDayStart = Long.MAX_VALUE;
+
+    /** Whether a periodic snapshot is being written. */
+    private boolean snapshotPending;
+
+    /** The error that stopped the ledger from being written, or null. */
+    private IOException failure;
+
+    /**
+     * Opens a ledger whose postings are timed by the system clock.
+     * @param ledgerPath The path of the ledger file.
+     * @throws IOException if the ledger cannot be opened
+     */
+    public Ledger(String ledgerPath) throws IOException {
+        this(ledgerPath, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Opens a ledger, creating it if needed. A posting left half written by a crash is
+     * cut off, since its entries would not add up to zero.
+     * @param ledgerPath The path of the ledger file.
+     * @param clock      The clock that gives the time of the postings and, with its time zone, their day.
+     * @throws IOException if the ledger cannot be opened
+     */
+    public Ledger(String ledgerPath, Clock clock) throws IOException {
+        this.path = Paths.get(ledgerPath);
+        this.clock = clock;
+        this.snapshotPath = path.resolveSibling(path.getFileName() + ".snapshot");
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        entryCount = channel.size() / ENTRY_SIZE;
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+        while (entryCount > 0) {
+            entry.clear();
+            channel.read(entry, (entryCount - 1) * ENTRY_SIZE);
+            if ((entry.getInt(4) & LAST_ENTRY) != 0) {
+                lastTimestamp = entry.getLong(16);
+                nextDayStart = startOfNextDay(lastTimestamp);
+                break;
+            }
+            entryCount--;
+        }
+        if (channel.size() != entryCount * ENTRY_SIZE) {
+            channel.truncate(entryCount * ENTRY_SIZE);
+        }
+        channel.position(entryCount * ENTRY_SIZE);
+        postedCount = entryCount;
+        if (Files.exists(snapshotPath)) {
+            snapshotEntryCount = readHeader(snapshotPath)[0];
+            if (snapshotEntryCount > entryCount) {
+                snapshotEntryCount = 0;
+                Files.delete(snapshotPath);
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path.toAbsolutePath().getParent(), path.getFileName() + ".*" + CHECKPOINT_SUFFIX)) {
+            for (Path file : files) {
+                long[] header = readHeader(file);
+                if (header[0] > entryCount) {
+                    Files.delete(file);
+                } else {
+                    checkpoints.put(header[1], new Checkpoint(file, header[0]));
+                }
+            }
+        }
+        snapshotWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Retrieves the singleton instance of the Ledger, opening the default ledger file
+     * the first time.
+     * @return The singleton instance of Ledger.
+     * @throws UncheckedIOException if the ledger cannot be opened
+     */
+    public static synchronized Ledger getInstance() {
+        if (instance == null) {
+            try {
+                instance = new Ledger(DEFAULT_PATH);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Posts a deposit: the account gains the amount and the cash account balances it.
+     * @param account     The account the money goes to.
+     * @param amountCents The amount, in cents.
+     */
+    public void deposit(Account account, long amountCents) {
+        post(new int[] {account.getAccountNumber(), CASH_ACCOUNT}, new long[] {amountCents, -amountCents});
+    }
+
+    /**
+     * Posts a withdrawal: the account loses the amount and the cash account balances it.
+     * @param account     The account the money comes from.
+     * @param amountCents The amount, in cents.
+     */
+    public void withdraw(Account account, long amountCents) {
+        post(new int[] {account.getAccountNumber(), CASH_ACCOUNT}, new long[] {-amountCents, amountCents});
+    }
+
+    /**
+     * Posts a transfer or a payment between two accounts.
+     * @param from        The account the money comes from.
+     * @param to          The account the money goes to.
+     * @param amountCents The amount, in cents.
+     */
+    public void transfer(Account from, Account to, long amountCents) {
+        post(new int[] {from.getAccountNumber(), to.getAccountNumber()}, new long[] {-amountCents, amountCents});
+    }
+
+    /**
+     * Posts the balance an account had before the ledger knew it, balanced against the
+     * equity account. Nothing is posted for an empty account.
+     * @param account      The account.
+     * @param balanceCents The balance, in cents.
+     */
+    public void open(Account account, long balanceCents) {
+        if (balanceCents != 0) {
+            post(new int[] {account.getAccountNumber(), EQUITY_ACCOUNT}, new long[] {balanceCents, -balanceCents});
+        }
+    }
+
+    /**
+     * Appends a posting to the ledger, timed by the clock; a posting is never timed
+     * before the previous one. Returns once the posting is written and forced to disk,
+     * together with the others queued with it. Once the ledger could not be written,
+     * postings are refused, since the ledger no longer holds every movement.
+     * @param accountNumbers The accounts the posting changes.
+     * @param amountsCents   The amount each account gains, in cents; negative if it loses it.
+     * @throws IllegalArgumentException if there are fewer than two entries or they do not add up to zero
+     * @throws UncheckedIOException if the posting, or an earlier one, could not be written
+     */
+    public void post(int[] accountNumbers, long[] amountsCents) {
+        if (accountNumbers.length < 2 || accountNumbers.length != amountsCents.length) {
+            throw new IllegalArgumentException("A posting needs an amount for each of at least two accounts.");
+        }
+        long total = 0;
+        for (long amountCents : amountsCents) {
+            total = Money.add(total, amountCents);
+        }
+        if (total != 0) {
+            throw new IllegalArgumentException("Unbalanced posting: the entries add up to " + Money.format(total));
+        }
+        ByteBuffer entries = ByteBuffer.allocate(ENTRY_SIZE * accountNumbers.length);
+        for (int i = 0; i < accountNumbers.length; i++) {
+            entries.putInt(i * ENTRY_SIZE, accountNumbers[i]);
+            entries.putInt(i * ENTRY_SIZE + 4, i == accountNumbers.length - 1 ? LAST_ENTRY : 0);
+            entries.putLong(i * ENTRY_SIZE + 8, amountsCents[i]);
+        }
+        boolean snapshotDue;
+        long checkpointEnd = -1;
+        long checkpointTime = 0;
+        long posted;
+        synchronized (this) {
+            if (failure != null) {
+                throw new UncheckedIOException("The ledger is incomplete: " + failure.getMessage(), failure);
+            }
+            long timestamp = Math.max(lastTimestamp, clock.millis());
+            for (int i = 0; i < accountNumbers.length; i++) {
+                entries.putLong(i * ENTRY_SIZE + 16, timestamp);
+            }
+            if (timestamp >= nextDayStart) {
+                checkpointEnd = postedCount;
+                checkpointTime = nextDayStart;
+            }
+            pending.add(entries);
+            postedCount += accountNumbers.length;
+            posted = postedCount;
+            lastTimestamp = timestamp;
+            nextDayStart = startOfNextDay(timestamp);
+            snapshotDue = !snapshotPending && postedCount - snapshotEntryCount >= SNAPSHOT_INTERVAL;
+            if (snapshotDue) {
+                snapshotPending = true;
+            }
+        }
+        if (!awaitWritten(posted)) {
+            synchronized (this) {
+                throw new UncheckedIOException("The ledger is incomplete: " + failure.getMessage(), failure);
+            }
+        }
+        if (checkpointEnd >= 0) {
+            long end = checkpointEnd;
+            long time = checkpointTime;
+            snapshotWriter.execute(() -> {
+                try {
+                    checkpoint(end, time);
+                } catch (IOException e) {
+                    System.out.println("Error writing the ledger checkpoint: " + e.getMessage());
+                }
+            });
+        }
+        if (snapshotDue) {
+            snapshotWriter.execute(() -> {
+                try {
+                    snapshot(Runtime.getRuntime().availableProcessors());
+                } catch (IOException e) {
+                    System.out.println("Error writing the ledger snapshot: " + e.getMessage());
+                } finally {
+                    synchronized (this) {
+                        snapshotPending = false;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits until the entries posted so far are written and forced to disk, writing the
+     * queued postings itself if no other thread is doing it. An interrupt does not stop the wait, since
+     * the posting is already queued; the interrupt status is kept for the caller.
+     * @param end The number of entries to wait for.
+     * @return true if the entries were written, false if the ledger could not be written.
+     */
+    private boolean awaitWritten(long end) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                List<ByteBuffer> batch;
+                long batchEnd;
+                synchronized (this) {
+                    while (writing && entryCount < end && failure == null) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (failure != null) {
+                        return false;
+                    }
+                    if (entryCount >= end) {
+                        return true;
+                    }
+                    writing = true;
+                    batch = pending;
+                    batchEnd = postedCount;
+                    pending = new ArrayList<>();
+                }
+                IOException error = null;
+                try {
+                    ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                    long remaining = 0;
+                    for (ByteBuffer buffer : buffers) {
+                        remaining += buffer.remaining();
+                    }
+                    while (remaining > 0) {
+                        remaining -= channel.write(buffers);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                }
+                synchronized (this) {
+                    writing = false;
+                    if (error == null) {
+                        entryCount = batchEnd;
+                    } else {
+                        failure = error;
+                        System.out.println("Error writing the ledger: " + error.getMessage());
+                    }
+                    notifyAll();
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Gets the start of the day after a time, in the time zone of the clock.
+     * @param timestamp The time, in milliseconds since the epoch.
+     * @return The start of the next day, in milliseconds since the epoch.
+     */
+    private long startOfNextDay(long timestamp) {
+        return dayOf(timestamp).plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Gets the day of a time, in the time zone of the clock.
+     * @param timestamp The time, in milliseconds since the epoch.
+     * @return The day.
+     */
+    private LocalDate dayOf(long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(clock.getZone()).toLocalDate();
+    }
+
+    /**
+     * Gets the number of entries in the ledger.
+     * @return the number of entries
+     */
+    public synchronized long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Gets the number of entries included in the latest snapshot.
+     * @return the number of entries, or 0 if there is no snapshot
+     */
+    public synchronized long getSnapshotEntryCount() {
+        return snapshotEntryCount;
+    }
+
+    /**
+     * Gets the number of daily checkpoints written.
+     * @return the number of checkpoints
+     */
+    public synchronized int getCheckpointCount() {
+        return checkpoints.size();
+    }
+
+    /**
+     * Computes the balance of every account from the latest snapshot and the entries
+     * posted after it.
+     * @param parallelism The number of threads that replay the entries, at least 1.
+     * @return The balances, including those of the cash and equity accounts.
+     * @throws IOException if the ledger cannot be read or could not be written
+     */
+    public LedgerBalances rebuild(int parallelism) throws IOException {
+        synchronized (snapshotLock) {
+            long end;
+            synchronized (this) {
+                if (failure != null) {
+                    throw new IOException("The ledger is incomplete: " + failure.getMessage(), failure);
+                }
+                end = entryCount;
+            }
+            return balancesThrough(end, parallelism);
+        }
+    }
+
+    /**
+     * Checks the balance of every account of the customers against its balance in the
+     * ledger. An account the ledger does not know yet, such as one loaded from the CSV
+     * file for the first time, has its balance posted as its opening balance. If any
+     * balance differs from the ledger, nothing is changed or posted and the accounts
+     * are reported, since either side may be the one that missed a movement. The account
+     * numbers up to the highest one in the ledger are reserved, so an account the ledger
+     * knows but the customers do not, such as one whose customer was not saved, never
+     * has its number handed out again. Called at startup, before any operation runs.
+     * @param customers   The customers.
+     * @param parallelism The number of threads that replay the entries, at least 1.
+     * @return The number of accounts whose opening balances were posted.
+     * @throws IOException if the ledger cannot be read, or a balance does not match the ledger
+     */
+    public int materialize(Iterable<Customer> customers, int parallelism) throws IOException {
+        LedgerBalances balances = rebuild(parallelism);
+        int[] highest = {EQUITY_ACCOUNT};
+        balances.forEach((accountNumber, balanceCents) -> highest[0] = Math.max(highest[0], accountNumber));
+        Account.NUMBER_SEQUENCE.reserveThrough(highest[0]);
+        List<Account> unknown = new ArrayList<>();
+        StringBuilder mismatches = new StringBuilder();
+        for (Customer customer : customers) {
+            for (Account account : new Account[] {customer.getCheckingAccount(), customer.getSavingsAccount(), customer.getCreditAccount()}) {
+                int number = account.getAccountNumber();
+                if (!balances.contains(number)) {
+                    unknown.add(account);
+                    balances.add(number, account.getBalanceCents());
+                } else if (balances.get(number) != account.getBalanceCents()) {
+                    mismatches.append(mismatches.length() == 0 ? "" : ", ").append(number)
+                              .append(" (").append(Money.format(account.getBalanceCents()))
+                              .append(" against ").append(Money.format(balances.get(number))).append(" in the ledger)");
+                }
+            }
+        }
+        if (mismatches.length() > 0) {
+            throw new IOException("Balances do not match the ledger for accounts " + mismatches);
+        }
+        for (Account account : unknown) {
+            open(account, account.getBalanceCents());
+        }
+        return unknown.size();
+    }
+
+    /**
+     * Gets the balance an account had at the end of a day, in the time zone of the clock.
+     * @param accountNumber The account number.
+     * @param date          The day.
+     * @return The balance in cents after every entry posted on or before that day.
+     * @throws IOException if the ledger cannot be read
+     */
+    public long balanceAtEndOf(int accountNumber, LocalDate date) throws IOException {
+        return balanceAsOf(accountNumber, date.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli());
+    }
+
+    /**
+     * Gets the balance an account had at a time. The balance is looked up in the
+     * latest checkpoint taken at or before that time, and the entries posted after the
+     * checkpoint and before the time are added to it.
+     * @param accountNumber The account number.
+     * @param timestamp     The time, in milliseconds since the epoch.
+     * @return The balance in cents after every entry posted before that time.
+     * @throws IOException if the ledger cannot be read
+     */
+    public long balanceAsOf(int accountNumber, long timestamp) throws IOException {
+        Map.Entry<Long, Checkpoint> checkpoint;
+        long end;
+        synchronized (this) {
+            if (failure != null) {
+                throw new IOException("The ledger is incomplete: " + failure.getMessage(), failure);
+            }
+            checkpoint = checkpoints.floorEntry(timestamp);
+            end = entryCount;
+        }
+        long balanceCents = 0;
+        long from = 0;
+        if (checkpoint != null) {
+            balanceCents = lookup(checkpoint.getValue().path, accountNumber);
+            from = checkpoint.getValue().entryCount;
+        }
+        for (long window = from; window < end; window += WINDOW_ENTRIES) {
+            long windowEnd = Math.min(end, window + WINDOW_ENTRIES);
+            MappedByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY, window * ENTRY_SIZE, (windowEnd - window) * ENTRY_SIZE);
+            int limit = entries.limit();
+            for (int position = 0; position < limit; position += ENTRY_SIZE) {
+                if (entries.getLong(position + 16) >= timestamp) {
+                    return balanceCents;
+                }
+                if (entries.getInt(position) == accountNumber) {
+                    balanceCents += entries.getLong(position + 8);
+                }
+            }
+        }
+        return balanceCents;
+    }
+
+    /**
+     * Saves the balance of every account, so later rebuilds start from here. The
+     * entries are forced to disk first, so the snapshot never includes an entry that a
+     * crash could lose.
+     * @param parallelism The number of threads that replay the entries, at least 1.
+     * @return The number of entries included in the snapshot.
+     * @throws IOException if the ledger cannot be read or the snapshot cannot be written
+     */
+    public long snapshot(int parallelism) throws IOException {
+        synchronized (snapshotLock) {
+            long end;
+            long time;
+            synchronized (this) {
+                if (failure != null) {
+                    throw new IOException("The ledger is incomplete: " + failure.getMessage(), failure);
+                }
+                end = entryCount;
+                time = lastTimestamp;
+                channel.force(false);
+            }
+            writeBalances(snapshotPath, end, time, balancesThrough(end, parallelism));
+            synchronized (this) {
+                snapshotEntryCount = end;
+            }
+            return end;
+        }
+    }
+
+    /**
+     * Saves the balances at the end of a day as a checkpoint.
+     * @param end  The number of entries posted during or before the day.
+     * @param time The start of the next day, in milliseconds since the epoch.
+     * @throws IOException if the ledger cannot be read or the checkpoint cannot be written
+     */
+    private void checkpoint(long end, long time) throws IOException {
+        synchronized (snapshotLock) {
+            synchronized (this) {
+                if (checkpoints.containsKey(time)) {
+                    return;
+                }
+                channel.force(false);
+            }
+            Path file = path.resolveSibling(path.getFileName() + "." + dayOf(time - 1) + CHECKPOINT_SUFFIX);
+            writeBalances(file, end, time, balancesThrough(end, Runtime.getRuntime().availableProcessors()));
+            synchronized (this) {
+                checkpoints.put(time, new Checkpoint(file, end));
+            }
+        }
+    }
+
+    /**
+     * Writes balances to a file, replacing it at once: a header with the number of
+     * entries included, a time and the number of accounts, then the account numbers in
+     * increasing order, then their balances in the same order.
+     * @param file     The file.
+     * @param end      The number of entries included.
+     * @param time     The time of the balances, in milliseconds since the epoch.
+     * @param balances The balances.
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeBalances(Path file, long end, long time, LedgerBalances balances) throws IOException {
+        int[] accountNumbers = new int[balances.size()];
+        int[] count = new int[1];
+        balances.forEach((accountNumber, balanceCents) -> accountNumbers[count[0]++] = accountNumber);
+        Arrays.sort(accountNumbers);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeLong(end);
+            out.writeLong(time);
+            out.writeInt(accountNumbers.length);
+            for (int accountNumber : accountNumbers) {
+                out.writeInt(accountNumber);
+            }
+            for (int accountNumber : accountNumbers) {
+                out.writeLong(balances.get(accountNumber));
+            }
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads the header of a snapshot or checkpoint.
+     * @param file The file.
+     * @return The number of entries included and the time of the balances.
+     * @throws IOException if the file cannot be read
+     */
+    private static long[] readHeader(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return new long[] {in.readLong(), in.readLong()};
+        }
+    }
+
+    /**
+     * Looks up the balance of one account in a snapshot or checkpoint with a binary
+     * search of its sorted account numbers.
+     * @param file          The file.
+     * @param accountNumber The account number.
+     * @return The balance in cents, or 0 if the account is not in the file.
+     * @throws IOException if the file cannot be read
+     */
+    private static long lookup(Path file, int accountNumber) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer balances = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            int count = balances.getInt(16);
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int found = balances.getInt(BALANCES_HEADER_SIZE + middle * 4);
+                if (found < accountNumber) {
+                    low = middle + 1;
+                } else if (found > accountNumber) {
+                    high = middle - 1;
+                } else {
+                    return balances.getLong(BALANCES_HEADER_SIZE + count * 4 + middle * 8);
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Reads all the balances of a snapshot or checkpoint.
+     * @param file The file.
+     * @return The balances.
+     * @throws IOException if the file cannot be read
+     */
+    private static LedgerBalances readBalances(Path file) throws IOException {
+        LedgerBalances balances = new LedgerBalances();
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer contents = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            int count = contents.getInt(16);
+            for (int i = 0; i < count; i++) {
+                balances.add(contents.getInt(BALANCES_HEADER_SIZE + i * 4), contents.getLong(BALANCES_HEADER_SIZE + count * 4 + i * 8));
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Computes the balances after a number of entries, starting from the latest
+     * snapshot or checkpoint that does not include more. The caller holds the snapshot
+     * lock.
+     * @param end         The number of entries to include.
+     * @param parallelism The number of threads that replay the entries, at least 1.
+     * @return The balances.
+     * @throws IOException if the ledger or the snapshot cannot be read
+     */
+    private LedgerBalances balancesThrough(long end, int parallelism) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        Path baseFile = null;
+        long start = 0;
+        synchronized (this) {
+            if (snapshotEntryCount > 0 && snapshotEntryCount <= end) {
+                baseFile = snapshotPath;
+                start = snapshotEntryCount;
+            }
+            for (Checkpoint checkpoint : checkpoints.descendingMap().values()) {
+                if (checkpoint.entryCount <= end) {
+                    if (checkpoint.entryCount > start) {
+                        baseFile = checkpoint.path;
+                        start = checkpoint.entryCount;
+                    }
+                    break;
+                }
+            }
+        }
+        LedgerBalances base = baseFile == null ? new LedgerBalances() : readBalances(baseFile);
+        int partitions = end - start < MIN_PARALLEL_ENTRIES ? 1 : Integer.highestOneBit(parallelism);
+        if (partitions == 1) {
+            return replayPartition(base, start, end, 0, 1);
+        }
+        long from = start;
+        ForkJoinPool pool = new ForkJoinPool(partitions);
+        List<LedgerBalances> results;
+        try {
+            List<Callable<LedgerBalances>> tasks = new ArrayList<>();
+            for (int i = 0; i < partitions; i++) {
+                int partition = i;
+                tasks.add(() -> replayPartition(base, from, end, partition, partitions));
+            }
+            results = invokeAll(pool, tasks);
+        } finally {
+            pool.shutdown();
+        }
+        LedgerBalances balances = new LedgerBalances();
+        for (LedgerBalances result : results) {
+            result.forEach(balances::add);
+        }
+        return balances;
+    }
+
+    /**
+     * Adds up the entries of the accounts of one partition, starting from their
+     * balances in the snapshot. The partitions take turns owning the pages of
+     * {@link LedgerBalances}, so each partition fills whole pages.
+     * @param snapshot   The balances of the snapshot.
+     * @param from       The first entry to replay.
+     * @param to         The entry after the last one to replay.
+     * @param partition  The partition.
+     * @param partitions The number of partitions, a power of two.
+     * @return The balances of the accounts of the partition.
+     * @throws IOException if the ledger cannot be read
+     */
+    private LedgerBalances replayPartition(LedgerBalances snapshot, long from, long to, int partition, int partitions) throws IOException {
+        int mask = partitions - 1;
+        LedgerBalances balances = new LedgerBalances();
+        snapshot.forEach((accountNumber, balanceCents) -> {
+            if (partitionOf(accountNumber, mask) == partition) {
+                balances.add(accountNumber, balanceCents);
+            }
+        });
+        for (long window = from; window < to; window += WINDOW_ENTRIES) {
+            long windowEnd = Math.min(to, window + WINDOW_ENTRIES);
+            MappedByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY, window * ENTRY_SIZE, (windowEnd - window) * ENTRY_SIZE);
+            int limit = entries.limit();
+            for (int position = 0; position < limit; position += ENTRY_SIZE) {
+                int accountNumber = entries.getInt(position);
+                if (partitionOf(accountNumber, mask) == partition) {
+                    balances.add(accountNumber, entries.getLong(position + 8));
+                }
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Gets the partition of an account during a rebuild.
+     * @param accountNumber The account number.
+     * @param mask          The number of partitions minus one.
+     * @return The partition.
+     */
+    private static int partitionOf(int accountNumber, int mask) {
+        int page = LedgerBalances.pageOf(accountNumber);
+        return (page >= 0 ? page : accountNumber) & mask;
+    }
+
+    /**
+     * Runs tasks on the pool and waits for all their results.
+     * @param <T>   The type of the results.
+     * @param pool  The pool to run the tasks on.
+     * @param tasks The tasks to run.
+     * @return The results, in the order of the tasks.
+     * @throws IOException if a task failed
+     */
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Rebuild interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Waits for the snapshot and checkpoint and the group of postings being written,
+     * then forces the entries to disk and closes the ledger file.
+     * @throws IOException if the ledger cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotWriter.shutdown();
+        try {
+            snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            boolean interrupted = false;
+            while (writing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * A checkpoint file and the number of entries it includes.
+     */
+    private static class Checkpoint {
+        /** The checkpoint file. */
+        private final Path path;
+        /** The number of entries included. */
+        private final long entryCount;
+
+        /**
+         * Creates a new Checkpoint.
+         * @param path       The checkpoint file.
+         * @param entryCount The number of entries included.
+         */
+        private Checkpoint(Path path, long entryCount) {
+            this.path = path;
+            this.entryCount = entryCount;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * The LedgerBalances class maps account numbers to balances in cents without boxing
+ * them, for the balances computed from the {@link Ledger}.
+ *
+ * Like the {@link AccountIndex}, it relies on account numbers being handed out in a
+ * dense range: a number below 2^24 picks a page of {@value #PAGE_SIZE} balances and a
+ * slot within it, so adding an entry of the ledger to its account is a single array
+ * update, and pages are only allocated for the ranges in use. Other numbers, such as
+ * negative ones, go to a small open-addressing table keyed by the primitive number. It
+ * is not synchronized.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class LedgerBalances {
+    /** The number of bits of an account number that select the slot within a page. */
+    public static final int PAGE_BITS = 10;
+
+    /** The number of account numbers covered by a page. */
+    public static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /** The number of pages, covering account numbers 0 to 2^24 - 1. */
+    private static final int MAX_PAGES = 1 << 14;
+
+    /** The smallest capacity of the table of other numbers. */
+    private static final int MIN_CAPACITY = 16;
+
+    /** The table of other numbers grows once this fraction of it is used (3/4). */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** The balances of the pages, or null before the first page is used. */
+    private long[][] pages;
+
+    /** For every page, one bit per slot telling whether the account has a balance. */
+    private long[][] present;
+
+    /** The account numbers outside the pages, one per slot. */
+    private int[] accounts;
+
+    /** The balances of the account numbers outside the pages, one per slot. */
+    private long[] balances;
+
+    /** Whether each slot of the table of other numbers holds an account. */
+    private boolean[] used;
+
+    /** The number of accounts stored. */
+    private int size;
+
+    /** The number of accounts outside the pages. */
+    private int sparseSize;
+
+    /** The number of accounts outside the pages the table holds before it grows. */
+    private int threshold;
+
+    /** Creates an empty LedgerBalances. */
+    public LedgerBalances() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Allocates an empty table of the numbers outside the pages.
+     * @param capacity the number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        accounts = new int[capacity];
+        balances = new long[capacity];
+        used = new boolean[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Gets the page of an account number.
+     * @param accountNumber the account number
+     * @return the page, or -1 if the number is outside the pages
+     */
+    public static int pageOf(int accountNumber) {
+        return (accountNumber >>> PAGE_BITS) < MAX_PAGES ? accountNumber >>> PAGE_BITS : -1;
+    }
+
+    /**
+     * Gets the balance of an account.
+     * @param accountNumber the account number
+     * @return the balance in cents, or 0 if the account has no entry
+     */
+    public long get(int accountNumber) {
+        int page = pageOf(accountNumber);
+        if (page >= 0) {
+            return pages == null || pages[page] == null ? 0 : pages[page][accountNumber & (PAGE_SIZE - 1)];
+        }
+        int mask = accounts.length - 1;
+        for (int slot = slotOf(accountNumber, mask); used[slot]; slot = (slot + 1) & mask) {
+            if (accounts[slot] == accountNumber) {
+                return balances[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Checks whether an account has a balance.
+     * @param accountNumber the account number
+     * @return true if the account has an entry
+     */
+    public boolean contains(int accountNumber) {
+        int page = pageOf(accountNumber);
+        if (page >= 0) {
+            int slot = accountNumber & (PAGE_SIZE - 1);
+            return pages != null && pages[page] != null && (present[page][slot >>> 6] & 1L << slot) != 0;
+        }
+        int mask = accounts.length - 1;
+        for (int slot = slotOf(accountNumber, mask); used[slot]; slot = (slot + 1) & mask) {
+            if (accounts[slot] == accountNumber) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds an amount to the balance of an account, which starts at 0.
+     * @param accountNumber the account number
+     * @param amountCents   the amount to add, in cents; negative to take it away
+     */
+    public void add(int accountNumber, long amountCents) {
+        int page = pageOf(accountNumber);
+        if (page >= 0) {
+            if (pages == null) {
+                pages = new long[MAX_PAGES][];
+                present = new long[MAX_PAGES][];
+            }
+            long[] values = pages[page];
+            if (values == null) {
+                values = new long[PAGE_SIZE];
+                pages[page] = values;
+                present[page] = new long[PAGE_SIZE / 64];
+            }
+            int slot = accountNumber & (PAGE_SIZE - 1);
+            values[slot] += amountCents;
+            long[] bits = present[page];
+            if ((bits[slot >>> 6] & 1L << slot) == 0) {
+                bits[slot >>> 6] |= 1L << slot;
+                size++;
+            }
+            return;
+        }
+        int mask = accounts.length - 1;
+        int slot = slotOf(accountNumber, mask);
+        while (used[slot]) {
+            if (accounts[slot] == accountNumber) {
+                balances[slot] += amountCents;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        accounts[slot] = accountNumber;
+        balances[slot] = amountCents;
+        used[slot] = true;
+        size++;
+        if (++sparseSize > threshold) {
+            grow();
+        }
+    }
+
+    /** Doubles the capacity of the table of the numbers outside the pages. */
+    private void grow() {
+        int[] oldAccounts = accounts;
+        long[] oldBalances = balances;
+        boolean[] oldUsed = used;
+        allocate(oldAccounts.length * 2);
+        int mask = accounts.length - 1;
+        for (int i = 0; i < oldAccounts.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slotOf(oldAccounts[i], mask);
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                accounts[slot] = oldAccounts[i];
+                balances[slot] = oldBalances[i];
+                used[slot] = true;
+            }
+        }
+    }
+
+    /**
+     * Gets the slot where the search for an account starts. Consecutive numbers are
+     * spread over the table, so they do not form long runs of used slots.
+     * @param accountNumber the account number
+     * @param mask          the capacity of the table minus one
+     * @return the slot
+     */
+    private static int slotOf(int accountNumber, int mask) {
+        int hash = accountNumber * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Gets the number of accounts stored.
+     * @return the number of accounts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Passes every account and its balance to an action, the accounts of the pages in
+     * increasing order and then the others in no particular order.
+     * @param action the action
+     */
+    public void forEach(Visitor action) {
+        if (pages != null) {
+            for (int page = 0; page < MAX_PAGES; page++) {
+                if (pages[page] != null) {
+                    long[] values = pages[page];
+                    long[] bits = present[page];
+                    for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                        if ((bits[slot >>> 6] & 1L << slot) != 0) {
+                            action.accept(page << PAGE_BITS | slot, values[slot]);
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < accounts.length; i++) {
+            if (used[i]) {
+                action.accept(accounts[i], balances[i]);
+            }
+        }
+    }
+
+    /**
+     * An action applied to every account by {@link #forEach(Visitor)}.
+     */
+    public interface Visitor {
+        /**
+         * Receives one account.
+         * @param accountNumber the account number
+         * @param balanceCents  the balance, in cents
+         */
+        void accept(int accountNumber, long balanceCents);
+    }
+}
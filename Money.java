@@ -0,0 +1,193 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * The Money class holds the helpers used to work with amounts of money stored as a
+ * {@code long} number of cents. Cents are exact, so balances never pick up the rounding
+ * errors of {@code double} arithmetic and totals over many accounts add up exactly.
+ *
+ * The arithmetic helpers work on primitives only and never allocate, so they can be
+ * used on the hot path of transaction processing. They throw an ArithmeticException
+ * instead of silently overflowing.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public final class Money {
+    /** The number of cents in one dollar. */
+    public static final long CENTS_PER_DOLLAR = 100;
+
+    /**
+     * The largest number of digits parsed directly before falling back to BigDecimal.
+     * The digits are scaled by up to a hundred and may be rounded up, so the cents can
+     * have 18 digits, which always fit in a long.
+     */
+    private static final int MAX_FAST_DIGITS = 16;
+
+    /** Prevents instances of this class. */
+    private Money() {
+    }
+
+    /**
+     * Converts a dollar amount to cents, rounding to the nearest cent.
+     * @param dollars the amount in dollars
+     * @return the amount in cents
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long fromDouble(double dollars) {
+        double cents = Math.rint(dollars * CENTS_PER_DOLLAR);
+        if (Double.isNaN(cents) || cents >= 0x1p63 || cents < -0x1p63) {
+            throw new ArithmeticException("Amount out of range: " + dollars);
+        }
+        return (long) cents;
+    }
+
+    /**
+     * Converts cents to the nearest dollar amount, for display or for the APIs that
+     * still use doubles.
+     * @param cents the amount in cents
+     * @return the amount in dollars
+     */
+    public static double toDouble(long cents) {
+        return cents / (double) CENTS_PER_DOLLAR;
+    }
+
+    /**
+     * Adds two amounts.
+     * @param a the first amount in cents
+     * @param b the second amount in cents
+     * @return the sum in cents
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Subtracts an amount from another.
+     * @param a the amount in cents
+     * @param b the amount to subtract in cents
+     * @return the difference in cents
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Parses a decimal amount of dollars, such as "-10" or "857.56", into cents.
+     * Digits past the cents are rounded half up.
+     * @param text the amount to parse
+     * @return the amount in cents
+     * @throws NumberFormatException if the text is not a valid amount
+     */
+    public static long parse(String text) {
+        return parse(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Parses a decimal amount of dollars stored in part of a character array into cents,
+     * without allocating. Digits past the cents are rounded half up; unusual forms such
+     * as exponents are handed to BigDecimal.
+     * @param chars the characters holding the amount
+     * @param start the index of the first character
+     * @param end   the index after the last character
+     * @return the amount in cents
+     * @throws NumberFormatException if the characters are not a valid amount
+     */
+    public static long parse(char[] chars, int start, int end) {
+        int i = start;
+        boolean negative = i < end && chars[i] == '-';
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            i++;
+        }
+        long cents = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        boolean roundUp = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (decimals < 2) {
+                    if (cents != 0 || c != '0') {
+                        digits++;
+                    }
+                    if (digits > MAX_FAST_DIGITS) {
+                        return parseSlow(chars, start, end);
+                    }
+                    cents = cents * 10 + (c - '0');
+                    if (seenPoint) {
+                        decimals++;
+                    }
+                } else if (decimals == 2) {
+                    roundUp = c >= '5';
+                    decimals++;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                return parseSlow(chars, start, end);
+            }
+        }
+        if (!seenDigit) {
+            throw new NumberFormatException("Invalid amount: \"" + new String(chars, start, end - start) + "\"");
+        }
+        for (; decimals < 2; decimals++) {
+            cents *= 10;
+        }
+        if (roundUp) {
+            cents++;
+        }
+        return negative ? -cents : cents;
+    }
+
+    /**
+     * Parses an amount that the fast path does not handle.
+     * @param chars the characters holding the amount
+     * @param start the index of the first character
+     * @param end   the index after the last character
+     * @return the amount in cents
+     * @throws NumberFormatException if the characters are not a valid amount
+     */
+    private static long parseSlow(char[] chars, int start, int end) {
+        String text = new String(chars, start, end - start);
+        try {
+            return new BigDecimal(text).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: \"" + text + "\"");
+        }
+    }
+
+    /**
+     * Formats an amount of cents as dollars with exactly two decimals, such as "-10.00".
+     * @param cents the amount in cents
+     * @return the formatted amount
+     */
+    public static String format(long cents) {
+        StringBuilder text = new StringBuilder(24);
+        appendTo(text, cents);
+        return text.toString();
+    }
+
+    /**
+     * Appends an amount of cents as dollars with exactly two decimals.
+     * @param text  the builder to append to
+     * @param cents the amount in cents
+     * @return the builder
+     */
+    public static StringBuilder appendTo(StringBuilder text, long cents) {
+        if (cents < 0) {
+            text.append('-');
+        }
+        long dollars = Math.abs(cents / CENTS_PER_DOLLAR);
+        int rest = (int) Math.abs(cents % CENTS_PER_DOLLAR);
+        text.append(dollars).append('.');
+        if (rest < 10) {
+            text.append('0');
+        }
+        return text.append(rest);
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * The OperationMetrics class measures how long the operations of the bank take and how
+ * often they happen. It uses a singleton design pattern, like the {@link Ledger}, so
+ * every part of the system records into the same metrics.
+ *
+ * Every operation, such as {@link BankManager#paySomeone}, has one
+ * {@link LatencyHistogram} per outcome, such as a success or insufficient funds, so a
+ * slow failure does not hide among fast successes. Recording is lock-free and allocates
+ * nothing. The histograms of the singleton are published as JMX MBeans named
+ * {@code bank:type=OperationMetrics,operation=<operation>,outcome=<outcome>}, and can
+ * also be appended periodically to a CSV file with {@link #startDumping(String, long)}.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class OperationMetrics implements AutoCloseable {
+    /** A payment from one customer to another, {@link BankManager#paySomeone}. */
+    public static final int PAY_SOMEONE = 0;
+    /** A transfer between two accounts of a customer, {@link BankManager#transferMoney}. */
+    public static final int TRANSFER_MONEY = 1;
+    /** A withdrawal, {@link BankManager#withdrawMoney}. */
+    public static final int WITHDRAW_MONEY = 2;
+    /** A deposit, {@link BankManager#depositMoney}. */
+    public static final int DEPOSIT_MONEY = 3;
+    /** Loading the customer CSV file, {@link FilesHandling#loadCustomersFromCSV}. */
+    public static final int LOAD_CUSTOMERS = 4;
+    /** Writing the updated customer CSV file, {@link FilesHandling#updateCSV}. */
+    public static final int UPDATE_CSV = 5;
+
+    /** The operation completed. */
+    public static final int SUCCESS = 0;
+    /** The account did not have enough funds. */
+    public static final int INSUFFICIENT_FUNDS = 1;
+    /** A customer of the operation does not exist. */
+    public static final int CUSTOMER_NOT_FOUND = 2;
+    /** The operation failed for another reason, such as an invalid account or a file error. */
+    public static final int FAILED = 3;
+
+    /** The names of the operations, as they appear in the MBean names and the dump. */
+    private static final String[] OPERATION_NAMES = {"paySomeone", "transferMoney", "withdrawMoney", "depositMoney", "loadCustomersFromCSV", "updateCSV"};
+
+    /** The names of the outcomes, as they appear in the MBean names and the dump. */
+    private static final String[] OUTCOME_NAMES = {"success", "insufficientFunds", "customerNotFound", "failed"};
+
+    /** The number of outcomes. */
+    public static final int OUTCOME_COUNT = OUTCOME_NAMES.length;
+
+    /** The domain of the MBean names. */
+    public static final String DOMAIN = "bank";
+
+    /** The header of the CSV file written by {@link #startDumping(String, long)}. */
+    public static final String DUMP_HEADER = "Time,Operation,Outcome,Count,Throughput Per Second,Mean Micros,P50 Micros,P90 Micros,P99 Micros,P99.9 Micros,Max Micros";
+
+    /** Singleton instance.*/
+    private static OperationMetrics instance;
+
+    /** The histograms, by operation and then by outcome. */
+    private final LatencyHistogram[][] histograms = new LatencyHistogram[OPERATION_NAMES.length][OUTCOME_NAMES.length];
+
+    /** The thread that appends the metrics to a file, or null. */
+    private ScheduledExecutorService dumper;
+
+    /** The path of the file the metrics are appended to, or null. */
+    private String dumpPath;
+
+    /** Creates empty metrics, which are not published until {@link #register(MBeanServer)}. */
+    public OperationMetrics() {
+        for (int operation = 0; operation < OPERATION_NAMES.length; operation++) {
+            for (int outcome = 0; outcome < OUTCOME_NAMES.length; outcome++) {
+                histograms[operation][outcome] = new LatencyHistogram();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the singleton instance of the OperationMetrics, publishing it on the
+     * platform MBean server the first time.
+     * @return The singleton instance of OperationMetrics.
+     */
+    public static synchronized OperationMetrics getInstance() {
+        if (instance == null) {
+            instance = new OperationMetrics();
+            instance.register(ManagementFactory.getPlatformMBeanServer());
+        }
+        return instance;
+    }
+
+    /**
+     * Publishes every histogram as an MBean. Metrics that cannot be published are still
+     * recorded.
+     * @param server The MBean server.
+     */
+    public void register(MBeanServer server) {
+        try {
+            for (int operation = 0; operation < OPERATION_NAMES.length; operation++) {
+                for (int outcome = 0; outcome < OUTCOME_NAMES.length; outcome++) {
+                    server.registerMBean(histograms[operation][outcome], objectName(operation, outcome));
+                }
+            }
+        } catch (JMException e) {
+            System.out.println("Error publishing metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the name of the MBean of an operation and outcome.
+     * @param operation The operation, such as {@link #PAY_SOMEONE}.
+     * @param outcome   The outcome, such as {@link #SUCCESS}.
+     * @return The name.
+     * @throws MalformedObjectNameException never, as the names are fixed
+     */
+    public static ObjectName objectName(int operation, int outcome) throws MalformedObjectNameException {
+        return new ObjectName(DOMAIN + ":type=OperationMetrics,operation=" + OPERATION_NAMES[operation] + ",outcome=" + OUTCOME_NAMES[outcome]);
+    }
+
+    /**
+     * Gets the name of an operation, as it appears in the MBean names and the dump.
+     * @param operation The operation, such as {@link #PAY_SOMEONE}.
+     * @return The name, such as "paySomeone".
+     */
+    public static String getOperationName(int operation) {
+        return OPERATION_NAMES[operation];
+    }
+
+    /**
+     * Gets the name of an outcome, as it appears in the MBean names and the dump.
+     * @param outcome The outcome, such as {@link #SUCCESS}.
+     * @return The name, such as "success".
+     */
+    public static String getOutcomeName(int outcome) {
+        return OUTCOME_NAMES[outcome];
+    }
+
+    /**
+     * Records that an operation finished now.
+     * @param operation  The operation, such as {@link #PAY_SOMEONE}.
+     * @param outcome    The outcome, such as {@link #SUCCESS}.
+     * @param startNanos The value of {@link System#nanoTime()} when the operation started.
+     */
+    public void record(int operation, int outcome, long startNanos) {
+        histograms[operation][outcome].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the histogram of an operation and outcome.
+     * @param operation The operation, such as {@link #PAY_SOMEONE}.
+     * @param outcome   The outcome, such as {@link #SUCCESS}.
+     * @return The histogram.
+     */
+    public LatencyHistogram getHistogram(int operation, int outcome) {
+        return histograms[operation][outcome];
+    }
+
+    /**
+     * Writes one line of {@link #DUMP_HEADER} columns for every operation and outcome
+     * that was recorded at least once.
+     * @param out  Where to write the lines.
+     * @param time The time written on every line.
+     * @throws IOException if the lines cannot be written
+     */
+    public void dump(Appendable out, Instant time) throws IOException {
+        String newLine = System.lineSeparator();
+        for (int operation = 0; operation < OPERATION_NAMES.length; operation++) {
+            for (int outcome = 0; outcome < OUTCOME_NAMES.length; outcome++) {
+                LatencyHistogram histogram = histograms[operation][outcome];
+                long count = histogram.getCount();
+                if (count == 0) {
+                    continue;
+                }
+                out.append(time.toString()).append(',').append(OPERATION_NAMES[operation]).append(',').append(OUTCOME_NAMES[outcome])
+                    .append(',').append(Long.toString(count))
+                    .append(',').append(format(histogram.getThroughputPerSecond()))
+                    .append(',').append(format(histogram.getMeanMicros()))
+                    .append(',').append(format(histogram.getP50Micros()))
+                    .append(',').append(format(histogram.getP90Micros()))
+                    .append(',').append(format(histogram.getP99Micros()))
+                    .append(',').append(format(histogram.getP999Micros()))
+                    .append(',').append(format(histogram.getMaxMicros()))
+                    .append(newLine);
+            }
+        }
+    }
+
+    /**
+     * Formats a metric with three decimals.
+     * @param value The metric.
+     * @return The formatted metric.
+     */
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Appends the metrics to a CSV file now and then every period, on a background
+     * thread, until {@link #close()}. The header is written when the file is new.
+     * @param filePath      The path of the file.
+     * @param periodSeconds The number of seconds between two dumps, at least 1.
+     */
+    public synchronized void startDumping(String filePath, long periodSeconds) {
+        if (periodSeconds < 1) {
+            throw new IllegalArgumentException("Dump period must be at least 1 second: " + periodSeconds);
+        }
+        if (dumper != null) {
+            dumper.shutdownNow();
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpPath = filePath;
+        dumper.scheduleAtFixedRate(() -> dumpTo(filePath), 0, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Appends the metrics to a CSV file, writing the header first when the file is new.
+     * @param filePath The path of the file.
+     */
+    public void dumpTo(String filePath) {
+        boolean newFile = !Files.exists(Paths.get(filePath));
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, true))) {
+            if (newFile) {
+                writer.write(DUMP_HEADER);
+                writer.newLine();
+            }
+            dump(writer, Instant.now());
+        } catch (IOException e) {
+            System.out.println("Error writing metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the periodic dump, if any, and appends the metrics to its file one last
+     * time. The metrics are still recorded and published.
+     */
+    @Override
+    public synchronized void close() {
+        if (dumper != null) {
+            dumper.shutdown();
+            try {
+                dumper.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dumper = null;
+            dumpTo(dumpPath);
+            dumpPath = null;
+        }
+    }
+}
@@ -1,32 +1,89 @@
-import java.util.HashMap;
-import java.util.Random;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
 /**
  * Manages customer passwords in a banking system.
  * This class provides functionalities for password management, including generating,
  * updating, and verifying customer passwords. It uses a singleton design pattern to
  * ensure a single instance of the password manager is used throughout the system.
+ *
+ * Passwords are never stored: each customer has a random salt and the PBKDF2 hash of
+ * the password with that salt, which is slow to compute on purpose. Customers loaded
+ * from the CSV file get no credential; they choose a password the first time they log
+ * in. Checking a password runs on a small pool of verifier threads with a bounded
+ * queue, so many sessions logging in at once cannot take every thread of the system,
+ * and the pool refuses work once the queue is full. A password being checked or that
+ * just matched is remembered for {@value #VERIFIED_SECONDS} seconds as a fast SHA-256
+ * digest, with its check: a client sending it with every request, as the HTTP API does,
+ * only pays for the slow hash once in a while, and requests that arrive together share
+ * a single check.
  * @author Natalia Cervantes
  * @author Tzetzaith Rivero
  * @version 3.0
  */
 public class PasswordManager {
+    /** The hash algorithm of the credentials. */
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+
+    /** The number of iterations of the hash of new credentials. */
+    private static final int ITERATIONS = 100000;
+
+    /** The length of the salt, in bytes. */
+    private static final int SALT_LENGTH = 16;
+
+    /** The length of the hash, in bits. */
+    private static final int HASH_LENGTH = 256;
+
+    /** The number of password checks that can wait for a verifier thread. */
+    private static final int VERIFY_QUEUE_CAPACITY = 1024;
+
+    /** How long a password that matched is remembered, in seconds. */
+    private static final long VERIFIED_SECONDS = 60;
+
     /** Singleton instance.*/
-    private static PasswordManager instance; 
-    /** Map of customer names to passwords.*/
-    private HashMap<String, String> passwords; 
+    private static PasswordManager instance;
+    /** Map of customer names to credentials, shared by the console and the HTTP server.*/
+    private Map<String, Credential> credentials;
+
+    /** The passwords that matched recently, by customer name. */
+    private final Map<String, Verified> verified = new ConcurrentHashMap<>();
+
+    /** The source of the salts and of the generated passwords. */
+    private final SecureRandom random = new SecureRandom();
+
+    /** The threads that check passwords. */
+    private final ThreadPoolExecutor verifiers;
 
     /** Private constructor to prevent instantiation.*/
     private PasswordManager() {
-        passwords = new HashMap<>();
+        credentials = new ConcurrentHashMap<>();
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        AtomicInteger threadNumber = new AtomicInteger();
+        verifiers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(VERIFY_QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "password-verifier-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
-    
+
     /**
      * Retrieves the singleton instance of the PasswordManager.
      * @return The singleton instance of PasswordManager.
      */
-    public static PasswordManager getInstance() {
+    public static synchronized PasswordManager getInstance() {
         if (instance == null) {
             instance = new PasswordManager();
         }
@@ -34,12 +91,12 @@ public class PasswordManager {
     }
 
     /**
-     * Retrieves the password for the specified customer.
-     * @param customerName The name of the customer whose password is being retrieved.
-     * @return The customer's password, or null if no password exists for the given name.
+     * Checks whether a customer has a password yet.
+     * @param customerName The name of the customer.
+     * @return true if the customer has a password, false if it is chosen at the first login.
      */
-    public String getPassword(String customerName) {
-        return passwords.get(customerName);
+    public boolean hasPassword(String customerName) {
+        return credentials.containsKey(customerName);
     }
 
      /**
@@ -50,39 +107,44 @@ public class PasswordManager {
      */
     public void updatePassword(String customerName, Scanner scanner) {
         String newPassword;
-        String oldPassword = passwords.get(customerName);
         while (true) {
             System.out.print("\nEnter a new password (length of 8): ");
             newPassword = scanner.nextLine();
-            
+
             if (newPassword.length() != 8) {
                 System.out.println("\nInvalid input. Password must be exactly 8 characters long.");
                 continue;
             }
-            if (newPassword.equals(oldPassword)) {
+            if (verifyPassword(customerName, newPassword)) {
                 System.out.println("\nInvalid input. New password cannot be the same as the old password.");
                 continue;
             }
             break;
         }
-        passwords.put(customerName, newPassword);
+        setPassword(customerName, newPassword);
         System.out.println("\nPassword updated successfully for " + customerName + ".");
     }
 
     /**
      * Handles the login process for a customer by validating their password.
      * Allows three attempts to enter the correct password, with an option to reset
-     * the password after failing all attempts.
+     * the password after failing all attempts. A customer without a password yet
+     * chooses one instead.
      * @param customerName The name of the customer attempting to log in.
      * @param scanner      A Scanner object to read user input for the password.
      * @return True if the login is successful, false otherwise.
      */
     public boolean loginCustomer(String customerName, Scanner scanner) {
-        String storedPassword = getPassword(customerName);
+        if (!hasPassword(customerName)) {
+            System.out.println("This is your first login, please choose a password.");
+            updatePassword(customerName, scanner);
+            System.out.println("\nLogin successful. Welcome, " + customerName + "!");
+            return true;
+        }
         System.out.println("Enter your password: ");
         for (int attempts = 3 ; attempts > 0 ; attempts--) {
             String enteredPassword = scanner.nextLine();
-            if (enteredPassword.equals(storedPassword)) {
+            if (verifyPassword(customerName, enteredPassword)) {
                 System.out.println("\nLogin successful. Welcome, " + customerName + "!");
                 return true;
             } else {
@@ -105,17 +167,177 @@ public class PasswordManager {
         return false;
     }
 
+    /**
+     * Checks a password without prompting, for callers that receive it with a request.
+     * The check runs on a verifier thread; the caller waits for it.
+     * @param customerName The name of the customer.
+     * @param password     The password to check.
+     * @return true if the password matches the customer's password, false otherwise.
+     * @throws java.util.concurrent.RejectedExecutionException if too many checks are waiting
+     */
+    public boolean verifyPassword(String customerName, String password) {
+        try {
+            return verifyPasswordAsync(customerName, password).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error verifying the password: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Checks a password on a verifier thread. A password whose check started in the last
+     * {@value #VERIFIED_SECONDS} seconds, and did not fail, shares that check instead:
+     * once it matched, the future is already completed.
+     * @param customerName The name of the customer.
+     * @param password     The password to check.
+     * @return A future completed with true if the password matches the customer's password.
+     * @throws java.util.concurrent.RejectedExecutionException if too many checks are waiting
+     */
+    public CompletableFuture<Boolean> verifyPasswordAsync(String customerName, String password) {
+        Credential credential = customerName == null ? null : credentials.get(customerName);
+        if (credential == null || password == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        byte[] digest = credential.digest(password);
+        Verified recent = verified.get(customerName);
+        boolean current = recent != null && recent.credential == credential && System.nanoTime() - recent.expiresNanos < 0;
+        if (current && MessageDigest.isEqual(recent.digest, digest)) {
+            return recent.check.copy();
+        }
+        CompletableFuture<Boolean> check = CompletableFuture.supplyAsync(() -> credential.matches(password), verifiers);
+        if (!current) {
+            // A wrong password does not replace the one remembered, and is forgotten once it fails.
+            Verified started = new Verified(credential, digest, System.nanoTime() + TimeUnit.SECONDS.toNanos(VERIFIED_SECONDS), check);
+            verified.put(customerName, started);
+            check.whenComplete((valid, error) -> {
+                if (error != null || !valid) {
+                    verified.remove(customerName, started);
+                }
+            });
+        }
+        return check.copy();
+    }
+
     /**
      * Generates and assigns a random password to a specific customer.
      * @param customerName The name of the customer for whom the password is being generated.
      * @return The generated password.
      */
     public String generatePassword(String customerName) {
-        String password = RandomPasswordGenerator.generate();
-        passwords.put(customerName, password);
+        String password = RandomPasswordGenerator.generate(random);
+        setPassword(customerName, password);
         return password;
     }
-    
+
+    /**
+     * Assigns a password to a customer, replacing the previous one.
+     * @param customerName The name of the customer.
+     * @param password     The new password.
+     */
+    private void setPassword(String customerName, String password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        credentials.put(customerName, new Credential(salt, ITERATIONS, hash(password, salt, ITERATIONS)));
+        verified.remove(customerName);
+    }
+
+    /**
+     * Hashes a password with PBKDF2.
+     * @param password   The password.
+     * @param salt       The salt.
+     * @param iterations The number of iterations.
+     * @return The hash.
+     */
+    private static byte[] hash(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_LENGTH);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * The salted hash of a customer's password.
+     */
+    private static class Credential {
+        /** The random salt. */
+        private final byte[] salt;
+        /** The number of iterations the hash was computed with. */
+        private final int iterations;
+        /** The hash of the password. */
+        private final byte[] hash;
+
+        /**
+         * Creates a new Credential.
+         * @param salt       The random salt.
+         * @param iterations The number of iterations the hash was computed with.
+         * @param hash       The hash of the password.
+         */
+        private Credential(byte[] salt, int iterations, byte[] hash) {
+            this.salt = salt;
+            this.iterations = iterations;
+            this.hash = hash;
+        }
+
+        /**
+         * Checks a password against the hash, in a time that does not depend on where
+         * they differ.
+         * @param password The password to check.
+         * @return true if the password matches.
+         */
+        private boolean matches(String password) {
+            return MessageDigest.isEqual(hash, PasswordManager.hash(password, salt, iterations));
+        }
+
+        /**
+         * Computes the fast digest a password that matched is remembered by.
+         * @param password The password.
+         * @return The SHA-256 digest of the salt and the password.
+         */
+        private byte[] digest(String password) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(salt);
+                return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+
+    /**
+     * A password checked against a credential recently, with its check.
+     */
+    private static class Verified {
+        /** The credential the password is checked against; a new password replaces it. */
+        private final Credential credential;
+        /** The fast digest of the password. */
+        private final byte[] digest;
+        /** The value of {@link System#nanoTime()} after which the password is checked again. */
+        private final long expiresNanos;
+        /** The check of the password, which may still be running. */
+        private final CompletableFuture<Boolean> check;
+
+        /**
+         * Creates a new Verified.
+         * @param credential   The credential the password is checked against.
+         * @param digest       The fast digest of the password.
+         * @param expiresNanos When the password must be checked again.
+         * @param check        The check of the password.
+         */
+        private Verified(Credential credential, byte[] digest, long expiresNanos, CompletableFuture<Boolean> check) {
+            this.credential = credential;
+            this.digest = digest;
+            this.expiresNanos = expiresNanos;
+            this.check = check;
+        }
+    }
+
     /**
      * Inner class for generating random passwords.
      * The generated passwords are 8 characters long and consist of uppercase,
@@ -127,11 +349,11 @@ public class PasswordManager {
 
         /**
          * Generates a random password of the specified length.
+         * @param random The source of randomness.
          * @return The generated password as a string.
          */
-        public static String generate() {
+        public static String generate(SecureRandom random) {
             String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-            Random random = new Random();
             StringBuilder password = new StringBuilder();
 
             for (int i = 0; i < passwordLength; i++) {
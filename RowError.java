@@ -0,0 +1,48 @@
+/**
+ * The RowError class describes a row of an input file that could not be processed.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class RowError {
+    /** The line of the file the row starts on, counting from 1. */
+    private final int lineNumber;
+
+    /** The reason the row could not be processed. */
+    private final String message;
+
+    /**
+     * Creates a new RowError.
+     * @param lineNumber the line of the file the row starts on
+     * @param message    the reason the row could not be processed
+     */
+    public RowError(int lineNumber, String message) {
+        this.lineNumber = lineNumber;
+        this.message = message;
+    }
+
+    /**
+     * Gets the line of the file the row starts on.
+     * @return the line number
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Gets the reason the row could not be processed.
+     * @return the error message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Describes the error with its line number.
+     * @return a description of the error
+     */
+    @Override
+    public String toString() {
+        return "Line " + lineNumber + ": " + message;
+    }
+}
@@ -1,8 +1,17 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Scanner;
-import java.util.HashMap;
-import java.util.Random;
+import java.util.Map;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.lang.Math;
 
 /**
@@ -14,19 +23,101 @@ import java.lang.Math;
  * @version 3.0
  */
 public class RunBank {
+    /** The largest number of customers suggested when a name is not found. */
+    private static final int MAX_SUGGESTIONS = 5;
+
+    /** The number of seconds between two dumps of the metrics to the file given with {@code --metrics}. */
+    private static final long METRICS_DUMP_PERIOD_SECONDS = 60;
+
+    /** The largest number of failed rows listed in the report of a {@code --batch} run. */
+    private static final int MAX_REPORTED_FAILED_ROWS = 100;
+
     /**
-     * The main method reads customer data from a CSV file and starts the 
-     * banking system, allowing the user to log in as either a customer, 
-     * a bank manager, or a bank teller.
-     * @param args command-line arguments (not used)
+     * The main method reads customer data from a CSV file, parsing it on every
+     * processor with the {@link BulkCustomerLoader}, and starts the banking system,
+     * allowing the user to log in as either a customer, a bank manager, or a bank teller. With {@code --http <port>} it also serves the
+     * customer operations over HTTP (see {@link BankHttpServer}) until the program exits.
+     * The {@link OperationMetrics} are published over JMX, and with {@code --metrics <file>}
+     * they are also appended to a CSV file every minute. With {@code --batch <file>} it
+     * processes a transactions file in batch mode, prints its report, and exits without
+     * showing the menu. Transactions files are checked against the
+     * {@link TransactionDedupIndex}, so the rows with a transaction ID applied by an
+     * earlier run are skipped.
+     * @param args command-line arguments: optionally {@code --http <port>}, {@code --metrics <file>}
+     *             and {@code --batch <file>}
      */
     public static void main(String[] args) {
+        String httpPort = null;
+        String metricsFile = null;
+        String batchFile = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--http")) {
+                httpPort = args[i + 1];
+            } else if (args[i].equals("--metrics")) {
+                metricsFile = args[i + 1];
+            } else if (args[i].equals("--batch")) {
+                batchFile = args[i + 1];
+            }
+        }
+        OperationMetrics metrics = OperationMetrics.getInstance();
+        if (metricsFile != null) {
+            metrics.startDumping(metricsFile, METRICS_DUMP_PERIOD_SECONDS);
+        }
         Scanner scanner = new Scanner(System.in);
-        HashMap<String, Customer> customersByName = new HashMap<>();
-        HashMap<Integer, Customer> customersById = new HashMap<>();
-        FilesHandling.loadCustomersFromCSV("CS 3331 - Bank Users.csv", customersByName, customersById);
+        ConcurrentMap<String, Customer> customersByName = new ConcurrentHashMap<>();
+        CustomerIdMap customersById = new CustomerIdMap();
+        FilesHandling.loadCustomersFromCSV("CS 3331 - Bank Users.csv", customersByName, customersById, Runtime.getRuntime().availableProcessors());
+        TransactionJournal journal = null;
+        try {
+            journal = TransactionJournal.getInstance();
+            int recovered = journal.recover(customersByName, customersById, "Updated_Bank_Users.csv");
+            if (recovered > 0) {
+                System.out.println("Recovered " + recovered + " transactions from the journal.");
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error recovering transactions: " + e.getMessage());
+        }
+        try {
+            int opened = Ledger.getInstance().materialize(customersByName.values(), Runtime.getRuntime().availableProcessors());
+            if (opened > 0) {
+                System.out.println("Posted the opening balances of " + opened + " accounts to the ledger.");
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error checking balances against the ledger: " + e.getMessage());
+        }
+        WriteBehindCustomerStore customerStore = new WriteBehindCustomerStore("Updated_Bank_Users.csv", customersByName, journal);
+        CustomerSearchIndex.getInstance().addAll(customersByName.values());
+        try {
+            StatementCursorStore.getInstance().load(customersById);
+        } catch (IOException e) {
+            System.out.println("Error loading statement cursors: " + e.getMessage());
+        }
+        BankHttpServer httpServer = null;
+        if (httpPort != null) {
+            try {
+                httpServer = new BankHttpServer(customersByName, customersById, journal, customerStore, Integer.parseInt(httpPort));
+                httpServer.start();
+                System.out.println("Serving customer operations over HTTP on port " + httpServer.getPort() + ".");
+            } catch (IOException | NumberFormatException e) {
+                System.out.println("Error starting the HTTP server: " + e.getMessage());
+            }
+        }
 
         boolean exit = false;
+        if (batchFile != null) {
+            try {
+                BankManager batchManager = new BankManager(customersByName);
+                batchManager.setDedupIndex(openDedupIndex());
+                batchManager.setCustomerStore(customerStore);
+                TransactionReport report = batchManager.processTransactionsInBatch(batchFile, Runtime.getRuntime().availableProcessors());
+                StringBuilder text = new StringBuilder();
+                report.writeTo(text, MAX_REPORTED_FAILED_ROWS);
+                System.out.print(text);
+            } catch (IOException e) {
+                System.out.println("Error reading transactions file: " + e.getMessage());
+            }
+            exit = true;
+        }
         while (!exit) {
             System.out.println("____________________________________________________________________________________");
             System.out.println("\nHello User! Please identify yourself: ");
@@ -43,14 +134,19 @@ public class RunBank {
                 System.out.println("And your last name?");
                 String lastName = scanner.nextLine();
                 
+                if (!customersByName.containsKey(firstName + " " + lastName)) {
+                    System.out.println("---------------------------------");
+                    System.out.println("Customer not found...");
+                    continue;
+                }
                 PasswordManager passwordManager = PasswordManager.getInstance();
                 boolean loginSuccessful = passwordManager.loginCustomer(firstName + " " + lastName, scanner);
                 if (loginSuccessful) {
-                    bankingMenu(customersByName, firstName, lastName, scanner);
+                    bankingMenu(customersByName, firstName, lastName, scanner, customerStore);
                 }
   
             } else if (choice.equals("2")){
-                bankingMenu(customersByName, customersById, scanner);
+                bankingMenu(customersByName, customersById, scanner, customerStore, journal);
 
             } else if (choice.equals("3")){
                 bankingMenu(customersById, scanner);
@@ -66,20 +162,53 @@ public class RunBank {
                 System.out.println("...");
             }
         }
-        FilesHandling.updateCSV(customersByName);
+        if (httpServer != null) {
+            httpServer.close();
+        }
+        customerStore.close();
+        try {
+            StatementCursorStore.getInstance().close();
+        } catch (IOException e) {
+            System.out.println("Error closing statement cursors: " + e.getMessage());
+        }
+        try {
+            Ledger.getInstance().close();
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error closing the ledger: " + e.getMessage());
+        }
+        try {
+            TransactionDedupIndex.getInstance().close();
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error closing the transaction index: " + e.getMessage());
+        }
+        metrics.close();
         scanner.close();
     }
 
+    /**
+     * Opens the index of the transaction rows already applied.
+     * @return The index, or null if it cannot be opened, in which case every row is applied.
+     */
+    private static TransactionDedupIndex openDedupIndex() {
+        try {
+            return TransactionDedupIndex.getInstance();
+        } catch (UncheckedIOException e) {
+            System.out.println("Error opening the transaction index: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * The banking menu for customers, allowing them to view account balances, 
      * deposit, withdraw, transfer money, pay another customer, and generate 
      * transaction summary.
-     * @param customers the HashMap of customers
+     * @param customers the map of customers
      * @param firstName the first name of the customer
      * @param lastName  the last name of the customer
      * @param scanner the scanner to read user inputs
+     * @param customerStore the store that persists the customers that change
      */
-    private static void bankingMenu(HashMap<String, Customer> customers, String firstName, String lastName, Scanner scanner) {
+    private static void bankingMenu(Map<String, Customer> customers, String firstName, String lastName, Scanner scanner, WriteBehindCustomerStore customerStore) {
         boolean exit = false;
         String nameKey = firstName + " " + lastName;
         Customer matchedCustomer = customers.get(nameKey);
@@ -142,6 +271,10 @@ public class RunBank {
 
                         paySomeone(customers, nameKey, firstNameOther, lastNameOther, scanner);
                         transactionTypes[3] = true;
+                        Customer recipient = customers.get(firstNameOther + " " + lastNameOther);
+                        if (recipient != null) {
+                            customerStore.markDirty(recipient);
+                        }
                         break;
                     } catch (Exception e) {
                         System.out.println("---------------------------------");
@@ -168,8 +301,7 @@ public class RunBank {
             for (int i = 0; i < accountTypes.length; i++) {
                 if (startingBalance[i] != endingBalance[i]) {
                     String transactionDescription = "";
-                    double amount = Math.abs(startingBalance[i] - endingBalance[i]);
-                    amount = Math.round(amount * 100.0) / 100.0;
+                    double amount = Money.toDouble(Math.abs(Money.fromDouble(startingBalance[i]) - Money.fromDouble(endingBalance[i])));
                     if (transactionTypes[0]) {
                         transactionDescription = "Deposited $" + amount;
                     } else if (transactionTypes[1]) {
@@ -180,9 +312,9 @@ public class RunBank {
                         transactionDescription = "Payed Someone $" + amount;
                     }
                     matchedCustomer.addTransaction(accountTypes[i], startingBalance[i], endingBalance[i], transactionDescription);
+                    customerStore.markDirty(matchedCustomer);
                 }
             }
-            FilesHandling.updateCSV(customers);
         }
     }
 
@@ -190,13 +322,17 @@ public class RunBank {
      * The banking menu for the bank teller, can access a customer information or 
      * generate a bank statement by entering their full name or ID, process 
      * transactions of customers, and add a new customer.
-     * @param customersName the HashMap of customers by Name
+     * @param customersName the map of customers by Name
      * @param customersId the HashMap of customers by ID
      * @param identNum the identification number of the customer to look up
      * @param scanner the scanner to read user inputs
+     * @param customerStore the store that persists the customers that change
+     * @param journal the journal the credit reviews are written to, or null
      */
-    private static void bankingMenu(HashMap<String, Customer> customersName, HashMap<Integer, Customer> customersId, Scanner scanner) {
+    private static void bankingMenu(Map<String, Customer> customersName, CustomerIdMap customersId, Scanner scanner, WriteBehindCustomerStore customerStore, TransactionJournal journal) {
         BankManager bm = new BankManager(customersName);
+        bm.setDedupIndex(openDedupIndex());
+        bm.setCustomerStore(customerStore);
         boolean exit = false;
         while (!exit) {
             System.out.println("\n--- Bank Manager Menu ---");
@@ -204,11 +340,15 @@ public class RunBank {
             System.out.println("2. Process Transactions");
             System.out.println("3. Generate Bank Statement");
             System.out.println("4. Add a new Customer");
-            System.out.println("5. Exit");
-            System.out.print("Select an option (1-5): ");
+            System.out.println("5. Generate Bank Statements for All Customers");
+            System.out.println("6. Review Credit Limits");
+            System.out.println("7. Onboard Customers from File");
+            System.out.println("8. View a Balance on a Past Date");
+            System.out.println("9. Exit");
+            System.out.print("Select an option (1-9): ");
             String choice = scanner.nextLine();
             Customer matchedCustomer = null;
-            if (choice.equals("1") || choice.equals("3")) {
+            if (choice.equals("1") || choice.equals("3") || choice.equals("8")) {
                 matchedCustomer = searchCustomer(customersName, customersId, scanner);
                 if (matchedCustomer == null) {
                     System.out.println("Customer lookup failed. Returning to main menu.");
@@ -226,38 +366,165 @@ public class RunBank {
                     bm.generateBankStatement(matchedCustomer);
                     break;
                 case "4":
-                    addNewCustomer(customersName, scanner);
+                    addNewCustomer(customersName, customersId, scanner);
                     break;
                 case "5":
+                    generateAllBankStatements(customersName);
+                    break;
+                case "6":
+                    reviewCreditLimits(customersName, scanner, customerStore, journal);
+                    break;
+                case "7":
+                    onboardCustomers(customersName, customersId, scanner);
+                    break;
+                case "8":
+                    inquireBalanceAsOf(bm, matchedCustomer, scanner);
+                    break;
+                case "9":
                     exit = true;
                     System.out.println("Exiting Bank Manager Menu.");
                     break;
                 default:
-                    System.out.println("Invalid option. Please enter 1, 2, 3, 4, or 5:");
+                    System.out.println("Invalid option. Please enter 1, 2, 3, 4, 5, 6, 7, 8, or 9:");
             }
         }
     }
 
     /**
-     * Helper method to search a customer by their full name or ID.
-     * @param customersName the HashMap of customers by Name
+     * Helper method to generate the bank statement of every customer into the
+     * "BankStatements" directory. Running it again after an interruption resumes the job.
+     * @param customersName the map of customers by Name
+     */
+    private static void generateAllBankStatements(Map<String, Customer> customersName) {
+        BulkStatementJob job = new BulkStatementJob(Paths.get("BankStatements"), Runtime.getRuntime().availableProcessors(), BulkStatementJob.DEFAULT_MAX_OPEN_FILES, StatementCursorStore.getInstance());
+        try {
+            job.run(customersName.values());
+        } catch (IOException e) {
+            System.out.println("Error generating bank statements: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Error generating bank statements: interrupted, run it again to resume.");
+        }
+    }
+
+    /**
+     * Helper method to re-underwrite the credit account of every customer. The manager
+     * can give the seed of an earlier review to repeat it; the changes are appended to
+     * the audit file before they are applied, then journaled and saved.
+     * @param customersName the map of customers by Name
+     * @param scanner the scanner to read user inputs
+     * @param customerStore the store that persists the customers whose limit changed
+     * @param journal the journal the changed limits are written to, or null
+     */
+    private static void reviewCreditLimits(Map<String, Customer> customersName, Scanner scanner, WriteBehindCustomerStore customerStore, TransactionJournal journal) {
+        System.out.print("Enter the seed of the review (leave empty for a new one): ");
+        String input = scanner.nextLine().trim();
+        long seed;
+        try {
+            seed = input.isEmpty() ? ThreadLocalRandom.current().nextLong() : Long.parseLong(input);
+        } catch (NumberFormatException e) {
+            System.out.println("\nInvalid input. Please enter a numeric value.");
+            return;
+        }
+        CreditReviewJob job = new CreditReviewJob(CreditPolicy.DEFAULT, seed, Runtime.getRuntime().availableProcessors());
+        job.setJournal(journal);
+        job.setCustomerStore(customerStore);
+        try {
+            job.run(customersName.values(), Paths.get(CreditReviewJob.DEFAULT_AUDIT_PATH));
+        } catch (IOException e) {
+            System.out.println("Error writing the credit review audit: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Helper method to show the balance one of a customer's accounts had at the end of
+     * a past day.
+     * @param bm the bank manager that looks up the balance
+     * @param customer the customer whose balance is shown
+     * @param scanner the scanner to read user inputs
+     */
+    private static void inquireBalanceAsOf(BankManager bm, Customer customer, Scanner scanner) {
+        System.out.println("\nSelect account:");
+        System.out.println("1. Checking");
+        System.out.println("2. Savings");
+        System.out.println("3. Credit");
+        String accountChoice = scanner.nextLine().trim();
+        String account = accountChoice.equals("1") ? "Checking" : accountChoice.equals("2") ? "Savings" : accountChoice.equals("3") ? "Credit" : null;
+        if (account == null) {
+            System.out.println("\nInvalid selection. Returning to main menu.");
+            return;
+        }
+        System.out.print("Enter the date (yyyy-MM-dd): ");
+        try {
+            bm.inquireBalanceAsOf(customer, account, LocalDate.parse(scanner.nextLine().trim()));
+        } catch (DateTimeParseException e) {
+            System.out.println("\nInvalid input. Please enter a date such as 2024-12-31.");
+        }
+    }
+
+    /**
+     * Helper method to add the new customers of a CSV file, such as those of a migration,
+     * with their accounts. The rows that cannot be added are listed.
+     * @param customersName the map of customers by Name
      * @param customersId the HashMap of customers by ID
      * @param scanner the scanner to read user inputs
      */
-    private static Customer searchCustomer(HashMap<String, Customer> customersName, HashMap<Integer, Customer> customersId, Scanner scanner) {
+    private static void onboardCustomers(Map<String, Customer> customersName, CustomerIdMap customersId, Scanner scanner) {
+        System.out.print("Enter the path of the CSV file of new customers: ");
+        String path = scanner.nextLine().trim();
+        List<RowError> errors = new ArrayList<>();
+        try {
+            new CustomerOnboarding(Runtime.getRuntime().availableProcessors()).onboard(path, customersName, customersId, errors);
+        } catch (IOException e) {
+            System.out.println("Error onboarding customers: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Error onboarding customers: interrupted, no customer was added.");
+        }
+        for (RowError error : errors) {
+            System.out.println("Error onboarding customers: " + error);
+        }
+    }
+
+    /**
+     * Helper method to search a customer by their full name, ID, or account number.
+     * @param customersName the map of customers by Name
+     * @param customersId the HashMap of customers by ID
+     * @param scanner the scanner to read user inputs
+     */
+    private static Customer searchCustomer(Map<String, Customer> customersName, CustomerIdMap customersId, Scanner scanner) {
         System.out.println("\nHow to access the customer:");
         System.out.println("1. By their full name");
         System.out.println("2. By their ID number");
+        System.out.println("3. By one of their account numbers");
         while (true) {
             String answer = scanner.nextLine();
             switch (answer) {
                 case "1":
-                    System.out.println("Type the full name of the customer (e.g., Sofia Hernandez):");
+                    System.out.println("Type the full name of the customer (e.g., Sofia Hernandez), or part of it:");
+                    String fullName = scanner.nextLine();
                     while (true) {
-                        String fullName = scanner.nextLine();
                         Customer customer = customersName.get(fullName);
                         if (customer != null) {return customer;}
-                        System.out.println("Customer not found. Please enter a valid full name:");
+                        List<Customer> matches = CustomerSearchIndex.getInstance().search(fullName, MAX_SUGGESTIONS);
+                        if (matches.isEmpty()) {
+                            System.out.println("Customer not found. Please enter a valid full name:");
+                            fullName = scanner.nextLine();
+                            continue;
+                        }
+                        System.out.println("Customer not found. Did you mean:");
+                        for (int i = 0; i < matches.size(); i++) {
+                            Customer match = matches.get(i);
+                            System.out.println((i + 1) + ". " + match.getFirstName() + " " + match.getLastName() + " (ID: " + match.getIdentificationNumber() + ")");
+                        }
+                        System.out.println("Enter the number of the customer, or type another full name:");
+                        fullName = scanner.nextLine();
+                        try {
+                            int choice = Integer.parseInt(fullName.trim());
+                            if (choice >= 1 && choice <= matches.size()) {return matches.get(choice - 1);}
+                        } catch (NumberFormatException e) {
+                            // Not a number: look the text up as a name.
+                        }
                     }
                 case "2":
                     System.out.println("Type the ID number of the customer:");
@@ -272,8 +539,21 @@ public class RunBank {
                             System.out.println("Invalid ID format. Please enter a numeric ID:");
                         }
                     }
+                case "3":
+                    System.out.println("Type the checking, savings, or credit account number of the customer:");
+                    while (true) {
+                        String accountNumber = scanner.nextLine();
+                        try {
+                            Customer customer = AccountIndex.getInstance().getOwner(Integer.parseInt(accountNumber));
+                            if (customer != null) {return customer;}
+
+                            System.out.println("Account not found. Please enter a valid account number:");
+                        } catch (NumberFormatException e) {
+                            System.out.println("Invalid account number format. Please enter a numeric account number:");
+                        }
+                    }
                 default:
-                    System.out.println("Invalid option. Please enter 1 or 2:");
+                    System.out.println("Invalid option. Please enter 1, 2, or 3:");
             }
         }
     }
@@ -284,7 +564,7 @@ public class RunBank {
      * @param customersId the HashMap of customers by ID
      * @param scanner the scanner to read user inputs
      */
-    private static void bankingMenu(HashMap<Integer, Customer> customersId, Scanner scanner) {
+    private static void bankingMenu(CustomerIdMap customersId, Scanner scanner) {
         BankTeller bt = new BankTeller();
         boolean exit = false;
         while (!exit) {
@@ -354,31 +634,32 @@ public class RunBank {
             String accountChoice; 
             while (true) { 
                 accountChoice = scanner.nextLine();
+                double prevChecking = customer.getCheckingAccount().getBalance();
+                double prevSaving = customer.getSavingsAccount().getBalance();
+                double prevCredit = customer.getCreditAccount().getBalance();
                 if (accountChoice.equals("3")) {
-                    while (!customer.getCreditAccount().isDepositWithinLimit(amount)) {
+                    while (!customer.deposit(amount, accountChoice)) {
                         System.out.print("\nThe amount you chose is too high for your Credit Account.\n");
                         customer.getCreditAccount().displayAccountInfo();
                         amount = getAmount("deposit", scanner);
                     }
+                } else {
+                    customer.deposit(amount, accountChoice);
                 }
-                double prevChecking = customer.getCheckingAccount().getBalance();
-                double prevSaving = customer.getSavingsAccount().getBalance();
-                double prevCredit = customer.getCreditAccount().getBalance();
-                customer.deposit(amount, accountChoice);
                 switch (accountChoice) {
                     case "1":
                         if (prevChecking != customer.getCheckingAccount().getBalance()) {
-                            FilesHandling.logTransaction("Deposited $" + amount + " into Checking Account for " + customer.getFirstName() + " " + customer.getLastName());
+                            FilesHandling.logTransaction(new JournalEntry("Deposited $" + amount + " into Checking Account for " + customer.getFirstName() + " " + customer.getLastName()).addBalance(customer, "Checking"));
                         }
                         break;
                     case "2":
                         if (prevSaving != customer.getSavingsAccount().getBalance()) {
-                            FilesHandling.logTransaction("Deposited $" + amount + " into Savings Account for " + customer.getFirstName() + " " + customer.getLastName());
+                            FilesHandling.logTransaction(new JournalEntry("Deposited $" + amount + " into Savings Account for " + customer.getFirstName() + " " + customer.getLastName()).addBalance(customer, "Savings"));
                         }
                         break;
                     case "3":
                         if (prevCredit != customer.getCreditAccount().getBalance()) {
-                            FilesHandling.logTransaction("Deposited $" + amount + " into Credit Account for " + customer.getFirstName() + " " + customer.getLastName());
+                            FilesHandling.logTransaction(new JournalEntry("Deposited $" + amount + " into Credit Account for " + customer.getFirstName() + " " + customer.getLastName()).addBalance(customer, "Credit"));
                         }
                         break;
                     default:
@@ -414,12 +695,12 @@ public class RunBank {
                 switch (accountChoice) {
                     case "1":
                         if (prevChecking != customer.getCheckingAccount().getBalance()) {
-                            FilesHandling.logTransaction("Withdrew $" + amount + " from Checking Account for " + customer.getFirstName() + " " + customer.getLastName());
+                            FilesHandling.logTransaction(new JournalEntry("Withdrew $" + amount + " from Checking Account for " + customer.getFirstName() + " " + customer.getLastName()).addBalance(customer, "Checking"));
                         }
                         break;
                     case "2":
                         if (prevSaving != customer.getSavingsAccount().getBalance()) {
-                            FilesHandling.logTransaction("Withdrew $" + amount + " from Savings Account for " + customer.getFirstName() + " " + customer.getLastName());
+                            FilesHandling.logTransaction(new JournalEntry("Withdrew $" + amount + " from Savings Account for " + customer.getFirstName() + " " + customer.getLastName()).addBalance(customer, "Savings"));
                         }
                         break;
                     default:
@@ -455,24 +736,18 @@ public class RunBank {
             }
         
             if (direction.equals("1")) {
-                double checkingBalance = customer.getCheckingAccount().getBalance();
-                if (checkingBalance >= amount) {
-                    customer.getCheckingAccount().setBalance(checkingBalance - amount);
-                    customer.getSavingsAccount().setBalance(customer.getSavingsAccount().getBalance() + amount);
+                if (AccountLocks.getInstance().transfer(customer.getCheckingAccount(), customer.getSavingsAccount(), Money.fromDouble(amount))) {
                     System.out.println("Transferred $" + amount + " from Checking to Savings.");
         
-                    FilesHandling.logTransaction("Transferred $" + amount + " from Checking to Savings for " + customer.getFirstName() + " " + customer.getLastName());
+                    FilesHandling.logTransaction(new JournalEntry("Transferred $" + amount + " from Checking to Savings for " + customer.getFirstName() + " " + customer.getLastName()).addBalance(customer, "Checking").addBalance(customer, "Savings"));
                 } else {
                     System.out.println("Insufficient funds in Checking.");
                 }
             } else if (direction.equals("2")) {
-                double savingsBalance = customer.getSavingsAccount().getBalance();
-                if (savingsBalance >= amount) {
-                    customer.getSavingsAccount().setBalance(savingsBalance - amount);
-                    customer.getCheckingAccount().setBalance(customer.getCheckingAccount().getBalance() + amount);
+                if (AccountLocks.getInstance().transfer(customer.getSavingsAccount(), customer.getCheckingAccount(), Money.fromDouble(amount))) {
                     System.out.println("Transferred $" + amount + " from Savings to Checking.");
         
-                    FilesHandling.logTransaction("Transferred $" + amount + " from Savings to Checking for " + customer.getFirstName() + " " + customer.getLastName());
+                    FilesHandling.logTransaction(new JournalEntry("Transferred $" + amount + " from Savings to Checking for " + customer.getFirstName() + " " + customer.getLastName()).addBalance(customer, "Savings").addBalance(customer, "Checking"));
                 } else {
                     System.out.println("Insufficient funds in Savings.");
                 }
@@ -489,13 +764,13 @@ public class RunBank {
     /**
      * Allows the customer to pay another customer by transferring money from their checking account
      * to the recipient's checking account.
-     * @param customers           HashMap of all customers
+     * @param customers           map of all customers
      * @param payerName          index of the paying customer
      * @param firstNameRecipient  first name of the recipient
      * @param lastNameRecipient   last name of the recipient
      * @param scanner the scanner to read user inputs
      */
-    public static void paySomeone(HashMap<String, Customer> customers, String payerName, String firstNameRecipient, String lastNameRecipient, Scanner scanner) {
+    public static void paySomeone(Map<String, Customer> customers, String payerName, String firstNameRecipient, String lastNameRecipient, Scanner scanner) {
         System.out.println("\n--- Pay Someone ---");
         Customer payer = customers.get(payerName);
         String nameKey = firstNameRecipient + " " + lastNameRecipient;
@@ -508,14 +783,10 @@ public class RunBank {
 
         try{
             double amount = getAmount("pay", scanner);
-            double payerCheckingBalance = payer.getCheckingAccount().getBalance();
-            if (payerCheckingBalance >= amount) {
-                payer.getCheckingAccount().setBalance(payerCheckingBalance - amount);
-                double recipientCheckingBalance = matchedRecipient.getCheckingAccount().getBalance();
-                matchedRecipient.getCheckingAccount().setBalance(recipientCheckingBalance + amount);
+            if (AccountLocks.getInstance().transfer(payer.getCheckingAccount(), matchedRecipient.getCheckingAccount(), Money.fromDouble(amount))) {
         
                 System.out.println("Paid $" + amount + " to " + nameKey + ".");
-                FilesHandling.logTransaction("Paid $" + amount + " from " + payerName + " to " + nameKey);
+                FilesHandling.logTransaction(new JournalEntry("Paid $" + amount + " from " + payerName + " to " + nameKey).addBalance(payer, "Checking").addBalance(matchedRecipient, "Checking"));
             } else {
                 System.out.println("Insufficient funds in Checking. Payment could not be completed.");
             }
@@ -539,7 +810,7 @@ public class RunBank {
                 String amountResponse = scanner.nextLine();
                 amount = Double.parseDouble(amountResponse);
                 if (amount > 0 && amount <= 900000) {
-                    amount = Math.round(amount * 100.0) / 100.0;
+                    amount = Money.toDouble(Money.fromDouble(amount));
                     break;
                 }
                 System.out.println("\nAmount cannot be negative, zero, or bigger than 900,000. Please enter a valid amount.");
@@ -559,12 +830,12 @@ public class RunBank {
      * unique account numbers and an assigned credit limit based on a random credit score.
      * If a customer with the same name already exists, it prompts for a unique name.
      * @param customersByName A map of customer names to Customer objects, used to store and check for unique names
+     * @param customersById   The map of customers by ID, where the new customer is stored too
      * @param scanner         A Scanner object for reading user input
      */
-    public static void addNewCustomer(HashMap<String, Customer> customersByName, Scanner scanner) {
+    public static void addNewCustomer(Map<String, Customer> customersByName, CustomerIdMap customersById, Scanner scanner) {
         System.out.println("\n--- Add New Customer ---");
         try {   
-            int customerId = Customer.lastCustomerId;
             String firstName, lastName, dateOfBirth, address, phoneNumber;
             while (true) {
                 System.out.print("Enter first name: ");
@@ -593,11 +864,11 @@ public class RunBank {
                 System.out.println("\nInvalid phone number. Please try again.");
             }
             
-            int checkingAccountNumber = Checking.lastCheckingAccountNumber;
-            int savingsAccountNumber = Saving.lastSavingsAccountNumber;
-            int creditAccountNumber = Credit.lastCreditAccountNumber;
-            Random rand = new Random();
-            int creditScore = 1 + rand.nextInt(900);
+            int customerId = Customer.ID_SEQUENCE.next();
+            int checkingAccountNumber = Account.NUMBER_SEQUENCE.next();
+            int savingsAccountNumber = Account.NUMBER_SEQUENCE.next();
+            int creditAccountNumber = Account.NUMBER_SEQUENCE.next();
+            int creditScore = 1 + ThreadLocalRandom.current().nextInt(900);
             double creditMax = Credit.determineCreditLimit(creditScore);
 
             AccountFactory accFac = new AccountFactory();
@@ -616,6 +887,9 @@ public class RunBank {
             
             Customer newCustomer = new Customer(customerId, firstName, lastName, dateOfBirth, address, phoneNumber, checkingAccount, savingsAccount, creditAccount);
             customersByName.put(firstName + " " + lastName, newCustomer);
+            customersById.put(customerId, newCustomer);
+            AccountIndex.getInstance().register(newCustomer);
+            CustomerSearchIndex.getInstance().add(newCustomer);
             
             PasswordManager passwordManager = PasswordManager.getInstance();
             String password = passwordManager.generatePassword(firstName + " " + lastName);
@@ -215,6 +215,1327 @@ class RunBankTest {
         assertTrue(bm.generateBankStatement(testCustomer));
     }
 
+    /**
+     * Tests the parallel processTransactions method by verifying that processing
+     * the transactions file with several workers leaves the same balances and
+     * transaction histories as processing it sequentially.
+     */
+    @Test
+    void testProcessTransactionsParallelManager(){
+        HashMap<String, Customer> sequential = new HashMap<>();
+        FilesHandling.loadCustomersFromCSV("CS 3331 - Bank Users.csv", sequential, new CustomerIdMap());
+        new BankManager(sequential).processTransactions("Transactions.csv");
+
+        HashMap<String, Customer> parallel = new HashMap<>();
+        FilesHandling.loadCustomersFromCSV("CS 3331 - Bank Users.csv", parallel, new CustomerIdMap());
+        new BankManager(parallel).processTransactions("Transactions.csv", 4);
+
+        for (String name : sequential.keySet()) {
+            Customer expected = sequential.get(name);
+            Customer actual = parallel.get(name);
+            assertEquals(expected.getCheckingAccount().getBalance(), actual.getCheckingAccount().getBalance());
+            assertEquals(expected.getSavingsAccount().getBalance(), actual.getSavingsAccount().getBalance());
+            assertEquals(expected.getCreditAccount().getBalance(), actual.getCreditAccount().getBalance());
+            assertEquals(expected.getTransactions("Checking"), actual.getTransactions("Checking"));
+            assertEquals(expected.getTransactions("Savings"), actual.getTransactions("Savings"));
+        }
+    }
+
+    /**
+     * Tests the CSVReader by verifying that quoted fields keep their commas,
+     * line breaks and escaped quotes, and that numbers are parsed from the fields.
+     */
+    @Test
+    void testCSVReaderQuotedFields() throws java.io.IOException {
+        String csv = "Name,Address,Balance\r\n"
+                   + "John, \"500 W. University Ave, El Paso\" ,857.56\r\n"
+                   + "\r\n"
+                   + "Jane,\"Line 1\nLine 2 \"\"B\"\"\",-10\n";
+        CSVReader reader = new CSVReader(new java.io.StringReader(csv));
+        assertTrue(reader.nextRecord());
+        assertEquals(3, reader.getFieldCount());
+
+        assertTrue(reader.nextRecord());
+        assertEquals("John", reader.getString(0));
+        assertEquals("500 W. University Ave, El Paso", reader.getString(1));
+        assertEquals(857.56, reader.getDouble(2));
+        assertEquals(2, reader.getLineNumber());
+
+        assertTrue(reader.nextRecord());
+        assertEquals("Line 1\nLine 2 \"B\"", reader.getString(1));
+        assertEquals(-10, reader.getInt(2));
+        assertEquals(4, reader.getLineNumber());
+        assertFalse(reader.nextRecord());
+    }
+
+    /**
+     * Tests that money amounts kept in cents are parsed, added and formatted exactly,
+     * where the same operations on doubles would pick up rounding errors.
+     */
+    @Test
+    void testMoneyCentsAreExact() {
+        assertEquals(85756, Money.parse("857.56"));
+        assertEquals(-1000, Money.parse("-10"));
+        assertEquals(1001, Money.parse("10.005"));
+        assertEquals("-10.00", Money.format(-1000));
+        assertEquals("0.05", Money.format(5));
+
+        Checking account = new Checking(1003, 0.0);
+        for (int i = 0; i < 10; i++) {
+            account.deposit(Money.parse("0.10"));
+        }
+        assertEquals(100, account.getBalanceCents());
+        assertEquals(1.0, account.getBalance());
+        assertFalse(account.withdraw(101));
+        assertTrue(account.withdraw(100));
+        assertEquals(0, account.getBalanceCents());
+    }
+
+    /**
+     * Tests that the BankManager records transactions as structured history entries
+     * and that they are rendered in the statement format only when read.
+     */
+    @Test
+    void testStructuredTransactionHistory() {
+        Customer recipient = new Customer(3, "Jane", "Smith", "02-Feb-1991", "456 Elm St", "555-5678", new Checking(1003, 100.0), new Saving(2003, 0.0), new Credit(3003, 0.0, 400.0));
+        BankManager bm = new BankManager(customersByName);
+        testCustomer.getCheckingAccount().setBalance(500.0);
+        bm.paySomeone(testCustomer, recipient, "Checking", "Checking", 20.25);
+
+        TransactionHistory history = testCustomer.getHistory("Checking");
+        assertEquals(1, history.size());
+        assertEquals(TransactionHistory.PAYMENT_SENT, history.getKind(0));
+        assertEquals(50000, history.getStartingBalanceCents(0));
+        assertEquals(47975, history.getEndingBalanceCents(0));
+        assertEquals(2025, history.getAmountCents(0));
+        assertEquals(3, history.getCounterpartyId(0));
+        assertEquals("Starting Balance: $100.0, Ending Balance: $120.25, Transaction: Received $20.25 from "
+                + "John Doe.\n", recipient.getTransactions("Checking"));
+    }
+
+    /**
+     * Tests that concurrent payments in both directions between the same customers
+     * neither deadlock nor lose updates, thanks to the ordered striped locks.
+     */
+    @Test
+    void testConcurrentPaymentsKeepTotals() throws InterruptedException {
+        Customer a = new Customer(10, "Ann", "Lee", "01-Jan-1990", "1 Main St", "555-0001", new Checking(5001, 1000.0), new Saving(6001, 0.0), new Credit(7001, 0.0, 100.0));
+        Customer b = new Customer(11, "Bob", "Lee", "01-Jan-1990", "1 Main St", "555-0002", new Checking(5002, 1000.0), new Saving(6002, 0.0), new Credit(7002, 0.0, 100.0));
+        BankManager bm = new BankManager(customersByName);
+        java.io.PrintStream out = System.out;
+        System.setOut(new java.io.PrintStream(java.io.OutputStream.nullOutputStream()));
+        try {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                Customer from = t % 2 == 0 ? a : b;
+                Customer to = t % 2 == 0 ? b : a;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        bm.paySomeone(from, to, "Checking", "Checking", 0.01);
+                        bm.transferMoney(from, "Checking", "Savings", 0.01);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join(30000);
+                assertFalse(thread.isAlive());
+            }
+        } finally {
+            System.setOut(out);
+        }
+        long total = a.getCheckingAccount().getBalanceCents() + a.getSavingsAccount().getBalanceCents()
+                   + b.getCheckingAccount().getBalanceCents() + b.getSavingsAccount().getBalanceCents();
+        assertEquals(200000, total);
+        assertEquals(8000, a.getSavingsAccount().getBalanceCents() + b.getSavingsAccount().getBalanceCents());
+    }
+
+    /**
+     * Tests that concurrent lock-free withdrawals never overdraw an account and that
+     * every rejected withdrawal is counted.
+     */
+    @Test
+    void testLockFreeWithdrawalsNeverOverdraw() throws InterruptedException {
+        Checking account = new Checking(8001, 50.0);
+        long failuresBefore = Account.getCasFailureCount();
+        java.util.concurrent.atomic.AtomicInteger succeeded = new java.util.concurrent.atomic.AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (account.withdraw(1)) {
+                        succeeded.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(5000, succeeded.get());
+        assertEquals(0, account.getBalanceCents());
+        assertTrue(Account.getCasFailureCount() - failuresBefore >= 3000);
+        assertFalse(new Credit(8002, -50.0, 100.0).depositWithinLimit(Money.parse("60")));
+    }
+
+    /**
+     * Tests that the HTTP server authenticates customers, delegates deposits to the
+     * bank manager and replies with the new balances, without printing the messages of
+     * the operations.
+     */
+    @Test
+    void testHttpDepositAndInquire() throws Exception {
+        java.util.concurrent.ConcurrentMap<String, Customer> byName = new java.util.concurrent.ConcurrentHashMap<>();
+        CustomerIdMap byId = new CustomerIdMap();
+        Customer customer = new Customer(9101, "Http", "Client", "01-Jan-1990", "1 Web St", "555-0101", new Checking(9102, 100.0), new Saving(9103, 0.0), new Credit(9104, 0.0, 500.0));
+        byName.put("Http Client", customer);
+        byId.put(9101, customer);
+        String password = PasswordManager.getInstance().generatePassword("Http Client");
+        java.io.PrintStream console = System.out;
+        java.io.ByteArrayOutputStream printed = new java.io.ByteArrayOutputStream();
+        System.setOut(new java.io.PrintStream(printed, true));
+        try (BankHttpServer server = new BankHttpServer(byName, byId, null, null, 0)) {
+            server.start();
+            java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
+            String base = "http://127.0.0.1:" + server.getPort();
+            java.net.http.HttpResponse<String> deposit = client.send(java.net.http.HttpRequest.newBuilder(java.net.URI.create(base + "/deposit"))
+                .POST(java.net.http.HttpRequest.BodyPublishers.ofString("{\"customer\": \"Http Client\", \"password\": \"" + password + "\", \"account\": \"Checking\", \"amount\": 25.50}"))
+                .build(), java.net.http.HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, deposit.statusCode());
+            assertEquals(12550, customer.getCheckingAccount().getBalanceCents());
+            assertEquals("", printed.toString());
+
+            java.net.http.HttpResponse<String> inquire = client.send(java.net.http.HttpRequest.newBuilder(java.net.URI.create(base + "/inquire?id=9101&password=" + password)).build(), java.net.http.HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, inquire.statusCode());
+            assertTrue(inquire.body().contains("\"checking\":125.50"));
+
+            java.net.http.HttpResponse<String> denied = client.send(java.net.http.HttpRequest.newBuilder(java.net.URI.create(base + "/inquire?customer=Http+Client&password=wrong")).build(), java.net.http.HttpResponse.BodyHandlers.ofString());
+            assertEquals(401, denied.statusCode());
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * Tests that the account index finds accounts and their owners by number, both in
+     * the dense ranges and for scattered numbers, and that the factory registers the
+     * accounts it creates.
+     */
+    @Test
+    void testAccountIndexFindsOwners() throws InvalidAccountException {
+        AccountIndex index = new AccountIndex();
+        index.register(testCustomer);
+        Checking scattered = new Checking(Integer.MAX_VALUE - 7, 1.0);
+        index.register(scattered, testCustomer2);
+        for (int i = 0; i < 5000; i++) {
+            index.register(new Saving(50000000 + i * 65536, 0.0));
+        }
+        assertSame(testCustomer, index.getOwner(1001));
+        assertSame(testCustomer.getCreditAccount(), index.getAccount(3001));
+        assertSame(scattered, index.getAccount(Integer.MAX_VALUE - 7));
+        assertSame(testCustomer2, index.getOwner(Integer.MAX_VALUE - 7));
+        assertEquals(50000000 + 4999 * 65536, index.getAccount(50000000 + 4999 * 65536).getAccountNumber());
+        assertNull(index.getAccount(1002));
+        assertEquals(5004, index.size());
+        assertTrue(index.getSparseCount() > 0);
+
+        Account created = new AccountFactory().createAccount("Checking", 987654, 0);
+        assertSame(created, AccountIndex.getInstance().getAccount(987654));
+    }
+
+    /**
+     * Tests that the primitive id map stores, replaces and finds customers across
+     * resizes, including ids that collide in the table.
+     */
+    @Test
+    void testCustomerIdMap() {
+        CustomerIdMap map = new CustomerIdMap();
+        for (int id = -500; id < 100000; id += 3) {
+            map.put(id, id % 2 == 0 ? testCustomer : testCustomer2);
+        }
+        assertEquals(33500, map.size());
+        assertSame(testCustomer, map.get(-500));
+        assertSame(testCustomer2, map.get(99997));
+        assertNull(map.get(99998));
+        assertSame(testCustomer, map.put(4, testCustomer2));
+        assertSame(testCustomer2, map.get(4));
+        assertEquals(33500, map.size());
+        assertTrue(map.containsKey(1));
+        assertFalse(map.containsKey(0));
+        int[] visited = {0};
+        map.forEach(customer -> visited[0]++);
+        assertEquals(33500, visited[0]);
+    }
+
+    /**
+     * Tests that lookups of the id map running while another thread stores customers
+     * and grows the table always find the customer stored for an id.
+     */
+    @Test
+    void testCustomerIdMapConcurrentLookups() throws InterruptedException {
+        CustomerIdMap map = new CustomerIdMap();
+        int count = 200000;
+        java.util.concurrent.atomic.AtomicInteger stored = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.atomic.AtomicInteger wrong = new java.util.concurrent.atomic.AtomicInteger();
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                java.util.concurrent.ThreadLocalRandom random = java.util.concurrent.ThreadLocalRandom.current();
+                while (stored.get() < count) {
+                    int published = stored.get();
+                    if (published == 0) {
+                        continue;
+                    }
+                    int id = random.nextInt(published);
+                    try {
+                        if (map.get(id) != (id % 2 == 0 ? testCustomer : testCustomer2)) {
+                            wrong.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        wrong.incrementAndGet();
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        for (int id = 0; id < count; id++) {
+            map.put(id, id % 2 == 0 ? testCustomer : testCustomer2);
+            stored.set(id + 1);
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(0, wrong.get());
+        assertEquals(count, map.size());
+    }
+
+    /**
+     * Tests that the search index finds customers by a prefix of either name and by a
+     * name with typos, closest first.
+     */
+    @Test
+    void testCustomerSearchIndex() {
+        CustomerSearchIndex index = new CustomerSearchIndex();
+        Customer sofia = new Customer(11, "Sofia", "Hernandez", "01-Jan-1990", "1 Main St", "555-0001", new Checking(), new Saving(), new Credit());
+        Customer sofie = new Customer(12, "Sofie", "Fernandez", "01-Jan-1990", "1 Main St", "555-0002", new Checking(), new Saving(), new Credit());
+        index.addAll(java.util.List.of(testCustomer, testCustomer2, sofia, sofie));
+        index.add(sofia);
+        assertEquals(4, index.size());
+
+        assertEquals(java.util.List.of(sofia, sofie), index.prefixSearch("SOF", 10));
+        assertEquals(java.util.List.of(sofia), index.prefixSearch("hernandez s", 10));
+        assertEquals(java.util.List.of(testCustomer), index.prefixSearch("doe", 10));
+        assertEquals(1, index.prefixSearch("so", 1).size());
+        assertTrue(index.prefixSearch("x", 10).isEmpty());
+
+        assertEquals(java.util.List.of(sofia), index.fuzzySearch("Sofia Hernandes", 2, 10));
+        assertEquals(java.util.List.of(sofie, sofia), index.fuzzySearch("Sofi Fernandez", 2, 10));
+        assertEquals(java.util.List.of(sofie), index.fuzzySearch("Sofi Fernandez", 2, 1));
+        assertEquals(java.util.List.of(testCustomer), index.fuzzySearch("Jhon Doe", 2, 10));
+        assertEquals(java.util.List.of(testCustomer), index.search("Doe Jonh", 5));
+        assertTrue(index.fuzzySearch("Sofia Hernandes", 0, 10).isEmpty());
+    }
+
+    /**
+     * Tests the BulkStatementJob by verifying that its statements are identical to the
+     * ones of generateBankStatement, that a resumed job skips the customers that an
+     * interrupted run already did, and that customers without activity are skipped.
+     */
+    @Test
+    void testBulkStatementJob() throws Exception {
+        HashMap<String, Customer> customers = new LinkedHashMap<>();
+        Customer john = new Customer(101, "John", "Bulk", "01-Jan-1990", "123 Main St", "555-1234", new Checking(1101, 500.0), new Saving(2101, 1000.0), new Credit(3101, -100.0, 500.0));
+        Customer jane = new Customer(102, "Jane", "Bulk", "01-Jan-1990", "123 Main St", "555-1234", new Checking(1102, 500.0), new Saving(2102, 1000.0), new Credit(3102, -100.0, 500.0));
+        Customer johnCopy = new Customer(101, "John", "Bulk", "01-Jan-1990", "123 Main St", "555-1234", new Checking(1101, 500.0), new Saving(2101, 1000.0), new Credit(3101, -100.0, 500.0));
+        customers.put("John Bulk", john);
+        customers.put("Jane Bulk", jane);
+        bm.depositMoney(john, "Checking", 25.0);
+        bm.depositMoney(johnCopy, "Checking", 25.0);
+
+        java.nio.file.Path directory = java.nio.file.Paths.get("BulkStatementsTest");
+        BulkStatementJob job = new BulkStatementJob(directory, 2, 1, new StatementCursorStore("BulkStatementsTest.csv"));
+        assertTrue(job.run(customers.values()));
+        assertEquals(2, job.getWrittenCount());
+        assertFalse(java.nio.file.Files.exists(directory.resolve(BulkStatementJob.PROGRESS_FILE_NAME)));
+
+        assertTrue(bm.generateBankStatement(johnCopy));
+        String fileName = BankManager.statementFileName(john, johnCopy.getStatementCursor().getStatementDate());
+        assertArrayEquals(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(fileName)), java.nio.file.Files.readAllBytes(directory.resolve(fileName)));
+
+        bm.depositMoney(john, "Savings", 10.0);
+        bm.depositMoney(jane, "Savings", 10.0);
+        java.nio.file.Files.write(directory.resolve(BulkStatementJob.PROGRESS_FILE_NAME), java.util.List.of("2000-01-01", "101"));
+        assertTrue(job.run(customers.values()));
+        assertEquals(1, job.getSkippedCount());
+        assertEquals(1, job.getWrittenCount());
+        assertTrue(new String(java.nio.file.Files.readAllBytes(directory.resolve(BankManager.statementFileName(jane, "2000-01-01")))).contains("Date of Statement: 2000-01-01"));
+
+        assertTrue(job.run(customers.values()));
+        assertEquals(1, job.getWrittenCount());
+        assertEquals(1, job.getInactiveCount());
+        assertTrue(job.run(customers.values()));
+        assertEquals(0, job.getWrittenCount());
+        assertEquals(2, job.getInactiveCount());
+    }
+
+    /**
+     * Tests that a bank statement only covers the activity since the previous one, with
+     * the balances carried forward, and that the statement cursors survive a reload.
+     */
+    @Test
+    void testIncrementalBankStatement() throws Exception {
+        Customer customer = new Customer(103, "Ann", "Cursor", "01-Jan-1990", "123 Main St", "555-1234", new Checking(1103, 500.0), new Saving(2103, 1000.0), new Credit(3103, -100.0, 500.0));
+        java.nio.file.Path file = java.nio.file.Paths.get(BankManager.statementFileName(customer, new java.text.SimpleDateFormat("yyyy-MM-dd").format(new java.util.Date())));
+        assertEquals("BankStatement_103_2024-03-01.txt", BankManager.statementFileName(customer, "2024-03-01"));
+        assertTrue(StatementCursor.isDue(customer));
+        bm.depositMoney(customer, "Checking", 25.0);
+        assertTrue(bm.generateBankStatement(customer));
+        String first = new String(java.nio.file.Files.readAllBytes(file));
+        assertTrue(first.contains("Previous Statement: None"));
+        assertTrue(first.contains("Checking Account Opening Balance: $500.0"));
+        assertTrue(first.contains("Deposited $25.0"));
+        assertFalse(StatementCursor.isDue(customer));
+
+        bm.withdrawMoney(customer, "Checking", 5.0);
+        assertTrue(StatementCursor.isDue(customer));
+        assertTrue(bm.generateBankStatement(customer));
+        String second = new String(java.nio.file.Files.readAllBytes(file));
+        assertTrue(second.contains("Checking Account Opening Balance: $525.0"));
+        assertTrue(second.contains("Checking Account Balance: $520.0"));
+        assertTrue(second.contains("Withdrew $5.0"));
+        assertFalse(second.contains("Deposited $25.0"));
+
+        java.nio.file.Files.deleteIfExists(java.nio.file.Paths.get("CursorTest.csv"));
+        StatementCursorStore store = new StatementCursorStore("CursorTest.csv");
+        store.record(customer);
+        store.close();
+        Customer reloaded = new Customer(103, "Ann", "Cursor", "01-Jan-1990", "123 Main St", "555-1234", new Checking(1103, 520.0), new Saving(2103, 1000.0), new Credit(3103, -100.0, 500.0));
+        CustomerIdMap customersById = new CustomerIdMap();
+        customersById.put(103, reloaded);
+        assertEquals(1, new StatementCursorStore("CursorTest.csv").load(customersById));
+        assertFalse(StatementCursor.isDue(reloaded));
+        assertEquals(52000, StatementCursor.openingBalanceCents(reloaded, 0));
+    }
+
+    /**
+     * Tests the PasswordManager by verifying that loaded customers get no password until
+     * their first login, that passwords are checked against their salted hash, that a
+     * password that just matched is checked again without the verifier pool until it
+     * changes, and that parallel checks all complete on the verifier pool.
+     */
+    @Test
+    void testPasswordManagerCredentials() {
+        PasswordManager passwordManager = PasswordManager.getInstance();
+        FilesHandling.loadCustomersFromCSV("CS 3331 - Bank Users.csv", new HashMap<>(), new CustomerIdMap());
+        assertFalse(passwordManager.hasPassword("Daniel A"));
+
+        assertFalse(passwordManager.hasPassword("Lazy Login"));
+        assertTrue(passwordManager.loginCustomer("Lazy Login", new Scanner("short\nLazyPass\n")));
+        assertTrue(passwordManager.hasPassword("Lazy Login"));
+        assertTrue(passwordManager.verifyPassword("Lazy Login", "LazyPass"));
+        assertFalse(passwordManager.verifyPassword("Lazy Login", "lazypass"));
+        assertFalse(passwordManager.verifyPassword("Nobody Here", "LazyPass"));
+        java.util.concurrent.CompletableFuture<Boolean> remembered = passwordManager.verifyPasswordAsync("Lazy Login", "LazyPass");
+        assertTrue(remembered.isDone());
+        assertTrue(remembered.join());
+        assertFalse(passwordManager.verifyPasswordAsync("Lazy Login", "LazyPas2").join());
+        passwordManager.updatePassword("Lazy Login", new Scanner("NewPass1\n"));
+        assertFalse(passwordManager.verifyPasswordAsync("Lazy Login", "LazyPass").join());
+        assertTrue(passwordManager.verifyPassword("Lazy Login", "NewPass1"));
+
+        String password = passwordManager.generatePassword("Parallel Login");
+        assertEquals(8, password.length());
+        java.util.List<java.util.concurrent.CompletableFuture<Boolean>> checks = new java.util.ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            checks.add(passwordManager.verifyPasswordAsync("Parallel Login", i % 2 == 0 ? password : "wrong" + i));
+        }
+        for (int i = 0; i < checks.size(); i++) {
+            assertEquals(i % 2 == 0, checks.get(i).join());
+        }
+    }
+
+    /**
+     * Tests the CreditReviewJob by verifying that a review with the same seed gives the
+     * same limits whatever the number of threads, that the limits follow the brackets of
+     * the policy without going below what is owed, and that changes are audited before
+     * they are applied, then journaled and marked dirty in the customer store.
+     */
+    @Test
+    void testCreditReviewJob() throws Exception {
+        CreditPolicy policy = CreditPolicy.parse("600:100-200,*:1000-1001");
+        assertEquals("600:100-200,*:1000-1001", policy.toString());
+        assertEquals(0, policy.bracketOf(600));
+        assertEquals(1, policy.bracketOf(601));
+        assertThrows(IllegalArgumentException.class, () -> CreditPolicy.parse("600:300-200"));
+
+        java.util.List<Customer> customers = new java.util.ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            customers.add(new Customer(5000 + i, "Credit" + i, "Review", "01-Jan-1990", "123 Main St", "555-1234", new Checking(15000 + i, 0.0), new Saving(25000 + i, 0.0), new Credit(35000 + i, i == 0 ? -5000.0 : -10.0, 500.0)));
+        }
+        java.util.List<CreditReviewJob.Decision> single = new CreditReviewJob(policy, 42, 1).score(customers);
+        java.util.List<CreditReviewJob.Decision> parallel = new CreditReviewJob(policy, 42, 4).score(customers);
+        for (int i = 0; i < customers.size(); i++) {
+            assertEquals(single.get(i).getCreditScore(), parallel.get(i).getCreditScore());
+            assertEquals(single.get(i).getProposedCreditMaxCents(), parallel.get(i).getProposedCreditMaxCents());
+            long proposed = parallel.get(i).getProposedCreditMaxCents();
+            assertTrue(parallel.get(i).getCreditScore() <= 600 ? proposed >= 10000 && proposed < 20000 : proposed == 100000);
+        }
+
+        java.nio.file.Path audit = java.nio.file.Paths.get("CreditReviewTest.csv");
+        java.nio.file.Files.deleteIfExists(audit);
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("review");
+        java.util.concurrent.ConcurrentMap<String, Customer> customersByName = new java.util.concurrent.ConcurrentHashMap<>();
+        for (Customer customer : customers) {
+            customersByName.put(customer.getFirstName() + " " + customer.getLastName(), customer);
+        }
+        TransactionJournal journal = new TransactionJournal(directory.resolve("journal.dat").toString());
+        assertThrows(java.io.IOException.class, () -> new CreditReviewJob(policy, 42, 2).run(customers, directory));
+        assertEquals(50000, customers.get(1).getCreditAccount().getCreditMaxCents());
+        try (WriteBehindCustomerStore store = new WriteBehindCustomerStore(directory.resolve("customers.csv").toString(), customersByName, null, 3600000, Integer.MAX_VALUE)) {
+            CreditReviewJob job = new CreditReviewJob(policy, 42, 2);
+            job.setJournal(journal);
+            job.setCustomerStore(store);
+            job.run(customers, audit);
+            assertEquals(3000, store.getDirtyCount());
+        }
+        assertEquals(500000, customers.get(0).getCreditAccount().getCreditMaxCents());
+        assertEquals(parallel.get(1).getProposedCreditMaxCents(), customers.get(1).getCreditAccount().getCreditMaxCents());
+        java.util.List<String> lines = java.nio.file.Files.readAllLines(audit);
+        assertEquals(3000, lines.size() - 1);
+        assertTrue(lines.get(1).contains(",42,5000,35000,"));
+
+        journal.close();
+        journal = new TransactionJournal(directory.resolve("journal.dat").toString());
+        Customer reloaded = new Customer(5001, "Credit1", "Review", "01-Jan-1990", "123 Main St", "555-1234", new Checking(15001, 0.0), new Saving(25001, 0.0), new Credit(35001, -10.0, 500.0));
+        HashMap<String, Customer> reloadedByName = new HashMap<>();
+        reloadedByName.put("Credit1 Review", reloaded);
+        assertEquals(1, journal.recover(reloadedByName, new CustomerIdMap(), directory.resolve("missing.csv").toString()));
+        assertEquals(customers.get(1).getCreditAccount().getCreditMaxCents(), reloaded.getCreditAccount().getCreditMaxCents());
+        journal.close();
+    }
+
+    /**
+     * Tests onboarding new customers from a file on several workers.
+     */
+    @Test
+    void testCustomerOnboarding() throws Exception {
+        int firstId = Customer.ID_SEQUENCE.peek();
+        int firstAccountNumber = Account.NUMBER_SEQUENCE.peek();
+        java.nio.file.Path file = java.nio.file.Paths.get("OnboardingTest.csv");
+        StringBuilder csv = new StringBuilder("Last Name,First Name,Date of Birth,Address,Phone Number,Credit Score\n");
+        csv.append("Doe,John,01-Jan-1990,123 Main St,555-1234,700\n");
+        for (int i = 0; i < 1500; i++) {
+            csv.append("Migrated,Customer").append(i).append(",01-Jan-1990,\"1 Elm St, Apt ").append(i).append("\",555-0000,").append(i == 0 ? "" : "650").append('\n');
+        }
+        csv.append("Migrated,Customer7,01-Jan-1990,1 Elm St,555-0000,650\n");
+        csv.append("Migrated,TooLong,01-Jan-1990,1 Elm St,555-0000-0000-0000,650\n");
+        java.nio.file.Files.write(file, csv.toString().getBytes());
+
+        CustomerIdMap customersById = new CustomerIdMap();
+        java.util.List<RowError> errors = new java.util.ArrayList<>();
+        java.util.List<Customer> created = new CustomerOnboarding(4).onboard(file.toString(), customersByName, customersById, errors);
+        java.nio.file.Files.delete(file);
+
+        assertEquals(1500, created.size());
+        assertEquals(3, errors.size());
+        assertEquals(2, errors.get(0).getLineNumber());
+        assertEquals(1503, errors.get(1).getLineNumber());
+        assertEquals(1504, errors.get(2).getLineNumber());
+        assertEquals("Customer0", created.get(0).getFirstName());
+        assertEquals("1 Elm St, Apt 1499", created.get(1499).getAddress());
+
+        java.util.Set<Integer> ids = new java.util.HashSet<>();
+        java.util.Set<Integer> accountNumbers = new java.util.HashSet<>();
+        for (Customer customer : created) {
+            assertTrue(customer.getIdentificationNumber() >= firstId);
+            assertTrue(ids.add(customer.getIdentificationNumber()));
+            for (Account account : new Account[] {customer.getCheckingAccount(), customer.getSavingsAccount(), customer.getCreditAccount()}) {
+                assertTrue(account.getAccountNumber() >= firstAccountNumber);
+                assertTrue(accountNumbers.add(account.getAccountNumber()));
+                assertSame(customer, AccountIndex.getInstance().getOwner(account.getAccountNumber()));
+            }
+            assertSame(customer, customersById.get(customer.getIdentificationNumber()));
+            assertSame(customer, customersByName.get(customer.getFirstName() + " " + customer.getLastName()));
+        }
+        assertTrue(Customer.ID_SEQUENCE.next() >= firstId + 1500);
+    }
+
+    /**
+     * Tests that the ledger only accepts balanced postings, rebuilds the balances from
+     * its snapshot and entries, and reports balances that do not match it instead of
+     * changing them.
+     */
+    @Test
+    void testLedgerRebuild() throws Exception {
+        java.nio.file.Path path = java.nio.file.Paths.get("LedgerTest.dat");
+        java.nio.file.Path snapshot = java.nio.file.Paths.get("LedgerTest.dat.snapshot");
+        java.nio.file.Files.deleteIfExists(path);
+        java.nio.file.Files.deleteIfExists(snapshot);
+        Checking checking = new Checking(7001, 0.0);
+        Saving savings = new Saving(7002, 0.0);
+        Ledger ledger = new Ledger(path.toString());
+        assertThrows(IllegalArgumentException.class, () -> ledger.post(new int[] {7001, 7002}, new long[] {100, -99}));
+        ledger.open(checking, 10000);
+        ledger.deposit(savings, 2500);
+        ledger.transfer(checking, savings, 4000);
+        ledger.withdraw(savings, 500);
+        assertEquals(8, ledger.getEntryCount());
+        assertEquals(8, ledger.snapshot(2));
+        for (int i = 0; i < 100000; i++) {
+            ledger.transfer(i % 2 == 0 ? checking : savings, i % 2 == 0 ? savings : checking, 1 + i % 7);
+        }
+        LedgerBalances sequential = ledger.rebuild(1);
+        LedgerBalances parallel = ledger.rebuild(4);
+        long expectedChecking = 6000;
+        for (int i = 0; i < 100000; i++) {
+            expectedChecking += (i % 2 == 0 ? -1 : 1) * (1 + i % 7);
+        }
+        assertEquals(expectedChecking, sequential.get(7001));
+        assertEquals(expectedChecking, parallel.get(7001));
+        assertEquals(12000 - expectedChecking, parallel.get(7002));
+        assertEquals(-2000, parallel.get(Ledger.CASH_ACCOUNT));
+        assertEquals(-10000, parallel.get(Ledger.EQUITY_ACCOUNT));
+        ledger.close();
+
+        try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(path, java.nio.file.StandardOpenOption.WRITE, java.nio.file.StandardOpenOption.APPEND)) {
+            channel.write(java.nio.ByteBuffer.allocate(20));
+        }
+        Ledger reopened = new Ledger(path.toString());
+        assertEquals(200008, reopened.getEntryCount());
+        assertEquals(8, reopened.getSnapshotEntryCount());
+        Customer stale = new Customer(7000, "Ledger", "Test", "01-Jan-1990", "123 Main St", "555-1234", new Checking(7001, 0.0), new Saving(7002, 0.0), new Credit(7003, -25.0, 100.0));
+        java.io.IOException mismatch = assertThrows(java.io.IOException.class, () -> reopened.materialize(java.util.List.of(stale), 2));
+        assertTrue(mismatch.getMessage().contains("7001 (0.00 against "));
+        assertEquals(0, stale.getCheckingAccount().getBalanceCents());
+        assertFalse(reopened.rebuild(2).contains(7003));
+        Customer customer = new Customer(7000, "Ledger", "Test", "01-Jan-1990", "123 Main St", "555-1234", new Checking(7001, expectedChecking / 100.0), new Saving(7002, (12000 - expectedChecking) / 100.0), new Credit(7003, -25.0, 100.0));
+        assertEquals(1, reopened.materialize(java.util.List.of(customer), 2));
+        assertEquals(expectedChecking, customer.getCheckingAccount().getBalanceCents());
+        assertEquals(-2500, reopened.rebuild(2).get(7003));
+        reopened.close();
+        java.nio.file.Files.delete(path);
+        java.nio.file.Files.delete(snapshot);
+    }
+
+    /**
+     * Tests the balance of an account at past times from the daily checkpoints of the
+     * ledger.
+     */
+    @Test
+    void testLedgerBalanceAsOf() throws Exception {
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("ledger");
+        long[] now = {java.time.LocalDateTime.of(2024, 3, 1, 10, 0).toInstant(java.time.ZoneOffset.UTC).toEpochMilli()};
+        long hour = 3600000;
+        java.time.Clock clock = new java.time.Clock() {
+            @Override
+            public java.time.ZoneId getZone() {
+                return java.time.ZoneOffset.UTC;
+            }
+
+            @Override
+            public java.time.Clock withZone(java.time.ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public java.time.Instant instant() {
+                return java.time.Instant.ofEpochMilli(now[0]);
+            }
+        };
+        String path = directory.resolve("ledger.dat").toString();
+        Checking checking = new Checking(7101, 0.0);
+        Ledger ledger = new Ledger(path, clock);
+        ledger.open(checking, 10000);
+        now[0] += 5 * hour;
+        ledger.deposit(checking, 500);
+        now[0] += 18 * hour;
+        ledger.withdraw(checking, 2000);
+        now[0] += 3 * hour;
+        ledger.deposit(checking, 100);
+        now[0] += 48 * hour;
+        ledger.deposit(checking, 1);
+        ledger.close();
+
+        Ledger reopened = new Ledger(path, clock);
+        assertEquals(2, reopened.getCheckpointCount());
+        assertEquals(0, reopened.balanceAtEndOf(7101, java.time.LocalDate.of(2024, 2, 29)));
+        assertEquals(10000, reopened.balanceAsOf(7101, java.time.LocalDateTime.of(2024, 3, 1, 12, 0).toInstant(java.time.ZoneOffset.UTC).toEpochMilli()));
+        assertEquals(10500, reopened.balanceAtEndOf(7101, java.time.LocalDate.of(2024, 3, 1)));
+        assertEquals(8500, reopened.balanceAsOf(7101, java.time.LocalDateTime.of(2024, 3, 2, 10, 0).toInstant(java.time.ZoneOffset.UTC).toEpochMilli()));
+        assertEquals(8600, reopened.balanceAtEndOf(7101, java.time.LocalDate.of(2024, 3, 2)));
+        assertEquals(8600, reopened.balanceAtEndOf(7101, java.time.LocalDate.of(2024, 3, 3)));
+        assertEquals(8601, reopened.balanceAtEndOf(7101, java.time.LocalDate.of(2024, 3, 4)));
+        assertEquals(1400, reopened.balanceAtEndOf(Ledger.CASH_ACCOUNT, java.time.LocalDate.of(2024, 3, 2)));
+        assertEquals(8601, reopened.rebuild(2).get(7101));
+        reopened.close();
+        try (java.util.stream.Stream<java.nio.file.Path> files = java.nio.file.Files.list(directory)) {
+            for (java.nio.file.Path file : (Iterable<java.nio.file.Path>) files::iterator) {
+                java.nio.file.Files.delete(file);
+            }
+        }
+        java.nio.file.Files.delete(directory);
+    }
+
+    /**
+     * Tests the latency histograms of the operation metrics, their MBeans, and that the
+     * operations of the bank manager record their outcomes.
+     */
+    @Test
+    void testOperationMetrics() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMeanMicros(), 0.001);
+        assertEquals(500, histogram.getP50Micros(), 500 / 32.0);
+        assertEquals(990, histogram.getP99Micros(), 990 / 32.0);
+        assertEquals(1000, histogram.getP999Micros(), 1000 / 32.0);
+        assertEquals(1000, histogram.getMaxMicros(), 0.001);
+        histogram.record(7);
+        assertEquals(7, histogram.getValueAtPercentile(0));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getP50Micros());
+
+        OperationMetrics metrics = new OperationMetrics();
+        javax.management.MBeanServer server = javax.management.MBeanServerFactory.newMBeanServer();
+        metrics.register(server);
+        metrics.record(OperationMetrics.UPDATE_CSV, OperationMetrics.FAILED, System.nanoTime() - 2000000);
+        javax.management.ObjectName name = OperationMetrics.objectName(OperationMetrics.UPDATE_CSV, OperationMetrics.FAILED);
+        assertEquals("bank:type=OperationMetrics,operation=updateCSV,outcome=failed", name.toString());
+        assertEquals(1L, server.getAttribute(name, "Count"));
+        assertTrue((Double) server.getAttribute(name, "MaxMicros") >= 2000);
+        StringBuilder dump = new StringBuilder();
+        metrics.dump(dump, java.time.Instant.EPOCH);
+        assertTrue(dump.toString().startsWith("1970-01-01T00:00:00Z,updateCSV,failed,1,"));
+        assertEquals(1, dump.toString().split(System.lineSeparator()).length);
+
+        javax.management.MBeanServer platform = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        javax.management.ObjectName insufficient = OperationMetrics.objectName(OperationMetrics.PAY_SOMEONE, OperationMetrics.INSUFFICIENT_FUNDS);
+        javax.management.ObjectName deposited = OperationMetrics.objectName(OperationMetrics.DEPOSIT_MONEY, OperationMetrics.SUCCESS);
+        long insufficientBefore = OperationMetrics.getInstance().getHistogram(OperationMetrics.PAY_SOMEONE, OperationMetrics.INSUFFICIENT_FUNDS).getCount();
+        long depositedBefore = OperationMetrics.getInstance().getHistogram(OperationMetrics.DEPOSIT_MONEY, OperationMetrics.SUCCESS).getCount();
+        assertFalse(bm.paySomeone(testCustomer, testCustomer2, "Checking", "Checking", 1000000.0));
+        assertTrue(bm.depositMoney(testCustomer, "Savings", 10.0));
+        assertEquals(insufficientBefore + 1, platform.getAttribute(insufficient, "Count"));
+        assertEquals(depositedBefore + 1, platform.getAttribute(deposited, "Count"));
+    }
+
+    /**
+     * Tests that the operations of the bank manager and the rows of a transactions file
+     * emit their Flight Recorder events.
+     */
+    @Test
+    void testFlightRecorderEvents() throws Exception {
+        java.nio.file.Path transactions = java.nio.file.Files.createTempFile("transactions", ".csv");
+        java.nio.file.Files.write(transactions, java.util.Arrays.asList(
+            "From First Name,From Last Name,From Where,Action,To First Name,To Last Name,To Where,Action Amount",
+            ",,,deposits,John,Doe,Checking,25",
+            "Nobody,Here,Checking,withdraws,,,,5"));
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("bank", ".jfr");
+        try (jdk.jfr.Recording recording = new jdk.jfr.Recording()) {
+            recording.enable(BankOperationEvent.class).withoutThreshold();
+            recording.enable(TransactionRowEvent.class).withoutThreshold();
+            recording.start();
+            assertFalse(bm.withdrawMoney(testCustomer, "Savings", 1000000.0));
+            bm.processTransactions(transactions.toString());
+            recording.stop();
+            recording.dump(file);
+        }
+        java.util.List<jdk.jfr.consumer.RecordedEvent> events = jdk.jfr.consumer.RecordingFile.readAllEvents(file);
+        java.util.List<String> operations = new java.util.ArrayList<>();
+        java.util.List<String> rows = new java.util.ArrayList<>();
+        for (jdk.jfr.consumer.RecordedEvent event : events) {
+            if (event.getEventType().getName().equals("bank.Operation")) {
+                operations.add(event.getString("operation") + " " + event.getString("accountType") + " " + event.getDouble("amount") + " " + event.getString("outcome") + " " + event.getInt("customerId"));
+            } else if (event.getEventType().getName().equals("bank.TransactionRow")) {
+                rows.add(event.getInt("lineNumber") + " " + event.getString("action") + " " + event.getString("outcome"));
+            }
+        }
+        assertEquals(java.util.Arrays.asList("withdrawMoney Savings 1000000.0 insufficientFunds 1", "depositMoney Checking 25.0 success 1"), operations);
+        assertEquals(java.util.Arrays.asList("2 deposits success", "3 withdraws customerNotFound"), rows);
+        java.nio.file.Files.delete(file);
+        java.nio.file.Files.delete(transactions);
+    }
+
+    /**
+     * Tests that batch mode prints nothing per row, reports the counts per action and
+     * outcome, the failed rows and the amount moved, and marks the customers it changed
+     * as dirty in the customer store.
+     */
+    @Test
+    void testTransactionBatchReport() throws Exception {
+        HashMap<String, Customer> customers = new HashMap<>();
+        Customer ana = new Customer(301, "Ana", "Ruiz", "01-Jan-1990", "1 Elm St", "555-0001", new Checking(8101, 100.0), new Saving(8102, 50.0), new Credit(8103, 0.0, 500.0));
+        Customer ben = new Customer(302, "Ben", "Soto", "01-Jan-1990", "2 Elm St", "555-0002", new Checking(8201, 0.0), new Saving(8202, 0.0), new Credit(8203, 0.0, 500.0));
+        customers.put("Ana Ruiz", ana);
+        customers.put("Ben Soto", ben);
+        java.nio.file.Path transactions = java.nio.file.Files.createTempFile("transactions", ".csv");
+        java.nio.file.Files.write(transactions, java.util.Arrays.asList(
+            "From First Name,From Last Name,From Where,Action,To First Name,To Last Name,To Where,Action Amount",
+            "Ana,Ruiz,Checking,pays,Ben,Soto,Checking,40",
+            "Ana,Ruiz,Savings,transfers,,,Checking,10.50",
+            "Ana,Ruiz,Checking,withdraws,,,,1000",
+            ",,,deposits,Ben,Soto,Savings,5",
+            "Ana,Ruiz,Checking,inquires,,,,",
+            "Nobody,Here,Checking,withdraws,,,,5",
+            "Ben,Soto,Checking,borrows,,,,5",
+            "Ben,Soto,Checking,withdraws,,,,abc",
+            "Ben,Soto,Vault,withdraws,,,,1"));
+        java.io.PrintStream console = System.out;
+        java.io.ByteArrayOutputStream printed = new java.io.ByteArrayOutputStream();
+        TransactionReport report;
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("batch");
+        java.nio.file.Path saved = directory.resolve("customers.csv");
+        System.setOut(new java.io.PrintStream(printed));
+        try (WriteBehindCustomerStore store = new WriteBehindCustomerStore(saved.toString(), new java.util.concurrent.ConcurrentHashMap<>(customers), null, 3600000, Integer.MAX_VALUE)) {
+            BankManager manager = new BankManager(customers);
+            manager.setCustomerStore(store);
+            report = manager.processTransactionsInBatch(transactions.toString(), 2);
+            assertEquals(2, store.getDirtyCount());
+        } finally {
+            System.setOut(console);
+        }
+        assertEquals("", printed.toString());
+        assertTrue(java.nio.file.Files.readString(saved).contains("70.5"));
+        assertEquals(9, report.getRowCount());
+        assertEquals(1, report.getCount("pays", OperationMetrics.SUCCESS));
+        assertEquals(1, report.getCount("transfers", OperationMetrics.SUCCESS));
+        assertEquals(1, report.getCount("withdraws", OperationMetrics.INSUFFICIENT_FUNDS));
+        assertEquals(1, report.getCount("withdraws", OperationMetrics.CUSTOMER_NOT_FOUND));
+        assertEquals(1, report.getCount("withdraws", OperationMetrics.FAILED));
+        assertEquals(1, report.getCount("deposits", OperationMetrics.SUCCESS));
+        assertEquals(1, report.getCount("inquires", OperationMetrics.SUCCESS));
+        assertEquals(2, report.getCount("borrows", OperationMetrics.FAILED));
+        assertEquals(5550, report.getAmountMovedCents());
+        assertEquals(70.5, ana.getCheckingAccount().getBalance());
+        assertEquals(5.0, ben.getSavingsAccount().getBalance());
+        java.util.List<RowError> failed = report.getFailedRows();
+        assertEquals(5, failed.size());
+        assertEquals("Line 4: Withdrawal failed: Insufficient funds in Checking account.", failed.get(0).toString());
+        assertEquals("Line 7: Withdraw action failed: Customer not found.", failed.get(1).toString());
+        assertEquals("Line 8: Unknown action: borrows", failed.get(2).toString());
+        assertEquals("Line 9: Invalid amount: abc", failed.get(3).toString());
+        assertEquals("Line 10: Withdrawal failed: Invalid account specified.", failed.get(4).toString());
+        StringBuilder text = new StringBuilder();
+        report.writeTo(text, 2);
+        assertTrue(text.toString().contains("Total amount moved: $55.50"));
+        assertTrue(text.toString().contains("Failed rows: 5"));
+        assertTrue(text.toString().contains("... and 3 more."));
+        java.nio.file.Files.delete(transactions);
+        java.nio.file.Files.delete(saved);
+        java.nio.file.Files.delete(directory);
+    }
+
+    /**
+     * Tests that running a transactions file again skips the rows whose transaction ID was
+     * already applied, even after another row of the file is fixed, that rows without a
+     * transaction ID are always applied, and that the index keeps its keys when it is
+     * reopened, from its log or its sorted file, for every ID added and no other.
+     */
+    @Test
+    void testTransactionDedupIndex() throws Exception {
+        HashMap<String, Customer> customers = new HashMap<>();
+        Customer ana = new Customer(401, "Ana", "Ruiz", "01-Jan-1990", "1 Elm St", "555-0001", new Checking(9101, 100.0), new Saving(9102, 0.0), new Credit(9103, 0.0, 500.0));
+        customers.put("Ana Ruiz", ana);
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("dedup");
+        String indexPath = directory.resolve("transactions.dedup").toString();
+        java.nio.file.Path transactions = directory.resolve("transactions.csv");
+        String header = "From First Name,From Last Name,From Where,Action,To First Name,To Last Name,To Where,Action Amount,Transaction ID";
+        java.nio.file.Files.write(transactions, java.util.Arrays.asList(header,
+            ",,,deposits,Ana,Ruiz,Savings,5,T1",
+            "Ana,Ruiz,Checking,withdraws,,,,10,T2",
+            "Ana,Ruiz,Checking,withdraws,,,,x,T3"));
+        BankManager manager = new BankManager(customers);
+        manager.setConsole(null);
+        TransactionDedupIndex index = new TransactionDedupIndex(indexPath);
+        manager.setDedupIndex(index);
+        TransactionReport report = manager.processTransactionsInBatch(transactions.toString(), 2);
+        assertEquals(1, report.getCount("none", OperationMetrics.FAILED));
+        assertEquals(5.0, ana.getSavingsAccount().getBalance());
+        assertEquals(90.0, ana.getCheckingAccount().getBalance());
+        assertEquals(2, index.size());
+
+        java.nio.file.Files.write(transactions, java.util.Arrays.asList(header,
+            ",,,deposits,Ana,Ruiz,Savings,5,T1",
+            "Ana,Ruiz,Checking,withdraws,,,,10,T2",
+            "Ana,Ruiz,Checking,withdraws,,,,20,T3"));
+        TransactionDedupIndex fromLog = new TransactionDedupIndex(indexPath);
+        manager.setDedupIndex(fromLog);
+        report = manager.processTransactionsInBatch(transactions.toString(), 2);
+        assertEquals(1, report.getRowCount());
+        assertEquals(2, report.getSkippedCount());
+        assertEquals(70.0, ana.getCheckingAccount().getBalance());
+        index.close();
+        fromLog.close();
+
+        TransactionDedupIndex fromSortedFile = new TransactionDedupIndex(indexPath);
+        manager.setDedupIndex(fromSortedFile);
+        assertEquals(3, fromSortedFile.size());
+        java.nio.file.Files.write(transactions, java.util.Arrays.asList(header,
+            "Ana,Ruiz,Checking,withdraws,,,,10,T2",
+            ",,,deposits,Ana,Ruiz,Savings,1,",
+            "Ana,Ruiz,Checking,withdraws,,,,10,T4"));
+        manager.processTransactions(transactions.toString());
+        manager.processTransactions(transactions.toString());
+        assertEquals(60.0, ana.getCheckingAccount().getBalance());
+        assertEquals(7.0, ana.getSavingsAccount().getBalance());
+        assertTrue(fromSortedFile.contains("T4"));
+        assertFalse(fromSortedFile.contains("T5"));
+        fromSortedFile.close();
+
+        java.nio.file.Files.write(java.nio.file.Paths.get(indexPath + ".log"), new byte[] {1, 2, 3}, java.nio.file.StandardOpenOption.APPEND);
+        try (TransactionDedupIndex reopened = new TransactionDedupIndex(indexPath)) {
+            assertEquals(4, reopened.size());
+            assertEquals(0, java.nio.file.Files.size(java.nio.file.Paths.get(indexPath + ".log")));
+            for (int i = 0; i < 20000; i++) {
+                reopened.add("ID-" + i);
+            }
+            assertEquals(20004, reopened.size());
+        }
+        try (TransactionDedupIndex reopened = new TransactionDedupIndex(indexPath)) {
+            assertEquals(20004, reopened.size());
+            for (int i = 0; i < 20000; i++) {
+                assertTrue(reopened.contains("ID-" + i));
+                assertFalse(reopened.contains("ID+" + i));
+            }
+        }
+        for (String file : new String[] {"transactions.dedup", "transactions.dedup.log", "transactions.csv"}) {
+            java.nio.file.Files.delete(directory.resolve(file));
+        }
+        java.nio.file.Files.delete(directory);
+    }
+
+    /**
+     * Tests the WriteBehindCustomerStore by verifying that dirty customers are appended
+     * to the file, that reaching the dirty threshold flushes on the background thread,
+     * that a customer's last row is the one loaded, and that the file is compacted back
+     * to one row per customer, including customers added since, once the appended rows
+     * outnumber the customers.
+     */
+    @Test
+    void testWriteBehindCustomerStore() throws Exception {
+        java.util.concurrent.ConcurrentMap<String, Customer> customers = new java.util.concurrent.ConcurrentHashMap<>();
+        Customer ana = new Customer(501, "Ana", "Store", "01-Jan-1990", "1 Elm St", "555-0001", new Checking(9501, 100.0), new Saving(9502, 0.0), new Credit(9503, 0.0, 500.0));
+        Customer ben = new Customer(502, "Ben", "Store", "01-Jan-1990", "2 Elm St", "555-0002", new Checking(9504, 100.0), new Saving(9505, 0.0), new Credit(9506, 0.0, 500.0));
+        Customer cai = new Customer(503, "Cai", "Store", "01-Jan-1990", "3 Elm St", "555-0003", new Checking(9507, 100.0), new Saving(9508, 0.0), new Credit(9509, 0.0, 500.0));
+        customers.put("Ana Store", ana);
+        customers.put("Ben Store", ben);
+        customers.put("Cai Store", cai);
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("store");
+        java.nio.file.Path file = directory.resolve("customers.csv");
+        try (WriteBehindCustomerStore store = new WriteBehindCustomerStore(file.toString(), customers, null, 3600000, 2)) {
+            assertEquals(4, java.nio.file.Files.readAllLines(file).size());
+
+            ana.getCheckingAccount().setBalanceCents(12345);
+            store.markDirty(ana);
+            store.markDirty(ana);
+            assertEquals(1, store.getDirtyCount());
+            store.flush();
+            java.util.List<String> lines = java.nio.file.Files.readAllLines(file);
+            assertEquals(5, lines.size());
+            assertEquals(FilesHandling.toCSVLine(ana), lines.get(4));
+            HashMap<String, Customer> loaded = new HashMap<>();
+            FilesHandling.loadCustomersFromCSV(file.toString(), loaded, new CustomerIdMap());
+            assertEquals(3, loaded.size());
+            assertEquals(12345, loaded.get("Ana Store").getCheckingAccount().getBalanceCents());
+
+            store.markDirty(ben);
+            store.markDirty(cai);
+            long deadline = System.nanoTime() + java.util.concurrent.TimeUnit.SECONDS.toNanos(10);
+            while (java.nio.file.Files.readAllLines(file).size() < 7 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, store.getDirtyCount());
+            assertEquals(7, java.nio.file.Files.readAllLines(file).size());
+
+            Customer dee = new Customer(504, "Dee", "Store", "01-Jan-1990", "4 Elm St", "555-0004", new Checking(9510, 5.0), new Saving(9511, 0.0), new Credit(9512, 0.0, 500.0));
+            customers.put("Dee Store", dee);
+            store.markDirty(ana);
+            store.markDirty(ben);
+            store.flush();
+            lines = java.nio.file.Files.readAllLines(file);
+            assertEquals(5, lines.size());
+            assertTrue(lines.contains(FilesHandling.toCSVLine(dee)));
+        }
+        java.nio.file.Files.delete(file);
+        java.nio.file.Files.delete(directory);
+    }
+
+    /**
+     * Tests the TransactionJournal by verifying that concurrent appends all get a
+     * sequence number and are replayed over the snapshot by {@link TransactionJournal#recover},
+     * that a record left half written is cut off, that a record whose checksum does not
+     * match is dropped with the ones after it, that only the entries after the checkpoint
+     * are replayed, and that a checkpoint of the last entry empties the journal.
+     */
+    @Test
+    void testTransactionJournalRecovery() throws Exception {
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("journal");
+        java.nio.file.Path journalFile = directory.resolve("journal.dat");
+        java.nio.file.Path snapshot = directory.resolve("snapshot.csv");
+        Customer saved = new Customer(601, "Jay", "Journal", "01-Jan-1990", "1 Log St", "555-0601", new Checking(9601, 100.0), new Saving(9602, 0.0), new Credit(9603, 0.0, 500.0));
+        java.nio.file.Files.write(snapshot, java.util.Arrays.asList(FilesHandling.CUSTOMER_CSV_HEADER, FilesHandling.toCSVLine(saved)));
+
+        TransactionJournal journal = new TransactionJournal(journalFile.toString());
+        java.util.Set<Long> sequences = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int thread = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 25; i++) {
+                    try {
+                        sequences.add(journal.append(new JournalEntry("Deposit " + thread + "-" + i).addBalance("Jay Journal", "Checking", 10000 + i)));
+                    } catch (java.io.IOException e) {
+                        throw new java.io.UncheckedIOException(e);
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(100, sequences.size());
+        assertEquals(100, journal.getLastSequence());
+        journal.append(new JournalEntry("Withdrew").addBalance("Jay Journal", "Checking", 15000));
+        journal.append(new JournalEntry("Transferred").addBalance("Jay Journal", "Checking", 20000).addBalance("Jay Journal", "Savings", 500));
+        journal.close();
+        long size = java.nio.file.Files.size(journalFile);
+
+        java.nio.file.Files.write(journalFile, new byte[] {0, 0, 0, 40, 1, 2}, java.nio.file.StandardOpenOption.APPEND);
+        TransactionJournal reopened = new TransactionJournal(journalFile.toString());
+        assertEquals(size, java.nio.file.Files.size(journalFile));
+        assertEquals(102, reopened.getLastSequence());
+        HashMap<String, Customer> customers = new HashMap<>();
+        Customer jay = new Customer(601, "Jay", "Journal", "01-Jan-1990", "1 Log St", "555-0601", new Checking(9601, 0.0), new Saving(9602, 0.0), new Credit(9603, 0.0, 500.0));
+        customers.put("Jay Journal", jay);
+        assertEquals(102, reopened.recover(customers, new CustomerIdMap(), snapshot.toString()));
+        assertEquals(20000, jay.getCheckingAccount().getBalanceCents());
+        assertEquals(500, jay.getSavingsAccount().getBalanceCents());
+        reopened.checkpoint(100);
+        reopened.close();
+
+        byte[] bytes = java.nio.file.Files.readAllBytes(journalFile);
+        bytes[bytes.length - 1] ^= 1;
+        java.nio.file.Files.write(journalFile, bytes);
+        TransactionJournal corrupted = new TransactionJournal(journalFile.toString());
+        assertEquals(101, corrupted.getLastSequence());
+        assertTrue(java.nio.file.Files.size(journalFile) < size);
+        assertEquals(1, corrupted.recover(customers, new CustomerIdMap(), snapshot.toString()));
+        assertEquals(15000, jay.getCheckingAccount().getBalanceCents());
+        assertEquals(0, jay.getSavingsAccount().getBalanceCents());
+
+        corrupted.checkpoint(corrupted.getLastSequence());
+        assertEquals(0, java.nio.file.Files.size(journalFile));
+        corrupted.close();
+        TransactionJournal clean = new TransactionJournal(journalFile.toString());
+        assertEquals(0, clean.recover(customers, new CustomerIdMap(), snapshot.toString()));
+        assertEquals(101, clean.getLastSequence());
+        clean.close();
+        for (String file : new String[] {"journal.dat", "journal.dat.chk", "snapshot.csv"}) {
+            java.nio.file.Files.delete(directory.resolve(file));
+        }
+        java.nio.file.Files.delete(directory);
+    }
+
+    /**
+     * Tests that postings made from several threads at once are all written, in groups,
+     * and add up to the right balances, that an account only the ledger knows keeps
+     * its number from being handed out again, and that postings are refused once the
+     * ledger could not be written.
+     */
+    @Test
+    void testLedgerConcurrentPostings() throws Exception {
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("ledger");
+        java.nio.file.Path path = directory.resolve("ledger.dat");
+        Ledger ledger = new Ledger(path.toString());
+        Checking checking = new Checking(7101, 0.0);
+        Saving savings = new Saving(7102, 0.0);
+        Thread[] posters = new Thread[4];
+        for (int t = 0; t < posters.length; t++) {
+            posters[t] = new Thread(() -> {
+                for (int i = 0; i < 2500; i++) {
+                    ledger.deposit(checking, 3);
+                    ledger.transfer(checking, savings, 1);
+                }
+            });
+            posters[t].start();
+        }
+        for (Thread poster : posters) {
+            poster.join();
+        }
+        assertEquals(40000, ledger.getEntryCount());
+        assertEquals(40000 * 24, java.nio.file.Files.size(path));
+        LedgerBalances balances = ledger.rebuild(1);
+        assertEquals(20000, balances.get(7101));
+        assertEquals(10000, balances.get(7102));
+        assertEquals(-30000, balances.get(Ledger.CASH_ACCOUNT));
+        ledger.post(new int[] {900000, Ledger.CASH_ACCOUNT}, new long[] {500, -500});
+        assertEquals(0, ledger.materialize(java.util.List.of(), 1));
+        assertTrue(Account.NUMBER_SEQUENCE.peek() > 900000);
+        ledger.close();
+        assertThrows(java.io.UncheckedIOException.class, () -> ledger.deposit(checking, 1));
+        assertThrows(java.io.UncheckedIOException.class, () -> ledger.deposit(checking, 1));
+        assertEquals(40002, ledger.getEntryCount());
+        assertThrows(java.io.IOException.class, () -> ledger.rebuild(1));
+        java.nio.file.Files.delete(path);
+        java.nio.file.Files.delete(directory);
+    }
+
+    /**
+     * Tests that lookups of the TransactionDedupIndex find every transaction ID added
+     * before them while other IDs are added and the logs are merged into the sorted file
+     * on the background thread, and that the merged IDs are kept when it is reopened.
+     */
+    @Test
+    void testTransactionDedupIndexConcurrentMerges() throws Exception {
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("dedup");
+        String indexPath = directory.resolve("transactions.dedup").toString();
+        TransactionDedupIndex index = new TransactionDedupIndex(indexPath, 500);
+        java.util.concurrent.atomic.AtomicInteger added = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.atomic.AtomicInteger missed = new java.util.concurrent.atomic.AtomicInteger();
+        Thread[] readers = new Thread[2];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                java.util.Random random = new java.util.Random();
+                while (added.get() < 5000) {
+                    int count = added.get();
+                    if (count > 0 && !index.contains("ID-" + random.nextInt(count))) {
+                        missed.incrementAndGet();
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        for (int i = 0; i < 5000; i++) {
+            index.add("ID-" + i);
+            added.incrementAndGet();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(0, missed.get());
+        assertFalse(index.contains("ID-5000"));
+        index.close();
+        assertFalse(java.nio.file.Files.exists(directory.resolve("transactions.dedup.merging")));
+        assertEquals(5000 * 16, java.nio.file.Files.size(directory.resolve("transactions.dedup")));
+        try (TransactionDedupIndex reopened = new TransactionDedupIndex(indexPath)) {
+            assertEquals(5000, reopened.size());
+            for (int i = 0; i < 5000; i++) {
+                assertTrue(reopened.contains("ID-" + i));
+            }
+        }
+        for (String file : new String[] {"transactions.dedup", "transactions.dedup.log"}) {
+            java.nio.file.Files.delete(directory.resolve(file));
+        }
+        java.nio.file.Files.delete(directory);
+    }
+
+    /**
+     * Tests that deposits and withdrawals made at the same time on one account, without
+     * account locks, still leave a history in which every transaction starts from the
+     * balance the one before it ended with. Also tests that the sequence numbers of a
+     * balance wrap around, and that a balance out of range is rejected.
+     */
+    @Test
+    void testConcurrentHistoryKeepsBalanceOrder() throws InterruptedException {
+        Checking wrapped = new Checking(5013, 0.0);
+        TransactionHistory wrappedHistory = new TransactionHistory("Checking");
+        for (int i = 0; i < 70000; i++) {
+            wrapped.depositAndRecord(1, wrappedHistory, TransactionHistory.DEPOSIT, null);
+        }
+        assertEquals(70000, wrapped.getBalanceCents());
+        assertEquals(70000, wrappedHistory.size());
+        assertEquals(69999, wrappedHistory.getStartingBalanceCents(69999));
+        assertThrows(ArithmeticException.class, () -> wrapped.setBalanceCents(Account.MAX_BALANCE_CENTS + 1));
+        assertEquals(70000, wrapped.getBalanceCents());
+
+        Customer customer = new Customer(12, "Cal", "Lee", "01-Jan-1990", "1 Main St", "555-0003", new Checking(5003, 0.0), new Saving(6003, 0.0), new Credit(7003, 0.0, 100.0));
+        BankManager bm = new BankManager(customersByName);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    bm.deposit(customer, "Checking", 100);
+                    bm.withdraw(customer, "Checking", 50);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(30000);
+            assertFalse(thread.isAlive());
+        }
+        assertEquals(400000, customer.getCheckingAccount().getBalanceCents());
+        TransactionHistory history = customer.getHistory("Checking");
+        assertEquals(16000, history.size());
+        long balance = 0;
+        for (int i = 0; i < history.size(); i++) {
+            assertEquals(balance, history.getStartingBalanceCents(i));
+            balance = history.getEndingBalanceCents(i);
+        }
+        assertEquals(400000, balance);
+    }
+
+    /**
+     * Tests that amounts near the range of a long are parsed exactly or rejected, and
+     * never overflow into a wrong balance.
+     */
+    @Test
+    void testMoneyParseBoundaries() {
+        assertEquals(9999999999999999L * 100, Money.parse("9999999999999999"));
+        assertEquals(999999999999999999L, Money.parse("9999999999999999.99"));
+        assertEquals(1000000000000000000L, Money.parse("9999999999999999.995"));
+        assertEquals(-999999999999999990L, Money.parse("-9999999999999999.9"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("99999999999999999"));
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("92233720368547758.08"));
+    }
+
+    /**
+     * Tests that the BulkCustomerLoader gives the same customers as the sequential loader
+     * on a file with quoted fields spanning lines, however the file is cut into chunks
+     * and whichever line breaks end its records, and that it reports the rows it cannot
+     * parse with the line they start on.
+     */
+    @Test
+    void testBulkCustomerLoaderMatchesSequentialLoader() throws Exception {
+        for (String lineBreak : new String[] {"\n", "\r", "\r\n"}) {
+            java.nio.file.Path file = java.nio.file.Paths.get("BulkCustomersTest.csv");
+            StringBuilder csv = new StringBuilder(FilesHandling.CUSTOMER_CSV_HEADER).append(lineBreak);
+            java.util.List<Integer> badLines = new java.util.ArrayList<>();
+            int line = 2;
+            for (int i = 0; i < 40; i++) {
+                String id = i % 9 == 4 ? "x" + i : Integer.toString(9100 + i);
+                if (id.startsWith("x")) {
+                    badLines.add(line);
+                }
+                csv.append(id).append(",\"Bulk\",Loader").append(i).append(",01-Jan-1990,\"")
+                   .append(i).append(" Main St\nApt ").append(i).append(", \"\"B\"\"\",555-").append(i).append(',')
+                   .append(19100 + i).append(',').append(i).append(".25,").append(29100 + i).append(",10,")
+                   .append(39100 + i).append(",500,-").append(i).append(lineBreak);
+                line += 2;
+            }
+            java.nio.file.Files.write(file, csv.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            try {
+                HashMap<String, Customer> sequentialByName = new HashMap<>();
+                java.io.PrintStream out = System.out;
+                System.setOut(new java.io.PrintStream(java.io.OutputStream.nullOutputStream()));
+                try {
+                    FilesHandling.loadCustomersFromCSV(file.toString(), sequentialByName, new CustomerIdMap());
+                } finally {
+                    System.setOut(out);
+                }
+                assertEquals(40 - badLines.size(), sequentialByName.size());
+                assertEquals("5 Main St\nApt 5, \"B\"", sequentialByName.get("Bulk Loader5").getAddress());
+
+                for (int parallelism = 1; parallelism <= 16; parallelism++) {
+                    java.util.List<RowError> errors = new java.util.ArrayList<>();
+                    java.util.List<CustomerCSVFormat.Row> rows = new BulkCustomerLoader(parallelism, 1).load(file, errors);
+                    assertEquals(sequentialByName.size(), rows.size());
+                    for (CustomerCSVFormat.Row row : rows) {
+                        Customer expected = sequentialByName.get(row.getNameKey());
+                        Customer actual = row.toCustomer();
+                        assertEquals(expected.getIdentificationNumber(), actual.getIdentificationNumber());
+                        assertEquals(expected.getAddress(), actual.getAddress());
+                        assertEquals(expected.getPhoneNumber(), actual.getPhoneNumber());
+                        assertEquals(expected.getCheckingAccount().getBalanceCents(), actual.getCheckingAccount().getBalanceCents());
+                        assertEquals(expected.getCreditAccount().getBalanceCents(), actual.getCreditAccount().getBalanceCents());
+                    }
+                    assertEquals(badLines.size(), errors.size());
+                    for (int e = 0; e < errors.size(); e++) {
+                        assertEquals((int) badLines.get(e), errors.get(e).getLineNumber());
+                    }
+                }
+            } finally {
+                java.nio.file.Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Tests that the balance inquiries of a transactions file are printed to the console
+     * of the BankManager and not to the standard output.
+     */
+    @Test
+    void testInquiryPrintsToConsole() throws Exception {
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("inquiries", ".csv");
+        java.nio.file.Files.write(file, java.util.List.of("From First Name,From Last Name,From Where,Action,To First Name,To Last Name,To Where,Action Amount", "John,Doe,Checking,inquires,,,,"));
+        java.io.ByteArrayOutputStream console = new java.io.ByteArrayOutputStream();
+        java.io.ByteArrayOutputStream standard = new java.io.ByteArrayOutputStream();
+        BankManager manager = new BankManager(customersByName);
+        manager.setConsole(new java.io.PrintStream(console, true));
+        java.io.PrintStream out = System.out;
+        System.setOut(new java.io.PrintStream(standard, true));
+        try {
+            manager.processTransactions(file.toString());
+        } finally {
+            System.setOut(out);
+            java.nio.file.Files.deleteIfExists(file);
+        }
+        assertTrue(console.toString().contains("Checking Account Balance: $" + testCustomer.getCheckingAccount().getBalance()));
+        assertFalse(standard.toString().contains("Checking Account Balance"));
+    }
+
+    /**
+     * Tests that numbers reserved while blocks are handed out, including numbers inside
+     * blocks that were handed out but not used yet, are never taken from a block.
+     */
+    @Test
+    void testSequenceAllocatorReservationsInsideBlocks() throws InterruptedException {
+        SequenceAllocator allocator = new SequenceAllocator(1);
+        java.util.List<SequenceAllocator.Block> blocks = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        java.util.Set<Integer> reserved = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[6];
+        for (int t = 0; t < threads.length; t++) {
+            boolean reserver = t % 3 == 0;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    if (reserver) {
+                        int used = 1 + java.util.concurrent.ThreadLocalRandom.current().nextInt(allocator.peek() + 5);
+                        reserved.add(used);
+                        allocator.reserveThrough(used);
+                    } else {
+                        blocks.add(allocator.allocateBlock(20));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(30000);
+            assertFalse(thread.isAlive());
+        }
+        java.util.Set<Integer> taken = new java.util.HashSet<>();
+        for (SequenceAllocator.Block block : blocks) {
+            for (int i = 0; i < 20; i++) {
+                int number = block.next();
+                allocator.reserveThrough(number);
+                assertTrue(taken.add(number), "Taken twice: " + number);
+                assertFalse(reserved.contains(number), "Reserved number taken: " + number);
+            }
+        }
+        assertEquals(800 * 20, taken.size());
+        assertTrue(allocator.next() > java.util.Collections.max(taken));
+    }
+
+    /**
+     * Tests that a customer added from the console can be found by its ID, as the HTTP
+     * server looks customers up.
+     */
+    @Test
+    void testAddNewCustomerIsFoundById() {
+        CustomerIdMap customersById = new CustomerIdMap();
+        Scanner input = new Scanner("Console\nAdded\n01-Jan-1990\n1 Main St\n(915) 123-4567\n");
+        RunBank.addNewCustomer(customersByName, customersById, input);
+        Customer added = customersByName.get("Console Added");
+        assertNotNull(added);
+        assertSame(added, customersById.get(added.getIdentificationNumber()));
+    }
+
     /**
      * Clears resources after each test.
      */
@@ -7,9 +7,6 @@
  */
 
 public class Saving extends Account {
-    /** The number assigned to the most recently created savings account. Used to generate unique savings account numbers by incrementing this value.*/
-    public static int lastSavingsAccountNumber = -1;
-
     /** Default constructor that initializes a Saving account with default values. */
     public Saving() {
         super();
@@ -23,14 +20,11 @@ public class Saving extends Account {
      */
     public Saving(int accountNumber, double startingBalance) {
         super(accountNumber, startingBalance);
-        if (accountNumber > lastSavingsAccountNumber) {
-            lastSavingsAccountNumber = accountNumber;
-        }
     }
     
     /** Displays the savings account information, including the account number and current balance. */
     @Override
     public void displayAccountInfo() {
-        System.out.println("Savings Account Number: " + accountNumber + ", Balance: $" + balance);
+        System.out.println("Savings Account Number: " + accountNumber + ", Balance: $" + getBalance());
     }
 }
@@ -0,0 +1,182 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The SequenceAllocator class hands out unique, increasing numbers, such as customer
+ * identification numbers and account numbers, to any number of threads.
+ *
+ * A thread that needs many numbers takes a whole {@link Block} at once, so the shared
+ * counter is touched once per block instead of once per number. Numbers that were
+ * assigned elsewhere, such as those read from the customer CSV file, are reported with
+ * {@link #reserveThrough(int)} so they are never handed out again, even if they fall
+ * inside a block that was already handed out: the block skips them.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class SequenceAllocator {
+    /** The next number to hand out. */
+    private final AtomicInteger next;
+
+    /** The blocks handed out that still have numbers left, by their first number. */
+    private final ConcurrentSkipListMap<Integer, Block> openBlocks = new ConcurrentSkipListMap<>();
+
+    /**
+     * Creates a new SequenceAllocator.
+     * @param first The first number to hand out.
+     */
+    public SequenceAllocator(int first) {
+        this.next = new AtomicInteger(first);
+    }
+
+    /**
+     * Hands out the next number.
+     * @return the number
+     */
+    public int next() {
+        return next.getAndIncrement();
+    }
+
+    /**
+     * Hands out a block of consecutive numbers.
+     * @param size The number of numbers in the block, at least 1.
+     * @return The block.
+     */
+    public Block allocateBlock(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1: " + size);
+        }
+        Block block = new Block(this, size);
+        claimRange(block);
+        return block;
+    }
+
+    /**
+     * Gives a block the next range of numbers. The block is registered before the
+     * counter moves past the range, so a reservation that finds the counter past a
+     * number also finds the block the number belongs to.
+     * @param block The block.
+     */
+    private void claimRange(Block block) {
+        synchronized (openBlocks) {
+            while (true) {
+                int first = next.get();
+                block.setRange(first);
+                openBlocks.put(first, block);
+                if (next.compareAndSet(first, first + block.size)) {
+                    return;
+                }
+                openBlocks.remove(first, block);
+            }
+        }
+    }
+
+    /**
+     * Makes sure a number that is already in use is never handed out. Reading the
+     * counter first keeps numbers below it from writing to the shared counter. A number
+     * inside a block that was handed out and has not reached it yet is skipped by the
+     * block, together with the numbers of the block before it.
+     * @param used The number in use.
+     */
+    public void reserveThrough(int used) {
+        int current = next.get();
+        while (used >= current && !next.compareAndSet(current, used + 1)) {
+            current = next.get();
+        }
+        if (used < current) {
+            Map.Entry<Integer, Block> open = openBlocks.floorEntry(used);
+            if (open != null) {
+                open.getValue().skipThrough(used);
+            }
+        }
+    }
+
+    /**
+     * Gets the number the next call to {@link #next()} would hand out.
+     * @return the next number
+     */
+    public int peek() {
+        return next.get();
+    }
+
+    /**
+     * A range of numbers handed out to one thread, which takes them one by one. The
+     * owner of the block and a thread reserving one of its numbers only meet on the
+     * lock of the block, which the owner otherwise takes uncontended.
+     */
+    public static class Block {
+        /** The allocator the block was taken from. */
+        private final SequenceAllocator allocator;
+        /** The number of numbers in a range of the block. */
+        private final int size;
+        /** The first number of the current range. */
+        private int first;
+        /** The next number of the block. */
+        private int next;
+        /** The number after the last one of the current range. */
+        private int end;
+
+        /**
+         * Creates a new Block with no numbers; the allocator gives it its range.
+         * @param allocator The allocator the block is taken from.
+         * @param size      The number of numbers in a range of the block.
+         */
+        private Block(SequenceAllocator allocator, int size) {
+            this.allocator = allocator;
+            this.size = size;
+        }
+
+        /**
+         * Checks whether the current range of the block has numbers left.
+         * @return true if {@link #next()} can be called without taking a new range
+         */
+        public synchronized boolean hasNext() {
+            return next < end;
+        }
+
+        /**
+         * Takes the next number of the block. Once the range of the block is used up,
+         * including by numbers reserved elsewhere, the block takes a new range of the
+         * same size from its allocator.
+         * @return the number
+         */
+        public int next() {
+            while (true) {
+                synchronized (this) {
+                    if (next < end) {
+                        int number = next++;
+                        if (next == end) {
+                            allocator.openBlocks.remove(first, this);
+                        }
+                        return number;
+                    }
+                }
+                allocator.claimRange(this);
+            }
+        }
+
+        /**
+         * Starts a new range of the block.
+         * @param first The first number of the range.
+         */
+        private synchronized void setRange(int first) {
+            this.first = first;
+            this.next = first;
+            this.end = first + size;
+        }
+
+        /**
+         * Skips the numbers of the block up to a number reserved elsewhere.
+         * @param used The number in use.
+         */
+        private synchronized void skipThrough(int used) {
+            if (used >= next && used < end) {
+                next = used + 1;
+                if (next == end) {
+                    allocator.openBlocks.remove(first, this);
+                }
+            }
+        }
+    }
+}
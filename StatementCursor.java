@@ -0,0 +1,145 @@
+/**
+ * The StatementCursor class marks where the last bank statement of a customer ended.
+ *
+ * For each account ("Checking", "Savings", "Credit") it keeps the number of
+ * transactions of the history that the statement covered and the balance the statement
+ * closed with. The next statement starts at that transaction and carries that balance
+ * forward as its opening balance, so it only covers the activity in between. Cursors
+ * are immutable; a customer gets a new one every time a statement is written.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class StatementCursor {
+    /** The accounts a statement covers, in the order they are printed. */
+    public static final String[] ACCOUNT_TYPES = {"Checking", "Savings", "Credit"};
+
+    /** The date of the statement. */
+    private final String statementDate;
+
+    /** The number of transactions of each account the statement covered. */
+    private final int[] transactionCounts;
+
+    /** The balance of each account the statement closed with, in cents. */
+    private final long[] balancesCents;
+
+    /**
+     * Creates a new StatementCursor.
+     * @param statementDate     The date of the statement.
+     * @param transactionCounts The number of transactions of each account the statement covered, in the order of {@link #ACCOUNT_TYPES}.
+     * @param balancesCents     The closing balance of each account in cents, in the order of {@link #ACCOUNT_TYPES}.
+     */
+    public StatementCursor(String statementDate, int[] transactionCounts, long[] balancesCents) {
+        this.statementDate = statementDate;
+        this.transactionCounts = transactionCounts.clone();
+        this.balancesCents = balancesCents.clone();
+    }
+
+    /**
+     * Creates the cursor a statement written now would leave: it covers every
+     * transaction recorded so far and closes with the current balances.
+     * @param customer      The customer.
+     * @param statementDate The date of the statement.
+     * @return The cursor.
+     */
+    public static StatementCursor of(Customer customer, String statementDate) {
+        int[] transactionCounts = new int[ACCOUNT_TYPES.length];
+        long[] balancesCents = new long[ACCOUNT_TYPES.length];
+        for (int i = 0; i < ACCOUNT_TYPES.length; i++) {
+            transactionCounts[i] = customer.getHistory(ACCOUNT_TYPES[i]).size();
+            balancesCents[i] = account(customer, i).getBalanceCents();
+        }
+        return new StatementCursor(statementDate, transactionCounts, balancesCents);
+    }
+
+    /**
+     * Checks whether a customer needs a new statement: either the customer never had
+     * one, or an account has new transactions or a different balance since the last one.
+     * @param customer The customer.
+     * @return true if a statement is due
+     */
+    public static boolean isDue(Customer customer) {
+        StatementCursor last = customer.getStatementCursor();
+        if (last == null) {
+            return true;
+        }
+        for (int i = 0; i < ACCOUNT_TYPES.length; i++) {
+            if (customer.getHistory(ACCOUNT_TYPES[i]).size() > last.transactionCounts[i] || account(customer, i).getBalanceCents() != last.balancesCents[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the index of the first transaction of an account that the last statement of a
+     * customer did not cover.
+     * @param customer The customer.
+     * @param account  The index of the account in {@link #ACCOUNT_TYPES}.
+     * @return The index of the first new transaction, 0 if the customer never had a statement.
+     */
+    public static int firstNewTransaction(Customer customer, int account) {
+        StatementCursor last = customer.getStatementCursor();
+        return last == null ? 0 : Math.min(last.transactionCounts[account], customer.getHistory(ACCOUNT_TYPES[account]).size());
+    }
+
+    /**
+     * Gets the opening balance of the next statement of an account: the balance the last
+     * statement closed with, or, for a customer who never had one, the balance before
+     * the first transaction recorded.
+     * @param customer The customer.
+     * @param account  The index of the account in {@link #ACCOUNT_TYPES}.
+     * @return The opening balance, in cents.
+     */
+    public static long openingBalanceCents(Customer customer, int account) {
+        StatementCursor last = customer.getStatementCursor();
+        if (last != null) {
+            return last.balancesCents[account];
+        }
+        TransactionHistory history = customer.getHistory(ACCOUNT_TYPES[account]);
+        return history.size() > 0 ? history.getStartingBalanceCents(0) : account(customer, account).getBalanceCents();
+    }
+
+    /**
+     * Gets an account of a customer by its index in {@link #ACCOUNT_TYPES}.
+     * @param customer The customer.
+     * @param account  The index of the account.
+     * @return The account.
+     */
+    private static Account account(Customer customer, int account) {
+        switch (account) {
+            case 0:
+                return customer.getCheckingAccount();
+            case 1:
+                return customer.getSavingsAccount();
+            default:
+                return customer.getCreditAccount();
+        }
+    }
+
+    /**
+     * Gets the date of the statement.
+     * @return the statement date
+     */
+    public String getStatementDate() {
+        return statementDate;
+    }
+
+    /**
+     * Gets the number of transactions of an account the statement covered.
+     * @param account The index of the account in {@link #ACCOUNT_TYPES}.
+     * @return the number of transactions
+     */
+    public int getTransactionCount(int account) {
+        return transactionCounts[account];
+    }
+
+    /**
+     * Gets the balance of an account the statement closed with.
+     * @param account The index of the account in {@link #ACCOUNT_TYPES}.
+     * @return the closing balance, in cents
+     */
+    public long getBalanceCents(int account) {
+        return balancesCents[account];
+    }
+}
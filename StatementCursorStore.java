@@ -0,0 +1,187 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The StatementCursorStore class keeps the {@link StatementCursor} of every customer in
+ * a CSV file, so statements stay incremental across restarts.
+ *
+ * Every statement appends one row with the customer id, the statement date and the
+ * closing balances in cents; when a customer appears twice, its last row wins, like
+ * in the file of the {@link WriteBehindCustomerStore}. {@link #load} compacts the file
+ * back to one row per customer once the old rows outnumber the current ones.
+ *
+ * The transaction histories are not saved, so a cursor loaded from the file starts at
+ * the end of the history the customer has when it is loaded; the balances it carries
+ * forward are those of the last statement. It uses a singleton design pattern, like
+ * the {@link PasswordManager}, so every statement of the system goes to the same file.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class StatementCursorStore implements AutoCloseable {
+    /** The file the default store is written to. */
+    public static final String DEFAULT_PATH = "statement_cursors.csv";
+
+    /** The header of the file. */
+    private static final String HEADER = "Identification Number,Statement Date,Checking Balance Cents,Savings Balance Cents,Credit Balance Cents";
+
+    /** Singleton instance.*/
+    private static StatementCursorStore instance;
+
+    /** The file the cursors are written to. */
+    private final Path path;
+
+    /** The writer that appends rows to the file, opened by the first statement. */
+    private BufferedWriter writer;
+
+    /**
+     * Creates a new StatementCursorStore.
+     * @param path The file the cursors are written to.
+     */
+    public StatementCursorStore(String path) {
+        this.path = Paths.get(path);
+    }
+
+    /**
+     * Retrieves the singleton instance of the StatementCursorStore.
+     * @return The singleton instance of StatementCursorStore.
+     */
+    public static synchronized StatementCursorStore getInstance() {
+        if (instance == null) {
+            instance = new StatementCursorStore(DEFAULT_PATH);
+        }
+        return instance;
+    }
+
+    /**
+     * Gives every customer found in the file the cursor of its last statement.
+     * @param customersById The customers, keyed by their identification number.
+     * @return The number of customers that got a cursor.
+     * @throws IOException if the file cannot be read or compacted
+     */
+    public synchronized int load(CustomerIdMap customersById) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        Map<Integer, String[]> rows = new LinkedHashMap<>();
+        int rowCount = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length != 2 + StatementCursor.ACCOUNT_TYPES.length) {
+                    continue;
+                }
+                try {
+                    rows.put(Integer.parseInt(fields[0]), fields);
+                    rowCount++;
+                } catch (NumberFormatException e) {
+                    // A row cut short by a crash; the statement before it still counts.
+                }
+            }
+        }
+        int loaded = 0;
+        for (Map.Entry<Integer, String[]> row : rows.entrySet()) {
+            Customer customer = customersById.get(row.getKey());
+            if (customer == null) {
+                continue;
+            }
+            String[] fields = row.getValue();
+            int[] transactionCounts = new int[StatementCursor.ACCOUNT_TYPES.length];
+            long[] balancesCents = new long[StatementCursor.ACCOUNT_TYPES.length];
+            try {
+                for (int i = 0; i < balancesCents.length; i++) {
+                    transactionCounts[i] = customer.getHistory(StatementCursor.ACCOUNT_TYPES[i]).size();
+                    balancesCents[i] = Long.parseLong(fields[2 + i]);
+                }
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            customer.setStatementCursor(new StatementCursor(fields[1], transactionCounts, balancesCents));
+            loaded++;
+        }
+        if (rowCount > rows.size() * 2) {
+            compact(rows);
+        }
+        return loaded;
+    }
+
+    /**
+     * Rewrites the file with the last row of every customer.
+     * @param rows The last row of every customer.
+     * @throws IOException if the file cannot be written
+     */
+    private void compact(Map<Integer, String[]> rows) throws IOException {
+        closeWriter();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (String[] fields : rows.values()) {
+                out.write(String.join(",", fields));
+                out.newLine();
+            }
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Appends the current cursor of a customer to the file.
+     * @param customer The customer, who must have a cursor.
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void record(Customer customer) throws IOException {
+        StatementCursor cursor = customer.getStatementCursor();
+        if (writer == null) {
+            boolean empty = !Files.exists(path) || Files.size(path) == 0;
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (empty) {
+                writer.write(HEADER);
+                writer.newLine();
+            }
+        }
+        writer.write(Integer.toString(customer.getIdentificationNumber()));
+        writer.write(',');
+        writer.write(cursor.getStatementDate());
+        for (int i = 0; i < StatementCursor.ACCOUNT_TYPES.length; i++) {
+            writer.write(',');
+            writer.write(Long.toString(cursor.getBalanceCents(i)));
+        }
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * Closes the writer, if it is open.
+     * @throws IOException if the writer cannot be closed
+     */
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * Closes the file. The next statement opens it again.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closeWriter();
+    }
+}
@@ -0,0 +1,37 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The StatementEvent class is the Java Flight Recorder event of generating the bank
+ * statement of one customer, either by {@link BankManager#generateBankStatement} or by
+ * the render and write phases of the {@link BulkStatementJob}.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@Name("bank.Statement")
+@Label("Bank Statement")
+@Category("Bank")
+@Description("Generating the bank statement of a customer")
+public class StatementEvent extends Event {
+    /** The phase: "generate", "render" or "write". */
+    @Label("Phase")
+    String phase;
+
+    /** The identification number of the customer. */
+    @Label("Customer ID")
+    int customerId;
+
+    /** The size of the statement, when it is known. */
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    /** The outcome: "success" or "failed". */
+    @Label("Outcome")
+    String outcome;
+}
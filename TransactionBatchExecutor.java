@@ -0,0 +1,189 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The TransactionBatchExecutor class applies a batch of transactions on several worker
+ * threads while keeping the result identical to processing the rows one by one.
+ *
+ * Every customer is owned by exactly one worker, chosen from its "First Last" key, and
+ * each worker applies the rows of its customers in file order. A pays row between
+ * customers of two different workers is placed in both queues; the worker of the payer
+ * waits until the worker of the recipient has reached the row, applies it, and then lets
+ * the recipient's worker continue. Because every queue follows the file order, the
+ * earliest unfinished row can always proceed, so the workers never wait on each other
+ * in a cycle.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class TransactionBatchExecutor {
+    /** The bank manager used to apply each transaction. */
+    private final BankManager bankManager;
+
+    /** The number of worker threads. */
+    private final int workerCount;
+
+    /** The report the outcome of every row is added to, or null. */
+    private final TransactionReport report;
+
+    /** Where the messages of the rows are printed, or null to print nothing. */
+    private final PrintStream out;
+
+    /**
+     * Creates a new TransactionBatchExecutor that prints the messages of the rows to the
+     * console of the bank manager.
+     * @param bankManager The bank manager used to apply each transaction.
+     * @param workerCount The number of worker threads, at least 1.
+     */
+    public TransactionBatchExecutor(BankManager bankManager, int workerCount) {
+        this(bankManager, workerCount, null, bankManager.getConsole());
+    }
+
+    /**
+     * Creates a new TransactionBatchExecutor.
+     * @param bankManager The bank manager used to apply each transaction.
+     * @param workerCount The number of worker threads, at least 1.
+     * @param report      The report the outcome of every row is added to, or null.
+     * @param out         Where the messages of the rows are printed, or null to print nothing.
+     */
+    public TransactionBatchExecutor(BankManager bankManager, int workerCount, TransactionReport report, PrintStream out) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workerCount);
+        }
+        this.bankManager = bankManager;
+        this.workerCount = workerCount;
+        this.report = report;
+        this.out = out;
+    }
+
+    /**
+     * Applies all the given transactions, in file order per customer, and waits until
+     * every worker is done.
+     * @param records The transactions to apply, in file order.
+     */
+    public void execute(List<TransactionRecord> records) {
+        List<List<Step>> queues = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            queues.add(new ArrayList<>());
+        }
+        for (TransactionRecord record : records) {
+            int owner = workerOf(primaryKey(record));
+            int partner = record.getAction().equals("pays") ? workerOf(record.getToKey()) : owner;
+            if (owner == partner) {
+                queues.get(owner).add(new Step(record, null, true));
+            } else {
+                Rendezvous rendezvous = new Rendezvous();
+                queues.get(owner).add(new Step(record, rendezvous, true));
+                queues.get(partner).add(new Step(record, rendezvous, false));
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(workerCount);
+        try {
+            List<Callable<Void>> workers = new ArrayList<>();
+            for (List<Step> queue : queues) {
+                workers.add(() -> {
+                    try {
+                        for (Step step : queue) {
+                            step.run();
+                        }
+                    } catch (RuntimeException e) {
+                        // Stop the other workers, which may be waiting on a row of this one.
+                        pool.shutdownNow();
+                        throw e;
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> result : pool.invokeAll(workers)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Transaction processing interrupted.");
+        } catch (ExecutionException e) {
+            System.out.println("Error processing transactions: " + e.getCause().getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the key of the customer whose worker applies the row. Deposits belong to the
+     * recipient, every other action belongs to the sender.
+     * @param record The transaction.
+     * @return The key of the customer that owns the row.
+     */
+    private static String primaryKey(TransactionRecord record) {
+        return record.getAction().equals("deposits") ? record.getToKey() : record.getFromKey();
+    }
+
+    /**
+     * Gets the worker that owns the given customer key.
+     * @param key The "First Last" key of the customer.
+     * @return The index of the worker.
+     */
+    private int workerOf(String key) {
+        return (key.hashCode() & 0x7fffffff) % workerCount;
+    }
+
+    /** Synchronization point for a row shared by two workers. */
+    private static class Rendezvous {
+        /** Released by the partner worker once it has reached the row. */
+        private final CountDownLatch arrived = new CountDownLatch(1);
+
+        /** Released by the owner worker once the row has been applied. */
+        private final CountDownLatch done = new CountDownLatch(1);
+    }
+
+    /** A row in the queue of a worker. */
+    private class Step {
+        /** The transaction of the row. */
+        private final TransactionRecord record;
+
+        /** The synchronization point if the row is shared by two workers, null otherwise. */
+        private final Rendezvous rendezvous;
+
+        /** Whether this worker applies the row. */
+        private final boolean owner;
+
+        /**
+         * Creates a new Step.
+         * @param record     The transaction of the row.
+         * @param rendezvous The synchronization point, or null if the row is not shared.
+         * @param owner      Whether this worker applies the row.
+         */
+        Step(TransactionRecord record, Rendezvous rendezvous, boolean owner) {
+            this.record = record;
+            this.rendezvous = rendezvous;
+            this.owner = owner;
+        }
+
+        /**
+         * Runs the step, waiting on the other worker if the row is shared.
+         * @throws InterruptedException if the worker is interrupted while waiting
+         */
+        void run() throws InterruptedException {
+            if (rendezvous == null) {
+                bankManager.applyTransaction(record, report, out);
+            } else if (owner) {
+                rendezvous.arrived.await();
+                try {
+                    bankManager.applyTransaction(record, report, out);
+                } finally {
+                    rendezvous.done.countDown();
+                }
+            } else {
+                rendezvous.arrived.countDown();
+                rendezvous.done.await();
+            }
+        }
+    }
+}
@@ -0,0 +1,587 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The TransactionDedupIndex class remembers the transaction IDs of the rows already
+ * applied, so running a transactions file again, such as after a run that failed
+ * halfway, skips the rows that were applied instead of charging the customers twice. It
+ * uses a singleton design pattern, like the {@link Ledger}, so a single index is shared
+ * by the whole system.
+ *
+ * A transaction ID is kept as its key: the first 128 bits of its SHA-256 digest, so two
+ * different IDs never share a key in practice and a real transaction is never taken for
+ * one already applied. Rows without a transaction ID are always applied, see
+ * {@link BankManager#setDedupIndex}. The exact set of keys is kept on disk: a sorted file
+ * of keys, memory-mapped and binary searched, and a log the new keys are appended to,
+ * each written as soon as its row is applied. The logged keys are also held in a
+ * concurrent set, and once there are {@value #MERGE_THRESHOLD} of them, by default, the
+ * log is set aside and its keys are merged into the sorted file on a background thread,
+ * while new keys go to a fresh log. A blocked Bloom filter of the sorted file, about
+ * {@value #BITS_PER_KEY} bits per key and indexed by the high half of the key, answers
+ * for most keys that were never applied without touching the file, and a directory of
+ * where the keys of every range of values start in the file, about
+ * {@value #KEYS_PER_RANGE} keys per range, leaves only a few keys to search for the
+ * others, so a lookup takes well under a microsecond.
+ *
+ * Lookups take no lock. The sorted file, its Bloom filter and its directory never
+ * change once built: a merge builds new ones and publishes them at once, and only then
+ * removes the merged keys from the concurrent set, so a lookup that checks the set
+ * first and the sorted file second always finds a key added before it started.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class TransactionDedupIndex implements AutoCloseable {
+    /** The default path of the sorted file of keys. */
+    public static final String DEFAULT_PATH = "transactions.dedup";
+
+    /** The number of logged keys merged into the sorted file at once, by default. */
+    public static final int MERGE_THRESHOLD = 1 << 20;
+
+    /** The size of a key in the files, in bytes: its high half, then its low half. */
+    private static final int KEY_SIZE = 16;
+
+    /** The number of bits of the Bloom filter per key it is sized for. */
+    private static final int BITS_PER_KEY = 12;
+
+    /** The number of bits of a key's block set in the Bloom filter. */
+    private static final int HASHES = 6;
+
+    /** The number of longs in a block of the Bloom filter, one cache line. */
+    private static final int BLOCK_LONGS = 8;
+
+    /** The number of keys of the sorted file per range of the directory. */
+    private static final int KEYS_PER_RANGE = 8;
+
+    /** The SHA-256 digest of every thread, which turns transaction IDs into keys. */
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /** Singleton instance.*/
+    private static TransactionDedupIndex instance;
+
+    /** The path of the sorted file of keys. */
+    private final Path path;
+
+    /** The path of the log of keys added since the last merge. */
+    private final Path logPath;
+
+    /** The path of the log whose keys are being merged into the sorted file. */
+    private final Path mergingPath;
+
+    /** The number of logged keys merged into the sorted file at once. */
+    private final int mergeThreshold;
+
+    /** The keys of the logs, which are not in the sorted file yet. */
+    private final Set<Key> logged = ConcurrentHashMap.newKeySet();
+
+    /** Serializes the writes to the log and guards the fields below that change with it. */
+    private final Object logLock = new Object();
+
+    /** Makes a merge publish its sorted file and drop its keys from the logged ones at once. */
+    private final Object mergeLock = new Object();
+
+    /** The thread that merges the logs into the sorted file. */
+    private final ExecutorService merger;
+
+    /** The buffer a key is written to the log from. */
+    private final ByteBuffer logEntry = ByteBuffer.allocate(KEY_SIZE);
+
+    /** The sorted file of keys, with its Bloom filter and directory. */
+    private volatile SortedKeys sorted;
+
+    /** The channel of the log. */
+    private FileChannel log;
+
+    /** The keys of the log, in the order they were added. */
+    private List<Key> logKeys = new ArrayList<>();
+
+    /** Whether a log is being merged into the sorted file. */
+    private boolean mergePending;
+
+    /** The error that stopped keys from being logged, or null. */
+    private IOException failure;
+
+    /**
+     * Opens an index that merges its log every {@value #MERGE_THRESHOLD} keys.
+     * @param indexPath The path of the sorted file of keys; the logs are next to it.
+     * @throws IOException if the index cannot be opened
+     */
+    public TransactionDedupIndex(String indexPath) throws IOException {
+        this(indexPath, MERGE_THRESHOLD);
+    }
+
+    /**
+     * Opens an index, creating its files if needed. A key left half written in the log
+     * by a crash is cut off, and a log a crash left half merged is merged again.
+     * @param indexPath      The path of the sorted file of keys; the logs are next to it.
+     * @param mergeThreshold The number of logged keys merged into the sorted file at once.
+     * @throws IOException if the index cannot be opened
+     */
+    public TransactionDedupIndex(String indexPath, int mergeThreshold) throws IOException {
+        this.path = Paths.get(indexPath);
+        this.mergeThreshold = mergeThreshold;
+        this.logPath = path.resolveSibling(path.getFileName() + ".log");
+        this.mergingPath = path.resolveSibling(path.getFileName() + ".merging");
+        if (!Files.exists(path)) {
+            Files.createFile(path);
+        }
+        sorted = new SortedKeys(path);
+        if (Files.exists(mergingPath)) {
+            try (FileChannel merging = FileChannel.open(mergingPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                sorted = mergeIntoSorted(readKeys(merging));
+            }
+            Files.delete(mergingPath);
+        }
+        log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        logKeys = readKeys(log);
+        logged.addAll(logKeys);
+        merger = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dedup-merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Retrieves the singleton instance of the TransactionDedupIndex, opening the default
+     * index the first time.
+     * @return The singleton instance of TransactionDedupIndex.
+     * @throws UncheckedIOException if the index cannot be opened
+     */
+    public static synchronized TransactionDedupIndex getInstance() {
+        if (instance == null) {
+            try {
+                instance = new TransactionDedupIndex(DEFAULT_PATH);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Reads the keys of a log, cutting off a key left half written, and leaves the
+     * channel at its end.
+     * @param channel The channel of the log.
+     * @return The keys, in the order they were written.
+     * @throws IOException if the log cannot be read
+     */
+    private static List<Key> readKeys(FileChannel channel) throws IOException {
+        long size = channel.size() - channel.size() % KEY_SIZE;
+        channel.truncate(size);
+        ByteBuffer contents = ByteBuffer.allocate((int) size);
+        while (contents.hasRemaining() && channel.read(contents, contents.position()) >= 0) {
+            // Read the whole log.
+        }
+        contents.flip();
+        List<Key> keys = new ArrayList<>();
+        while (contents.hasRemaining()) {
+            keys.add(new Key(contents.getLong(), contents.getLong()));
+        }
+        channel.position(size);
+        return keys;
+    }
+
+    /**
+     * Gets the key of a transaction ID. The same ID gives the same key whatever file it
+     * is in.
+     * @param transactionId The transaction ID.
+     * @return The first 128 bits of the SHA-256 digest of the ID.
+     */
+    private static Key keyOf(String transactionId) {
+        ByteBuffer digest = ByteBuffer.wrap(DIGESTS.get().digest(transactionId.getBytes(StandardCharsets.UTF_8)));
+        return new Key(digest.getLong(0), digest.getLong(8));
+    }
+
+    /**
+     * Checks whether the row of a transaction ID was applied, without taking a lock.
+     * @param transactionId The transaction ID of the row.
+     * @return true if the ID was added
+     */
+    public boolean contains(String transactionId) {
+        return contains(keyOf(transactionId));
+    }
+
+    /**
+     * Checks whether a key was added: first among the logged keys, then in the sorted
+     * file, which by then holds every key a merge removed from the logged ones.
+     * @param key The key.
+     * @return true if the key was added
+     */
+    private boolean contains(Key key) {
+        return logged.contains(key) || sorted.contains(key.high, key.low);
+    }
+
+    /**
+     * Records that the row of a transaction ID was applied, appending its key to the log
+     * right away. Once the log holds enough keys, it is handed to the merge thread and a
+     * new log is started. If a log cannot be written or merged, the error is reported
+     * once and later keys are only remembered until the index is closed.
+     * @param transactionId The transaction ID of the row.
+     */
+    public void add(String transactionId) {
+        Key key = keyOf(transactionId);
+        if (contains(key)) {
+            return;
+        }
+        List<Key> mergedKeys = null;
+        synchronized (logLock) {
+            if (!logged.add(key) || failure != null) {
+                return;
+            }
+            try {
+                logEntry.clear();
+                logEntry.putLong(0, key.high);
+                logEntry.putLong(8, key.low);
+                while (logEntry.hasRemaining()) {
+                    log.write(logEntry);
+                }
+                logKeys.add(key);
+                if (logKeys.size() >= mergeThreshold && !mergePending) {
+                    mergedKeys = rotateLog();
+                    mergePending = true;
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        if (mergedKeys != null) {
+            List<Key> keys = mergedKeys;
+            merger.execute(() -> {
+                try {
+                    merge(keys);
+                } catch (IOException e) {
+                    synchronized (logLock) {
+                        fail(e);
+                    }
+                } finally {
+                    synchronized (logLock) {
+                        mergePending = false;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Records the error that stopped keys from being logged, reporting the first one.
+     * The caller holds the log lock.
+     * @param e The error.
+     */
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+            System.out.println("Error writing the transaction index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sets the log aside to be merged and starts a new one. The caller holds the log lock.
+     * @return The keys of the log set aside.
+     * @throws IOException if the logs cannot be renamed or opened
+     */
+    private List<Key> rotateLog() throws IOException {
+        log.close();
+        Files.move(logPath, mergingPath, StandardCopyOption.REPLACE_EXISTING);
+        log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        List<Key> keys = logKeys;
+        logKeys = new ArrayList<>();
+        return keys;
+    }
+
+    /**
+     * Merges the keys of the log set aside into the sorted file, publishes the new file
+     * and drops the keys from the logged ones, then deletes the log set aside.
+     * @param keys The keys of the log set aside.
+     * @throws IOException if the sorted file cannot be written
+     */
+    private void merge(List<Key> keys) throws IOException {
+        SortedKeys merged = mergeIntoSorted(keys);
+        synchronized (mergeLock) {
+            sorted = merged;
+            for (Key key : keys) {
+                logged.remove(key);
+            }
+        }
+        Files.delete(mergingPath);
+    }
+
+    /**
+     * Gets the number of keys in the index.
+     * @return The number of keys.
+     */
+    public long size() {
+        synchronized (mergeLock) {
+            return sorted.count + logged.size();
+        }
+    }
+
+    /**
+     * Writes the keys of the sorted file and other keys, in order and each once, to a
+     * temporary file that then replaces the sorted file, so a crash leaves either the old
+     * file and the log set aside or the new file.
+     * @param keys The keys to add.
+     * @return The new sorted file, mapped.
+     * @throws IOException if the sorted file cannot be written
+     */
+    private SortedKeys mergeIntoSorted(List<Key> keys) throws IOException {
+        Key[] added = keys.toArray(new Key[0]);
+        Arrays.sort(added);
+        SortedKeys current = sorted;
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            int i = 0;
+            int j = 0;
+            long lastHigh = 0;
+            long lastLow = 0;
+            boolean first = true;
+            while (i < current.count || j < added.length) {
+                long high;
+                long low;
+                if (j == added.length || i < current.count && compare(current.high(i), current.low(i), added[j].high, added[j].low) < 0) {
+                    high = current.high(i);
+                    low = current.low(i++);
+                } else {
+                    high = added[j].high;
+                    low = added[j++].low;
+                }
+                if (first || high != lastHigh || low != lastLow) {
+                    out.writeLong(high);
+                    out.writeLong(low);
+                    lastHigh = high;
+                    lastLow = low;
+                    first = false;
+                }
+            }
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new SortedKeys(path);
+    }
+
+    /**
+     * Compares two keys in the order of the sorted file: by their high halves, then by
+     * their low halves, both signed.
+     * @param high      The high half of the first key.
+     * @param low       The low half of the first key.
+     * @param otherHigh The high half of the second key.
+     * @param otherLow  The low half of the second key.
+     * @return A negative number, zero or a positive number as the first key is before,
+     *         equal to or after the second.
+     */
+    private static int compare(long high, long low, long otherHigh, long otherLow) {
+        return high != otherHigh ? Long.compare(high, otherHigh) : Long.compare(low, otherLow);
+    }
+
+    /**
+     * Waits for the merge in progress, then merges the log into the sorted file and
+     * closes it.
+     * @throws IOException if the sorted file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        merger.shutdown();
+        try {
+            merger.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (logLock) {
+            try {
+                if (failure == null && !logKeys.isEmpty()) {
+                    merge(rotateLog());
+                }
+            } finally {
+                log.close();
+            }
+        }
+    }
+
+    /**
+     * A 128-bit key: the high and the low half of a digest.
+     */
+    private static final class Key implements Comparable<Key> {
+        /** The high half of the key. */
+        private final long high;
+
+        /** The low half of the key. */
+        private final long low;
+
+        /**
+         * Creates a new Key.
+         * @param high The high half of the key.
+         * @param low  The low half of the key.
+         */
+        private Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).high == high && ((Key) other).low == low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (high >>> 32);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            return compare(high, low, other.high, other.low);
+        }
+    }
+
+    /**
+     * The sorted file of keys, mapped into memory, with its Bloom filter and the
+     * directory of its ranges. It never changes once built, so any number of threads
+     * can search it without a lock.
+     */
+    private static final class SortedKeys {
+        /** The keys, two longs each: the high half, then the low half. */
+        private final LongBuffer keys;
+
+        /** The number of keys. */
+        private final int count;
+
+        /** Where the keys of every range start, and the number of keys last. */
+        private final int[] directory;
+
+        /** The shift of the high half of a key, with its sign bit flipped, that gives its range. */
+        private final int rangeShift;
+
+        /** The bits of the Bloom filter, in blocks of {@value #BLOCK_LONGS} longs. */
+        private final long[] bloom;
+
+        /** The number of blocks of the Bloom filter minus one. */
+        private final int blockMask;
+
+        /**
+         * Maps a sorted file of keys and builds its directory and Bloom filter.
+         * @param file The sorted file.
+         * @throws IOException if the file cannot be mapped
+         */
+        private SortedKeys(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size() - channel.size() % KEY_SIZE;
+                keys = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asLongBuffer();
+            }
+            count = keys.limit() / 2;
+            int rangeBits = 31 - Integer.numberOfLeadingZeros(Math.max(2, count / KEYS_PER_RANGE));
+            rangeShift = 64 - rangeBits;
+            directory = new int[(1 << rangeBits) + 1];
+            int position = 0;
+            for (int range = 0; range < 1 << rangeBits; range++) {
+                while (position < count && rangeOf(high(position)) < range) {
+                    position++;
+                }
+                directory[range] = position;
+            }
+            directory[1 << rangeBits] = count;
+            long blocks = Long.highestOneBit(Math.max(1, (long) count * BITS_PER_KEY / (BLOCK_LONGS * 64) - 1)) << 1;
+            bloom = new long[(int) blocks * BLOCK_LONGS];
+            blockMask = (int) blocks - 1;
+            for (int i = 0; i < count; i++) {
+                long high = high(i);
+                int base = ((int) (high >>> 40) & blockMask) * BLOCK_LONGS;
+                for (int bit = 0; bit < HASHES; bit++) {
+                    int index = (int) (high >>> (bit * 6)) & 511;
+                    bloom[base + (index >>> 6)] |= 1L << index;
+                }
+            }
+        }
+
+        /**
+         * Gets the high half of a key.
+         * @param index The index of the key.
+         * @return The high half.
+         */
+        private long high(int index) {
+            return keys.get(index * 2);
+        }
+
+        /**
+         * Gets the low half of a key.
+         * @param index The index of the key.
+         * @return The low half.
+         */
+        private long low(int index) {
+            return keys.get(index * 2 + 1);
+        }
+
+        /**
+         * Gets the range of a key in the directory, from its high half. The ranges
+         * follow the signed order of the keys in the file.
+         * @param high The high half of the key.
+         * @return The range.
+         */
+        private int rangeOf(long high) {
+            return (int) ((high ^ Long.MIN_VALUE) >>> rangeShift);
+        }
+
+        /**
+         * Checks whether the file holds a key: the Bloom filter first, which the high half
+         * of the key, already a uniform hash, indexes directly, then a binary search of
+         * the range of the key.
+         * @param high The high half of the key.
+         * @param low  The low half of the key.
+         * @return true if the file holds the key
+         */
+        private boolean contains(long high, long low) {
+            int base = ((int) (high >>> 40) & blockMask) * BLOCK_LONGS;
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (int) (high >>> (i * 6)) & 511;
+                if ((bloom[base + (bit >>> 6)] & 1L << bit) == 0) {
+                    return false;
+                }
+            }
+            int range = rangeOf(high);
+            int first = directory[range];
+            int last = directory[range + 1] - 1;
+            while (first <= last) {
+                int middle = (first + last) >>> 1;
+                int order = compare(high(middle), low(middle), high, low);
+                if (order < 0) {
+                    first = middle + 1;
+                } else if (order > 0) {
+                    last = middle - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * The TransactionHistory class stores the transactions of one account of a customer.
+ *
+ * Every transaction is appended to a set of growable primitive columns (starting
+ * balance, ending balance and amount in cents, the kind of transaction and the
+ * counterparty), so recording a transaction costs a few array writes instead of
+ * copying the whole history into a new String. The text seen in statements is only
+ * built when it is asked for, by {@link #toString()} or {@link #appendTo(Appendable)}.
+ *
+ * Transactions are only ever appended, so the index of a transaction never changes.
+ * Recording and reading are synchronized, so a statement can be read while the
+ * account is being updated.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class TransactionHistory {
+    /** A transaction described by free text, as given to {@link Customer#addTransaction(String, double, double, String)}. */
+    public static final byte NOTE = 0;
+    /** Money deposited into the account. */
+    public static final byte DEPOSIT = 1;
+    /** Money withdrawn from the account. */
+    public static final byte WITHDRAWAL = 2;
+    /** Money transferred to the customer's other account. */
+    public static final byte TRANSFER_OUT = 3;
+    /** Money received from the customer's other account. */
+    public static final byte TRANSFER_IN = 4;
+    /** Money paid to another customer. */
+    public static final byte PAYMENT_SENT = 5;
+    /** Money received from another customer. */
+    public static final byte PAYMENT_RECEIVED = 6;
+
+    /** The number of transactions the columns can hold before they first grow. */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /** The account the history belongs to ("Checking", "Savings", or "Credit"). */
+    private final String accountType;
+
+    /** The number of transactions recorded. */
+    private int size;
+
+    /** The balance before each transaction, in cents. */
+    private long[] startingBalances = new long[INITIAL_CAPACITY];
+
+    /** The balance after each transaction, in cents. */
+    private long[] endingBalances = new long[INITIAL_CAPACITY];
+
+    /** The amount of each transaction, in cents. */
+    private long[] amounts = new long[INITIAL_CAPACITY];
+
+    /** The kind of each transaction. */
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+
+    /** The other customer of each payment, or null. */
+    private Customer[] counterparties = new Customer[INITIAL_CAPACITY];
+
+    /** The description of each {@link #NOTE}, or null until the first note is added. */
+    private String[] notes;
+
+    /**
+     * Creates an empty TransactionHistory.
+     * @param accountType the account the history belongs to
+     */
+    public TransactionHistory(String accountType) {
+        this.accountType = accountType;
+    }
+
+    /**
+     * Records a transaction.
+     * @param kind                 the kind of transaction, one of the constants of this class
+     * @param startingBalanceCents the balance before the transaction, in cents
+     * @param endingBalanceCents   the balance after the transaction, in cents
+     * @param amountCents          the amount of the transaction, in cents
+     * @param counterparty         the other customer of a payment, or null
+     */
+    public synchronized void add(byte kind, long startingBalanceCents, long endingBalanceCents, long amountCents, Customer counterparty) {
+        if (size == kinds.length) {
+            grow();
+        }
+        startingBalances[size] = startingBalanceCents;
+        endingBalances[size] = endingBalanceCents;
+        amounts[size] = amountCents;
+        kinds[size] = kind;
+        counterparties[size] = counterparty;
+        size++;
+    }
+
+    /**
+     * Records a transaction described by free text.
+     * @param startingBalanceCents the balance before the transaction, in cents
+     * @param endingBalanceCents   the balance after the transaction, in cents
+     * @param description          the description of the transaction
+     */
+    public synchronized void addNote(long startingBalanceCents, long endingBalanceCents, String description) {
+        if (notes == null) {
+            notes = new String[kinds.length];
+        }
+        if (size == kinds.length) {
+            grow();
+        }
+        notes[size] = description;
+        add(NOTE, startingBalanceCents, endingBalanceCents, Math.abs(endingBalanceCents - startingBalanceCents), null);
+    }
+
+    /** Doubles the capacity of the columns. */
+    private void grow() {
+        int capacity = kinds.length * 2;
+        startingBalances = Arrays.copyOf(startingBalances, capacity);
+        endingBalances = Arrays.copyOf(endingBalances, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        kinds = Arrays.copyOf(kinds, capacity);
+        counterparties = Arrays.copyOf(counterparties, capacity);
+        if (notes != null) {
+            notes = Arrays.copyOf(notes, capacity);
+        }
+    }
+
+    /**
+     * Gets the account the history belongs to.
+     * @return the account type
+     */
+    public String getAccountType() {
+        return accountType;
+    }
+
+    /**
+     * Gets the number of transactions recorded.
+     * @return the number of transactions
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the balance before a transaction.
+     * @param index the index of the transaction
+     * @return the starting balance in cents
+     */
+    public synchronized long getStartingBalanceCents(int index) {
+        return startingBalances[index];
+    }
+
+    /**
+     * Gets the balance after a transaction.
+     * @param index the index of the transaction
+     * @return the ending balance in cents
+     */
+    public synchronized long getEndingBalanceCents(int index) {
+        return endingBalances[index];
+    }
+
+    /**
+     * Gets the amount of a transaction.
+     * @param index the index of the transaction
+     * @return the amount in cents
+     */
+    public synchronized long getAmountCents(int index) {
+        return amounts[index];
+    }
+
+    /**
+     * Gets the kind of a transaction.
+     * @param index the index of the transaction
+     * @return the kind, one of the constants of this class
+     */
+    public synchronized byte getKind(int index) {
+        return kinds[index];
+    }
+
+    /**
+     * Gets the identification number of the other customer of a payment.
+     * @param index the index of the transaction
+     * @return the identification number, or -1 if the transaction has no counterparty
+     */
+    public synchronized int getCounterpartyId(int index) {
+        return counterparties[index] == null ? -1 : counterparties[index].getIdentificationNumber();
+    }
+
+    /**
+     * Writes the description of a transaction, such as "Paid $20.0 to Jane Doe".
+     * @param out   where to write the description
+     * @param index the index of the transaction
+     * @throws IOException if the description cannot be written
+     */
+    public synchronized void appendDescription(Appendable out, int index) throws IOException {
+        double amount = Money.toDouble(amounts[index]);
+        Customer counterparty = counterparties[index];
+        switch (kinds[index]) {
+            case DEPOSIT:
+                out.append("Deposited $").append(Double.toString(amount));
+                break;
+            case WITHDRAWAL:
+                out.append("Withdrew $").append(Double.toString(amount));
+                break;
+            case TRANSFER_OUT:
+                out.append("Transferred $").append(Double.toString(amount)).append(" to ").append(otherAccountType());
+                break;
+            case TRANSFER_IN:
+                out.append("Received $").append(Double.toString(amount)).append(" from ").append(otherAccountType());
+                break;
+            case PAYMENT_SENT:
+                out.append("Paid $").append(Double.toString(amount)).append(" to ").append(counterparty.getFirstName()).append(' ').append(counterparty.getLastName());
+                break;
+            case PAYMENT_RECEIVED:
+                out.append("Received $").append(Double.toString(amount)).append(" from ").append(counterparty.getFirstName()).append(' ').append(counterparty.getLastName());
+                break;
+            default:
+                out.append(notes[index]);
+                break;
+        }
+    }
+
+    /**
+     * Writes a transaction as a line of the history, in the format used by statements.
+     * @param out   where to write the line
+     * @param index the index of the transaction
+     * @throws IOException if the line cannot be written
+     */
+    public synchronized void appendLine(Appendable out, int index) throws IOException {
+        out.append("Starting Balance: $").append(Double.toString(Money.toDouble(startingBalances[index])))
+           .append(", Ending Balance: $").append(Double.toString(Money.toDouble(endingBalances[index])))
+           .append(", Transaction: ");
+        appendDescription(out, index);
+        out.append(".\n");
+    }
+
+    /**
+     * Writes every transaction of the history, one line each.
+     * @param out where to write the history
+     * @throws IOException if the history cannot be written
+     */
+    public synchronized void appendTo(Appendable out) throws IOException {
+        appendTo(out, 0, size);
+    }
+
+    /**
+     * Writes a range of transactions of the history, one line each, such as the ones
+     * made since the last statement.
+     * @param out  where to write the transactions
+     * @param from the index of the first transaction
+     * @param to   the index after the last transaction
+     * @throws IOException if the transactions cannot be written
+     */
+    public synchronized void appendTo(Appendable out, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            appendLine(out, i);
+        }
+    }
+
+    /**
+     * Gets the account a transfer went to or came from. Transfers only happen between
+     * the checking and savings accounts.
+     * @return the other account type
+     */
+    private String otherAccountType() {
+        return accountType.equals("Checking") ? "Savings" : "Checking";
+    }
+
+    /**
+     * Renders the whole history as text.
+     * @return the history, one line per transaction
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder text = new StringBuilder(size * 96);
+        try {
+            appendTo(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+}
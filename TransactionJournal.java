@@ -0,0 +1,364 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The TransactionJournal class is a write-ahead journal of the transactions made by
+ * customers. It uses a singleton design pattern, like the {@link PasswordManager}, so a
+ * single journal file is shared by the whole system.
+ *
+ * Each record is written as its length, a CRC32 checksum and the encoded
+ * {@link JournalEntry}, and {@link #append(JournalEntry)} only returns once the record
+ * has been forced to disk. Threads that append at the same time share one write and one
+ * {@code FileChannel.force}: the first thread to arrive writes every pending record
+ * while the others wait for it (group commit).
+ *
+ * When the customers are saved to the updated users CSV file, the sequence number of the
+ * last entry they include is stored in a checkpoint file. After a crash, {@link #recover}
+ * loads that snapshot and replays the entries written after it, so nothing is lost.
+ * A clean shutdown leaves no entry newer than the checkpoint.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class TransactionJournal implements AutoCloseable {
+    /** The file the default journal is written to. */
+    public static final String DEFAULT_JOURNAL_PATH = "transaction_journal.dat";
+
+    /** The largest record accepted when reading the journal back. */
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    /** The size of the length and checksum written before every record. */
+    private static final int HEADER_SIZE = 8;
+
+    /** Singleton instance.*/
+    private static TransactionJournal instance;
+
+    /** The channel of the journal file. */
+    private final FileChannel channel;
+
+    /** The file that stores the sequence number of the last checkpoint. */
+    private final Path checkpointPath;
+
+    /** The entries newer than the last checkpoint, found when the journal was opened. */
+    private List<JournalEntry> unrecovered = new ArrayList<>();
+
+    /** The sequence number of the last checkpoint. */
+    private long checkpointSequence;
+
+    /** The sequence number given to the last appended entry. */
+    private long lastSequence;
+
+    /** The sequence number of the last entry forced to disk. */
+    private long durableSequence;
+
+    /** The encoded records waiting to be written. */
+    private List<ByteBuffer> pending = new ArrayList<>();
+
+    /** Whether a thread is currently writing records. */
+    private boolean writing;
+
+    /** The error that broke the journal, or null if it works. */
+    private IOException failure;
+
+    /**
+     * Opens a journal, creating it if needed. Records left half written by a crash are
+     * cut off, and the entries newer than the last checkpoint are kept for {@link #recover}.
+     * @param journalPath The path of the journal file.
+     * @throws IOException if the journal cannot be opened
+     */
+    public TransactionJournal(String journalPath) throws IOException {
+        Path path = Paths.get(journalPath);
+        this.checkpointPath = path.resolveSibling(path.getFileName() + ".chk");
+        if (Files.exists(checkpointPath)) {
+            checkpointSequence = Long.parseLong(new String(Files.readAllBytes(checkpointPath), StandardCharsets.UTF_8).trim());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        lastSequence = Math.max(checkpointSequence, readValidRecords());
+        durableSequence = lastSequence;
+        channel.position(channel.size());
+    }
+
+    /**
+     * Retrieves the singleton instance of the TransactionJournal, opening the default
+     * journal file the first time.
+     * @return The singleton instance of TransactionJournal.
+     * @throws UncheckedIOException if the journal cannot be opened
+     */
+    public static synchronized TransactionJournal getInstance() {
+        if (instance == null) {
+            try {
+                instance = new TransactionJournal(DEFAULT_JOURNAL_PATH);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Writes an entry to the journal and waits until it is on disk.
+     * @param entry The entry to write.
+     * @return The sequence number given to the entry.
+     * @throws IOException if the journal cannot be written
+     */
+    public long append(JournalEntry entry) throws IOException {
+        long sequence;
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+            sequence = ++lastSequence;
+            pending.add(encode(sequence, entry));
+        }
+        awaitDurable(sequence);
+        return sequence;
+    }
+
+    /**
+     * Waits until the entry with the given sequence number is on disk, writing the
+     * pending records itself if no other thread is doing it.
+     * @param sequence The sequence number to wait for.
+     * @throws IOException if the journal cannot be written
+     */
+    private void awaitDurable(long sequence) throws IOException {
+        while (true) {
+            List<ByteBuffer> batch;
+            long batchSequence;
+            synchronized (this) {
+                while (writing && durableSequence < sequence && failure == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for the journal", e);
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                if (durableSequence >= sequence) {
+                    return;
+                }
+                writing = true;
+                batch = pending;
+                batchSequence = lastSequence;
+                pending = new ArrayList<>();
+            }
+            IOException error = null;
+            try {
+                ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                long remaining = 0;
+                for (ByteBuffer buffer : buffers) {
+                    remaining += buffer.remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (this) {
+                writing = false;
+                if (error == null) {
+                    durableSequence = batchSequence;
+                } else {
+                    failure = error;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Gets the sequence number given to the last appended entry.
+     * @return the last sequence number
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Records that every entry up to the given sequence number is included in the saved
+     * customer snapshot. If no entry was written since, the journal file is emptied.
+     * @param sequence The sequence number of the last entry included in the snapshot.
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public synchronized void checkpoint(long sequence) throws IOException {
+        if (sequence <= checkpointSequence) {
+            return;
+        }
+        Path temporary = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+        Files.write(temporary, Long.toString(sequence).getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(temporary, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, checkpointPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        checkpointSequence = sequence;
+        if (sequence == lastSequence && !writing && pending.isEmpty()) {
+            channel.truncate(0);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Replays the entries written after the last checkpoint. The customers are first set
+     * to the snapshot saved at that checkpoint, then every newer entry is applied in order.
+     * Does nothing if the last session shut down cleanly.
+     * @param customersByName The customers, keyed by their full name.
+     * @param customersById   The customers, keyed by their ID.
+     * @param snapshotPath    The CSV file the customers were saved to.
+     * @return The number of entries replayed.
+     * @throws IOException if the snapshot cannot be read
+     */
+    public synchronized int recover(Map<String, Customer> customersByName, CustomerIdMap customersById, String snapshotPath) throws IOException {
+        List<JournalEntry> entries = unrecovered;
+        unrecovered = new ArrayList<>();
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        if (Files.exists(Paths.get(snapshotPath))) {
+            try (CSVReader reader = new CSVReader(new FileReader(snapshotPath))) {
+                if (reader.nextRecord()) {
+                    CustomerCSVFormat format = new CustomerCSVFormat(reader);
+                    while (reader.nextRecord()) {
+                        CustomerCSVFormat.Row row = format.parse(reader);
+                        Customer customer = customersByName.get(row.getNameKey());
+                        if (customer == null) {
+                            customer = row.toCustomer();
+                            customersByName.put(row.getNameKey(), customer);
+                            customersById.put(row.getId(), customer);
+                            AccountIndex.getInstance().register(customer);
+                        } else {
+                            row.applyBalancesTo(customer);
+                        }
+                    }
+                }
+            }
+        }
+        for (JournalEntry entry : entries) {
+            entry.applyTo(customersByName);
+        }
+        return entries.size();
+    }
+
+    /**
+     * Reads every complete record of the journal, keeping the entries newer than the
+     * checkpoint, and cuts off a record left half written by a crash.
+     * @return The sequence number of the last complete record, or 0 if there is none.
+     * @throws IOException if the journal cannot be read
+     */
+    private long readValidRecords() throws IOException {
+        long position = 0;
+        long size = channel.size();
+        long last = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, position);
+            int length = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (length <= 0 || length > MAX_RECORD_SIZE || position + HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + HEADER_SIZE);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+            long sequence = in.readLong();
+            if (sequence > checkpointSequence) {
+                unrecovered.add(decode(in));
+            }
+            last = sequence;
+            position += HEADER_SIZE + length;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        return last;
+    }
+
+    /**
+     * Encodes an entry as a record: its length, its checksum and its content.
+     * @param sequence The sequence number of the entry.
+     * @param entry    The entry to encode.
+     * @return A buffer holding the record.
+     * @throws IOException if the entry cannot be encoded
+     */
+    private static ByteBuffer encode(long sequence, JournalEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeLong(sequence);
+        out.writeUTF(entry.getDetails());
+        out.writeInt(entry.getBalanceCount());
+        for (int i = 0; i < entry.getBalanceCount(); i++) {
+            out.writeUTF(entry.getCustomerKey(i));
+            out.writeUTF(entry.getAccountType(i));
+            out.writeLong(entry.getBalanceCents(i));
+        }
+        out.flush();
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int length = record.capacity() - HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Decodes the content of a record, after its sequence number.
+     * @param in The content of the record.
+     * @return The decoded entry.
+     * @throws IOException if the record is malformed
+     */
+    private static JournalEntry decode(DataInputStream in) throws IOException {
+        JournalEntry entry = new JournalEntry(in.readUTF());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            entry.addBalance(in.readUTF(), in.readUTF(), in.readLong());
+        }
+        return entry;
+    }
+
+    /**
+     * Closes the journal file.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+        synchronized (TransactionJournal.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+    }
+}
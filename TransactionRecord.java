@@ -0,0 +1,171 @@
+/**
+ * The TransactionRecord class represents a single row of a transactions CSV file,
+ * as processed by {@link BankManager#processTransactions(String)}.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class TransactionRecord {
+    /** The line number of the row in the transactions file (the header is line 1). */
+    private final int lineNumber;
+
+    /** The first name of the customer the money comes from. */
+    private final String fromFirstName;
+
+    /** The last name of the customer the money comes from. */
+    private final String fromLastName;
+
+    /** The account type the money comes from ("Checking", "Savings", or "Credit"). */
+    private final String fromWhere;
+
+    /** The action to perform ("pays", "transfers", "inquires", "withdraws", or "deposits"). */
+    private final String action;
+
+    /** The first name of the customer the money goes to. */
+    private final String toFirstName;
+
+    /** The last name of the customer the money goes to. */
+    private final String toLastName;
+
+    /** The account type the money goes to ("Checking", "Savings", or "Credit"). */
+    private final String toWhere;
+
+    /** The amount of the transaction, in cents. */
+    private final long amountCents;
+
+    /** The transaction ID of the row, which identifies it in a {@link TransactionDedupIndex}, or null. */
+    private final String transactionId;
+
+    /**
+     * Constructor with parameters to initialize a TransactionRecord with the values of a row.
+     * @param lineNumber    the line number of the row in the transactions file
+     * @param fromFirstName the first name of the customer the money comes from
+     * @param fromLastName  the last name of the customer the money comes from
+     * @param fromWhere     the account type the money comes from
+     * @param action        the action to perform
+     * @param toFirstName   the first name of the customer the money goes to
+     * @param toLastName    the last name of the customer the money goes to
+     * @param toWhere       the account type the money goes to
+     * @param amountCents   the amount of the transaction, in cents
+     * @param transactionId the transaction ID of the row, or null if it has none
+     */
+    public TransactionRecord(int lineNumber, String fromFirstName, String fromLastName, String fromWhere, String action, String toFirstName, String toLastName, String toWhere, long amountCents, String transactionId) {
+        this.lineNumber = lineNumber;
+        this.fromFirstName = fromFirstName;
+        this.fromLastName = fromLastName;
+        this.fromWhere = fromWhere;
+        this.action = action;
+        this.toFirstName = toFirstName;
+        this.toLastName = toLastName;
+        this.toWhere = toWhere;
+        this.amountCents = amountCents;
+        this.transactionId = transactionId;
+    }
+
+    /**
+     * Gets the line number of the row in the transactions file.
+     * @return the line number
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Gets the first name of the customer the money comes from.
+     * @return the first name of the sender
+     */
+    public String getFromFirstName() {
+        return fromFirstName;
+    }
+
+    /**
+     * Gets the last name of the customer the money comes from.
+     * @return the last name of the sender
+     */
+    public String getFromLastName() {
+        return fromLastName;
+    }
+
+    /**
+     * Gets the account type the money comes from.
+     * @return the source account type
+     */
+    public String getFromWhere() {
+        return fromWhere;
+    }
+
+    /**
+     * Gets the action to perform.
+     * @return the action
+     */
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * Gets the first name of the customer the money goes to.
+     * @return the first name of the recipient
+     */
+    public String getToFirstName() {
+        return toFirstName;
+    }
+
+    /**
+     * Gets the last name of the customer the money goes to.
+     * @return the last name of the recipient
+     */
+    public String getToLastName() {
+        return toLastName;
+    }
+
+    /**
+     * Gets the account type the money goes to.
+     * @return the destination account type
+     */
+    public String getToWhere() {
+        return toWhere;
+    }
+
+    /**
+     * Gets the amount of the transaction.
+     * @return the amount
+     */
+    public double getAmount() {
+        return Money.toDouble(amountCents);
+    }
+
+    /**
+     * Gets the amount of the transaction in cents.
+     * @return the amount in cents
+     */
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    /**
+     * Gets the transaction ID of the row, which identifies it in a {@link TransactionDedupIndex}.
+     * @return the transaction ID, or null if the file has no "Transaction ID" column or the
+     *         row leaves it empty
+     */
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * Gets the key of the customer the money comes from, in the same "First Last"
+     * format used by the customersByName map.
+     * @return the key of the sender, or an empty string if the row has no sender
+     */
+    public String getFromKey() {
+        return fromFirstName.isEmpty() || fromLastName.isEmpty() ? "" : fromFirstName + " " + fromLastName;
+    }
+
+    /**
+     * Gets the key of the customer the money goes to, in the same "First Last"
+     * format used by the customersByName map.
+     * @return the key of the recipient, or an empty string if the row has no recipient
+     */
+    public String getToKey() {
+        return toFirstName.isEmpty() || toLastName.isEmpty() ? "" : toFirstName + " " + toLastName;
+    }
+}
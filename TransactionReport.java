@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The TransactionReport class sums up a batch of transactions processed by
+ * {@link BankManager#processTransactionsInBatch}: how many rows of every action ended
+ * with every outcome, the rows that failed with their line numbers and reasons, and the
+ * total amount of money moved. Rows skipped because a {@link TransactionDedupIndex}
+ * shows they were already applied are only counted.
+ *
+ * The workers of the batch add their rows concurrently: the counts are atomic and the
+ * failed rows are collected in a concurrent queue, so adding a row takes no lock.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class TransactionReport {
+    /** The actions of a transactions file, in the order they are reported. */
+    private static final String[] ACTIONS = {"pays", "transfers", "inquires", "withdraws", "deposits"};
+
+    /** The row of the counts of unknown actions and rows that could not be parsed. */
+    private static final int OTHER = ACTIONS.length;
+
+    /** The labels of the outcomes, as columns of the report. */
+    private static final String[] OUTCOME_LABELS = {"Success", "Insufficient Funds", "Customer Not Found", "Failed"};
+
+    /** The number of rows of every action and outcome, action by action. */
+    private final AtomicLongArray counts = new AtomicLongArray((ACTIONS.length + 1) * OperationMetrics.OUTCOME_COUNT);
+
+    /** The total amount moved by the successful payments, transfers, withdrawals and deposits, in cents. */
+    private final LongAdder amountMovedCents = new LongAdder();
+
+    /** The number of rows skipped because they were already applied. */
+    private final LongAdder skippedRows = new LongAdder();
+
+    /** The rows that did not succeed, in no particular order. */
+    private final ConcurrentLinkedQueue<RowError> failedRows = new ConcurrentLinkedQueue<>();
+
+    /** The value of {@link System#nanoTime()} when the report was created. */
+    private final long startNanos = System.nanoTime();
+
+    /** How long the batch took, in nanoseconds, once it is finished. */
+    private volatile long elapsedNanos = -1;
+
+    /**
+     * Gets the row of the counts of an action.
+     * @param action The action, such as "pays".
+     * @return The index of the action, or {@link #OTHER} if it is unknown.
+     */
+    private static int indexOf(String action) {
+        for (int i = 0; i < ACTIONS.length; i++) {
+            if (ACTIONS[i].equals(action)) {
+                return i;
+            }
+        }
+        return OTHER;
+    }
+
+    /**
+     * Adds the outcome of a row.
+     * @param record  The transaction of the row.
+     * @param outcome The outcome, such as {@link OperationMetrics#SUCCESS}.
+     * @param reason  Why the row did not succeed, or null if it succeeded.
+     */
+    public void add(TransactionRecord record, int outcome, String reason) {
+        int action = indexOf(record.getAction());
+        counts.incrementAndGet(action * OperationMetrics.OUTCOME_COUNT + outcome);
+        if (outcome != OperationMetrics.SUCCESS) {
+            failedRows.add(new RowError(record.getLineNumber(), reason));
+        } else if (action != OTHER && !record.getAction().equals("inquires")) {
+            amountMovedCents.add(record.getAmountCents());
+        }
+    }
+
+    /**
+     * Adds a row that could not be parsed, counted as a failure of no known action.
+     * @param lineNumber The line of the file the row starts on.
+     * @param reason     Why the row could not be parsed.
+     */
+    public void addRejected(int lineNumber, String reason) {
+        counts.incrementAndGet(OTHER * OperationMetrics.OUTCOME_COUNT + OperationMetrics.FAILED);
+        failedRows.add(new RowError(lineNumber, reason));
+    }
+
+    /** Adds a row skipped because it was already applied. */
+    public void addSkipped() {
+        skippedRows.increment();
+    }
+
+    /** Marks the batch as finished, fixing how long it took. */
+    public void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Gets the number of rows of an action that ended with an outcome.
+     * @param action  The action, such as "pays"; any other name gives the unknown actions and unparsed rows.
+     * @param outcome The outcome, such as {@link OperationMetrics#SUCCESS}.
+     * @return The number of rows.
+     */
+    public long getCount(String action, int outcome) {
+        return counts.get(indexOf(action) * OperationMetrics.OUTCOME_COUNT + outcome);
+    }
+
+    /**
+     * Gets the number of rows reported.
+     * @return The number of rows.
+     */
+    public long getRowCount() {
+        long rows = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            rows += counts.get(i);
+        }
+        return rows;
+    }
+
+    /**
+     * Gets the number of rows skipped because they were already applied. They are not
+     * part of {@link #getRowCount()}.
+     * @return The number of rows.
+     */
+    public long getSkippedCount() {
+        return skippedRows.sum();
+    }
+
+    /**
+     * Gets the total amount moved by the successful payments, transfers, withdrawals and
+     * deposits.
+     * @return The amount, in cents.
+     */
+    public long getAmountMovedCents() {
+        return amountMovedCents.sum();
+    }
+
+    /**
+     * Gets the rows that did not succeed.
+     * @return The rows, in file order.
+     */
+    public List<RowError> getFailedRows() {
+        List<RowError> rows = new ArrayList<>(failedRows);
+        rows.sort((a, b) -> Integer.compare(a.getLineNumber(), b.getLineNumber()));
+        return rows;
+    }
+
+    /**
+     * Gets how long the batch took.
+     * @return The time in milliseconds, up to now if the batch is not finished.
+     */
+    public long getElapsedMillis() {
+        long elapsed = elapsedNanos >= 0 ? elapsedNanos : System.nanoTime() - startNanos;
+        return TimeUnit.NANOSECONDS.toMillis(elapsed);
+    }
+
+    /**
+     * Writes the report: the counts per action and outcome, the amount moved, and the
+     * failed rows in file order.
+     * @param out           Where to write the report.
+     * @param maxFailedRows The largest number of failed rows listed; the others are only counted.
+     * @throws IOException if the report cannot be written
+     */
+    public void writeTo(Appendable out, int maxFailedRows) throws IOException {
+        String newLine = System.lineSeparator();
+        long rows = getRowCount();
+        long elapsedMillis = getElapsedMillis();
+        out.append("Transactions report").append(newLine);
+        out.append("---------------------------------").append(newLine);
+        out.append("Rows: ").append(Long.toString(rows)).append(" in ").append(Long.toString(elapsedMillis)).append(" ms (")
+            .append(Long.toString(rows * 1000 / Math.max(1, elapsedMillis))).append(" rows/s)").append(newLine);
+        long skipped = getSkippedCount();
+        if (skipped > 0) {
+            out.append("Skipped (already applied): ").append(Long.toString(skipped)).append(newLine);
+        }
+        out.append(String.format(Locale.ROOT, "%-10s", "Action"));
+        for (String label : OUTCOME_LABELS) {
+            out.append(String.format(Locale.ROOT, "%20s", label));
+        }
+        out.append(newLine);
+        for (int action = 0; action <= OTHER; action++) {
+            out.append(String.format(Locale.ROOT, "%-10s", action == OTHER ? "other" : ACTIONS[action]));
+            for (int outcome = 0; outcome < OperationMetrics.OUTCOME_COUNT; outcome++) {
+                out.append(String.format(Locale.ROOT, "%20d", counts.get(action * OperationMetrics.OUTCOME_COUNT + outcome)));
+            }
+            out.append(newLine);
+        }
+        out.append("Total amount moved: $").append(Money.format(getAmountMovedCents())).append(newLine);
+        List<RowError> failed = getFailedRows();
+        out.append("Failed rows: ").append(Integer.toString(failed.size())).append(newLine);
+        for (int i = 0; i < failed.size() && i < maxFailedRows; i++) {
+            out.append(failed.get(i).toString()).append(newLine);
+        }
+        if (failed.size() > maxFailedRows) {
+            out.append("... and ").append(Integer.toString(failed.size() - maxFailedRows)).append(" more.").append(newLine);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The TransactionRowEvent class is the Java Flight Recorder event of one row of a
+ * transactions file applied by {@link BankManager#processTransactions}, on the calling
+ * thread or on a worker of the {@link TransactionBatchExecutor}. The
+ * {@link BankOperationEvent} of the row, if any, is nested within it.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@Name("bank.TransactionRow")
+@Label("Transaction Row")
+@Category("Bank")
+@Description("A row of a transactions file")
+public class TransactionRowEvent extends Event {
+    /** The line of the file the row starts on. */
+    @Label("Line Number")
+    int lineNumber;
+
+    /** The action of the row, such as "pays". */
+    @Label("Action")
+    String action;
+
+    /** The full name of the customer the action starts from. */
+    @Label("Customer")
+    String customer;
+
+    /** The account type the money comes from. */
+    @Label("Account Type")
+    String accountType;
+
+    /** The account type the money goes to. */
+    @Label("To Account Type")
+    String toAccountType;
+
+    /** The amount of the row, in dollars. */
+    @Label("Amount")
+    double amount;
+
+    /** The outcome, as named by the {@link OperationMetrics}. */
+    @Label("Outcome")
+    String outcome;
+}
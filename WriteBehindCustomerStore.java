@@ -0,0 +1,214 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The WriteBehindCustomerStore class persists customers to the updated users CSV file
+ * without rewriting the whole file after every action.
+ *
+ * Customers that change are only marked as dirty. A background flusher writes them
+ * every flush interval, or as soon as the number of dirty customers reaches the
+ * threshold, so several updates to the same customer between two flushes cost a single
+ * row. Flushed rows are appended to the file; since a customer that appears twice is
+ * loaded from its last row, the file stays valid. Once the appended rows outnumber the
+ * customers, the file is compacted back to one row per customer, which keeps the cost
+ * of the rewrite spread over many flushes. {@link #close()} flushes and compacts, so the
+ * file left on shutdown is the same one {@link FilesHandling#updateCSV} writes.
+ * Every compaction is recorded as a checkpoint of the {@link TransactionJournal}, so
+ * after a crash only the journal entries written since then need to be replayed.
+ *
+ * The flusher reads the customers while other threads add to them, so they are kept in
+ * a concurrent map: a compaction writes every customer present when it starts, and a
+ * customer added meanwhile is written by the next one.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class WriteBehindCustomerStore implements AutoCloseable {
+    /** The default time between two flushes, in milliseconds. */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 5000;
+
+    /** The default number of dirty customers that triggers a flush. */
+    public static final int DEFAULT_DIRTY_THRESHOLD = 100;
+
+    /** The CSV file the customers are written to. */
+    private final Path csvFilePath;
+
+    /** All the customers, used when compacting the file. */
+    private final ConcurrentMap<String, Customer> customers;
+
+    /** The number of dirty customers that triggers a flush. */
+    private final int dirtyThreshold;
+
+    /** The journal that is checkpointed when the file is compacted, or null. */
+    private final TransactionJournal journal;
+
+    /** The customers that changed since the last flush. */
+    private final Set<Customer> dirty = ConcurrentHashMap.newKeySet();
+
+    /** The thread that flushes the dirty customers. */
+    private final ScheduledExecutorService flusher;
+
+    /** The number of rows appended to the file since it was last compacted. */
+    private int appendedRows;
+
+    /**
+     * Creates a new WriteBehindCustomerStore, writes a full snapshot of the customers
+     * and starts the background flusher.
+     * @param csvFilePath         The CSV file the customers are written to.
+     * @param customers           All the customers, keyed by their full name.
+     * @param journal             The journal to checkpoint when the file is compacted, or null.
+     * @param flushIntervalMillis The time between two flushes, in milliseconds.
+     * @param dirtyThreshold      The number of dirty customers that triggers a flush.
+     */
+    public WriteBehindCustomerStore(String csvFilePath, ConcurrentMap<String, Customer> customers, TransactionJournal journal, long flushIntervalMillis, int dirtyThreshold) {
+        this.csvFilePath = Paths.get(csvFilePath);
+        this.customers = customers;
+        this.journal = journal;
+        this.dirtyThreshold = dirtyThreshold;
+        compact();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new WriteBehindCustomerStore with the default flush interval and threshold.
+     * @param csvFilePath The CSV file the customers are written to.
+     * @param customers   All the customers, keyed by their full name.
+     * @param journal     The journal to checkpoint when the file is compacted, or null.
+     */
+    public WriteBehindCustomerStore(String csvFilePath, ConcurrentMap<String, Customer> customers, TransactionJournal journal) {
+        this(csvFilePath, customers, journal, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_DIRTY_THRESHOLD);
+    }
+
+    /**
+     * Marks a customer as changed, so it is written by the next flush.
+     * @param customer The customer that changed.
+     */
+    public void markDirty(Customer customer) {
+        if (dirty.add(customer) && dirty.size() >= dirtyThreshold && !flusher.isShutdown()) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    /**
+     * Gets the number of customers waiting to be written.
+     * @return the number of dirty customers
+     */
+    public int getDirtyCount() {
+        return dirty.size();
+    }
+
+    /**
+     * Appends the dirty customers to the file, compacting it when it has grown too much.
+     */
+    public synchronized void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<Customer> batch = new ArrayList<>(dirty);
+        dirty.removeAll(batch);
+        if (appendedRows + batch.size() > customers.size()) {
+            if (!compact()) {
+                dirty.addAll(batch);
+            }
+            return;
+        }
+        CSVFileEvent event = new CSVFileEvent();
+        event.begin();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(csvFilePath.toFile(), true))) {
+            for (Customer customer : batch) {
+                writer.write(FilesHandling.toCSVLine(customer));
+                writer.newLine();
+            }
+            appendedRows += batch.size();
+            FilesHandling.commitCSVFileEvent(event, "append", csvFilePath.toString(), batch.size(), 0, true);
+        } catch (IOException e) {
+            dirty.addAll(batch);
+            System.out.println("Error updating the CSV file: " + e.getMessage());
+            FilesHandling.commitCSVFileEvent(event, "append", csvFilePath.toString(), 0, 0, false);
+        }
+    }
+
+    /**
+     * Rewrites the file with one row per customer, and emits its {@link CSVFileEvent}.
+     * @return true if the file was rewritten
+     */
+    private synchronized boolean compact() {
+        CSVFileEvent event = new CSVFileEvent();
+        event.begin();
+        boolean compacted = rewrite();
+        FilesHandling.commitCSVFileEvent(event, "compact", csvFilePath.toString(), compacted ? customers.size() : 0, 0, compacted);
+        return compacted;
+    }
+
+    /**
+     * Rewrites the file with one row per customer. The rows are written to a temporary
+     * file that then replaces the old one, so the file is never left half written.
+     * @return true if the file was rewritten
+     */
+    private boolean rewrite() {
+        Path temporary = csvFilePath.resolveSibling(csvFilePath.getFileName() + ".tmp");
+        long journalSequence = journal == null ? 0 : journal.getLastSequence();
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary)) {
+            writer.write(FilesHandling.CUSTOMER_CSV_HEADER);
+            writer.newLine();
+            for (Customer customer : customers.values()) {
+                writer.write(FilesHandling.toCSVLine(customer));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            System.out.println("Error updating the CSV file: " + e.getMessage());
+            return false;
+        }
+        try {
+            try {
+                Files.move(temporary, csvFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, csvFilePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            appendedRows = 0;
+            if (journal != null) {
+                journal.checkpoint(journalSequence);
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error updating the CSV file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stops the background flusher and writes a compacted file with every customer.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            dirty.clear();
+            compact();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of recording one more transaction in histories that already hold
+ * many, to show whether it stays constant as the history grows.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AddTransactionBenchmark {
+    /** The number of transactions in the history before the benchmark starts. */
+    @Param({"0", "10000", "1000000"})
+    public int historySize;
+
+    /** The customer whose history grows. */
+    private Customer customer;
+
+    /** The counterparty of the payments. */
+    private Customer counterparty;
+
+    /** Creates a customer whose checking history holds {@link #historySize} transactions. */
+    @Setup(Level.Iteration)
+    public void fillHistory() {
+        customer = BenchmarkData.customers(1).get("First0 Last0");
+        counterparty = new Customer();
+        for (int i = 0; i < historySize; i++) {
+            customer.addTransaction("Checking", TransactionHistory.DEPOSIT, i, i + 100, 100, null);
+        }
+    }
+
+    /**
+     * Records a payment.
+     * @return the customer
+     */
+    @Benchmark
+    public Customer structured() {
+        customer.addTransaction("Checking", TransactionHistory.PAYMENT_SENT, 10000, 9900, 100, counterparty);
+        return customer;
+    }
+
+    /**
+     * Records a transaction described by free text.
+     * @return the customer
+     */
+    @Benchmark
+    public Customer note() {
+        customer.addTransaction("Checking", 100.0, 99.0, "Withdrew $1.0");
+        return customer;
+    }
+}
@@ -0,0 +1,173 @@
+package bank;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The BankHttpLoadTest class runs a local load test against the {@link BankHttpServer}.
+ * It creates synthetic customers in memory, starts the server on a free port, and has
+ * many concurrent clients send a mix of inquiries, deposits, withdrawals, transfers and
+ * payments for a fixed time. It then prints the number of requests per second and the
+ * p50, p99 and maximum latencies.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar bank.BankHttpLoadTest [clients] [seconds] [customers]
+ * </pre>
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+public class BankHttpLoadTest {
+    /** The number of latencies each client can record. */
+    private static final int MAX_SAMPLES_PER_CLIENT = 1 << 16;
+
+    /**
+     * Runs the load test.
+     * @param args the number of clients (default 1000), the duration in seconds
+     *             (default 10) and the number of customers (default 10000)
+     * @throws Exception if the server cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int customerCount = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+        ConcurrentMap<String, Customer> customersByName = new ConcurrentHashMap<>();
+        CustomerIdMap customersById = new CustomerIdMap();
+        String[] names = new String[customerCount];
+        String[] passwords = new String[customerCount];
+        for (int i = 0; i < customerCount; i++) {
+            Customer customer = new Customer(i + 1, "Load" + i, "Customer", "01-Jan-00", "Address", "(000) 000-0000",
+                new Checking(1000000 + i, 1000.0), new Saving(2000000 + i, 1000.0), new Credit(3000000 + i, 0.0, 5000.0));
+            names[i] = "Load" + i + " Customer";
+            customersByName.put(names[i], customer);
+            customersById.put(i + 1, customer);
+            passwords[i] = PasswordManager.getInstance().generatePassword(names[i]);
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        AtomicLong failures = new AtomicLong();
+        long elapsedNanos;
+        try (BankHttpServer server = new BankHttpServer(customersByName, customersById, null, null, 0)) {
+            server.start();
+            String base = "http://127.0.0.1:" + server.getPort();
+            HttpClient client = HttpClient.newBuilder().build();
+            CountDownLatch done = new CountDownLatch(clients);
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            long start = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                int clientIndex = c;
+                Thread thread = new Thread(() -> {
+                    long[] samples = new long[MAX_SAMPLES_PER_CLIENT];
+                    int count = 0;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline && count < samples.length) {
+                        int who = random.nextInt(customerCount);
+                        String credentials = "customer=" + names[who].replace(' ', '+') + "&password=" + passwords[who];
+                        HttpRequest request = nextRequest(base, credentials, names[random.nextInt(customerCount)], random);
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                            if (response.statusCode() != 200 && response.statusCode() != 409) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        samples[count++] = System.nanoTime() - sent;
+                    }
+                    latencies[clientIndex] = samples;
+                    counts[clientIndex] = count;
+                    done.countDown();
+                }, "load-client-" + c);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            done.await();
+            elapsedNanos = System.nanoTime() - start;
+        } finally {
+            System.setOut(console);
+        }
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        System.out.println("Clients: " + clients + ", customers: " + customerCount + ", duration: " + seconds + " s");
+        System.out.println("Requests: " + total + " (" + failures.get() + " failed)");
+        System.out.printf("Throughput: %.0f requests/s%n", total / (elapsedNanos / 1e9));
+        if (total > 0) {
+            System.out.printf("Latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, all[total - 1] / 1e6);
+        }
+    }
+
+    /**
+     * Builds a random request: half inquiries, the rest split between deposits,
+     * withdrawals, transfers and payments.
+     * @param base        The address of the server.
+     * @param credentials The form encoded customer name and password.
+     * @param recipient   The name of a customer to pay.
+     * @param random      The random number generator.
+     * @return The request.
+     */
+    private static HttpRequest nextRequest(String base, String credentials, String recipient, ThreadLocalRandom random) {
+        String amount = "&amount=" + (1 + random.nextInt(50));
+        switch (random.nextInt(8)) {
+            case 0:
+                return post(base + "/deposit", credentials + "&account=Checking" + amount);
+            case 1:
+                return post(base + "/withdraw", credentials + "&account=Checking" + amount);
+            case 2:
+                return post(base + "/transfer", credentials + "&from=Savings&to=Checking" + amount);
+            case 3:
+                return post(base + "/pay", credentials + "&recipient=" + recipient.replace(' ', '+') + amount);
+            default:
+                return HttpRequest.newBuilder(URI.create(base + "/inquire?" + credentials)).GET().build();
+        }
+    }
+
+    /**
+     * Builds a form encoded POST request.
+     * @param url  The address of the operation.
+     * @param form The form encoded parameters.
+     * @return The request.
+     */
+    private static HttpRequest post(String url, String form) {
+        return HttpRequest.newBuilder(URI.create(url))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form, StandardCharsets.UTF_8))
+            .build();
+    }
+
+    /**
+     * Gets a percentile of sorted samples.
+     * @param sorted   The samples, in ascending order.
+     * @param fraction The percentile, between 0 and 1.
+     * @return The sample at that percentile.
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,80 @@
+package bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BankManager#generateBankStatement(Customer)} for a customer whose
+ * accounts each hold a given number of transactions. The statement is written to the
+ * working directory. The statement cursor of the customer is cleared before every call,
+ * so each statement covers the whole history.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BankStatementBenchmark {
+    /** The number of transactions in each account. */
+    @Param({"100", "10000"})
+    public int transactions;
+
+    /** The customer whose statement is generated. */
+    private Customer customer;
+
+    /** The manager that generates the statement. */
+    private BankManager bankManager;
+
+    /** Creates the customer and its transactions. */
+    @Setup(Level.Trial)
+    public void createCustomer() {
+        BenchmarkData.silenceConsole();
+        customer = BenchmarkData.customers(1).get("First0 Last0");
+        Customer counterparty = new Customer();
+        for (int i = 0; i < transactions; i++) {
+            long balance = 100000000L + i * 100L;
+            customer.addTransaction("Checking", TransactionHistory.PAYMENT_RECEIVED, balance, balance + 100, 100, counterparty);
+            customer.addTransaction("Savings", TransactionHistory.DEPOSIT, balance, balance + 100, 100, null);
+            customer.addTransaction("Credit", TransactionHistory.WITHDRAWAL, -balance, -balance - 100, 100, null);
+        }
+        bankManager = new BankManager(BenchmarkData.customers(0));
+    }
+
+    /** Clears the statement cursor left by the previous call. */
+    @Setup(Level.Invocation)
+    public void clearStatementCursor() {
+        customer.setStatementCursor(null);
+    }
+
+    /** Restores the console. */
+    @TearDown(Level.Trial)
+    public void restoreConsole() {
+        BenchmarkData.restoreConsole();
+    }
+
+    /**
+     * Generates the statement.
+     * @return whether the statement was written
+     */
+    @Benchmark
+    public boolean generateBankStatement() {
+        return bankManager.generateBankStatement(customer);
+    }
+}
@@ -0,0 +1,129 @@
+package bank;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * The BenchmarkData class builds the synthetic customers and files the benchmarks run
+ * on. The data is generated from a fixed seed, so every run measures the same work.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+final class BenchmarkData {
+    /** The header of the customers file, in the column order of the bank's own file. */
+    static final String CUSTOMERS_HEADER = "First Name,Credit Account Number,Identification Number,Date of Birth,Address,Phone Number,Checking Account Number,Checking Starting Balance,Savings Account Number,Savings Starting Balance,Last Name,Credit Max,Credit Starting Balance";
+
+    /** The header of the transactions file. */
+    static final String TRANSACTIONS_HEADER = "From First Name,From Last Name,From Where,Action,To First Name,To Last Name,To Where,Action Amount";
+
+    /** The seed of every generator. */
+    private static final long SEED = 3331;
+
+    /** The console, kept while the benchmarks silence it. */
+    private static PrintStream console;
+
+    /** Prevents instances of this class. */
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates customers with balances large enough that no benchmark runs out of funds.
+     * @param count the number of customers
+     * @return the customers, keyed by their full name ("First{i} Last{i}")
+     */
+    static HashMap<String, Customer> customers(int count) {
+        HashMap<String, Customer> customers = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer(i + 1, "First" + i, "Last" + i, "1-Jan-90", "500 W. University Ave, El Paso, TX 79968", "(915) 747-5000",
+                new Checking(1000000 + i, 1000000.0), new Saving(2000000 + i, 1000000.0), new Credit(3000000 + i, -100.0, 5000.0));
+            customers.put("First" + i + " Last" + i, customer);
+        }
+        return customers;
+    }
+
+    /**
+     * Writes a customers file in the format of "CS 3331 - Bank Users.csv".
+     * @param file the file to write
+     * @param rows the number of customers
+     * @throws IOException if the file cannot be written
+     */
+    static void writeCustomers(Path file, int rows) throws IOException {
+        Random random = new Random(SEED);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(CUSTOMERS_HEADER);
+            writer.newLine();
+            for (int i = 0; i < rows; i++) {
+                writer.write("First" + i + "," + (3000000 + i) + "," + (i + 1) + ",5-Mar-39,\"500 W. University Ave, El Paso, TX 79968\",(915) 747-5042,"
+                    + (1000000 + i) + "," + random.nextInt(500000) / 100.0 + "," + (2000000 + i) + "," + random.nextInt(500000) / 100.0 + ",Last" + i + ","
+                    + (1000 + random.nextInt(9000)) + ",-" + random.nextInt(100000) / 100.0);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Writes a transactions file that mixes pays, transfers, inquiries, withdrawals and
+     * deposits between customers created by {@link #customers(int)}.
+     * @param file      the file to write
+     * @param rows      the number of transactions
+     * @param customers the number of customers the transactions refer to
+     * @throws IOException if the file cannot be written
+     */
+    static void writeTransactions(Path file, int rows, int customers) throws IOException {
+        Random random = new Random(SEED);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(TRANSACTIONS_HEADER);
+            writer.newLine();
+            for (int i = 0; i < rows; i++) {
+                int from = random.nextInt(customers);
+                int to = random.nextInt(customers);
+                int amount = 1 + random.nextInt(100);
+                switch (random.nextInt(5)) {
+                    case 0:
+                        writer.write("First" + from + ",Last" + from + ",Checking,pays,First" + to + ",Last" + to + ",Checking," + amount);
+                        break;
+                    case 1:
+                        writer.write("First" + from + ",Last" + from + ",Savings,transfers,First" + from + ",Last" + from + ",Checking," + amount);
+                        break;
+                    case 2:
+                        writer.write("First" + from + ",Last" + from + ",Checking,inquires,,,,");
+                        break;
+                    case 3:
+                        writer.write("First" + from + ",Last" + from + ",Checking,withdraws,,,," + amount);
+                        break;
+                    default:
+                        writer.write(",,,deposits,First" + to + ",Last" + to + ",Savings," + amount);
+                        break;
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Discards everything printed to the console, so the benchmarks measure the banking
+     * logic and not the terminal. The messages are still formatted.
+     */
+    static synchronized void silenceConsole() {
+        if (console == null) {
+            console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+    }
+
+    /** Restores the console silenced by {@link #silenceConsole()}. */
+    static synchronized void restoreConsole() {
+        if (console != null) {
+            System.setOut(console);
+            console = null;
+        }
+    }
+}
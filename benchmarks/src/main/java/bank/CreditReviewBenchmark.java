@@ -0,0 +1,80 @@
+package bank;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CreditReviewJob#score(Collection)} over the whole credit book, on one
+ * thread and on every available processor, next to scoring the same accounts one at a
+ * time with {@link Credit#determineCreditLimit(int)} as new customers are.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CreditReviewBenchmark {
+    /** The number of credit accounts. */
+    @Param({"100000", "1000000"})
+    public int accounts;
+
+    /** The customers who own the accounts. */
+    private Collection<Customer> customers;
+
+    /** Creates the customers. */
+    @Setup(Level.Trial)
+    public void createCustomers() {
+        customers = BenchmarkData.customers(accounts).values();
+    }
+
+    /**
+     * Scores every account on one thread.
+     * @return the decisions
+     */
+    @Benchmark
+    public List<CreditReviewJob.Decision> scoreSequential() {
+        return new CreditReviewJob(CreditPolicy.DEFAULT, 3331, 1).score(customers);
+    }
+
+    /**
+     * Scores every account on every available processor.
+     * @return the decisions
+     */
+    @Benchmark
+    public List<CreditReviewJob.Decision> scoreParallel() {
+        return new CreditReviewJob(CreditPolicy.DEFAULT, 3331, Runtime.getRuntime().availableProcessors()).score(customers);
+    }
+
+    /**
+     * Scores every account with the method used for new customers.
+     * @return the sum of the limits
+     */
+    @Benchmark
+    public double determineOneByOne() {
+        double total = 0;
+        int score = 0;
+        for (int i = 0; i < accounts; i++) {
+            score = score == 900 ? 1 : score + 1;
+            total += Credit.determineCreditLimit(score);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,51 @@
+package bank;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link FilesHandling#updateCSV(HashMap)}, which writes every customer to
+ * "Updated_Bank_Users.csv" in the working directory.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerExportBenchmark {
+    /** The number of customers to export. */
+    @Param({"10000", "100000"})
+    public int rows;
+
+    /** The customers to export. */
+    private HashMap<String, Customer> customers;
+
+    /** Creates the customers. */
+    @Setup(Level.Trial)
+    public void createCustomers() {
+        customers = BenchmarkData.customers(rows);
+    }
+
+    /** Exports the customers. */
+    @Benchmark
+    public void updateCSV() {
+        FilesHandling.updateCSV(customers);
+    }
+}
@@ -0,0 +1,97 @@
+package bank;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link CustomerIdMap} with the {@code HashMap<Integer, Customer>} it replaces:
+ * the latency of a lookup by a random id, and the heap each map retains, which is
+ * printed when the maps are built. Every entry points to the same customer, so only the
+ * maps themselves are measured.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class CustomerIdMapBenchmark {
+    /** The number of customers in each map. */
+    @Param({"100000", "10000000"})
+    public int customers;
+
+    /** The map of boxed ids. */
+    private HashMap<Integer, Customer> boxed;
+
+    /** The map of primitive ids. */
+    private CustomerIdMap primitive;
+
+    /** Builds both maps and prints the heap each one retains. */
+    @Setup(Level.Trial)
+    public void buildMaps() {
+        Customer customer = new Customer();
+        long before = usedHeap();
+        boxed = new HashMap<>();
+        for (int id = 1; id <= customers; id++) {
+            boxed.put(id, customer);
+        }
+        long boxedBytes = usedHeap() - before;
+        before = usedHeap();
+        primitive = new CustomerIdMap();
+        for (int id = 1; id <= customers; id++) {
+            primitive.put(id, customer);
+        }
+        long primitiveBytes = usedHeap() - before;
+        System.out.printf("%nHeap retained for %d customers: HashMap<Integer, Customer> %.1f MB (%.1f B/entry), CustomerIdMap %.1f MB (%.1f B/entry)%n",
+            customers, boxedBytes / 1e6, (double) boxedBytes / customers, primitiveBytes / 1e6, (double) primitiveBytes / customers);
+    }
+
+    /**
+     * Gets the heap in use after a full collection.
+     * @return the used heap in bytes
+     */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Looks up a random id in the HashMap, boxing it as {@code customersById.get(id)} did.
+     * @return the customer
+     */
+    @Benchmark
+    public Customer hashMapGet() {
+        return boxed.get(1 + ThreadLocalRandom.current().nextInt(customers));
+    }
+
+    /**
+     * Looks up a random id in the CustomerIdMap.
+     * @return the customer
+     */
+    @Benchmark
+    public Customer customerIdMapGet() {
+        return primitive.get(1 + ThreadLocalRandom.current().nextInt(customers));
+    }
+}
@@ -0,0 +1,87 @@
+package bank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to load a customers file, with the sequential reader and
+ * with the parallel memory-mapped loader.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CustomerLoadBenchmark {
+    /** The number of customers in the file. */
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    /** The generated customers file. */
+    private Path file;
+
+    /**
+     * Writes the customers file.
+     * @throws IOException if the file cannot be written
+     */
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        file = Files.createTempFile("customers", ".csv");
+        BenchmarkData.writeCustomers(file, rows);
+    }
+
+    /**
+     * Deletes the customers file.
+     * @throws IOException if the file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Loads the file with {@link FilesHandling#loadCustomersFromCSV(String, HashMap, CustomerIdMap)}.
+     * @return the loaded customers
+     */
+    @Benchmark
+    public CustomerIdMap sequential() {
+        HashMap<String, Customer> byName = new HashMap<>();
+        CustomerIdMap byId = new CustomerIdMap();
+        FilesHandling.loadCustomersFromCSV(file.toString(), byName, byId);
+        return byId;
+    }
+
+    /**
+     * Loads the file with {@link FilesHandling#loadCustomersFromCSV(String, HashMap, CustomerIdMap, int)}
+     * on every available processor.
+     * @return the rows that could not be loaded
+     */
+    @Benchmark
+    public List<RowError> parallel() {
+        HashMap<String, Customer> byName = new HashMap<>();
+        CustomerIdMap byId = new CustomerIdMap();
+        return FilesHandling.loadCustomersFromCSV(file.toString(), byName, byId, Runtime.getRuntime().availableProcessors());
+    }
+}
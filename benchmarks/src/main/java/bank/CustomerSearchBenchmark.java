@@ -0,0 +1,105 @@
+package bank;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link CustomerSearchIndex}: a prefix search and a search for a name with
+ * a typo, over customers with random names made of common syllables.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class CustomerSearchBenchmark {
+    /** The syllables names are made of. */
+    private static final String[] SYLLABLES = {"an", "ber", "ca", "da", "el", "fer", "go", "her", "is", "ja", "ka", "lo", "ma", "nan", "o", "pe", "qui", "ro", "san", "to", "u", "va", "zo"};
+
+    /** The number of customers in the index. */
+    @Param({"1000000"})
+    public int customers;
+
+    /** The index searched. */
+    private CustomerSearchIndex index;
+
+    /** The full names of some customers, typed with one mistake. */
+    private String[] typos;
+
+    /** The beginnings of the names of some customers. */
+    private String[] prefixes;
+
+    /** The next query to run. */
+    private int next;
+
+    /** Fills the index. */
+    @Setup(Level.Trial)
+    public void fillIndex() {
+        Random random = new Random(3331);
+        index = new CustomerSearchIndex();
+        typos = new String[1024];
+        prefixes = new String[1024];
+        for (int i = 0; i < customers; i++) {
+            String first = name(random, 2);
+            String last = name(random, 3);
+            index.add(new Customer(i + 1, first, last, "1-Jan-90", "Address", "(915) 747-5000", new Checking(), new Saving(), new Credit()));
+            if (i < typos.length) {
+                String full = first + " " + last;
+                int at = random.nextInt(full.length());
+                typos[i] = full.substring(0, at) + "x" + full.substring(at + 1);
+                prefixes[i] = full.substring(0, Math.min(full.length(), 4));
+            }
+        }
+    }
+
+    /**
+     * Makes a random name.
+     * @param random    the random number generator
+     * @param syllables the number of syllables
+     * @return the name, capitalized
+     */
+    private static String name(Random random, int syllables) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    /**
+     * Finds the first ten customers whose name starts with four letters.
+     * @return the customers
+     */
+    @Benchmark
+    public List<Customer> prefix() {
+        return index.prefixSearch(prefixes[next++ & (prefixes.length - 1)], 10);
+    }
+
+    /**
+     * Finds the ten customers closest to a full name with one mistake.
+     * @return the customers
+     */
+    @Benchmark
+    public List<Customer> fuzzy() {
+        return index.fuzzySearch(typos[next++ & (typos.length - 1)], 2, 10);
+    }
+}
@@ -0,0 +1,101 @@
+package bank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link TransactionDedupIndex#contains(String)} over an index of many
+ * transaction IDs, for rows already applied, found in the sorted file or the log, and
+ * for new rows, which the Bloom filter mostly answers alone. The time includes building
+ * the ID and its digest.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DedupIndexBenchmark {
+    /** The number of keys in the index. */
+    @Param({"100000", "5000000"})
+    public int keys;
+
+    /** The directory of the index files. */
+    private Path directory;
+
+    /** The index. */
+    private TransactionDedupIndex index;
+
+    /** The row looked up next. */
+    private int row;
+
+    /**
+     * Adds the transaction IDs to the index, merging them into its sorted file as it goes.
+     * @throws IOException if the index cannot be written
+     */
+    @Setup(Level.Trial)
+    public void addKeys() throws IOException {
+        directory = Files.createTempDirectory("dedup");
+        index = new TransactionDedupIndex(directory.resolve("transactions.dedup").toString());
+        for (int i = 0; i < keys; i++) {
+            index.add("T" + i);
+        }
+    }
+
+    /**
+     * Deletes the index files.
+     * @throws IOException if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void deleteIndex() throws IOException {
+        index.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Looks up a row that was applied.
+     * @return whether the row was applied, always true
+     */
+    @Benchmark
+    public boolean applied() {
+        int i = row;
+        row = i + 1 == keys ? 0 : i + 1;
+        return index.contains("T" + i);
+    }
+
+    /**
+     * Looks up a row whose transaction ID was never applied.
+     * @return whether the row was applied, almost always false
+     */
+    @Benchmark
+    public boolean notApplied() {
+        int i = row;
+        row = i + 1 == keys ? 0 : i + 1;
+        return index.contains("N" + i);
+    }
+}
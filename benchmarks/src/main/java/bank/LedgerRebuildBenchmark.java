@@ -0,0 +1,129 @@
+package bank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Ledger#rebuild(int)} over a ledger of payments between a million
+ * accounts: replaying every entry on one thread and on every available processor, and
+ * replaying only the entries after the latest snapshot, as at startup.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class LedgerRebuildBenchmark {
+    /** The number of accounts. */
+    private static final int ACCOUNTS = 1000000;
+
+    /** The number of entries of the ledger. */
+    @Param({"2000000", "20000000"})
+    public long entries;
+
+    /** The directory of the ledger files. */
+    private Path directory;
+
+    /** The ledger with its periodic snapshots. */
+    private Ledger ledger;
+
+    /** The same ledger opened without a snapshot, so every entry is replayed. */
+    private Ledger ledgerWithoutSnapshot;
+
+    /**
+     * Posts the payments.
+     * @throws IOException if the ledger cannot be written
+     */
+    @Setup(Level.Trial)
+    public void postEntries() throws IOException {
+        directory = Files.createTempDirectory("ledger");
+        Path path = directory.resolve("ledger.dat");
+        ledger = new Ledger(path.toString());
+        SplittableRandom random = new SplittableRandom(3331);
+        int[] accountNumbers = new int[2];
+        long[] amountsCents = new long[2];
+        for (long i = 0; i < entries; i += 2) {
+            accountNumbers[0] = 1000 + random.nextInt(ACCOUNTS);
+            accountNumbers[1] = 1000 + random.nextInt(ACCOUNTS);
+            amountsCents[1] = 1 + random.nextInt(100000);
+            amountsCents[0] = -amountsCents[1];
+            ledger.post(accountNumbers, amountsCents);
+        }
+        ledger.snapshot(1);
+        for (long i = 0; i < entries / 20; i += 2) {
+            accountNumbers[0] = 1000 + random.nextInt(ACCOUNTS);
+            accountNumbers[1] = 1000 + random.nextInt(ACCOUNTS);
+            ledger.post(accountNumbers, amountsCents);
+        }
+        Files.copy(path, directory.resolve("copy.dat"));
+        ledgerWithoutSnapshot = new Ledger(directory.resolve("copy.dat").toString());
+    }
+
+    /**
+     * Deletes the ledger files.
+     * @throws IOException if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void deleteLedger() throws IOException {
+        ledger.close();
+        ledgerWithoutSnapshot.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Replays every entry on one thread.
+     * @return the balances
+     * @throws IOException if the ledger cannot be read
+     */
+    @Benchmark
+    public LedgerBalances replayAllSequential() throws IOException {
+        return ledgerWithoutSnapshot.rebuild(1);
+    }
+
+    /**
+     * Replays every entry on every available processor.
+     * @return the balances
+     * @throws IOException if the ledger cannot be read
+     */
+    @Benchmark
+    public LedgerBalances replayAllParallel() throws IOException {
+        return ledgerWithoutSnapshot.rebuild(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Loads the latest snapshot and replays the entries after it.
+     * @return the balances
+     * @throws IOException if the ledger cannot be read
+     */
+    @Benchmark
+    public LedgerBalances rebuildFromSnapshot() throws IOException {
+        return ledger.rebuild(Runtime.getRuntime().availableProcessors());
+    }
+}
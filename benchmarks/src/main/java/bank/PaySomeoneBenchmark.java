@@ -0,0 +1,79 @@
+package bank;
+
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BankManager#paySomeone(Customer, Customer, String, String, double)}
+ * when several threads pay at the same time. With two customers every payment competes
+ * for the same accounts; with many customers the payments mostly spread over different
+ * lock stripes.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PaySomeoneBenchmark {
+    /** The number of customers paying each other. */
+    @Param({"2", "1024"})
+    public int customers;
+
+    /** The customers paying each other. */
+    private Customer[] payers;
+
+    /** The manager that makes the payments. */
+    private BankManager bankManager;
+
+    /** Silences the console for the whole run. */
+    @Setup(Level.Trial)
+    public void silenceConsole() {
+        BenchmarkData.silenceConsole();
+    }
+
+    /** Creates fresh customers, so the histories do not grow from one iteration to the next. */
+    @Setup(Level.Iteration)
+    public void createCustomers() {
+        payers = BenchmarkData.customers(customers).values().toArray(new Customer[0]);
+        bankManager = new BankManager(new HashMap<>());
+    }
+
+    /** Restores the console. */
+    @TearDown(Level.Trial)
+    public void restoreConsole() {
+        BenchmarkData.restoreConsole();
+    }
+
+    /**
+     * Pays one cent between two different random customers.
+     * @return whether the payment went through
+     */
+    @Benchmark
+    public boolean pay() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(payers.length);
+        int to = (from + 1 + random.nextInt(payers.length - 1)) % payers.length;
+        return bankManager.paySomeone(payers[from], payers[to], "Checking", "Checking", 0.01);
+    }
+}
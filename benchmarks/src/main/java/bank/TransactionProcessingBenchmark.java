@@ -0,0 +1,94 @@
+package bank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many transactions per second {@link BankManager#processTransactions(String)}
+ * and its parallel version apply, reading them from a file.
+ * @author Natalia Cervantes
+ * @author Tzetzaith Rivero
+ * @version 3.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TransactionProcessingBenchmark {
+    /** The number of transactions in the file. */
+    private static final int TRANSACTIONS = 100000;
+
+    /** The number of customers the transactions refer to. */
+    @Param({"1000"})
+    public int customers;
+
+    /** The generated transactions file. */
+    private Path file;
+
+    /** The manager that applies the transactions. */
+    private BankManager bankManager;
+
+    /**
+     * Writes the transactions file.
+     * @throws IOException if the file cannot be written
+     */
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        file = Files.createTempFile("transactions", ".csv");
+        BenchmarkData.writeTransactions(file, TRANSACTIONS, customers);
+        BenchmarkData.silenceConsole();
+    }
+
+    /**
+     * Creates fresh customers, so the histories do not grow from one iteration to the next.
+     */
+    @Setup(Level.Iteration)
+    public void createCustomers() {
+        HashMap<String, Customer> customersByName = BenchmarkData.customers(customers);
+        bankManager = new BankManager(customersByName);
+    }
+
+    /**
+     * Deletes the transactions file.
+     * @throws IOException if the file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        BenchmarkData.restoreConsole();
+        Files.deleteIfExists(file);
+    }
+
+    /** Applies the transactions one after the other. */
+    @Benchmark
+    @OperationsPerInvocation(TRANSACTIONS)
+    public void sequential() {
+        bankManager.processTransactions(file.toString());
+    }
+
+    /** Applies the transactions with one worker per available processor. */
+    @Benchmark
+    @OperationsPerInvocation(TRANSACTIONS)
+    public void parallel() {
+        bankManager.processTransactions(file.toString(), Runtime.getRuntime().availableProcessors());
+    }
+}